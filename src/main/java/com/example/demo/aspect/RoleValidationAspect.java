@@ -3,6 +3,7 @@ package com.example.demo.aspect;
 import com.example.demo.annotation.RequireRole;
 import com.example.demo.enums.UserRole;
 import com.example.demo.exception.BusinessException;
+import com.example.demo.pojo.ao.RoleAO;
 import com.example.demo.util.SecurityUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
@@ -13,6 +14,8 @@ import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -25,56 +28,76 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RoleValidationAspect {
 
+    /** 方法 -> 权限要求，首次调用时解析注解，之后直接读取 */
+    private final Map<Method, RoleRequirement> requirements = new ConcurrentHashMap<>();
+
     @Before("@within(com.example.demo.annotation.RequireRole) || @annotation(com.example.demo.annotation.RequireRole)")
     public void validateRole(JoinPoint joinPoint) {
-        log.debug("开始验证用户角色...");
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RoleRequirement requirement = requirements.get(method);
+        if (requirement == null) {
+            requirement = requirements.computeIfAbsent(method,
+                    key -> resolveRequirement(key, joinPoint.getTarget().getClass()));
+        }
+
+        if (requirement == RoleRequirement.NONE) {
+            return;
+        }
+
+        // 检查用户是否已登录
+        RoleAO roleAO = SecurityUtil.getRoleAO()
+                .orElseThrow(() -> new BusinessException(401, "未登录，请先登录"));
+
+        UserRole userRole = roleAO.getRole();
+        if (userRole == null) {
+            throw new BusinessException(403, "用户角色无效");
+        }
 
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
-        Class<?> targetClass = joinPoint.getTarget().getClass();
+        // 使用层级权限检查：用户角色的级别 >= 任一要求角色的级别，则满足权限
+        if (userRole.getLevel() < requirement.minRequiredLevel()) {
+            throw new BusinessException(403, requirement.deniedMessage());
+        }
+    }
 
+    /**
+     * 解析方法的权限要求，方法上的注解优先于类上的注解
+     *
+     * @param method      接口方法
+     * @param targetClass 控制器类
+     * @return 权限要求
+     */
+    private RoleRequirement resolveRequirement(Method method, Class<?> targetClass) {
         RequireRole methodAnnotation = method.getAnnotation(RequireRole.class);
         RequireRole classAnnotation = targetClass.getAnnotation(RequireRole.class);
 
         RequireRole effectiveAnnotation = methodAnnotation != null ? methodAnnotation : classAnnotation;
 
         if (effectiveAnnotation == null) {
-            log.debug("未找到 @RequireRole 注解，跳过验证");
-            return;
-        }
-
-        // 检查用户是否已登录
-        if (!SecurityUtil.isAuthenticated()) {
-            throw new BusinessException(401, "未登录，请先登录");
+            log.debug("未找到 @RequireRole 注解，跳过验证: {}", method);
+            return RoleRequirement.NONE;
         }
 
-        // 获取用户的角色
-        UserRole userRole = SecurityUtil.getCurrentRole()
-                .orElseThrow(() -> new BusinessException(403, "用户角色无效"));
-
-        log.debug("当前用户角色: {} (级别: {})", userRole.getDescription(), userRole.getLevel());
-        log.debug("注解来源: {}", methodAnnotation != null ? "方法级别" : "类级别");
-
         UserRole[] requiredRoles = effectiveAnnotation.value();
-
-        // 使用层级权限检查：用户角色的级别 >= 任一要求角色的级别，则满足权限
         int minRequiredLevel = Arrays.stream(requiredRoles)
                 .mapToInt(UserRole::getLevel)
                 .min()
                 .orElse(Integer.MAX_VALUE);
+        String requiredRoleNames = Arrays.stream(requiredRoles)
+                .map(UserRole::getDescription)
+                .collect(Collectors.joining("或"));
 
-        boolean hasPermission = userRole.getLevel() >= minRequiredLevel;
-
-        log.debug("层级权限验证 - 用户级别: {}, 最低要求级别: {}, 结果: {}",
-                userRole.getLevel(), minRequiredLevel, hasPermission);
-
-        if (!hasPermission) {
-            String requiredRoleNames = Arrays.stream(requiredRoles)
-                    .map(UserRole::getDescription)
-                    .collect(Collectors.joining("或"));
-            throw new BusinessException(403, "权限不足，只有" + requiredRoleNames + "可以访问此功能");
-        }
+        log.debug("解析权限要求 - 方法: {}, 注解来源: {}, 最低要求级别: {}",
+                method, methodAnnotation != null ? "方法级别" : "类级别", minRequiredLevel);
+        return new RoleRequirement(minRequiredLevel, "权限不足，只有" + requiredRoleNames + "可以访问此功能");
+    }
 
-        log.debug("角色验证通过");
+    /**
+     * 接口权限要求
+     *
+     * @param minRequiredLevel 最低要求的角色级别
+     * @param deniedMessage    权限不足时的提示
+     */
+    private record RoleRequirement(int minRequiredLevel, String deniedMessage) {
+        private static final RoleRequirement NONE = new RoleRequirement(Integer.MIN_VALUE, null);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 签到事件推送线程池配置
+ * 每个 SSE 连接的事件按顺序在该线程池中发送，单个慢连接只占用一个线程，不影响其他教师端
+ */
+@Configuration
+public class AttendancePushConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor attendancePushExecutor(
+            @Value("${slz.attendance.push.send-threads:4}") int threads,
+            @Value("${slz.attendance.push.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("attendance-push-");
+        executor.setDaemon(true);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 导出任务线程池配置
+ * 线程数和队列长度都有上限，队列满时直接拒绝，避免大批量导出占满数据库连接影响正常请求
+ */
+@Configuration
+public class ExportJobConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor exportJobExecutor(
+            @Value("${slz.export.job.threads:2}") int threads,
+            @Value("${slz.export.job.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-job-");
+        executor.setThreadPriority(Thread.NORM_PRIORITY - 1);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 导入任务线程池配置
+ * 默认单线程执行，多个导入任务按提交顺序排队，避免并发生成班级编号时相互冲突
+ */
+@Configuration
+public class ImportJobConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor importJobExecutor(
+            @Value("${slz.import.job.threads:1}") int threads,
+            @Value("${slz.import.job.queue-capacity:10}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("import-job-");
+        executor.setThreadPriority(Thread.NORM_PRIORITY - 1);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
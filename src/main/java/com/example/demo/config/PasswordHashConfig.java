@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 密码加密线程池配置
+ * BCrypt 是纯 CPU 计算，线程数默认等于 CPU 核数；队列满时由调用线程自己计算，限制积压的任务数
+ */
+@Configuration
+public class PasswordHashConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${slz.password.hash-threads:0}") int threads,
+            @Value("${slz.password.hash-queue-capacity:1000}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -1,17 +1,18 @@
 package com.example.demo.controller;
 
 import com.example.demo.service.DownloadService;
+import com.example.demo.util.FileTransferUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
@@ -29,6 +30,13 @@ public class DownloadController {
     @Autowired
     private DownloadService downloadService;
 
+    @Autowired
+    private FileTransferUtil fileTransferUtil;
+
+    /** 是否允许浏览器在播放密钥有效期内缓存视频 */
+    @Value("${slz.download.play-cache-enabled:true}")
+    private boolean playCacheEnabled;
+
     /**
      * 根据播放密钥播放视频（支持范围请求和拖拽进度）
      *
@@ -40,7 +48,7 @@ public class DownloadController {
     public void playVideo(
             @PathVariable String playKey,
             HttpServletResponse response,
-            jakarta.servlet.http.HttpServletRequest request) {
+            HttpServletRequest request) {
         try {
             // 验证播放密钥
             DownloadService.VideoFilePlayInfo playInfo = downloadService.getVideoByPlayKey(playKey);
@@ -52,102 +60,36 @@ public class DownloadController {
                 return;
             }
 
-            long fileSize = file.length();
-            String rangeHeader = request.getHeader("Range");
-
-            // 获取文件MIME类型
-            String contentType = getVideoContentType(playInfo.getFileName());
-
             // 设置基础响应头
-            response.setContentType(contentType);
-            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes"); // 允许范围请求
-            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-            response.setHeader(HttpHeaders.PRAGMA, "no-cache");
             response.setHeader("X-Content-Type-Options", "nosniff");
+            String contentType = getVideoContentType(playInfo.getFileName());
 
-            if (rangeHeader == null) {
-                // 没有范围请求，传输整个文件
-                response.setContentLengthLong(fileSize);
-                response.setStatus(HttpServletResponse.SC_OK);
-
-                try (FileInputStream fis = new FileInputStream(file);
-                     OutputStream os = response.getOutputStream()) {
-                    byte[] buffer = new byte[8192];
-                    int bytesRead;
-                    while ((bytesRead = fis.read(buffer)) != -1) {
-                        os.write(buffer, 0, bytesRead);
-                    }
-                    os.flush();
-                }
+            if (playCacheEnabled) {
+                // 播放密钥有效期内允许浏览器私有缓存，重复拖拽和回看通过 ETag 协商返回 304
+                long maxAge = Math.max(0, (playInfo.getExpireTime() - System.currentTimeMillis()) / 1000);
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAge);
+                fileTransferUtil.transfer(request, response, file, contentType, buildVideoETag(playInfo, file));
             } else {
-                // 处理范围请求
-                long start = 0;
-                long end = fileSize - 1;
-
-                // 解析 Range 头，格式为 bytes=start-end
-                String rangeValue = rangeHeader.replace("bytes=", "");
-                String[] ranges = rangeValue.split("-");
-                try {
-                    if (ranges.length > 0 && !ranges[0].isEmpty()) {
-                        start = Long.parseLong(ranges[0]);
-                    }
-                    if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                        end = Long.parseLong(ranges[1]);
-                    }
-                } catch (NumberFormatException e) {
-                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-                    response.getWriter().write("无效的范围请求");
-                    return;
-                }
-
-                // 验证范围
-                if (start >= fileSize || start < 0 || end < start) {
-                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
-                    response.getWriter().write("范围不满足");
-                    return;
-                }
-
-                long contentLength = end - start + 1;
-
-                // 设置范围响应头
-                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-                response.setHeader(HttpHeaders.CONTENT_RANGE,
-                        "bytes " + start + "-" + end + "/" + fileSize);
-                response.setContentLengthLong(contentLength);
-
-                // 流式传输请求的范围
-                try (FileInputStream fis = new FileInputStream(file);
-                     OutputStream os = response.getOutputStream()) {
-                    byte[] buffer = new byte[8192];
-                    long skipped = fis.skip(start);
-                    if (skipped < start) {
-                        throw new IOException("无法跳过足够的字节");
-                    }
-
-                    long remaining = contentLength;
-                    int bytesRead;
-                    while (remaining > 0 && (bytesRead = fis.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
-                        os.write(buffer, 0, bytesRead);
-                        remaining -= bytesRead;
-                    }
-                    os.flush();
-                }
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+                response.setHeader(HttpHeaders.PRAGMA, "no-cache");
+                fileTransferUtil.transfer(request, response, file, contentType);
             }
 
             log.info("视频播放成功: {}, 用户: {}, 范围: {}",
-                    playInfo.getFileName(), playInfo.getUsername(), rangeHeader);
+                    playInfo.getFileName(), playInfo.getUsername(), request.getHeader(HttpHeaders.RANGE));
         } catch (IOException e) {
-            log.error("视频播放失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            try {
-                response.getWriter().write("播放失败");
-            } catch (IOException ex) {
-                log.error("写入错误响应失败", ex);
-            }
+            handleTransferError(response, "视频播放失败", "播放失败", e);
         }
     }
 
+    /**
+     * 根据视频ID、文件大小和修改时间生成强 ETag
+     */
+    private String buildVideoETag(DownloadService.VideoFilePlayInfo playInfo, java.io.File file) {
+        return "\"" + playInfo.getVideoId() + "-" + Long.toHexString(file.length())
+                + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
     /**
      * 根据文件名获取视频MIME类型
      */
@@ -179,9 +121,11 @@ public class DownloadController {
      *
      * @param key 加密的下载密钥
      * @param response HTTP响应
+     * @param request HTTP请求
      */
     @GetMapping("/video/{key}")
-    public void downloadVideo(@PathVariable String key, HttpServletResponse response) {
+    public void downloadVideo(@PathVariable String key, HttpServletResponse response,
+                              HttpServletRequest request) {
         try {
             DownloadService.VideoFileDownloadInfo downloadInfo = downloadService.getVideoByKey(key);
 
@@ -192,36 +136,18 @@ public class DownloadController {
                 return;
             }
 
-            // 设置响应头
-            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
-            response.setContentLengthLong(downloadInfo.getFileSize());
-
             // 对文件名进行URL编码
             String encodedFileName = URLEncoder.encode(downloadInfo.getFileName(), StandardCharsets.UTF_8)
                     .replaceAll("\\+", "%20");
             response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
                     "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName);
 
-            // 写入文件流
-            try (FileInputStream fis = new FileInputStream(file);
-                 OutputStream os = response.getOutputStream()) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    os.write(buffer, 0, bytesRead);
-                }
-                os.flush();
-            }
+            // 传输文件
+            fileTransferUtil.transfer(request, response, file, MediaType.APPLICATION_OCTET_STREAM_VALUE);
 
             log.info("视频下载成功: {}", downloadInfo.getFileName());
         } catch (IOException e) {
-            log.error("视频下载失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            try {
-                response.getWriter().write("下载失败");
-            } catch (IOException ex) {
-                log.error("写入错误响应失败", ex);
-            }
+            handleTransferError(response, "视频下载失败", "下载失败", e);
         }
     }
 
@@ -230,9 +156,11 @@ public class DownloadController {
      *
      * @param key 加密的下载密钥
      * @param response HTTP响应
+     * @param request HTTP请求
      */
     @GetMapping("/file/{key}")
-    public void downloadFile(@PathVariable String key, HttpServletResponse response) {
+    public void downloadFile(@PathVariable String key, HttpServletResponse response,
+                             HttpServletRequest request) {
         try {
             DownloadService.FileDownloadInfo downloadInfo = downloadService.getFileByKey(key);
 
@@ -243,36 +171,37 @@ public class DownloadController {
                 return;
             }
 
-            // 设置响应头
-            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
-            response.setContentLengthLong(downloadInfo.getFileSize());
-
             // 对文件名进行URL编码
             String encodedFileName = URLEncoder.encode(downloadInfo.getFileName(), StandardCharsets.UTF_8)
                     .replaceAll("\\+", "%20");
             response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
                     "attachment; filename=\"" + encodedFileName + "\"; filename*=UTF-8''" + encodedFileName);
 
-            // 写入文件流
-            try (FileInputStream fis = new FileInputStream(file);
-                 OutputStream os = response.getOutputStream()) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    os.write(buffer, 0, bytesRead);
-                }
-                os.flush();
-            }
+            // 传输文件
+            fileTransferUtil.transfer(request, response, file, MediaType.APPLICATION_OCTET_STREAM_VALUE);
 
             log.info("文件下载成功: {}", downloadInfo.getFileName());
         } catch (IOException e) {
-            log.error("文件下载失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            try {
-                response.getWriter().write("下载失败");
-            } catch (IOException ex) {
-                log.error("写入错误响应失败", ex);
-            }
+            handleTransferError(response, "文件下载失败", "下载失败", e);
+        }
+    }
+
+    /**
+     * 传输失败时的处理，响应已提交（多为客户端中断拖拽）时只记录日志
+     */
+    private void handleTransferError(HttpServletResponse response, String logMessage, String errorMessage,
+                                     IOException e) {
+        if (response.isCommitted()) {
+            log.debug("{}，连接已中断: {}", logMessage, e.getMessage());
+            return;
+        }
+        log.error("{}: {}", logMessage, e.getMessage(), e);
+        response.reset();
+        response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        try {
+            response.getWriter().write(errorMessage);
+        } catch (IOException ex) {
+            log.error("写入错误响应失败", ex);
         }
     }
 }
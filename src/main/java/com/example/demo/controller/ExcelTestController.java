@@ -3,16 +3,21 @@ package com.example.demo.controller;
 import com.alibaba.excel.EasyExcel;
 import com.example.demo.annotation.RequireRole;
 import com.example.demo.enums.UserRole;
+import com.example.demo.exception.BusinessException;
 import com.example.demo.listener.ClassCourseExperimentExcelListener;
 import com.example.demo.listener.StudentClassImportListener;
 import com.example.demo.listener.UserImportListener;
+import com.example.demo.pojo.ao.RoleAO;
 import com.example.demo.pojo.excel.ClassCourseExperimentExcel;
 import com.example.demo.pojo.excel.StudentClassImportExcel;
 import com.example.demo.pojo.excel.UserImportExcel;
 import com.example.demo.pojo.response.ApiResponse;
+import com.example.demo.pojo.response.StudentClassImportJobResponse;
 import com.example.demo.service.AuthService;
 import com.example.demo.service.ClassCourseExperimentImportService;
+import com.example.demo.service.StudentClassImportJobService;
 import com.example.demo.service.StudentClassImportService;
+import com.example.demo.util.SecurityUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -35,6 +40,7 @@ public class ExcelTestController {
 
     private final AuthService authService;
     private final StudentClassImportService studentClassImportService;
+    private final StudentClassImportJobService studentClassImportJobService;
     private final ClassCourseExperimentImportService classCourseExperimentImportService;
 
     /**
@@ -218,6 +224,63 @@ public class ExcelTestController {
         }
     }
 
+    /**
+     * 提交学生班级导入任务
+     * 后台按批次导入，每批独立提交，通过任务查询接口获取已处理行数
+     *
+     * @param file Excel 文件
+     * @return 导入任务
+     */
+    @PostMapping("/import/students-with-classes/jobs")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<StudentClassImportJobResponse> submitStudentClassImportJob(
+            @RequestParam("file") MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            return ApiResponse.error(400, "请上传Excel文件");
+        }
+
+        String fileName = file.getOriginalFilename();
+        if (fileName == null || (!fileName.endsWith(".xls") && !fileName.endsWith(".xlsx"))) {
+            return ApiResponse.error(400, "文件格式错误，请上传 .xls 或 .xlsx 格式的Excel文件");
+        }
+
+        RoleAO roleAO = SecurityUtil.getRoleAO()
+                .orElseThrow(() -> new BusinessException(401, "未登录"));
+        StudentClassImportJobService.ImportJob job = studentClassImportJobService.submit(file, roleAO);
+        return ApiResponse.success(StudentClassImportJobResponse.fromJob(job), "导入任务已提交");
+    }
+
+    /**
+     * 查询学生班级导入任务进度
+     *
+     * @param jobId 任务ID
+     * @return 导入任务
+     */
+    @GetMapping("/import/students-with-classes/jobs/{jobId}")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<StudentClassImportJobResponse> getStudentClassImportJob(@PathVariable("jobId") Long jobId) {
+        String username = SecurityUtil.getCurrentUsername()
+                .orElseThrow(() -> new BusinessException(401, "未登录"));
+        return ApiResponse.success(StudentClassImportJobResponse.fromJob(
+                studentClassImportJobService.getJob(jobId, username)));
+    }
+
+    /**
+     * 继续执行失败的学生班级导入任务
+     * 从最后提交的行之后开始导入，已提交的批次不会重复导入
+     *
+     * @param jobId 任务ID
+     * @return 导入任务
+     */
+    @PostMapping("/import/students-with-classes/jobs/{jobId}/resume")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<StudentClassImportJobResponse> resumeStudentClassImportJob(@PathVariable("jobId") Long jobId) {
+        String username = SecurityUtil.getCurrentUsername()
+                .orElseThrow(() -> new BusinessException(401, "未登录"));
+        StudentClassImportJobService.ImportJob job = studentClassImportJobService.resume(jobId, username);
+        return ApiResponse.success(StudentClassImportJobResponse.fromJob(job), "导入任务已继续执行");
+    }
+
     /**
      * 获取学生班级导入模板
      * 班级编号由系统自动生成，无需在Excel中填写
@@ -348,7 +411,7 @@ public class ExcelTestController {
         int totalFailures = result.getClassFailCount() + result.getCourseFailCount()
                 + result.getExperimentFailCount() + result.getClassExperimentFailCount();
         if (totalFailures > 0) {
-            throw new com.example.demo.exception.BusinessException(500, message.toString());
+            throw new BusinessException(500, message.toString());
         }
         return ApiResponse.success(message.toString());
     }
@@ -6,12 +6,15 @@ import com.example.demo.pojo.request.AttendanceRequest;
 import com.example.demo.pojo.response.ApiResponse;
 import com.example.demo.pojo.response.AttendanceResponse;
 import com.example.demo.pojo.vo.TeacherQrVO;
+import com.example.demo.service.AttendanceEventService;
 import com.example.demo.service.AttendanceRecordService;
 import com.example.demo.service.QrService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 
@@ -24,15 +27,19 @@ public class QrController {
 
     private final QrService qrService;
     private final AttendanceRecordService attendanceRecordService;
+    private final AttendanceEventService attendanceEventService;
 
     /**
      * 获取签到二维码
+     * @param classExperimentId 班级实验ID
+     * @param format 图片格式（png/svg），不传时只返回密钥
      * @return 二维码数据
      */
     @GetMapping("/teacher")
     @RequireRole(value = UserRole.TEACHER)
-    public ApiResponse<TeacherQrVO> getQr(Long classExperimentId) {
-        TeacherQrVO teacherQrVO = qrService.getTeacherQrVO(classExperimentId);
+    public ApiResponse<TeacherQrVO> getQr(Long classExperimentId,
+            @RequestParam(value = "format", required = false) String format) {
+        TeacherQrVO teacherQrVO = qrService.getTeacherQrVO(classExperimentId, format);
         return ApiResponse.success(teacherQrVO);
     }
 
@@ -41,17 +48,38 @@ public class QrController {
      *
      * @param classCode 班级代码
      * @param experimentId 实验ID
+     * @param format 图片格式（png/svg），不传时只返回密钥
      * @return 二维码数据
      */
     @GetMapping("/teacher/by-class-experiment")
     @RequireRole(value = UserRole.TEACHER)
     public ApiResponse<TeacherQrVO> getQrByClassAndExperiment(
             @RequestParam("classCode") String classCode,
-            @RequestParam("experimentId") Long experimentId) {
-        TeacherQrVO teacherQrVO = qrService.getTeacherQrVOByClassAndExperiment(classCode, experimentId);
+            @RequestParam("experimentId") Long experimentId,
+            @RequestParam(value = "format", required = false) String format) {
+        TeacherQrVO teacherQrVO = qrService.getTeacherQrVOByClassAndExperiment(classCode, experimentId, format);
         return ApiResponse.success(teacherQrVO);
     }
 
+    /**
+     * 订阅签到事件（SSE）
+     * 连接建立后依次推送 snapshot（签到列表）、qr（当前二维码），
+     * 之后二维码轮换时推送 qr，学生签到成功时推送 attendance；
+     * 签到列表在订阅注册后查询，attendance 事件可能早于 snapshot 到达或与之重复，客户端按 attendanceId 去重
+     *
+     * @param classExperimentId 班级实验ID
+     * @param format 图片格式（png/svg），不传时只推送密钥
+     * @return SSE 连接
+     */
+    @GetMapping(value = "/teacher/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RequireRole(value = UserRole.TEACHER)
+    public SseEmitter subscribeEvents(@RequestParam("classExperimentId") Long classExperimentId,
+            @RequestParam(value = "format", required = false) String format) {
+        // 先注册订阅再查询签到列表，两次调用之间提交的签到会通过 attendance 事件推送
+        return attendanceEventService.subscribe(classExperimentId, format,
+                () -> attendanceRecordService.getAttendanceListByClassExperimentId(classExperimentId, null));
+    }
+
     /**
      * 学生扫码签到（GET请求）
      * 学生扫码后自动跳转到此接口
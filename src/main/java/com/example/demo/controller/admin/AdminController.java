@@ -7,6 +7,7 @@ import com.example.demo.pojo.response.ApiResponse;
 import com.example.demo.pojo.response.ClassExperimentListResponse;
 import com.example.demo.pojo.response.PageResponse;
 import com.example.demo.service.ClassExperimentService;
+import com.example.demo.service.TopicSearchIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 public class AdminController {
 
     private final ClassExperimentService classExperimentService;
+    private final TopicSearchIndex topicSearchIndex;
 
     /**
      * 查询所有班级实验（课次）列表
@@ -36,4 +38,17 @@ public class AdminController {
         return ApiResponse.success(response, "查询成功");
     }
 
+    /**
+     * 重建题目全文检索索引
+     * 直接修改数据库中的题目后调用，无需等待刷新间隔
+     *
+     * @return 已索引的题目数
+     */
+    @PostMapping("/topic-search/reindex")
+    @RequireRole(value = UserRole.ADMIN)
+    public ApiResponse<Integer> rebuildTopicSearchIndex() {
+        int count = topicSearchIndex.rebuild();
+        return ApiResponse.success(count, "重建成功");
+    }
+
 }
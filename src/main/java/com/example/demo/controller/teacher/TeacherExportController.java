@@ -1,12 +1,15 @@
 package com.example.demo.controller.teacher;
 
-import com.alibaba.excel.EasyExcel;
 import com.example.demo.annotation.RequireRole;
 import com.example.demo.enums.UserRole;
-import com.example.demo.pojo.excel.AttendanceRecordExportExcel;
-import com.example.demo.pojo.excel.CourseGradeExportExcel;
+import com.example.demo.exception.BusinessException;
 import com.example.demo.pojo.request.teacher.ExportCourseDataRequest;
+import com.example.demo.pojo.response.ApiResponse;
+import com.example.demo.pojo.response.ExportJobResponse;
 import com.example.demo.service.DataExportService;
+import com.example.demo.service.DownloadService;
+import com.example.demo.service.ExportJobService;
+import com.example.demo.util.SecurityUtil;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -14,8 +17,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.util.List;
 
 /**
  * 教师数据导出控制器
@@ -29,6 +30,8 @@ import java.util.List;
 public class TeacherExportController {
 
     private final DataExportService dataExportService;
+    private final ExportJobService exportJobService;
+    private final DownloadService downloadService;
 
     /**
      * 导出课程成绩
@@ -44,22 +47,7 @@ public class TeacherExportController {
             @RequestParam(value = "semester", required = false) String semester,
             HttpServletResponse response) throws IOException {
         try {
-            // 查询成绩数据
-            List<CourseGradeExportExcel> data = dataExportService.exportCourseGrades(courseId, semester);
-
-            // 设置响应头
-            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            response.setCharacterEncoding("utf-8");
-            String fileName = URLEncoder.encode("课程成绩_" + courseId, "UTF-8").replaceAll("\\+", "%20");
-            response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + fileName + ".xlsx");
-
-            // 写入 Excel
-            EasyExcel.write(response.getOutputStream(), CourseGradeExportExcel.class)
-                    .sheet("课程成绩")
-                    .doWrite(data);
-
-            log.info("导出课程成绩成功，课程：{}，记录数：{}", courseId, data.size());
-
+            dataExportService.exportCourseGrades(courseId, semester, response);
         } catch (Exception e) {
             log.error("导出课程成绩失败", e);
             response.setStatus(500);
@@ -84,24 +72,7 @@ public class TeacherExportController {
             @RequestParam(value = "endDate", required = false) String endDate,
             HttpServletResponse response) throws IOException {
         try {
-            // 查询考勤数据
-            List<AttendanceRecordExportExcel> data = dataExportService.exportAttendanceRecords(
-                    courseId, startDate, endDate
-            );
-
-            // 设置响应头
-            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-            response.setCharacterEncoding("utf-8");
-            String fileName = URLEncoder.encode("考勤记录_" + courseId, "UTF-8").replaceAll("\\+", "%20");
-            response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + fileName + ".xlsx");
-
-            // 写入 Excel
-            EasyExcel.write(response.getOutputStream(), AttendanceRecordExportExcel.class)
-                    .sheet("考勤记录")
-                    .doWrite(data);
-
-            log.info("导出���勤记录成功，课程：{}，记录数：{}", courseId, data.size());
-
+            dataExportService.exportAttendanceRecords(courseId, startDate, endDate, response);
         } catch (Exception e) {
             log.error("导出考勤记录失败", e);
             response.setStatus(500);
@@ -165,4 +136,63 @@ public class TeacherExportController {
             response.getWriter().write("{\"code\":500,\"message\":\"导出失败: " + e.getMessage() + "\"}");
         }
     }
+
+    /**
+     * 提交课程实验成绩表导出任务
+     * 后台生成文件，通过任务查询接口获取进度和下载密钥
+     *
+     * @param request 导出请求（包含课程ID和班级编号列表）
+     * @return 导出任务
+     */
+    @PostMapping("/jobs/course-experiment-grades")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<ExportJobResponse> submitCourseExperimentGradesJob(
+            @RequestBody @Valid ExportCourseDataRequest request) {
+        return submitJob(ExportJobService.TYPE_COURSE_EXPERIMENT_GRADES, request);
+    }
+
+    /**
+     * 提交课程考勤表导出任务
+     * 后台生成文件，通过任务查询接口获取进度和下载密钥
+     *
+     * @param request 导出请求（包含课程ID和班级编号列表）
+     * @return 导出任务
+     */
+    @PostMapping("/jobs/course-attendance")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<ExportJobResponse> submitCourseAttendanceJob(
+            @RequestBody @Valid ExportCourseDataRequest request) {
+        return submitJob(ExportJobService.TYPE_COURSE_ATTENDANCE, request);
+    }
+
+    /**
+     * 查询导出任务进度
+     * 任务完成后返回下载密钥
+     *
+     * @param jobId 任务ID
+     * @return 导出任务
+     */
+    @GetMapping("/jobs/{jobId}")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<ExportJobResponse> getJob(@PathVariable("jobId") Long jobId) {
+        String username = SecurityUtil.getCurrentUsername()
+                .orElseThrow(() -> new BusinessException(401, "未登录"));
+        return ApiResponse.success(toJobResponse(exportJobService.getJob(jobId, username), username));
+    }
+
+    private ApiResponse<ExportJobResponse> submitJob(String exportType, ExportCourseDataRequest request) {
+        String username = SecurityUtil.getCurrentUsername()
+                .orElseThrow(() -> new BusinessException(401, "未登录"));
+        ExportJobService.ExportJob job = exportJobService.submit(
+                exportType, request.getCourseId(), request.getClassCodes(), username);
+        return ApiResponse.success(toJobResponse(job, username), "导出任务已提交");
+    }
+
+    private ExportJobResponse toJobResponse(ExportJobService.ExportJob job, String username) {
+        String downloadKey = null;
+        if (ExportJobService.STATUS_COMPLETED.equals(job.getStatus())) {
+            downloadKey = downloadService.generateFileKey(DownloadService.TYPE_EXPORT, job.getJobId(), username);
+        }
+        return ExportJobResponse.fromJob(job, downloadKey);
+    }
 }
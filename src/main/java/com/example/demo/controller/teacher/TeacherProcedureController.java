@@ -4,6 +4,7 @@ import com.example.demo.annotation.RequireRole;
 import com.example.demo.enums.UserRole;
 import com.example.demo.pojo.response.ApiResponse;
 import com.example.demo.pojo.response.StudentProcedureSubmissionResponse;
+import com.example.demo.service.StudentExperimentProgressService;
 import com.example.demo.service.StudentProcedureSubmissionService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -26,6 +27,7 @@ import java.util.List;
 public class TeacherProcedureController {
 
     private final StudentProcedureSubmissionService studentProcedureSubmissionService;
+    private final StudentExperimentProgressService studentExperimentProgressService;
 
     /**
      * 查询班级的实验步骤列表
@@ -95,6 +97,22 @@ public class TeacherProcedureController {
         return ApiResponse.success(summary, "重新机器批改完成");
     }
 
+    /**
+     * 按指定课次重建学生实验进度汇总
+     * 与现有汇总逐条比对，返回不一致数量，可用于一致性校验
+     *
+     * @param classExperimentId 班级实验ID
+     * @return 重建结果统计
+     */
+    @PostMapping("/class-experiments/{classExperimentId}/progress/rebuild")
+    @RequireRole(value = UserRole.TEACHER)
+    public ApiResponse<StudentExperimentProgressService.RebuildSummary> rebuildProgressByClassExperimentId(
+            @PathVariable("classExperimentId") Long classExperimentId) {
+        StudentExperimentProgressService.RebuildSummary summary =
+                studentExperimentProgressService.rebuild(classExperimentId);
+        return ApiResponse.success(summary, "进度汇总重建完成");
+    }
+
     /**
      * 批改实验步骤请求
      */
@@ -169,8 +169,12 @@ public class TeacherTopicController {
         // 创建监听器
         TopicImportListener listener = new TopicImportListener(topicService, tagService, username);
 
-        // 读取Excel文件
-        EasyExcel.read(file.getInputStream(), TopicImportExcel.class, listener).sheet().doRead();
+        // 读取Excel文件，结束后（含中途失败）将已导入的题目一次性加入全文检索索引
+        try {
+            EasyExcel.read(file.getInputStream(), TopicImportExcel.class, listener).sheet().doRead();
+        } finally {
+            topicService.refreshSearchIndex(listener.getCreatedTopicIds());
+        }
 
         // 获取导入结果
         TopicImportListener.ImportResult result = listener.getResult();
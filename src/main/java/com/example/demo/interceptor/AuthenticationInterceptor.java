@@ -5,14 +5,19 @@ import com.example.demo.pojo.ao.RoleAO;
 import com.example.demo.util.JwtUtil;
 import com.example.demo.util.SecurityUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -34,10 +39,10 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
     private final ObjectMapper objectMapper;
 
     /**
-     * 不需要认证的路径列表
+     * 默认不需要认证的路径列表
      * 支持通配符 * 匹配单级路径,** 匹配多级路径
      */
-    private static final List<String> PERMITTED_PATTERNS = Arrays.asList(
+    private static final List<String> DEFAULT_PERMITTED_PATTERNS = Arrays.asList(
             "/api/auth/login",
             "/api/auth/test-db",
             "api/auth//login-by-code",
@@ -53,6 +58,27 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             "/api/download/*"
     );
 
+    /**
+     * 自定义白名单，配置后替换默认列表，多个路径用逗号分隔
+     */
+    @Value("${slz.auth.permitted-patterns:}")
+    private String[] configuredPatterns;
+
+    /** 启动时预编译的白名单路径 */
+    private List<PathPattern> permittedPatterns;
+
+    @PostConstruct
+    public void init() {
+        List<String> patterns = configuredPatterns.length > 0
+                ? Arrays.asList(configuredPatterns) : DEFAULT_PERMITTED_PATTERNS;
+        permittedPatterns = patterns.stream()
+                .map(String::trim)
+                .filter(pattern -> !pattern.isEmpty())
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+        log.info("认证白名单：{}", permittedPatterns);
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
             throws Exception {
@@ -81,10 +107,12 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
             String token = authHeader.substring(7);
 
             try {
-                String username = jwtUtil.getUsernameFromToken(token);
-                String role = jwtUtil.getRoleFromToken(token);
+                // 一次解析得到用户名、角色和过期时间，已验证的令牌直接从缓存获取
+                JwtUtil.TokenClaims claims = jwtUtil.verifyToken(token);
+                String username = claims.username();
+                String role = claims.role();
 
-                if (username != null && role != null && !jwtUtil.isTokenExpired(token)) {
+                if (username != null && role != null && !claims.isExpired()) {
                     // 将用户信息设置到 ThreadLocal
                     RoleAO roleAO = new RoleAO(username, UserRole.valueOf(role.toUpperCase()));
                     SecurityUtil.setRoleAO(roleAO);
@@ -117,20 +145,15 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
 
     /**
      * 检查请求路径是否在白名单中
-     * 支持通配符匹配
+     * 白名单在启动时预编译为 PathPattern，每次请求只解析一次请求路径
      *
      * @param requestUri 请求URI
      * @return 是否允许通过
      */
     private boolean isPermittedPath(String requestUri) {
-        // 精确匹配
-        if (PERMITTED_PATTERNS.contains(requestUri)) {
-            return true;
-        }
-
-        // 通配符匹配
-        for (String pattern : PERMITTED_PATTERNS) {
-            if (matchesPattern(requestUri, pattern)) {
+        PathContainer path = PathContainer.parsePath(requestUri);
+        for (PathPattern pattern : permittedPatterns) {
+            if (pattern.matches(path)) {
                 return true;
             }
         }
@@ -138,22 +161,6 @@ public class AuthenticationInterceptor implements HandlerInterceptor {
         return false;
     }
 
-    /**
-     * 路径通配符匹配
-     *
-     * @param path    请求路径
-     * @param pattern 匹配模式
-     * @return 是否匹配
-     */
-    private boolean matchesPattern(String path, String pattern) {
-        // 将通配符模式转换为正则表达式
-        String regex = pattern
-                .replace("**", ".*")
-                .replace("*", "[^/]*");
-
-        return path.matches(regex);
-    }
-
     /**
      * 发送错误响应
      *
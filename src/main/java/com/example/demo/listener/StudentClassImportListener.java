@@ -2,6 +2,7 @@ package com.example.demo.listener;
 
 import com.alibaba.excel.context.AnalysisContext;
 import com.alibaba.excel.event.AnalysisEventListener;
+import com.alibaba.excel.exception.ExcelAnalysisStopException;
 import com.example.demo.exception.BusinessException;
 import com.example.demo.pojo.excel.StudentClassImportExcel;
 import com.example.demo.pojo.response.BatchImportStudentClassResponse;
@@ -9,11 +10,14 @@ import com.example.demo.service.StudentClassImportService;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * 学���班级导入监听器
- * 用于读取Excel数据并进行批量导入
+ * 学生班级导入监听器
+ * 用于读取Excel数据并按批次流式导入，每批在一个事务中提交
+ * 某一批导入失败时停止读取，已提交的批次保留，可从最后提交的行之后继续导入
  */
 @Slf4j
 public class StudentClassImportListener extends AnalysisEventListener<StudentClassImportExcel> {
@@ -21,18 +25,48 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
     /**
      * 批量插入的批次大小
      */
-    private static final int BATCH_SIZE = 100;
+    private final int batchSize;
+
+    /**
+     * 从该行号（Excel行号，含表头）之后开始导入，之前的行已在上次导入中提交
+     */
+    private final int resumeAfterRow;
+
+    /**
+     * 进度监听
+     */
+    private final ProgressListener progressListener;
 
     /**
      * 临时存储读取到的数据
      */
     private final List<StudentClassImportExcel> dataList = new ArrayList<>();
 
+    /**
+     * 班级名称 -> 班级编号，在各批次之间复用
+     */
+    private final Map<String, String> classCodeCache = new HashMap<>();
+
     /**
      * 学生班级导入服务
      */
     private final StudentClassImportService importService;
 
+    /**
+     * 当前批次最后一行的行号
+     */
+    private int lastRowNum;
+
+    /**
+     * 是否因批次导入失败而停止
+     */
+    private boolean failed = false;
+
+    /**
+     * 失败批次中回滚的行数
+     */
+    private int rolledBackCount = 0;
+
     /**
      * 导入结果统计
      */
@@ -47,11 +81,35 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
     private final List<String> errorMessages = new ArrayList<>();
 
     public StudentClassImportListener(StudentClassImportService importService) {
+        this(importService, importService.getChunkSize(), 0, ProgressListener.NONE);
+    }
+
+    public StudentClassImportListener(StudentClassImportService importService, int batchSize, int resumeAfterRow,
+                                      ProgressListener progressListener) {
         this.importService = importService;
+        this.batchSize = batchSize;
+        this.resumeAfterRow = resumeAfterRow;
+        this.progressListener = progressListener;
+        this.lastRowNum = resumeAfterRow;
+    }
+
+    @Override
+    public void invokeHeadMap(Map<Integer, String> headMap, AnalysisContext context) {
+        Integer totalRows = context.readSheetHolder().getApproximateTotalRowNumber();
+        if (totalRows != null) {
+            progressListener.onTotalRows(totalRows);
+        }
     }
 
     @Override
     public void invoke(StudentClassImportExcel data, AnalysisContext context) {
+        int rowNum = context.readRowHolder().getRowIndex() + 1;
+        // 跳过上次已提交的行
+        if (rowNum <= resumeAfterRow) {
+            return;
+        }
+        lastRowNum = rowNum;
+
         try {
             // 跳过空行
             if (data == null || (data.getUsername() == null && data.getName() == null)) {
@@ -59,28 +117,32 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
             }
 
             // 数据校验
-            validateData(data, context.readRowHolder().getRowIndex() + 1);
+            validateData(data, rowNum);
 
             // 添加到批次列表
             dataList.add(data);
-
-            // 达到批次大小后，执行批量导入
-            if (dataList.size() >= BATCH_SIZE) {
-                saveData();
-            }
         } catch (Exception e) {
             studentFailCount++;
-            String errorMsg = String.format("第%d行数据错误: %s",
-                    context.readRowHolder().getRowIndex() + 1, e.getMessage());
+            String errorMsg = String.format("第%d行数据错误: %s", rowNum, e.getMessage());
             errorMessages.add(errorMsg);
             log.error(errorMsg, e);
+        } finally {
+            progressListener.onRowProcessed(rowNum);
+        }
+
+        // 达到批次大小后，执行批量导入
+        if (dataList.size() >= batchSize) {
+            saveData();
+            if (failed) {
+                throw new ExcelAnalysisStopException("批次导入失败，停止读取");
+            }
         }
     }
 
     @Override
     public void doAfterAllAnalysed(AnalysisContext context) {
         // 处理剩余的数据
-        if (!dataList.isEmpty()) {
+        if (!failed) {
             saveData();
         }
         log.info("Excel数据读取完成，学生 - 成功：{}条，重复：{}条，失败：{}条 | 班级 - 成功：{}条，重复：{}条，失败：{}条 | 绑定 - 成功：{}条，失败：{}条",
@@ -109,16 +171,17 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
 
     /**
      * 保存数据
+     * 本批与上一批之间被跳过的空行和校验失败的行，随本批一起计为已提交
      */
     private void saveData() {
         if (dataList.isEmpty()) {
+            progressListener.onChunkCommitted(lastRowNum);
             return;
         }
 
         try {
-            // 调用服务层执行导入
-            BatchImportStudentClassResponse response =
-                    importService.batchImportStudentWithClass(dataList);
+            // 调用服务层执行导入，整批在一个事务中提交
+            BatchImportStudentClassResponse response = importService.importChunk(dataList, classCodeCache);
 
             // 更新统计信息
             studentSuccessCount += response.getStudentSuccessCount();
@@ -131,17 +194,38 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
             bindFailCount += response.getBindFailCount();
             errorMessages.addAll(response.getErrorMessages());
 
-            // 清空批次列表
-            dataList.clear();
-
+            progressListener.onChunkCommitted(lastRowNum);
         } catch (Exception e) {
-            log.error("批量导入失败", e);
+            log.error("批量导入失败，第{}行及之前未提交的数据已回滚", lastRowNum, e);
+            failed = true;
+            rolledBackCount = dataList.size();
             studentFailCount += dataList.size();
-            errorMessages.add("批量导入失败: " + e.getMessage());
+            errorMessages.add(String.format("批量导入失败（第%d行及之前未提交的数据已回滚，可继续导入）: %s",
+                    lastRowNum, e.getMessage()));
+        } finally {
+            // 清空批次列表
             dataList.clear();
         }
     }
 
+    /**
+     * 是否因批次导入失败而停止
+     *
+     * @return 是否失败
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 获取失败批次中回滚的行数，继续导入时这些行会重新导入
+     *
+     * @return 回滚的行数
+     */
+    public int getRolledBackCount() {
+        return rolledBackCount;
+    }
+
     /**
      * 获取导入结果
      *
@@ -220,4 +304,37 @@ public class StudentClassImportListener extends AnalysisEventListener<StudentCla
             return errorMessages;
         }
     }
+
+    /**
+     * 导入进度监听
+     */
+    public interface ProgressListener {
+
+        ProgressListener NONE = new ProgressListener() {
+        };
+
+        /**
+         * 读取到表头时回调
+         *
+         * @param totalRows 估算的总行数（含表头）
+         */
+        default void onTotalRows(int totalRows) {
+        }
+
+        /**
+         * 处理完一行时回调（包括空行和校验失败的行）
+         *
+         * @param rowNum 行号
+         */
+        default void onRowProcessed(int rowNum) {
+        }
+
+        /**
+         * 一批数据提交后回调
+         *
+         * @param rowNum 已提交的最后一行行号
+         */
+        default void onChunkCommitted(int rowNum) {
+        }
+    }
 }
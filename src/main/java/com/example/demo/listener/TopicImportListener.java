@@ -47,6 +47,12 @@ public class TopicImportListener extends AnalysisEventListener<TopicImportExcel>
     private int failCount = 0;
     private final List<String> errorMessages = new ArrayList<>();
 
+    /**
+     * 已创建的题目ID，导入结束后统一更新全文检索索引
+     */
+    @Getter
+    private final List<Long> createdTopicIds = new ArrayList<>();
+
     /**
      * 标签缓存，避免重复查询
      */
@@ -202,8 +208,8 @@ public class TopicImportListener extends AnalysisEventListener<TopicImportExcel>
         request.setCorrectAnswer(correctAnswer);
         request.setTagIds(tagIds);
 
-        // 6. 调用服务创建题目
-        topicService.createTopic(request, username);
+        // 6. 调用服务创建题目（全文检索索引在导入结束后统一更新）
+        createdTopicIds.add(topicService.createTopic(request, username, false));
     }
 
     /**
@@ -2,7 +2,13 @@ package com.example.demo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.demo.pojo.entity.AttendanceRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 签到记录Mapper接口
@@ -10,4 +16,35 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface AttendanceRecordMapper extends BaseMapper<AttendanceRecord> {
-}
\ No newline at end of file
+
+    /**
+     * 多行批量插入签到记录
+     * 整条语句原子执行，任一 (课程, 学生, 实验) 违反唯一索引 uk_course_student 或其他约束时整批失败；
+     * 写入成功后自增ID回填到各条记录
+     *
+     * @param records 签到记录列表
+     * @return 插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO attendance_records " +
+            "(course_id, experiment_id, student_username, attendance_time, attendance_status, " +
+            "student_actual_class_code, ip_address) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{r.courseId}, #{r.experimentId}, #{r.studentUsername}, #{r.attendanceTime}, #{r.attendanceStatus}, " +
+            "#{r.studentActualClassCode}, #{r.ipAddress})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "records.id")
+    int insertBatch(@Param("records") List<AttendanceRecord> records);
+
+    /**
+     * 计算课程签到记录的校验值（记录数:逐行CRC32异或），用于判断导出缓存是否仍然有效
+     *
+     * @param courseId 课程ID
+     * @return 校验值
+     */
+    @Select("SELECT CONCAT(COUNT(*), ':', COALESCE(BIT_XOR(CRC32(CONCAT_WS('|', id, student_username, " +
+            "IFNULL(experiment_id, 'N'), IFNULL(attendance_status, 'N')))), 0)) " +
+            "FROM attendance_records WHERE course_id = #{courseId} AND is_deleted = 0")
+    String selectAttendanceChecksum(@Param("courseId") String courseId);
+}
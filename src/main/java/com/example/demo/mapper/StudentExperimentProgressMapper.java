@@ -0,0 +1,12 @@
+package com.example.demo.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.demo.pojo.entity.StudentExperimentProgress;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 学生实验进度汇总Mapper
+ */
+@Mapper
+public interface StudentExperimentProgressMapper extends BaseMapper<StudentExperimentProgress> {
+}
@@ -1,12 +1,64 @@
 package com.example.demo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.demo.pojo.dto.mapvo.ProcedureStatisticsItem;
 import com.example.demo.pojo.entity.StudentExperimentalProcedure;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 学生实验步骤答案Mapper
  */
 @Mapper
 public interface StudentExperimentalProcedureMapper extends BaseMapper<StudentExperimentalProcedure> {
+
+    /**
+     * 按步骤分组统计指定学生在某实验的完成人数和批改得分
+     *
+     * @param experimentId 实验ID
+     * @param usernames 学生用户名列表
+     * @return 步骤统计列表
+     */
+    @Select("<script>" +
+            "SELECT experimental_procedure_id AS procedureId, " +
+            "    SUM(CASE WHEN answer IS NOT NULL AND TRIM(answer) != '' THEN 1 ELSE 0 END) AS completedCount, " +
+            "    SUM(CASE WHEN score IS NOT NULL AND is_graded > 0 THEN 1 ELSE 0 END) AS gradedCount, " +
+            "    SUM(CASE WHEN score IS NOT NULL AND is_graded > 0 THEN score ELSE 0 END) AS gradedScoreSum " +
+            "FROM student_experimental_procedure " +
+            "WHERE experiment_id = #{experimentId} AND student_username IN " +
+            "<foreach collection='usernames' item='username' open='(' separator=',' close=')'>" +
+            "    #{username}" +
+            "</foreach>" +
+            " GROUP BY experimental_procedure_id" +
+            "</script>")
+    List<ProcedureStatisticsItem> selectProcedureStatistics(@Param("experimentId") Long experimentId,
+                                                            @Param("usernames") Collection<String> usernames);
+
+    /**
+     * 计算指定实验和班级提交记录的校验值（记录数:逐行CRC32异或）
+     * 覆盖答案、得分和批改状态，不依赖 updated_time，任意写入路径修改成绩后校验值都会变化
+     *
+     * @param experimentIds 实验ID列表
+     * @param classCodes    班级编号列表
+     * @return 校验值
+     */
+    @Select("<script>" +
+            "SELECT CONCAT(COUNT(*), ':', COALESCE(BIT_XOR(CRC32(CONCAT_WS('|', id, student_username, class_code, " +
+            "    experimental_procedure_id, IFNULL(score, 'N'), IFNULL(is_graded, 'N'), IFNULL(CRC32(answer), 'N')))), 0)) " +
+            "FROM student_experimental_procedure " +
+            "WHERE experiment_id IN " +
+            "<foreach collection='experimentIds' item='experimentId' open='(' separator=',' close=')'>" +
+            "    #{experimentId}" +
+            "</foreach>" +
+            " AND class_code IN " +
+            "<foreach collection='classCodes' item='classCode' open='(' separator=',' close=')'>" +
+            "    #{classCode}" +
+            "</foreach>" +
+            "</script>")
+    String selectSubmissionChecksum(@Param("experimentIds") Collection<Long> experimentIds,
+                                    @Param("classCodes") Collection<String> classCodes);
 }
@@ -0,0 +1,25 @@
+package com.example.demo.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.demo.pojo.entity.StudentTopicSelection;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 学生随机抽题记录Mapper
+ */
+@Mapper
+public interface StudentTopicSelectionMapper extends BaseMapper<StudentTopicSelection> {
+
+    /**
+     * 插入抽题记录，同一 (来源, 学生) 已存在记录时由唯一索引 uk_source_student 忽略
+     *
+     * @param selection 抽题记录
+     * @return 实际插入的行数
+     */
+    @Insert("INSERT IGNORE INTO student_topic_selection " +
+            "(source_type, source_id, student_username, topic_ids, seed, created_time) VALUES " +
+            "(#{s.sourceType}, #{s.sourceId}, #{s.studentUsername}, #{s.topicIds}, #{s.seed}, #{s.createdTime})")
+    int insertIgnore(@Param("s") StudentTopicSelection selection);
+}
@@ -1,8 +1,13 @@
 package com.example.demo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.demo.pojo.dto.mapvo.TagStatisticsItem;
+import com.example.demo.pojo.dto.mapvo.TypeCountItem;
 import com.example.demo.pojo.entity.Topic;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 题目Mapper接口
@@ -10,4 +15,28 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface TopicMapper extends BaseMapper<Topic> {
-}
\ No newline at end of file
+
+    /**
+     * 按题型分组统计未删除的题目数量
+     *
+     * @return 题型统计列表
+     */
+    @Select("SELECT type, COUNT(*) AS count FROM topics " +
+            "WHERE is_deleted = 0 " +
+            "GROUP BY type " +
+            "ORDER BY type")
+    List<TypeCountItem> selectTypeCounts();
+
+    /**
+     * 按标签分组统计未删除的题目数量，只返回有题目的标签
+     *
+     * @return 标签统计列表
+     */
+    @Select("SELECT tg.tag_name AS tagName, tg.type AS tagType, COUNT(DISTINCT m.topic_id) AS count " +
+            "FROM tags tg " +
+            "JOIN topic_tag_map m ON m.tag_id = tg.id " +
+            "JOIN topics t ON t.id = m.topic_id AND t.is_deleted = 0 " +
+            "GROUP BY tg.id, tg.tag_name, tg.type " +
+            "ORDER BY tg.id")
+    List<TagStatisticsItem> selectTagCounts();
+}
@@ -2,9 +2,12 @@ package com.example.demo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.demo.pojo.entity.User;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,4 +37,52 @@ public interface UserMapper extends BaseMapper<User> {
             "where course_id = #{className} " +
             "AND is_deleted = 0)")
     List<User> selectNoAbsentStudentByClassCode(String classCode, String className);
-}
\ No newline at end of file
+
+    /**
+     * 查询已存在的用户名（包含已逻辑删除的用户，它们同样占用唯一索引 uk_username）
+     *
+     * @param usernames 用户名列表
+     * @return 已存在的用户，只包含 username 和 isDeleted
+     */
+    @Select("<script>" +
+            "SELECT username, is_deleted FROM users WHERE username IN " +
+            "<foreach collection='usernames' item='username' open='(' separator=',' close=')'>" +
+            "#{username}" +
+            "</foreach>" +
+            "</script>")
+    List<User> selectExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * 多行批量插入用户
+     *
+     * @param users 用户列表
+     * @return 插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO users " +
+            "(username, name, password, role, password_set, department, major, create_time, update_time, is_deleted) " +
+            "VALUES " +
+            "<foreach collection='users' item='u' separator=','>" +
+            "(#{u.username}, #{u.name}, #{u.password}, #{u.role}, #{u.passwordSet}, #{u.department}, #{u.major}, " +
+            "#{u.createTime}, #{u.updateTime}, #{u.isDeleted})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("users") List<User> users);
+
+    /**
+     * 计算指定班级学生姓名的校验值（人数:逐行CRC32异或），用于判断导出缓存是否仍然有效
+     *
+     * @param classCodes 班级编号列表
+     * @return 校验值
+     */
+    @Select("<script>" +
+            "SELECT CONCAT(COUNT(*), ':', COALESCE(BIT_XOR(CRC32(CONCAT_WS('|', username, IFNULL(name, 'N')))), 0)) " +
+            "FROM users WHERE is_deleted = 0 AND username IN " +
+            "(SELECT student_username FROM student_class_relations WHERE is_deleted = 0 AND class_code IN " +
+            "<foreach collection='classCodes' item='classCode' open='(' separator=',' close=')'>" +
+            "#{classCode}" +
+            "</foreach>" +
+            ")" +
+            "</script>")
+    String selectStudentNameChecksum(@Param("classCodes") Collection<String> classCodes);
+}
@@ -0,0 +1,33 @@
+package com.example.demo.pojo.dto.mapvo;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 步骤提交统计项
+ * 按步骤分组聚合的完成人数和批改得分
+ */
+@Data
+public class ProcedureStatisticsItem {
+
+    /**
+     * 实验步骤ID
+     */
+    private Long procedureId;
+
+    /**
+     * 完成人数（答案不为空）
+     */
+    private Integer completedCount;
+
+    /**
+     * 已批改记录数
+     */
+    private Integer gradedCount;
+
+    /**
+     * 已批改记录得分合计
+     */
+    private BigDecimal gradedScoreSum;
+}
@@ -0,0 +1,26 @@
+package com.example.demo.pojo.dto.mapvo;
+
+import lombok.Data;
+
+/**
+ * 标签题目统计项
+ * 按标签分组聚合的未删除题目数量
+ */
+@Data
+public class TagStatisticsItem {
+
+    /**
+     * 标签名称
+     */
+    private String tagName;
+
+    /**
+     * 标签类型（1-学科，2-难度，3-题型，4-自定义）
+     */
+    private String tagType;
+
+    /**
+     * 该标签下未删除的题目数量
+     */
+    private Long count;
+}
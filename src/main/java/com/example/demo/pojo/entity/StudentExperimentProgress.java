@@ -0,0 +1,76 @@
+package com.example.demo.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.tangzc.autotable.annotation.AutoTable;
+import com.tangzc.autotable.annotation.TableIndex;
+import com.tangzc.autotable.annotation.enums.IndexTypeEnum;
+import com.tangzc.mpe.autotable.annotation.Column;
+import com.tangzc.mpe.autotable.annotation.Table;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 学生实验进度汇总表
+ * 按（班级实验, 学生）维护步骤完成数、批改数和加权总分，供教师看板和成绩计算直接读取
+ * 由学生提交、系统批改和教师批改时增量刷新，可按课次重建
+ */
+@Data
+@AutoTable
+@Table(value = "student_experiment_progress", comment = "学生实验进度汇总表")
+@TableName("student_experiment_progress")
+@TableIndex(name = "uk_class_experiment_student", fields = {"classExperimentId", "studentUsername"}, type = IndexTypeEnum.UNIQUE)
+@TableIndex(name = "idx_progress_experiment_student", fields = {"experimentId", "studentUsername", "classCode"})
+public class StudentExperimentProgress {
+
+    /** 主键ID */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /** 班级实验ID */
+    @Column(comment = "班级实验ID", type = "bigint", notNull = true)
+    private Long classExperimentId;
+
+    /** 实验ID */
+    @Column(comment = "实验ID", type = "bigint", notNull = true)
+    private Long experimentId;
+
+    /** 班级编号 */
+    @Column(comment = "班级编号", type = "varchar(20)", notNull = true)
+    private String classCode;
+
+    /** 学生用户名(学号) */
+    @Column(comment = "学生用户名(学号)", type = "varchar(50)", notNull = true)
+    private String studentUsername;
+
+    /** 提交记录数 */
+    @Column(comment = "提交记录数", type = "int", defaultValue = "0")
+    private Integer submittedCount;
+
+    /** 已完成步骤数（答案不为空） */
+    @Column(comment = "已完成步骤数", type = "int", defaultValue = "0")
+    private Integer completedCount;
+
+    /** 已批改步骤数 */
+    @Column(comment = "已批改步骤数", type = "int", defaultValue = "0")
+    private Integer gradedCount;
+
+    /** 占比不为零的步骤是否已全部批改 */
+    @Column(comment = "必做步骤是否已全部批改", type = "bit", defaultValue = "0")
+    private Boolean allRequiredGraded;
+
+    /** 实验加权总分（规则同 ScoreCalculationUtil.calculateExperimentScore） */
+    @Column(comment = "实验加权总分", type = "decimal(9,4)", defaultValue = "0.0000")
+    private BigDecimal totalScore;
+
+    /** 最后提交时间 */
+    @Column(comment = "最后提交时间", type = "datetime")
+    private LocalDateTime lastSubmissionTime;
+
+    /** 更新时间 */
+    @Column(comment = "更新时间", type = "datetime", defaultValue = "CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP")
+    private LocalDateTime updatedTime;
+}
@@ -0,0 +1,53 @@
+package com.example.demo.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.tangzc.autotable.annotation.AutoTable;
+import com.tangzc.autotable.annotation.TableIndex;
+import com.tangzc.autotable.annotation.enums.IndexTypeEnum;
+import com.tangzc.mpe.autotable.annotation.Column;
+import com.tangzc.mpe.autotable.annotation.Table;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 学生随机抽题记录表
+ * 记录随机模式下每个学生抽中的题目，学生首次打开时抽取并保存，之后查看、评分和统计都使用该记录
+ */
+@Data
+@AutoTable
+@Table(value = "student_topic_selection", comment = "学生随机抽题记录表")
+@TableName("student_topic_selection")
+@TableIndex(name = "uk_source_student", fields = {"sourceType", "sourceId", "studentUsername"}, type = IndexTypeEnum.UNIQUE)
+public class StudentTopicSelection {
+
+    /** 主键ID */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /** 抽题来源类型：1-题库配置（题库答题步骤、课堂小测），2-限时答题 */
+    @Column(comment = "抽题来源类型：1-题库配置，2-限时答题", type = "tinyint", notNull = true)
+    private Integer sourceType;
+
+    /** 来源ID（题库配置ID或限时答题ID） */
+    @Column(comment = "来源ID（题库配置ID或限时答题ID）", type = "bigint(20)", notNull = true)
+    private Long sourceId;
+
+    /** 学生用户名 */
+    @Column(comment = "学生用户名", type = "varchar(50)", notNull = true)
+    private String studentUsername;
+
+    /** 抽中的题目ID，逗号分隔，按抽取顺序排列 */
+    @Column(comment = "抽中的题目ID（逗号分隔）", type = "text", notNull = true)
+    private String topicIds;
+
+    /** 抽题使用的随机种子 */
+    @Column(comment = "抽题随机种子", type = "bigint(20)", notNull = true)
+    private Long seed;
+
+    /** 创建时间 */
+    @Column(comment = "创建时间", type = "datetime", notNull = true, defaultValue = "CURRENT_TIMESTAMP")
+    private LocalDateTime createdTime;
+}
@@ -0,0 +1,70 @@
+package com.example.demo.pojo.response;
+
+import com.example.demo.service.ExportJobService;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 导出任务响应
+ */
+@Data
+public class ExportJobResponse {
+
+    /** 任务ID */
+    private Long jobId;
+
+    /** 导出类型 */
+    private String exportType;
+
+    /** 课程ID */
+    private String courseId;
+
+    /** 班级编号列表 */
+    private List<String> classCodes;
+
+    /** 任务状态（PENDING/RUNNING/COMPLETED/FAILED） */
+    private String status;
+
+    /** 总行数 */
+    private Integer totalRows;
+
+    /** 已处理行数 */
+    private Integer processedRows;
+
+    /** 是否命中缓存 */
+    private Boolean cached;
+
+    /** 下载密钥（任务完成后返回，通过 /api/download/file/{key} 下载） */
+    private String downloadKey;
+
+    /** 失败原因 */
+    private String errorMessage;
+
+    /** 创建时间 */
+    private LocalDateTime createdTime;
+
+    /** 完成时间 */
+    private LocalDateTime finishedTime;
+
+    /**
+     * 从导出任务转换为响应对象
+     */
+    public static ExportJobResponse fromJob(ExportJobService.ExportJob job, String downloadKey) {
+        ExportJobResponse response = new ExportJobResponse();
+        response.setJobId(job.getJobId());
+        response.setExportType(job.getExportType());
+        response.setCourseId(job.getCourseId());
+        response.setClassCodes(job.getClassCodes());
+        response.setStatus(job.getStatus());
+        response.setTotalRows(job.getTotalRows());
+        response.setProcessedRows(job.getProcessedRows());
+        response.setCached(job.isCached());
+        response.setDownloadKey(downloadKey);
+        response.setErrorMessage(job.getErrorMessage());
+        response.setCreatedTime(job.getCreatedTime());
+        response.setFinishedTime(job.getFinishedTime());
+        return response;
+    }
+}
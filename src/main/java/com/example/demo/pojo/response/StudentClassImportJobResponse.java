@@ -0,0 +1,87 @@
+package com.example.demo.pojo.response;
+
+import com.example.demo.service.StudentClassImportJobService;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 学生班级导入任务响应
+ */
+@Data
+public class StudentClassImportJobResponse {
+
+    /** 任务ID */
+    private Long jobId;
+
+    /** 上传的文件名 */
+    private String fileName;
+
+    /** 任务状态（PENDING/RUNNING/COMPLETED/FAILED） */
+    private String status;
+
+    /** 总行数（导入完成前为估算值） */
+    private Integer totalRows;
+
+    /** 已处理行数 */
+    private Integer processedRows;
+
+    /** 已提交的最后一行行号（Excel 行号，含表头），继续执行时从下一行开始 */
+    private Integer committedRow;
+
+    /** 学生导入成功/重复/失败数量 */
+    private Integer studentSuccessCount;
+    private Integer studentDuplicateCount;
+    private Integer studentFailCount;
+
+    /** 班级创建成功/重复/失败数量 */
+    private Integer classSuccessCount;
+    private Integer classDuplicateCount;
+    private Integer classFailCount;
+
+    /** 绑定成功/失败数量 */
+    private Integer bindSuccessCount;
+    private Integer bindFailCount;
+
+    /** 错误详情 */
+    private List<String> errorMessages;
+
+    /** 失败原因 */
+    private String errorMessage;
+
+    /** 创建时间 */
+    private LocalDateTime createdTime;
+
+    /** 完成时间 */
+    private LocalDateTime finishedTime;
+
+    /**
+     * 从导入任务转换为响应对象
+     */
+    public static StudentClassImportJobResponse fromJob(StudentClassImportJobService.ImportJob job) {
+        StudentClassImportJobResponse response = new StudentClassImportJobResponse();
+        response.setJobId(job.getJobId());
+        response.setFileName(job.getFileName());
+        response.setStatus(job.getStatus());
+        response.setTotalRows(job.getTotalRows());
+        response.setProcessedRows(job.getProcessedRows());
+        response.setCommittedRow(job.getCommittedRow());
+        response.setStudentSuccessCount(job.getStudentSuccessCount());
+        response.setStudentDuplicateCount(job.getStudentDuplicateCount());
+        response.setStudentFailCount(job.getStudentFailCount());
+        response.setClassSuccessCount(job.getClassSuccessCount());
+        response.setClassDuplicateCount(job.getClassDuplicateCount());
+        response.setClassFailCount(job.getClassFailCount());
+        response.setBindSuccessCount(job.getBindSuccessCount());
+        response.setBindFailCount(job.getBindFailCount());
+        synchronized (job.getErrorMessages()) {
+            response.setErrorMessages(new ArrayList<>(job.getErrorMessages()));
+        }
+        response.setErrorMessage(job.getErrorMessage());
+        response.setCreatedTime(job.getCreatedTime());
+        response.setFinishedTime(job.getFinishedTime());
+        return response;
+    }
+}
@@ -3,12 +3,23 @@ package com.example.demo.pojo.vo;
 import lombok.Data;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDateTime;
+
 @Data
 public class TeacherQrVO {
 
-    /** 有效秒数 */
+    /** 有效秒数（当前帧剩余的有效时间） */
     private Long seconds;
 
     /** 二维码密钥 */
     private String fileKey;
+
+    /** 当前帧过期时间 */
+    private LocalDateTime expireTime;
+
+    /** PNG 二维码图片（data URI），请求 format=png 时返回 */
+    private String image;
+
+    /** SVG 二维码，请求 format=svg 时返回 */
+    private String svg;
 }
@@ -0,0 +1,369 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.exception.BusinessException;
+import com.example.demo.mapper.ClassExperimentMapper;
+import com.example.demo.mapper.ClassMapper;
+import com.example.demo.mapper.UserMapper;
+import com.example.demo.pojo.entity.AttendanceRecord;
+import com.example.demo.pojo.entity.Class;
+import com.example.demo.pojo.entity.ClassExperiment;
+import com.example.demo.pojo.entity.User;
+import com.example.demo.pojo.response.AttendanceListResponse;
+import com.example.demo.pojo.vo.TeacherQrVO;
+import com.example.demo.util.SecurityUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 签到事件推送服务
+ * 教师端通过 SSE 订阅班级实验，连接建立时推送一次签到列表快照，
+ * 之后只推送轮换后的二维码和新增的签到记录，不再反复轮询二维码和签到列表
+ * 每个连接有独立的发送队列，在推送线程池中按顺序发送；发送超时或积压过多的连接会被关闭，
+ * 由客户端重新连接，单个慢连接不会阻塞其他教师端
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceEventService {
+
+    /** 事件：签到列表快照 */
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    /** 事件：二维码轮换 */
+    public static final String EVENT_QR = "qr";
+    /** 事件：学生签到 */
+    public static final String EVENT_ATTENDANCE = "attendance";
+
+    private final QrService qrService;
+    private final ClassExperimentMapper classExperimentMapper;
+    private final UserMapper userMapper;
+    private final ClassMapper classMapper;
+    private final ThreadPoolTaskExecutor attendancePushExecutor;
+
+    /** 推送连接超时时间（分钟），超时后由客户端重新连接 */
+    @Value("${slz.attendance.push.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    /** 检查二维码轮换的间隔（毫秒） */
+    @Value("${slz.attendance.push.check-interval-ms:200}")
+    private long checkIntervalMs;
+
+    /** 单次发送的超时时间（毫秒），超时的连接会被关闭 */
+    @Value("${slz.attendance.push.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    /** 单个连接允许积压的最大事件数，超过时关闭连接 */
+    @Value("${slz.attendance.push.max-pending-events:100}")
+    private int maxPendingEvents;
+
+    /** 班级实验ID -> 推送通道 */
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-event-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkSubscribers, checkIntervalMs, checkIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        channels.values().forEach(channel -> channel.subscribers.forEach(this::close));
+        channels.clear();
+    }
+
+    /**
+     * 订阅班级实验的签到事件
+     *
+     * @param classExperimentId 班级实验ID
+     * @param format            二维码图片格式（png/svg），为空时只推送密钥
+     * @param snapshotLoader    查询当前签到列表，在订阅者注册之后调用，
+     *                          注册后提交的签到一定在快照或签到事件中（两者都有时客户端按 attendanceId 去重）
+     * @return SSE 连接
+     */
+    public SseEmitter subscribe(Long classExperimentId, String format,
+                                Supplier<AttendanceListResponse> snapshotLoader) {
+        ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
+        if (classExperiment == null) {
+            throw new BusinessException(404, "班级实验不存在");
+        }
+        String teacherName = SecurityUtil.getCurrentUsername().orElse(null);
+        TeacherQrVO frame = qrService.getCurrentFrame(classExperiment, teacherName, format);
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(classExperiment, teacherName, format, emitter);
+        subscriber.expireTime = frame.getExpireTime();
+
+        Channel channel = channels.computeIfAbsent(classExperimentId, key -> new Channel());
+        channel.subscribers.add(subscriber);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        AttendanceListResponse snapshot;
+        try {
+            snapshot = snapshotLoader.get();
+        } catch (RuntimeException e) {
+            close(subscriber);
+            throw e;
+        }
+        enqueue(subscriber, EVENT_SNAPSHOT, snapshot);
+        enqueue(subscriber, EVENT_QR, frame);
+        log.info("教师 {} 订阅签到事件，班级实验ID：{}", teacherName, classExperimentId);
+        return emitter;
+    }
+
+    /**
+     * 发布学生签到事件
+     * 没有订阅者时直接返回；学生姓名和班级名称在推送线程池中查询一次，再分发到各连接的发送队列，
+     * 不占用扫码请求的时间
+     *
+     * @param classExperimentId 班级实验ID
+     * @param record            已写入数据库的签到记录
+     */
+    public void publishAttendance(Long classExperimentId, AttendanceRecord record) {
+        Channel channel = channels.get(classExperimentId);
+        if (channel == null || channel.subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            attendancePushExecutor.execute(() -> dispatchAttendance(classExperimentId, channel, record));
+        } catch (RejectedExecutionException e) {
+            log.warn("签到事件推送繁忙，丢弃签到事件，班级实验ID：{}，学生：{}", classExperimentId,
+                    record.getStudentUsername());
+        }
+    }
+
+    /**
+     * 查询学生姓名和班级名称后分发到各连接的发送队列
+     */
+    private void dispatchAttendance(Long classExperimentId, Channel channel, AttendanceRecord record) {
+        try {
+            AttendanceListResponse.StudentAttendanceInfo info = new AttendanceListResponse.StudentAttendanceInfo();
+            info.setAttendanceId(record.getId());
+            info.setStudentUsername(record.getStudentUsername());
+            info.setStudentName(getStudentName(record.getStudentUsername()));
+            info.setClassName(channel.classNames.computeIfAbsent(record.getStudentActualClassCode(),
+                    this::getClassName));
+            info.setAttendanceStatus(record.getAttendanceStatus());
+            info.setAttendanceTime(record.getAttendanceTime());
+            for (Subscriber subscriber : channel.subscribers) {
+                enqueue(subscriber, EVENT_ATTENDANCE, info);
+            }
+        } catch (Exception e) {
+            log.error("推送签到事件失败，班级实验ID：{}", classExperimentId, e);
+        }
+    }
+
+    /**
+     * 关闭发送超时的连接；当前帧过期时向订阅者推送新的二维码，同时保持签到会话和二维码帧处于活跃状态
+     */
+    private void checkSubscribers() {
+        LocalDateTime now = LocalDateTime.now();
+        long nowNanos = System.nanoTime();
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                long sendStartTime = subscriber.sendStartTime;
+                if (sendStartTime != 0 && nowNanos - sendStartTime > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs)) {
+                    log.warn("签到事件发送超时，关闭连接，班级实验ID：{}，教师：{}", subscriber.classExperiment.getId(),
+                            subscriber.teacherName);
+                    close(subscriber);
+                    continue;
+                }
+                if (subscriber.expireTime != null && subscriber.expireTime.isAfter(now)) {
+                    continue;
+                }
+                try {
+                    TeacherQrVO frame = qrService.getCurrentFrame(subscriber.classExperiment, subscriber.teacherName,
+                            subscriber.format);
+                    subscriber.expireTime = frame.getExpireTime();
+                    enqueue(subscriber, EVENT_QR, frame);
+                } catch (Exception e) {
+                    log.error("推送签到二维码失败，班级实验ID：{}", subscriber.classExperiment.getId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 事件加入连接的发送队列，由推送线程池按顺序发送
+     */
+    private void enqueue(Subscriber subscriber, String eventName, Object data) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (subscriber.pendingCount.incrementAndGet() > maxPendingEvents) {
+            log.warn("签到事件积压过多，关闭连接，班级实验ID：{}，教师：{}", subscriber.classExperiment.getId(),
+                    subscriber.teacherName);
+            close(subscriber);
+            return;
+        }
+        subscriber.outbox.add(SseEmitter.event().name(eventName).data(data));
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            attendancePushExecutor.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            if (subscriber.closed.get()) {
+                // 没有线程在发送，结束连接不会阻塞
+                complete(subscriber);
+                return;
+            }
+            subscriber.draining.set(false);
+            log.warn("签到事件推送繁忙，关闭连接，班级实验ID：{}", subscriber.classExperiment.getId());
+            close(subscriber);
+        }
+    }
+
+    /**
+     * 依次发送连接队列中的事件，同一连接同时只有一个线程发送
+     * 连接关闭后由发送线程结束连接，之后不再调度发送
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            if (subscriber.closed.get()) {
+                subscriber.outbox.clear();
+                complete(subscriber);
+                return;
+            }
+            SseEmitter.SseEventBuilder event = subscriber.outbox.poll();
+            if (event == null) {
+                subscriber.draining.set(false);
+                // 释放标记后又有新事件入队，且没有其他线程接手时继续发送
+                if (subscriber.outbox.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            subscriber.pendingCount.decrementAndGet();
+            subscriber.sendStartTime = System.nanoTime();
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                log.debug("签到事件连接已断开，班级实验ID：{}", subscriber.classExperiment.getId());
+                close(subscriber);
+            } finally {
+                subscriber.sendStartTime = 0;
+            }
+        }
+    }
+
+    /**
+     * 关闭连接并丢弃尚未发送的事件
+     * 只标记关闭并移除订阅者，连接交给发送线程结束：发送超时时卡住的写入仍持有连接的锁，
+     * 在调用线程（如二维码轮换线程）上 complete() 会一直阻塞到写入返回
+     */
+    private void close(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        unsubscribe(subscriber);
+        subscriber.outbox.clear();
+        scheduleDrain(subscriber);
+    }
+
+    /**
+     * 结束连接，只在没有其他线程发送时调用
+     */
+    private void complete(Subscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (Exception e) {
+            log.debug("关闭签到事件连接失败，班级实验ID：{}", subscriber.classExperiment.getId(), e);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        channels.computeIfPresent(subscriber.classExperiment.getId(), (key, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+    }
+
+    private String getStudentName(String studentUsername) {
+        LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(User::getName).eq(User::getUsername, studentUsername);
+        User user = userMapper.selectOne(queryWrapper);
+        return user != null ? user.getName() : studentUsername;
+    }
+
+    private String getClassName(String classCode) {
+        LambdaQueryWrapper<Class> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(Class::getClassName).eq(Class::getClassCode, classCode);
+        Class clazz = classMapper.selectOne(queryWrapper);
+        return clazz != null ? clazz.getClassName() : classCode;
+    }
+
+    /**
+     * 单个班级实验的推送通道
+     */
+    private static class Channel {
+        private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        /** 班级编号 -> 班级名称 */
+        private final Map<String, String> classNames = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 订阅者
+     */
+    private static class Subscriber {
+        private final ClassExperiment classExperiment;
+        private final String teacherName;
+        private final String format;
+        private final SseEmitter emitter;
+        /** 已推送二维码的过期时间 */
+        private volatile LocalDateTime expireTime;
+        /** 待发送的事件 */
+        private final Queue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        /** 是否已有线程在发送该连接的事件 */
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /** 当前发送开始时间（System.nanoTime），0 表示没有正在进行的发送 */
+        private volatile long sendStartTime;
+
+        private Subscriber(ClassExperiment classExperiment, String teacherName, String format, SseEmitter emitter) {
+            this.classExperiment = classExperiment;
+            this.teacherName = teacherName;
+            this.format = format;
+            this.emitter = emitter;
+        }
+    }
+}
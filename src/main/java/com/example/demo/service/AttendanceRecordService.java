@@ -25,11 +25,13 @@ import com.example.demo.util.SecurityUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -47,6 +49,9 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
     private final UserMapper userMapper;
     private final ClassMapper classMapper;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
+    private final AttendanceSessionService attendanceSessionService;
+    private final AttendanceWriteBehindService attendanceWriteBehindService;
+    private final AttendanceEventService attendanceEventService;
 
     @Value("${slz.late.time:5}")
     private Long lateTime;
@@ -106,66 +111,57 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
                 return response;
             }
 
-            // 5. 通过班级实验ID查询班级实验信息
+            // 5. 获取签到会话（班级实验、关联班级和学生名单已在生成二维码时加载）
             Long classExperimentId = Long.parseLong(qr.getClassExperimentId());
-            ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
-            if (classExperiment == null) {
+            AttendanceSessionService.AttendanceSession session = attendanceSessionService.getSession(classExperimentId);
+            if (session == null) {
                 response.setSuccess(false);
                 response.setMessage("班级实验不存在");
                 return response;
             }
 
-            String experimentId = classExperiment.getExperimentId();
-            String courseId = classExperiment.getCourseId();
+            String experimentId = session.getExperimentId();
+            String courseId = session.getCourseId();
 
-            // 6. 获取关联的班级代码列表
-            List<String> classCodes = classExperimentClassRelationService.getClassCodesByExperimentId(classExperimentId);
-            if (classCodes == null || classCodes.isEmpty()) {
+            // 6. 检查关联的班级代码列表
+            Set<String> classCodes = session.getClassCodes();
+            if (classCodes.isEmpty()) {
                 response.setSuccess(false);
                 response.setMessage("班级实验关联不存在");
                 return response;
             }
 
-            // 7. 查询学生所在班级
-            LambdaQueryWrapper<StudentClassRelation> studentClassQuery = new LambdaQueryWrapper<>();
-            studentClassQuery.eq(StudentClassRelation::getStudentUsername, studentUsername);
-            List<StudentClassRelation> studentClasses = studentClassRelationMapper.selectList(studentClassQuery);
-            if (studentClasses.isEmpty()) {
-                response.setSuccess(false);
-                response.setMessage("未找到班级信息，请联系管理员");
-                return response;
-            }
+            // 7. 在学生名单中查找学生所在班级
+            String studentActualClassCode = session.getStudentClassCode(studentUsername);
+            boolean isInClass = studentActualClassCode != null;
 
-            // 8. 验证学生是否属于关联班级
-            boolean isInClass = studentClasses.stream()
-                    .anyMatch(sc -> classCodes.contains(sc.getClassCode()));
-
-            // 获取学生实际所在班级代码
-            String studentActualClassCode = isInClass
-                    ? studentClasses.stream()
-                            .filter(sc -> classCodes.contains(sc.getClassCode()))
-                            .findFirst()
-                            .map(StudentClassRelation::getClassCode)
-                            .orElse(studentClasses.get(0).getClassCode())
-                    : studentClasses.get(0).getClassCode();
-
-            // 9. 检查是否已经签到该课次
-            LambdaQueryWrapper<AttendanceRecord> existingQuery = new LambdaQueryWrapper<>();
-            existingQuery.eq(AttendanceRecord::getCourseId, courseId)
-                    .eq(AttendanceRecord::getExperimentId, experimentId)
-                    .eq(AttendanceRecord::getStudentUsername, studentUsername);
-            AttendanceRecord existingRecord = getOne(existingQuery);
-            if (existingRecord != null) {
-                response.setSuccess(false);
-                response.setMessage("您已签到该课次，签到时间：" + existingRecord.getAttendanceTime());
-                response.setAttendanceTime(existingRecord.getAttendanceTime());
-                response.setAttendanceStatus(existingRecord.getAttendanceStatus());
-                return response;
+            // 8. 不在名单中时查询学生所在班级（跨班签到或名单加载后新加入的学生）
+            if (!isInClass) {
+                LambdaQueryWrapper<StudentClassRelation> studentClassQuery = new LambdaQueryWrapper<>();
+                studentClassQuery.eq(StudentClassRelation::getStudentUsername, studentUsername);
+                List<StudentClassRelation> studentClasses = studentClassRelationMapper.selectList(studentClassQuery);
+                if (studentClasses.isEmpty()) {
+                    response.setSuccess(false);
+                    response.setMessage("未找到班级信息，请联系管理员");
+                    return response;
+                }
+
+                studentActualClassCode = studentClasses.stream()
+                        .map(StudentClassRelation::getClassCode)
+                        .filter(classCodes::contains)
+                        .findFirst()
+                        .orElse(null);
+                isInClass = studentActualClassCode != null;
+                if (!isInClass) {
+                    studentActualClassCode = studentClasses.get(0).getClassCode();
+                }
             }
 
+            // 9. 重复签到由唯一索引 uk_course_student 保证，不再预先查询
+
             // 10. 判断签到状态
             LocalDateTime now = LocalDateTime.now();
-            LocalDateTime startTime = classExperiment.getStartTime();
+            LocalDateTime startTime = session.getStartTime();
             AttendanceStatus attendanceStatus;
 
             if (!isInClass) {
@@ -189,14 +185,39 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
             record.setStudentActualClassCode(studentActualClassCode);
             record.setIpAddress(request.getIpAddress());
 
-            boolean saved = save(record);
+            // 12. 写入签到记录，开启延迟写入时只在内存中去重，稍后批量写入
+            AttendanceRecord existingRecord = null;
+            boolean saved = true;
+            if (attendanceWriteBehindService.isEnabled()) {
+                existingRecord = attendanceWriteBehindService.accept(record, classExperimentId);
+            } else {
+                try {
+                    saved = save(record);
+                } catch (DuplicateKeyException e) {
+                    existingRecord = getExistingRecord(courseId, experimentId, studentUsername);
+                    saved = false;
+                }
+            }
+
+            if (existingRecord != null) {
+                response.setSuccess(false);
+                response.setMessage("您已签到该课次，签到时间：" + existingRecord.getAttendanceTime());
+                response.setAttendanceTime(existingRecord.getAttendanceTime());
+                response.setAttendanceStatus(existingRecord.getAttendanceStatus());
+                return response;
+            }
             if (!saved) {
                 response.setSuccess(false);
                 response.setMessage("签到失败，请重试");
                 return response;
             }
 
-            // 12. 返回签到成功信息
+            // 13. 推送给正在展示该班级实验签到页面的教师端（延迟写入时在写入数据库后推送）
+            if (!attendanceWriteBehindService.isEnabled()) {
+                attendanceEventService.publishAttendance(classExperimentId, record);
+            }
+
+            // 14. 返回签到成功信息
             response.setSuccess(true);
             response.setAttendanceStatus(attendanceStatus.getCode());
             response.setAttendanceTime(now);
@@ -223,6 +244,17 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
         }
     }
 
+    /**
+     * 查询学生在指定课次的签到记录
+     */
+    private AttendanceRecord getExistingRecord(String courseId, String experimentId, String studentUsername) {
+        LambdaQueryWrapper<AttendanceRecord> existingQuery = new LambdaQueryWrapper<>();
+        existingQuery.eq(AttendanceRecord::getCourseId, courseId)
+                .eq(AttendanceRecord::getExperimentId, experimentId)
+                .eq(AttendanceRecord::getStudentUsername, studentUsername);
+        return getOne(existingQuery);
+    }
+
     /**
      * 根据课程ID和实验ID查询签到记录
      */
@@ -381,7 +413,8 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
         String experimentId = classExperiment.getExperimentId();
         String studentUsername = request.getStudentUsername();
 
-        // 2. 查询学生是否已签到
+        // 2. 查询学生是否已签到（开启延迟写入时先写入积压的扫码记录）
+        attendanceWriteBehindService.flushPending();
         LambdaQueryWrapper<AttendanceRecord> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(AttendanceRecord::getCourseId, courseId)
                 .eq(AttendanceRecord::getExperimentId, experimentId)
@@ -416,6 +449,7 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
             record.setIpAddress(null);
 
             boolean saved = save(record);
+            attendanceWriteBehindService.onRecordSaved(record);
             log.info("为学生 {} 创建签到记录，状态：{}", studentUsername, request.getAttendanceStatus());
             return saved;
         } else {
@@ -424,6 +458,7 @@ public class AttendanceRecordService extends ServiceImpl<AttendanceRecordMapper,
             record.setUpdateTime(LocalDateTime.now());
 
             boolean updated = updateById(record);
+            attendanceWriteBehindService.onRecordSaved(record);
             log.info("更新学生 {} 的签到状态为：{}", studentUsername, request.getAttendanceStatus());
             return updated;
         }
@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.ClassExperimentMapper;
+import com.example.demo.mapper.StudentClassRelationMapper;
+import com.example.demo.pojo.entity.ClassExperiment;
+import com.example.demo.pojo.entity.StudentClassRelation;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 签到会话服务
+ * 教师展示签到二维码时，把班级实验、关联班级和学生名单加载到内存中，
+ * 学生扫码时直接在内存中校验，不再逐次查询班级实验和班级关系
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceSessionService {
+
+    private final ClassExperimentMapper classExperimentMapper;
+    private final ClassExperimentClassRelationService classExperimentClassRelationService;
+    private final StudentClassRelationMapper studentClassRelationMapper;
+
+    /** 最后一次生成二维码后会话保留的时间（分钟） */
+    @Value("${slz.attendance.session-ttl-minutes:10}")
+    private long sessionTtlMinutes;
+
+    /** 会话中学生名单的刷新间隔（分钟） */
+    @Value("${slz.attendance.roster-refresh-minutes:5}")
+    private long rosterRefreshMinutes;
+
+    /** 班级实验ID -> 签到会话 */
+    private final Map<Long, AttendanceSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 激活签到会话，生成二维码时调用
+     * 会话已存在且名单未过刷新间隔时只延长有效期
+     *
+     * @param classExperiment 班级实验
+     */
+    public void activate(ClassExperiment classExperiment) {
+        LocalDateTime now = LocalDateTime.now();
+        sessions.values().removeIf(session -> session.getExpireTime().isBefore(now));
+
+        AttendanceSession session = sessions.get(classExperiment.getId());
+        if (session != null && session.getLoadedTime().plusMinutes(rosterRefreshMinutes).isAfter(now)) {
+            session.expireTime = now.plusMinutes(sessionTtlMinutes);
+            return;
+        }
+        sessions.put(classExperiment.getId(), load(classExperiment));
+    }
+
+    /**
+     * 获取签到会话，内存中没有时从数据库加载（如服务重启后）
+     *
+     * @param classExperimentId 班级实验ID
+     * @return 签到会话，班级实验不存在时返回 null
+     */
+    public AttendanceSession getSession(Long classExperimentId) {
+        AttendanceSession session = sessions.get(classExperimentId);
+        if (session != null && session.getExpireTime().isAfter(LocalDateTime.now())) {
+            return session;
+        }
+
+        ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
+        if (classExperiment == null) {
+            return null;
+        }
+        session = load(classExperiment);
+        sessions.put(classExperimentId, session);
+        return session;
+    }
+
+    /**
+     * 加载班级实验关联的班级及学生名单
+     */
+    private AttendanceSession load(ClassExperiment classExperiment) {
+        List<String> classCodes = classExperimentClassRelationService.getClassCodesByExperimentId(classExperiment.getId());
+
+        Map<String, String> roster = new HashMap<>();
+        if (!classCodes.isEmpty()) {
+            LambdaQueryWrapper<StudentClassRelation> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.select(StudentClassRelation::getStudentUsername, StudentClassRelation::getClassCode)
+                    .in(StudentClassRelation::getClassCode, classCodes);
+            for (StudentClassRelation relation : studentClassRelationMapper.selectList(queryWrapper)) {
+                roster.putIfAbsent(relation.getStudentUsername(), relation.getClassCode());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        AttendanceSession session = new AttendanceSession(classExperiment, Set.copyOf(classCodes), roster, now);
+        session.expireTime = now.plusMinutes(sessionTtlMinutes);
+        log.info("加载签到会话，班级实验ID：{}，班级：{}，学生数：{}", classExperiment.getId(), classCodes, roster.size());
+        return session;
+    }
+
+    /**
+     * 签到会话
+     */
+    @Getter
+    public static class AttendanceSession {
+        private final Long classExperimentId;
+        private final String courseId;
+        private final String experimentId;
+        private final LocalDateTime startTime;
+        /** 关联班级编号 */
+        private final Set<String> classCodes;
+        /** 学生用户名 -> 所在关联班级编号 */
+        private final Map<String, String> roster;
+        private final LocalDateTime loadedTime;
+        private volatile LocalDateTime expireTime;
+
+        private AttendanceSession(ClassExperiment classExperiment, Set<String> classCodes, Map<String, String> roster,
+                                  LocalDateTime loadedTime) {
+            this.classExperimentId = classExperiment.getId();
+            this.courseId = classExperiment.getCourseId();
+            this.experimentId = classExperiment.getExperimentId();
+            this.startTime = classExperiment.getStartTime();
+            this.classCodes = classCodes;
+            this.roster = roster;
+            this.loadedTime = loadedTime;
+        }
+
+        /**
+         * 获取学生在关联班级中的班级编号
+         *
+         * @param studentUsername 学生用户名
+         * @return 班级编号，不在名单中返回 null
+         */
+        public String getStudentClassCode(String studentUsername) {
+            return roster.get(studentUsername);
+        }
+    }
+}
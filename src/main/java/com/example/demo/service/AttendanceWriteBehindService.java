@@ -0,0 +1,295 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.AttendanceRecordMapper;
+import com.example.demo.pojo.entity.AttendanceRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 签到记录延迟批量写入服务
+ * 开启后扫码签到只在内存中去重并立即返回，记录每隔一段时间或攒够一批后以多行 INSERT 写入；
+ * 整批因约束冲突失败时逐条写入，已有记录或数据不合法而未写入的签到会告警并以数据库为准修正内存名单
+ * 教师修改签到状态前先写入积压记录，修改后同步更新内存名单
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttendanceWriteBehindService {
+
+    private final AttendanceRecordMapper attendanceRecordMapper;
+    private final AttendanceEventService attendanceEventService;
+
+    /** 是否开启延迟批量写入 */
+    @Value("${slz.attendance.write-behind.enabled:false}")
+    private boolean enabled;
+
+    /** 定时写入间隔（毫秒） */
+    @Value("${slz.attendance.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    /** 每批写入的最大记录数，积压达到该数量时立即写入 */
+    @Value("${slz.attendance.write-behind.batch-size:100}")
+    private int batchSize;
+
+    /** 课次签到名单在内存中的空闲保留时间（分钟） */
+    @Value("${slz.attendance.write-behind.session-idle-minutes:30}")
+    private long sessionIdleMinutes;
+
+    /** 待写入的签到记录 */
+    private final Queue<PendingSignIn> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /** 课次键（课程ID|实验ID） -> 已签到记录 */
+    private final Map<String, SessionSignIns> signIns = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("签到记录延迟批量写入已开启，间隔：{}ms，批大小：{}", flushIntervalMs, batchSize);
+    }
+
+    /**
+     * 应用关闭时写入剩余记录
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        while (pendingCount.get() > 0) {
+            if (!flush()) {
+                log.error("关闭时写入签到记录失败，丢弃 {} 条未写入记录", pendingCount.get());
+                break;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 接受一条签到记录，写入数据库后再向教师端推送签到事件（此时记录已有ID）
+     *
+     * @param record            签到记录
+     * @param classExperimentId 班级实验ID，用于推送签到事件
+     * @return 该学生在本课次已有的签到记录；返回 null 表示本次签到已被接受
+     */
+    public AttendanceRecord accept(AttendanceRecord record, Long classExperimentId) {
+        SessionSignIns session = signIns.computeIfAbsent(
+                record.getCourseId() + "|" + record.getExperimentId(),
+                key -> loadSignIns(record.getCourseId(), record.getExperimentId()));
+        session.lastAccessTime = System.currentTimeMillis();
+
+        AttendanceRecord existingRecord = session.records.putIfAbsent(record.getStudentUsername(), record);
+        if (existingRecord != null) {
+            return existingRecord;
+        }
+
+        pending.add(new PendingSignIn(record, classExperimentId));
+        if (pendingCount.incrementAndGet() >= batchSize) {
+            scheduler.execute(this::flushAll);
+        }
+        return null;
+    }
+
+    /**
+     * 立即写入全部积压记录（教师修改签到状态前调用，保证读到的数据库记录是最新的）
+     */
+    public void flushPending() {
+        if (!enabled) {
+            return;
+        }
+        while (pendingCount.get() > 0) {
+            if (!flush()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 同步教师新建或修改的签到记录到内存名单，后续扫码按最新状态去重
+     *
+     * @param record 已写入数据库的签到记录
+     */
+    public void onRecordSaved(AttendanceRecord record) {
+        if (!enabled) {
+            return;
+        }
+        SessionSignIns session = signIns.get(record.getCourseId() + "|" + record.getExperimentId());
+        if (session != null) {
+            session.records.put(record.getStudentUsername(), record);
+        }
+    }
+
+    /**
+     * 写入全部积压记录，并清理空闲的课次名单
+     */
+    private void flushAll() {
+        while (pendingCount.get() > 0) {
+            if (!flush()) {
+                break;
+            }
+        }
+        long threshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(sessionIdleMinutes);
+        signIns.values().removeIf(session -> session.lastAccessTime < threshold);
+    }
+
+    /**
+     * 写入一批记录，失败时放回队列等待下次重试
+     *
+     * @return 是否写入成功
+     */
+    private boolean flush() {
+        synchronized (flushLock) {
+            List<PendingSignIn> batch = new ArrayList<>(batchSize);
+            PendingSignIn signIn;
+            while (batch.size() < batchSize && (signIn = pending.poll()) != null) {
+                batch.add(signIn);
+            }
+            if (batch.isEmpty()) {
+                return true;
+            }
+            pendingCount.addAndGet(-batch.size());
+
+            try {
+                attendanceRecordMapper.insertBatch(batch.stream().map(PendingSignIn::record).toList());
+                log.debug("批量写入签到记录 {} 条", batch.size());
+                batch.forEach(this::publish);
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // 整批回滚，逐条写入以确定是哪些记录未能写入
+                log.warn("批量写入签到记录违反约束，改为逐条写入 {} 条", batch.size());
+                insertOneByOne(batch);
+                return true;
+            } catch (Exception e) {
+                log.error("批量写入签到记录失败，{} 条记录等待重试", batch.size(), e);
+                pending.addAll(batch);
+                pendingCount.addAndGet(batch.size());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 逐条写入签到记录
+     * 唯一索引冲突（教师已为该学生建立记录等）或数据不合法的记录不会写入，告警后以数据库为准修正内存名单；
+     * 其他异常（如数据库不可用）放回队列等待重试
+     */
+    private void insertOneByOne(List<PendingSignIn> batch) {
+        for (PendingSignIn signIn : batch) {
+            AttendanceRecord record = signIn.record();
+            try {
+                attendanceRecordMapper.insert(record);
+                publish(signIn);
+            } catch (DuplicateKeyException e) {
+                log.warn("学生 {} 在课程 {} 实验 {} 已有签到记录，本次扫码签到（{}）未写入",
+                        record.getStudentUsername(), record.getCourseId(), record.getExperimentId(),
+                        record.getAttendanceTime());
+                reconcile(record);
+            } catch (DataIntegrityViolationException e) {
+                log.error("签到记录数据不合法，未写入，学生：{}，课程：{}，实验：{}",
+                        record.getStudentUsername(), record.getCourseId(), record.getExperimentId(), e);
+                reconcile(record);
+            } catch (Exception e) {
+                log.error("写入签到记录失败，等待重试，学生：{}", record.getStudentUsername(), e);
+                pending.add(signIn);
+                pendingCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void publish(PendingSignIn signIn) {
+        attendanceEventService.publishAttendance(signIn.classExperimentId(), signIn.record());
+    }
+
+    /**
+     * 未写入的签到记录从内存名单中替换为数据库中的记录；数据库中没有记录时移除，学生可以重新扫码
+     */
+    private void reconcile(AttendanceRecord record) {
+        SessionSignIns session = signIns.get(record.getCourseId() + "|" + record.getExperimentId());
+        if (session == null) {
+            return;
+        }
+        LambdaQueryWrapper<AttendanceRecord> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(AttendanceRecord::getStudentUsername, AttendanceRecord::getAttendanceTime,
+                        AttendanceRecord::getAttendanceStatus)
+                .eq(AttendanceRecord::getCourseId, record.getCourseId())
+                .eq(AttendanceRecord::getExperimentId, record.getExperimentId())
+                .eq(AttendanceRecord::getStudentUsername, record.getStudentUsername());
+        AttendanceRecord saved = attendanceRecordMapper.selectOne(queryWrapper, false);
+        if (saved != null) {
+            session.records.put(record.getStudentUsername(), saved);
+        } else {
+            session.records.remove(record.getStudentUsername(), record);
+        }
+    }
+
+    /**
+     * 加载课次已有的签到记录，用于内存去重
+     */
+    private SessionSignIns loadSignIns(String courseId, String experimentId) {
+        LambdaQueryWrapper<AttendanceRecord> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(AttendanceRecord::getStudentUsername, AttendanceRecord::getAttendanceTime,
+                        AttendanceRecord::getAttendanceStatus)
+                .eq(AttendanceRecord::getCourseId, courseId)
+                .eq(AttendanceRecord::getExperimentId, experimentId);
+
+        SessionSignIns session = new SessionSignIns();
+        for (AttendanceRecord record : attendanceRecordMapper.selectList(queryWrapper)) {
+            session.records.put(record.getStudentUsername(), record);
+        }
+        return session;
+    }
+
+    /**
+     * 待写入的签到
+     */
+    private record PendingSignIn(AttendanceRecord record, Long classExperimentId) {
+    }
+
+    /**
+     * 单个课次的签到名单
+     */
+    private static class SessionSignIns {
+        /** 学生用户名 -> 签到记录 */
+        private final Map<String, AttendanceRecord> records = new ConcurrentHashMap<>();
+        private volatile long lastAccessTime = System.currentTimeMillis();
+    }
+}
@@ -22,7 +22,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 用户认证服务
@@ -528,6 +532,8 @@ public class AuthService {
 
         // 只有管理员可以重置密码
         if (UserRole.ADMIN.equals(currentUserRole)) {
+            List<User> resetUsers = new ArrayList<>(usernames.size());
+            List<String> rawPasswords = new ArrayList<>(usernames.size());
             for (String username : usernames) {
                 LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<User>().eq(User::getUsername, username);
                 User user = userMapper.selectOne(queryWrapper);
@@ -538,9 +544,15 @@ public class AuthService {
                 String lastFourDigits = username.length() >= 4 ?
                         username.substring(username.length() - 4) :
                         username;
-                String password = "syjx@" + lastFourDigits;
-                String encodedPassword = passwordUtil.encode(password);
-                user.setPassword(encodedPassword);
+                resetUsers.add(user);
+                rawPasswords.add("syjx@" + lastFourDigits);
+            }
+
+            // 并行计算 BCrypt，再逐个更新
+            List<String> encodedPasswords = passwordUtil.encodeAll(rawPasswords);
+            for (int i = 0; i < resetUsers.size(); i++) {
+                User user = resetUsers.get(i);
+                user.setPassword(encodedPasswords.get(i));
                 user.setPasswordSet(1);
                 userMapper.updateById(user);
             }
@@ -568,32 +580,46 @@ public class AuthService {
 
         // 批量大小
         final int BATCH_SIZE = 500;
-        List<User> userBatch = new java.util.ArrayList<>();
-
-        for (BatchAddUserRequest userRequest : users) {
-            try {
-                // 验证必填字段
-                if (userRequest.getUsername() == null || userRequest.getUsername().trim().isEmpty()) {
-                    throw new BusinessException(400, "用户名不能为空");
-                }
-                if (userRequest.getName() == null || userRequest.getName().trim().isEmpty()) {
-                    throw new BusinessException(400, "姓名不能为空");
-                }
-                if (userRequest.getRole() == null || userRequest.getRole().trim().isEmpty()) {
-                    throw new BusinessException(400, "角色不能为空");
+        // 本次导入中已出现的用户名，同一文件内重复的行按重复处理
+        Set<String> importedUsernames = new HashSet<>();
+
+        for (int from = 0; from < users.size(); from += BATCH_SIZE) {
+            List<BatchAddUserRequest> chunk = users.subList(from, Math.min(from + BATCH_SIZE, users.size()));
+
+            // 1. 校验字段，校验失败的行直接记入失败列表
+            List<BatchAddUserRequest> validRequests = new ArrayList<>(chunk.size());
+            for (BatchAddUserRequest userRequest : chunk) {
+                try {
+                    validateBatchAddUser(userRequest);
+                    validRequests.add(userRequest);
+                } catch (BusinessException e) {
+                    addFailedUser(response, userRequest.getUsername(), userRequest.getName(), e.getMessage());
+                    log.warn("添加用户失败: {}, 原因: {}", userRequest.getUsername(), e.getMessage());
                 }
+            }
+            if (validRequests.isEmpty()) {
+                continue;
+            }
 
-                // 验证角色是否有效
-                String role = userRequest.getRole().trim().toLowerCase();
-                if (!"student".equals(role) && !"teacher".equals(role) && !"admin".equals(role)) {
-                    throw new BusinessException(400, "无效的角色: " + userRequest.getRole());
+            // 2. 一次 IN 查询找出本批中已存在的用户名
+            Set<String> usernames = validRequests.stream()
+                    .map(userRequest -> userRequest.getUsername().trim())
+                    .collect(Collectors.toSet());
+            Map<String, User> existingUsers = userMapper.selectExistingUsernames(usernames).stream()
+                    .collect(Collectors.toMap(User::getUsername, user -> user, (a, b) -> a));
+
+            // 3. 构建待插入用户，原始密码与用户一一对应，整批并行加密
+            List<User> userBatch = new ArrayList<>(validRequests.size());
+            List<String> rawPasswordBatch = new ArrayList<>(validRequests.size());
+            for (BatchAddUserRequest userRequest : validRequests) {
+                String username = userRequest.getUsername().trim();
+                User existingUser = existingUsers.get(username);
+                if (existingUser != null && Integer.valueOf(1).equals(existingUser.getIsDeleted())) {
+                    addFailedUser(response, userRequest.getUsername(), userRequest.getName(), "用户名已被已删除的用户占用");
+                    log.warn("添加用户失败: {}, 原因: 用户名已被已删除的用户占用", username);
+                    continue;
                 }
-
-                // 检查用户是否已存在
-                LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
-                queryWrapper.eq(User::getUsername, userRequest.getUsername().trim());
-                User existingUser = userMapper.selectOne(queryWrapper);
-                if (existingUser != null) {
+                if (existingUser != null || !importedUsernames.add(username)) {
                     response.setDuplicateCount(response.getDuplicateCount() + 1);
                     log.warn("用户已存在，跳过: {}", userRequest.getUsername());
                     continue;
@@ -603,21 +629,16 @@ public class AuthService {
                 String rawPassword;
 
                 // 教师：syjx@ + 工号后四位
-                String lastFourDigits = userRequest.getUsername().length() >= 4 ?
-                        userRequest.getUsername().substring(userRequest.getUsername().length() - 4) :
-                        userRequest.getUsername();
+                String lastFourDigits = username.length() >= 4 ?
+                        username.substring(username.length() - 4) :
+                        username;
                 rawPassword = "syjx@" + lastFourDigits;
 
-
-                // BCrypt加密密码
-                String encodedPassword = passwordUtil.encode(rawPassword);
-
-                // 创建新用户
+                // 创建新用户，密码在整批写入前统一加密
                 User user = new User();
-                user.setUsername(userRequest.getUsername().trim());
+                user.setUsername(username);
                 user.setName(userRequest.getName().trim());
-                user.setPassword(encodedPassword);
-                user.setRole(role);
+                user.setRole(userRequest.getRole().trim().toLowerCase());
                 user.setDepartment(userRequest.getDepartment());
                 user.setMajor(userRequest.getMajor());
                 user.setPasswordSet(1); // 已设置密码
@@ -626,37 +647,14 @@ public class AuthService {
                 user.setIsDeleted(0);
 
                 userBatch.add(user);
-
-                // 批量插入
-                if (userBatch.size() >= BATCH_SIZE) {
-                    int inserted = batchInsertUsers(userBatch);
-                    response.setSuccessCount(response.getSuccessCount() + inserted);
-                    userBatch.clear();
-                }
-
-            } catch (BusinessException e) {
-                response.setFailCount(response.getFailCount() + 1);
-                BatchAddUserResponse.FailedUser failedUser = new BatchAddUserResponse.FailedUser();
-                failedUser.setUsername(userRequest.getUsername());
-                failedUser.setName(userRequest.getName());
-                failedUser.setReason(e.getMessage());
-                response.getFailedUsers().add(failedUser);
-                log.warn("添加用户失败: {}, 原因: {}", userRequest.getUsername(), e.getMessage());
-            } catch (Exception e) {
-                response.setFailCount(response.getFailCount() + 1);
-                BatchAddUserResponse.FailedUser failedUser = new BatchAddUserResponse.FailedUser();
-                failedUser.setUsername(userRequest.getUsername());
-                failedUser.setName(userRequest.getName());
-                failedUser.setReason("系统错误: " + e.getMessage());
-                response.getFailedUsers().add(failedUser);
-                log.error("添加用户异常: {}", userRequest.getUsername(), e);
+                rawPasswordBatch.add(rawPassword);
             }
-        }
 
-        // 插入剩余的记录
-        if (!userBatch.isEmpty()) {
-            int inserted = batchInsertUsers(userBatch);
-            response.setSuccessCount(response.getSuccessCount() + inserted);
+            // 4. 批量插入
+            if (!userBatch.isEmpty()) {
+                int inserted = encodeAndInsertUsers(userBatch, rawPasswordBatch, response);
+                response.setSuccessCount(response.getSuccessCount() + inserted);
+            }
         }
 
         log.info("批量添加用户完成，成功: {}, 重复: {}, 失败: {}",
@@ -664,22 +662,83 @@ public class AuthService {
         return response;
     }
 
+    /**
+     * 校验批量添加的用户信息
+     *
+     * @param userRequest 用户信息
+     * @throws BusinessException 必填字段缺失或角色无效时抛出
+     */
+    private void validateBatchAddUser(BatchAddUserRequest userRequest) {
+        // 验证必填字段
+        if (userRequest.getUsername() == null || userRequest.getUsername().trim().isEmpty()) {
+            throw new BusinessException(400, "用户名不能为空");
+        }
+        if (userRequest.getName() == null || userRequest.getName().trim().isEmpty()) {
+            throw new BusinessException(400, "姓名不能为空");
+        }
+        if (userRequest.getRole() == null || userRequest.getRole().trim().isEmpty()) {
+            throw new BusinessException(400, "角色不能为空");
+        }
+
+        // 验证角色是否有效
+        String role = userRequest.getRole().trim().toLowerCase();
+        if (!"student".equals(role) && !"teacher".equals(role) && !"admin".equals(role)) {
+            throw new BusinessException(400, "无效的角色: " + userRequest.getRole());
+        }
+    }
+
+    private void addFailedUser(BatchAddUserResponse response, String username, String name, String reason) {
+        response.setFailCount(response.getFailCount() + 1);
+        BatchAddUserResponse.FailedUser failedUser = new BatchAddUserResponse.FailedUser();
+        failedUser.setUsername(username);
+        failedUser.setName(name);
+        failedUser.setReason(reason);
+        response.getFailedUsers().add(failedUser);
+    }
+
+    /**
+     * 并行加密一批用户的密码后批量插入
+     * BCrypt 在密码加密线程池中按 CPU 核数并行计算，不再逐个串行加密
+     *
+     * @param userList     用户列表
+     * @param rawPasswords 与用户列表一一对应的原始密码
+     * @param response     批量添加响应，记录插入失败的用户
+     * @return 插入数量
+     */
+    private int encodeAndInsertUsers(List<User> userList, List<String> rawPasswords, BatchAddUserResponse response) {
+        List<String> encodedPasswords = passwordUtil.encodeAll(rawPasswords);
+        for (int i = 0; i < userList.size(); i++) {
+            userList.get(i).setPassword(encodedPasswords.get(i));
+        }
+        return batchInsertUsers(userList, response);
+    }
+
     /**
      * 批量插入用户
+     * 整批以一条多行 INSERT 写入；失败时（如并发导入了相同用户名）逐行重试，定位并记录失败的用户
      *
      * @param userList 用户列表
+     * @param response 批量添加响应，记录插入失败的用户
      * @return 插入数量
      */
-    private int batchInsertUsers(List<User> userList) {
+    private int batchInsertUsers(List<User> userList, BatchAddUserResponse response) {
+        try {
+            int inserted = userMapper.insertBatch(userList);
+            log.info("批量添加用户 {} 个", inserted);
+            return inserted;
+        } catch (Exception e) {
+            log.warn("多行插入用户失败，改为逐行插入: {}", e.getMessage());
+        }
+
         int successCount = 0;
         for (User user : userList) {
             try {
                 int result = userMapper.insert(user);
                 if (result > 0) {
                     successCount++;
-                    log.info("成功添加用户: {}", user.getUsername());
                 }
             } catch (Exception e) {
+                addFailedUser(response, user.getUsername(), user.getName(), "系统错误: " + e.getMessage());
                 log.error("插入用户失败: {}", user.getUsername(), e);
             }
         }
@@ -41,7 +41,7 @@ public class ClassStudentProcedureQueryService {
     private final DataCollectionMapper dataCollectionMapper;
     private final ProcedureTopicMapper procedureTopicMapper;
     private final TopicMapper topicMapper;
-    private final TopicTagMatchService topicTagMatchService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final ClassExperimentMapper classExperimentMapper;
     private final TimedQuizProcedureMapper timedQuizProcedureMapper;
@@ -261,7 +261,7 @@ public class ClassStudentProcedureQueryService {
             item.setScore(null);
             item.setTeacherComment(null);
 
-            // 根据类型填充详情（未提交时每个学生的详情相同）
+            // 根据类型填充详情（随机抽题时为该学生的抽题结果）
             T detail = (T) fillUncompletedDetail(procedure, username, procedureType);
             item.setDetail(detail);
 
@@ -380,7 +380,7 @@ public class ClassStudentProcedureQueryService {
             case TYPE_DATA_COLLECTION:
                 return fillDataCollectionDetailForUncompleted(procedure);
             case TYPE_TOPIC:
-                return fillTopicDetailForUncompleted(procedure);
+                return fillTopicDetailForUncompleted(procedure, username);
             case TYPE_TIMED_QUIZ:
                 return fillTimedQuizDetailForUncompleted(procedure, username);
             default:
@@ -576,7 +576,7 @@ public class ClassStudentProcedureQueryService {
      * 填充题库详情（未提交）
      */
     private StudentProcedureDetailWithAnswerResponse.TopicDetail fillTopicDetailForUncompleted(
-            ExperimentalProcedure procedure) {
+            ExperimentalProcedure procedure, String username) {
 
         if (procedure.getProcedureTopicId() != null) {
             ProcedureTopic procedureTopic = procedureTopicMapper.selectById(procedure.getProcedureTopicId());
@@ -589,7 +589,7 @@ public class ClassStudentProcedureQueryService {
                 detail.setTags(procedureTopic.getTags());
 
                 // 查询题目列表（不含答案）
-                List<Topic> topics = getTopicsForProcedure(procedureTopic);
+                List<Topic> topics = getTopicsForProcedure(procedureTopic, username);
                 List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
 
                 for (Topic topic : topics) {
@@ -629,13 +629,16 @@ public class ClassStudentProcedureQueryService {
                 detail.setQuizTimeLimit(timedQuiz.getQuizTimeLimit());
                 detail.setIsLocked(studentProcedure.getIsLocked());
 
-                // 查询题目列表
-                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz);
-                List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
-
                 // 解析学生答案
                 Map<Long, String> studentAnswers = parseTopicAnswers(studentProcedure.getAnswer());
 
+                // 查询题目列表，随机模式下读取学生保存的抽题结果
+                List<Topic> topics = Boolean.TRUE.equals(timedQuiz.getIsRandom())
+                        ? studentTopicSelectionService.getSubmittedTopics(StudentTopicSelectionService.SOURCE_TIMED_QUIZ,
+                                timedQuiz.getId(), studentProcedure.getStudentUsername(), studentAnswers.keySet())
+                        : getTopicsForTimedQuiz(procedure, timedQuiz, studentProcedure.getStudentUsername());
+                List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
+
                 for (Topic topic : topics) {
                     StudentProcedureDetailWithAnswerResponse.TopicItem item =
                         new StudentProcedureDetailWithAnswerResponse.TopicItem();
@@ -681,7 +684,7 @@ public class ClassStudentProcedureQueryService {
                 detail.setQuizTimeLimit(timedQuiz.getQuizTimeLimit());
 
                 // 查询题目列表（不含答案）
-                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz);
+                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz, username);
                 List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
 
                 for (Topic topic : topics) {
@@ -703,9 +706,9 @@ public class ClassStudentProcedureQueryService {
     }
 
     /**
-     * 根据题库详情获取题目列表
+     * 根据题库详情获取题目列表，随机模式下返回该学生的抽题结果（学生尚未打开时不保存）
      */
-    private List<Topic> getTopicsForProcedure(ProcedureTopic procedureTopic) {
+    private List<Topic> getTopicsForProcedure(ProcedureTopic procedureTopic, String username) {
         if (Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
             // 随机抽取：根据标签过滤题目
             if (procedureTopic.getTags() != null && !procedureTopic.getTags().isEmpty()) {
@@ -716,30 +719,9 @@ public class ClassStudentProcedureQueryService {
                     .toList();
 
                 if (!tagIdList.isEmpty()) {
-                    List<Long> topicIds = topicTagMatchService.selectTopicIdsByGroupedTags(tagIdList);
-
-                    if (!topicIds.isEmpty()) {
-                        LambdaQueryWrapper<Topic> topicWrapper = new LambdaQueryWrapper<>();
-                        topicWrapper.in(Topic::getId, topicIds);
-
-                        if (procedureTopic.getTopicTypes() != null && !procedureTopic.getTopicTypes().isEmpty()) {
-                            String[] typeArray = procedureTopic.getTopicTypes().split(",");
-                            List<Integer> types = Arrays.stream(typeArray)
-                                .filter(s -> s != null && !s.isEmpty())
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toList());
-                            if (!types.isEmpty()) {
-                                topicWrapper.in(Topic::getType, types);
-                            }
-                        }
-
-                        if (procedureTopic.getNumber() != null && procedureTopic.getNumber() > 0) {
-                            topicWrapper.last("ORDER BY RAND() LIMIT " + procedureTopic.getNumber());
-                        } else {
-                            topicWrapper.last("ORDER BY RAND()");
-                        }
-                        return topicMapper.selectList(topicWrapper);
-                    }
+                    List<Integer> types = TopicSamplingService.parseTopicTypes(procedureTopic.getTopicTypes());
+                    return studentTopicSelectionService.getOrPreviewTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                            procedureTopic.getId(), username, tagIdList, false, types, procedureTopic.getNumber());
                 }
             }
             return new ArrayList<>();
@@ -767,10 +749,11 @@ public class ClassStudentProcedureQueryService {
     /**
      * 获取限时答题的题目列表
      */
-    private List<Topic> getTopicsForTimedQuiz(ExperimentalProcedure procedure, TimedQuizProcedure timedQuiz) {
+    private List<Topic> getTopicsForTimedQuiz(ExperimentalProcedure procedure, TimedQuizProcedure timedQuiz,
+                                              String username) {
         if (Boolean.TRUE.equals(timedQuiz.getIsRandom())) {
             // 随机模式：从题库中随机抽取
-            return getRandomTopicsForTimedQuiz(timedQuiz);
+            return getRandomTopicsForTimedQuiz(timedQuiz, username);
         } else {
             // 老师选定模式:查询映射的题目
             LambdaQueryWrapper<ProcedureTopicMap> topicMapQueryWrapper = new LambdaQueryWrapper<>();
@@ -793,9 +776,9 @@ public class ClassStudentProcedureQueryService {
     }
 
     /**
-     * 随机抽取题目（限时答题专用）
+     * 随机抽取题目（限时答题专用），返回该学生的抽题结果（学生尚未打开时不保存）
      */
-    private List<Topic> getRandomTopicsForTimedQuiz(TimedQuizProcedure timedQuiz) {
+    private List<Topic> getRandomTopicsForTimedQuiz(TimedQuizProcedure timedQuiz, String username) {
         if (timedQuiz.getTopicTags() != null && !timedQuiz.getTopicTags().isEmpty()) {
             String[] tagIds = timedQuiz.getTopicTags().split(",");
             List<Long> tagIdList = Arrays.stream(tagIds)
@@ -804,30 +787,9 @@ public class ClassStudentProcedureQueryService {
                 .toList();
 
             if (!tagIdList.isEmpty()) {
-                List<Long> topicIds = topicTagMatchService.selectTopicIdsByGroupedTags(tagIdList);
-
-                if (!topicIds.isEmpty()) {
-                    LambdaQueryWrapper<Topic> topicWrapper = new LambdaQueryWrapper<>();
-                    topicWrapper.in(Topic::getId, topicIds);
-
-                    if (timedQuiz.getTopicTypes() != null && !timedQuiz.getTopicTypes().isEmpty()) {
-                        String[] typeArray = timedQuiz.getTopicTypes().split(",");
-                        List<Integer> types = Arrays.stream(typeArray)
-                            .filter(s -> s != null && !s.isEmpty())
-                            .map(Integer::parseInt)
-                            .collect(Collectors.toList());
-                        if (!types.isEmpty()) {
-                            topicWrapper.in(Topic::getType, types);
-                        }
-                    }
-
-                    if (timedQuiz.getTopicNumber() != null && timedQuiz.getTopicNumber() > 0) {
-                        topicWrapper.last("ORDER BY RAND() LIMIT " + timedQuiz.getTopicNumber());
-                    } else {
-                        topicWrapper.last("ORDER BY RAND()");
-                    }
-                    return topicMapper.selectList(topicWrapper);
-                }
+                List<Integer> types = TopicSamplingService.parseTopicTypes(timedQuiz.getTopicTypes());
+                return studentTopicSelectionService.getOrPreviewTopics(StudentTopicSelectionService.SOURCE_TIMED_QUIZ,
+                        timedQuiz.getId(), username, tagIdList, false, types, timedQuiz.getTopicNumber());
             }
         }
         return new ArrayList<>();
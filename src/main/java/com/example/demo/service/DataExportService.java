@@ -1,16 +1,22 @@
 package com.example.demo.service;
 
 import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.demo.exception.BusinessException;
 import com.example.demo.pojo.dto.mapvo.ExperimentResultItem;
+import com.example.demo.mapper.AttendanceRecordMapper;
 import com.example.demo.mapper.ClassMapper;
+import com.example.demo.mapper.StudentExperimentalProcedureMapper;
 import com.example.demo.mapper.UserMapper;
 import com.example.demo.pojo.entity.AttendanceRecord;
 import com.example.demo.pojo.entity.Class;
 import com.example.demo.pojo.entity.CourseGrade;
 import com.example.demo.pojo.entity.Experiment;
+import com.example.demo.pojo.entity.ExperimentalProcedure;
 import com.example.demo.pojo.entity.StudentClassRelation;
+import com.example.demo.pojo.entity.StudentExperimentalProcedure;
 import com.example.demo.pojo.entity.User;
 import com.example.demo.pojo.excel.AttendanceRecordExportExcel;
 import com.example.demo.pojo.excel.CourseGradeExportExcel;
@@ -20,15 +26,23 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -47,6 +61,14 @@ public class DataExportService {
     private final ExperimentService experimentService;
     private final StudentClassRelationService studentClassRelationService;
     private final GradeCalculationService gradeCalculationService;
+    private final ExperimentalProcedureService experimentalProcedureService;
+    private final StudentExperimentalProcedureService studentExperimentalProcedureService;
+    private final StudentExperimentalProcedureMapper studentExperimentalProcedureMapper;
+    private final AttendanceRecordMapper attendanceRecordMapper;
+
+    /** 导出分页/分批大小 */
+    @Value("${slz.export.page-size:1000}")
+    private int exportPageSize;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
@@ -55,21 +77,85 @@ public class DataExportService {
      *
      * @param courseId 课程ID
      * @param semester 学期（可选）
-     * @return 成绩导出数据列表
+     * @param response HTTP响应
      */
-    public List<CourseGradeExportExcel> exportCourseGrades(String courseId, String semester) {
-        LambdaQueryWrapper<CourseGrade> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CourseGrade::getCourseId, courseId);
+    public void exportCourseGrades(String courseId, String semester, HttpServletResponse response) throws IOException {
+        prepareExcelResponse(response, "课程成绩_" + courseId);
+        int total = writeCourseGrades(courseId, semester, response.getOutputStream());
+        log.info("导出课程成绩成功，课程：{}，记录数：{}", courseId, total);
+    }
 
-        if (semester != null && !semester.trim().isEmpty()) {
-            queryWrapper.eq(CourseGrade::getSemester, semester);
-        }
+    /**
+     * 流式写出课程成绩
+     * 按 (打分时间倒序, ID倒序) 键集分页读取，每页批量补全姓名后立即写入 Excel
+     *
+     * @param courseId     课程ID
+     * @param semester     学期（可选）
+     * @param outputStream 输出流
+     * @return 写出的记录数
+     */
+    public int writeCourseGrades(String courseId, String semester, OutputStream outputStream) {
+        int total = 0;
+        try (ExcelWriter excelWriter = EasyExcel.write(outputStream, CourseGradeExportExcel.class).build()) {
+            WriteSheet writeSheet = EasyExcel.writerSheet("课程成绩").build();
+            CourseGrade last = null;
+            while (true) {
+                LambdaQueryWrapper<CourseGrade> queryWrapper = new LambdaQueryWrapper<>();
+                queryWrapper.eq(CourseGrade::getCourseId, courseId);
+
+                if (semester != null && !semester.trim().isEmpty()) {
+                    queryWrapper.eq(CourseGrade::getSemester, semester);
+                }
+
+                if (last != null) {
+                    LocalDateTime lastTime = last.getGradeTime();
+                    Long lastId = last.getId();
+                    if (lastTime == null) {
+                        // 打分时间为空的记录排在最后，只需按ID继续
+                        queryWrapper.isNull(CourseGrade::getGradeTime).lt(CourseGrade::getId, lastId);
+                    } else {
+                        queryWrapper.and(w -> w.lt(CourseGrade::getGradeTime, lastTime)
+                                .or(o -> o.eq(CourseGrade::getGradeTime, lastTime).lt(CourseGrade::getId, lastId))
+                                .or(o -> o.isNull(CourseGrade::getGradeTime)));
+                    }
+                }
+
+                queryWrapper.orderByDesc(CourseGrade::getGradeTime)
+                        .orderByDesc(CourseGrade::getId)
+                        .last("LIMIT " + exportPageSize);
+
+                List<CourseGrade> grades = courseGradeService.list(queryWrapper);
+                if (grades.isEmpty()) {
+                    if (total == 0) {
+                        // 无数据时仍写出表头
+                        excelWriter.write(List.of(), writeSheet);
+                    }
+                    break;
+                }
+
+                excelWriter.write(toCourseGradeExcels(grades), writeSheet);
+                total += grades.size();
 
-        queryWrapper.orderByDesc(CourseGrade::getGradeTime);
+                if (grades.size() < exportPageSize) {
+                    break;
+                }
+                last = grades.get(grades.size() - 1);
+            }
+        }
+        return total;
+    }
 
-        List<CourseGrade> grades = courseGradeService.list(queryWrapper);
+    private List<CourseGradeExportExcel> toCourseGradeExcels(List<CourseGrade> grades) {
+        // 批量查询本页涉及的学生和教师姓名
+        List<String> usernames = new ArrayList<>(grades.size() * 2);
+        for (CourseGrade grade : grades) {
+            usernames.add(grade.getStudentUsername());
+            usernames.add(grade.getTeacherUsername());
+        }
+        Map<String, String> nameMap = getUserNameMap(usernames);
 
-        return grades.stream().map(grade -> {
+        List<CourseGradeExportExcel> excels = new ArrayList<>(grades.size());
+        for (CourseGrade grade : grades) {
             CourseGradeExportExcel excel = new CourseGradeExportExcel();
             excel.setStudentUsername(grade.getStudentUsername());
             excel.setCourseId(grade.getCourseId());
@@ -85,23 +171,12 @@ public class DataExportService {
                 excel.setGradeTime(grade.getGradeTime().format(DATE_FORMATTER));
             }
 
-            // 查询学生姓名
-            User student = userMapper.selectOne(
-                    new LambdaQueryWrapper<User>().eq(User::getUsername, grade.getStudentUsername())
-            );
-            excel.setStudentName(student != null ? student.getName() : grade.getStudentUsername());
-
-            // 查询教师姓名
-            User teacher = userMapper.selectOne(
-                    new LambdaQueryWrapper<User>().eq(User::getUsername, grade.getTeacherUsername())
-            );
-            excel.setTeacherName(teacher != null ? teacher.getName() : grade.getTeacherUsername());
+            excel.setStudentName(nameMap.getOrDefault(grade.getStudentUsername(), grade.getStudentUsername()));
+            excel.setTeacherName(nameMap.getOrDefault(grade.getTeacherUsername(), grade.getTeacherUsername()));
 
-            // 查询课程名称（如果有的话）
-            // 这里可以添加课程名称查询逻辑
-
-            return excel;
-        }).collect(Collectors.toList());
+            excels.add(excel);
+        }
+        return excels;
     }
 
     /**
@@ -110,25 +185,87 @@ public class DataExportService {
      * @param courseId 课程ID
      * @param startDate 开始日期（可选）
      * @param endDate 结束日期（可选）
-     * @return 考勤记录导出数据列表
+     * @param response HTTP响应
      */
-    public List<AttendanceRecordExportExcel> exportAttendanceRecords(String courseId, String startDate, String endDate) {
-        LambdaQueryWrapper<AttendanceRecord> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(AttendanceRecord::getCourseId, courseId);
+    public void exportAttendanceRecords(String courseId, String startDate, String endDate,
+                                        HttpServletResponse response) throws IOException {
+        prepareExcelResponse(response, "考勤记录_" + courseId);
+        int total = writeAttendanceRecords(courseId, startDate, endDate, response.getOutputStream());
+        log.info("导出考勤记录成功，课程：{}，记录数：{}", courseId, total);
+    }
 
-        if (startDate != null && !startDate.trim().isEmpty()) {
-            queryWrapper.ge(AttendanceRecord::getAttendanceTime, startDate);
-        }
+    /**
+     * 流式写出考勤记录
+     * 按 (签到时间倒序, ID倒序) 键集分页读取，每页批量补全姓名后立即写入 Excel
+     *
+     * @param courseId     课程ID
+     * @param startDate    开始日期（可选）
+     * @param endDate      结束日期（可选）
+     * @param outputStream 输出流
+     * @return 写出的记录数
+     */
+    public int writeAttendanceRecords(String courseId, String startDate, String endDate, OutputStream outputStream) {
+        int total = 0;
+        try (ExcelWriter excelWriter = EasyExcel.write(outputStream, AttendanceRecordExportExcel.class).build()) {
+            WriteSheet writeSheet = EasyExcel.writerSheet("考勤记录").build();
+            AttendanceRecord last = null;
+            while (true) {
+                LambdaQueryWrapper<AttendanceRecord> queryWrapper = new LambdaQueryWrapper<>();
+                queryWrapper.eq(AttendanceRecord::getCourseId, courseId);
+
+                if (startDate != null && !startDate.trim().isEmpty()) {
+                    queryWrapper.ge(AttendanceRecord::getAttendanceTime, startDate);
+                }
 
-        if (endDate != null && !endDate.trim().isEmpty()) {
-            queryWrapper.le(AttendanceRecord::getAttendanceTime, endDate);
-        }
+                if (endDate != null && !endDate.trim().isEmpty()) {
+                    queryWrapper.le(AttendanceRecord::getAttendanceTime, endDate);
+                }
 
-        queryWrapper.orderByDesc(AttendanceRecord::getAttendanceTime);
+                if (last != null) {
+                    LocalDateTime lastTime = last.getAttendanceTime();
+                    Long lastId = last.getId();
+                    if (lastTime == null) {
+                        // 考勤时间为空的记录排在最后，只需按ID继续
+                        queryWrapper.isNull(AttendanceRecord::getAttendanceTime).lt(AttendanceRecord::getId, lastId);
+                    } else {
+                        queryWrapper.and(w -> w.lt(AttendanceRecord::getAttendanceTime, lastTime)
+                                .or(o -> o.eq(AttendanceRecord::getAttendanceTime, lastTime).lt(AttendanceRecord::getId, lastId))
+                                .or(o -> o.isNull(AttendanceRecord::getAttendanceTime)));
+                    }
+                }
 
-        List<AttendanceRecord> records = attendanceRecordService.list(queryWrapper);
+                queryWrapper.orderByDesc(AttendanceRecord::getAttendanceTime)
+                        .orderByDesc(AttendanceRecord::getId)
+                        .last("LIMIT " + exportPageSize);
+
+                List<AttendanceRecord> records = attendanceRecordService.list(queryWrapper);
+                if (records.isEmpty()) {
+                    if (total == 0) {
+                        // 无数据时仍写出表头
+                        excelWriter.write(List.of(), writeSheet);
+                    }
+                    break;
+                }
 
-        return records.stream().map(record -> {
+                excelWriter.write(toAttendanceRecordExcels(records), writeSheet);
+                total += records.size();
+
+                if (records.size() < exportPageSize) {
+                    break;
+                }
+                last = records.get(records.size() - 1);
+            }
+        }
+        return total;
+    }
+
+    private List<AttendanceRecordExportExcel> toAttendanceRecordExcels(List<AttendanceRecord> records) {
+        // 批量查询本页涉及的学生姓名
+        Map<String, String> nameMap = getUserNameMap(
+                records.stream().map(AttendanceRecord::getStudentUsername).toList());
+
+        List<AttendanceRecordExportExcel> excels = new ArrayList<>(records.size());
+        for (AttendanceRecord record : records) {
             AttendanceRecordExportExcel excel = new AttendanceRecordExportExcel();
             excel.setStudentUsername(record.getStudentUsername());
             excel.setCourseId(record.getCourseId());
@@ -141,14 +278,33 @@ public class DataExportService {
                 excel.setAttendanceTime(record.getAttendanceTime().format(DATE_FORMATTER));
             }
 
-            // 查询学生姓名
-            User student = userMapper.selectOne(
-                    new LambdaQueryWrapper<User>().eq(User::getUsername, record.getStudentUsername())
-            );
-            excel.setStudentName(student != null ? student.getName() : record.getStudentUsername());
+            excel.setStudentName(nameMap.getOrDefault(record.getStudentUsername(), record.getStudentUsername()));
 
-            return excel;
-        }).collect(Collectors.toList());
+            excels.add(excel);
+        }
+        return excels;
+    }
+
+    /**
+     * 批量查询用户姓名
+     *
+     * @param usernames 用户名列表（可重复、可含 null）
+     * @return 用户名 -> 姓名
+     */
+    private Map<String, String> getUserNameMap(Collection<String> usernames) {
+        Set<String> distinctUsernames = usernames.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinctUsernames.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> nameMap = new HashMap<>(distinctUsernames.size() * 2);
+        for (User user : userMapper.selectList(new LambdaQueryWrapper<User>()
+                .select(User::getUsername, User::getName)
+                .in(User::getUsername, distinctUsernames))) {
+            if (user.getName() != null) {
+                nameMap.putIfAbsent(user.getUsername(), user.getName());
+            }
+        }
+        return nameMap;
     }
 
     /**
@@ -202,25 +358,35 @@ public class DataExportService {
      */
     public void exportCourseExperimentGrades(String courseId, List<String> classCodes, HttpServletResponse response)
             throws IOException {
-        // 1. 查询课程下所有实验
-        LambdaQueryWrapper<Experiment> experimentQuery = new LambdaQueryWrapper<>();
-        experimentQuery.eq(Experiment::getCourseId, courseId)
-                .eq(Experiment::getIsDeleted, false)
-                .orderByAsc(Experiment::getCreatedTime);
-        List<Experiment> experiments = experimentService.list(experimentQuery);
+        // 先校验数据，再写响应头
+        CourseExportContext context = loadCourseExportContext(courseId, classCodes);
+        prepareExcelResponse(response, "课程实验成绩_" + courseId);
+        writeCourseExperimentGrades(context, courseId, classCodes, response.getOutputStream(),
+                ExportProgressListener.NONE);
 
-        if (experiments.isEmpty()) {
-            throw new BusinessException(404, "该课程下没有实验");
-        }
+        log.info("导出课程实验成绩成功，课程：{}，班级：{}，学生数：{}", courseId, classCodes, context.students().size());
+    }
 
-        // 2. 查询指定班级的所有学生
-        List<StudentInfo> studentList = getStudentsByClassCodes(classCodes);
+    /**
+     * 流式写出课程实验成绩表
+     *
+     * @param courseId     课程ID
+     * @param classCodes   班级编号列表
+     * @param outputStream 输出流
+     * @param listener     进度监听器
+     * @return 写出的学生行数
+     */
+    public int writeCourseExperimentGrades(String courseId, List<String> classCodes, OutputStream outputStream,
+                                           ExportProgressListener listener) {
+        CourseExportContext context = loadCourseExportContext(courseId, classCodes);
+        return writeCourseExperimentGrades(context, courseId, classCodes, outputStream, listener);
+    }
 
-        if (studentList.isEmpty()) {
-            throw new BusinessException(404, "指定班级下没有学生");
-        }
+    private int writeCourseExperimentGrades(CourseExportContext context, String courseId, List<String> classCodes,
+                                            OutputStream outputStream, ExportProgressListener listener) {
+        List<Experiment> experiments = context.experiments();
 
-        // 3. 构建表头
+        // 1. 构建表头
         List<List<String>> heads = new ArrayList<>();
         heads.add(List.of("班级"));
         heads.add(List.of("用户名"));
@@ -230,49 +396,49 @@ public class DataExportService {
         }
         heads.add(List.of("课程成绩"));
 
-        // 4. 构建数据
-        List<List<Object>> dataList = new ArrayList<>();
-        for (StudentInfo student : studentList) {
-            String studentUsername = student.studentUsername();
-            String studentName = student.studentName();
-            String classCode = student.classCode();
-
-            // 获取班级名称
-            String className = getClassName(classCode);
-
-            List<Object> row = new ArrayList<>();
-            row.add(className);
-            row.add(studentUsername);
-            row.add(studentName);
-
-            // 计算课程成绩
-            CourseGradeResult courseResult = gradeCalculationService.calculateCourseGrade(
-                    courseId, studentUsername, classCode);
-
-            // 将实验结果列表转换为Map以便查找
-            Map<Long, ExperimentGradeResult> expResultMap =
-                ExperimentResultItem.toMap(courseResult.getExperimentResults());
-
-            // 添加各实验成绩
-            for (Experiment exp : experiments) {
-                ExperimentGradeResult expResult = expResultMap.get(exp.getId());
-                if (expResult != null) {
-                    row.add(expResult.getDisplayText());
-                } else {
-                    row.add("未批改");
+        // 2. 一次性计算所有学生的课程成绩
+        Map<String, Map<String, CourseGradeResult>> courseResults =
+                gradeCalculationService.calculateCourseGrades(courseId, classCodes);
+        Map<String, String> classNameMap = getClassNameMap(classCodes);
+
+        // 3. 按批构建数据并写出
+        return writeDynamicExcel(outputStream, "成绩表", heads, context.students(), listener, students -> {
+            List<List<Object>> dataList = new ArrayList<>(students.size());
+            for (StudentInfo student : students) {
+                String studentUsername = student.studentUsername();
+                String classCode = student.classCode();
+
+                List<Object> row = new ArrayList<>();
+                row.add(classNameMap.getOrDefault(classCode, classCode));
+                row.add(studentUsername);
+                row.add(student.studentName());
+
+                CourseGradeResult courseResult = courseResults.getOrDefault(classCode, Map.of()).get(studentUsername);
+                if (courseResult == null) {
+                    courseResult = gradeCalculationService.calculateCourseGrade(courseId, studentUsername, classCode);
                 }
-            }
 
-            // 添加课程成绩
-            row.add(courseResult.getDisplayText());
-
-            dataList.add(row);
-        }
+                // 将实验结果列表转换为Map以便查找
+                Map<Long, ExperimentGradeResult> expResultMap =
+                    ExperimentResultItem.toMap(courseResult.getExperimentResults());
+
+                // 添加各实验成绩
+                for (Experiment exp : experiments) {
+                    ExperimentGradeResult expResult = expResultMap.get(exp.getId());
+                    if (expResult != null) {
+                        row.add(expResult.getDisplayText());
+                    } else {
+                        row.add("未批改");
+                    }
+                }
 
-        // 5. 写入响应
-        writeDynamicExcel(response, "课程实验成绩_" + courseId, "成绩表", heads, dataList);
+                // 添加课程成绩
+                row.add(courseResult.getDisplayText());
 
-        log.info("导出课程实验成绩成功，课程：{}，班级：{}，学生数：{}", courseId, classCodes, studentList.size());
+                dataList.add(row);
+            }
+            return dataList;
+        });
     }
 
     /**
@@ -284,42 +450,38 @@ public class DataExportService {
      */
     public void exportCourseAttendance(String courseId, List<String> classCodes, HttpServletResponse response)
             throws IOException {
-        // 1. 查询课程下所有实验
-        LambdaQueryWrapper<Experiment> experimentQuery = new LambdaQueryWrapper<>();
-        experimentQuery.eq(Experiment::getCourseId, courseId)
-                .eq(Experiment::getIsDeleted, false)
-                .orderByAsc(Experiment::getCreatedTime);
-        List<Experiment> experiments = experimentService.list(experimentQuery);
-
-        if (experiments.isEmpty()) {
-            throw new BusinessException(404, "该课程下没有实验");
-        }
+        // 先校验数据，再写响应头
+        CourseExportContext context = loadCourseExportContext(courseId, classCodes);
+        prepareExcelResponse(response, "课程考勤表_" + courseId);
+        writeCourseAttendance(context, courseId, classCodes, response.getOutputStream(),
+                ExportProgressListener.NONE);
 
-        // 2. 查询指定班级的所有学生
-        List<StudentInfo> studentList = getStudentsByClassCodes(classCodes);
+        log.info("导出课程考勤表成功，课程：{}，班级：{}，学生数：{}", courseId, classCodes, context.students().size());
+    }
 
-        if (studentList.isEmpty()) {
-            throw new BusinessException(404, "指定班级下没有学生");
-        }
+    /**
+     * 流式写出课程考勤表
+     *
+     * @param courseId     课程ID
+     * @param classCodes   班级编号列表
+     * @param outputStream 输出流
+     * @param listener     进度监听器
+     * @return 写出的学生行数
+     */
+    public int writeCourseAttendance(String courseId, List<String> classCodes, OutputStream outputStream,
+                                     ExportProgressListener listener) {
+        CourseExportContext context = loadCourseExportContext(courseId, classCodes);
+        return writeCourseAttendance(context, courseId, classCodes, outputStream, listener);
+    }
 
-        // 3. 查询所有签到记录
+    private int writeCourseAttendance(CourseExportContext context, String courseId, List<String> classCodes,
+                                      OutputStream outputStream, ExportProgressListener listener) {
+        List<Experiment> experiments = context.experiments();
         List<String> experimentIds = experiments.stream()
                 .map(e -> String.valueOf(e.getId()))
                 .collect(Collectors.toList());
 
-        LambdaQueryWrapper<AttendanceRecord> attendanceQuery = new LambdaQueryWrapper<>();
-        attendanceQuery.eq(AttendanceRecord::getCourseId, courseId)
-                .in(AttendanceRecord::getExperimentId, experimentIds);
-        List<AttendanceRecord> attendanceRecords = attendanceRecordService.list(attendanceQuery);
-
-        // 构建签到记录映射：(学生用户名_实验ID) -> 签到状态
-        Map<String, Integer> attendanceMap = new LinkedHashMap<>();
-        for (AttendanceRecord record : attendanceRecords) {
-            String key = record.getStudentUsername() + "_" + record.getExperimentId();
-            attendanceMap.put(key, record.getAttendanceStatus());
-        }
-
-        // 4. 构建表头
+        // 1. 构建表头
         List<List<String>> heads = new ArrayList<>();
         heads.add(List.of("班级"));
         heads.add(List.of("用户名"));
@@ -328,35 +490,178 @@ public class DataExportService {
             heads.add(List.of(exp.getExperimentName()));
         }
 
-        // 5. 构建数据
-        List<List<Object>> dataList = new ArrayList<>();
-        for (StudentInfo student : studentList) {
-            String studentUsername = student.studentUsername();
-            String studentName = student.studentName();
-            String classCode = student.classCode();
-
-            // 获取班级名称
-            String className = getClassName(classCode);
-
-            List<Object> row = new ArrayList<>();
-            row.add(className);
-            row.add(studentUsername);
-            row.add(studentName);
-
-            // 添加各实验考勤状态
-            for (Experiment exp : experiments) {
-                String key = studentUsername + "_" + exp.getId();
-                Integer status = attendanceMap.get(key);
-                row.add(getAttendanceStatusTextForExport(status));
+        Map<String, String> classNameMap = getClassNameMap(classCodes);
+
+        // 2. 按批查询本批学生的签到记录，构建数据并写出
+        return writeDynamicExcel(outputStream, "考勤表", heads, context.students(), listener, students -> {
+            LambdaQueryWrapper<AttendanceRecord> attendanceQuery = new LambdaQueryWrapper<>();
+            attendanceQuery.eq(AttendanceRecord::getCourseId, courseId)
+                    .in(AttendanceRecord::getExperimentId, experimentIds)
+                    .in(AttendanceRecord::getStudentUsername,
+                            students.stream().map(StudentInfo::studentUsername).toList());
+            List<AttendanceRecord> attendanceRecords = attendanceRecordService.list(attendanceQuery);
+
+            // 构建签到记录映射：(学生用户名_实验ID) -> 签到状态
+            Map<String, Integer> attendanceMap = new HashMap<>(attendanceRecords.size() * 2);
+            for (AttendanceRecord record : attendanceRecords) {
+                String key = record.getStudentUsername() + "_" + record.getExperimentId();
+                attendanceMap.put(key, record.getAttendanceStatus());
             }
 
-            dataList.add(row);
+            List<List<Object>> dataList = new ArrayList<>(students.size());
+            for (StudentInfo student : students) {
+                String studentUsername = student.studentUsername();
+                String classCode = student.classCode();
+
+                List<Object> row = new ArrayList<>();
+                row.add(classNameMap.getOrDefault(classCode, classCode));
+                row.add(studentUsername);
+                row.add(student.studentName());
+
+                // 添加各实验考勤状态
+                for (Experiment exp : experiments) {
+                    String key = studentUsername + "_" + exp.getId();
+                    Integer status = attendanceMap.get(key);
+                    row.add(getAttendanceStatusTextForExport(status));
+                }
+
+                dataList.add(row);
+            }
+            return dataList;
+        });
+    }
+
+    /**
+     * 计算课程导出数据的版本签名
+     * 由实验、步骤占比、学生提交、班级学生、班级信息、学生姓名和签到记录的数量、最后更新时间或内容校验值拼接而成，
+     * 任一相关数据发生变化都会得到不同的签名，用于判断导出缓存是否仍然有效
+     *
+     * @param courseId   课程ID
+     * @param classCodes 班级编号列表
+     * @return 数据版本签名
+     */
+    public String getCourseDataVersion(String courseId, List<String> classCodes) {
+        StringBuilder version = new StringBuilder(courseId);
+
+        // 1. 实验
+        List<Experiment> experiments = experimentService.list(new LambdaQueryWrapper<Experiment>()
+                .select(Experiment::getId, Experiment::getUpdatedTime)
+                .eq(Experiment::getCourseId, courseId)
+                .eq(Experiment::getIsDeleted, false)
+                .orderByAsc(Experiment::getId));
+        List<Long> experimentIds = new ArrayList<>(experiments.size());
+        version.append("|E");
+        for (Experiment experiment : experiments) {
+            experimentIds.add(experiment.getId());
+            version.append(',').append(experiment.getId()).append(':').append(experiment.getUpdatedTime());
         }
 
-        // 6. 写入响应
-        writeDynamicExcel(response, "课程考勤表_" + courseId, "考勤表", heads, dataList);
+        if (!experimentIds.isEmpty()) {
+            // 2. 步骤占比
+            List<ExperimentalProcedure> procedures = experimentalProcedureService.list(
+                    new LambdaQueryWrapper<ExperimentalProcedure>()
+                            .select(ExperimentalProcedure::getId, ExperimentalProcedure::getProportion,
+                                    ExperimentalProcedure::getIsDeleted)
+                            .in(ExperimentalProcedure::getExperimentId, experimentIds)
+                            .orderByAsc(ExperimentalProcedure::getId));
+            version.append("|P");
+            for (ExperimentalProcedure procedure : procedures) {
+                version.append(',').append(procedure.getId()).append(':').append(procedure.getProportion())
+                        .append(':').append(procedure.getIsDeleted());
+            }
 
-        log.info("导出课程考勤表成功，课程：{}，班级：{}，学生数：{}", courseId, classCodes, studentList.size());
+            // 3. 学生提交（按内容校验，批改、重新提交等写入路径不一定更新 updated_time）
+            version.append("|S").append(studentExperimentalProcedureMapper.selectSubmissionChecksum(
+                    experimentIds, classCodes));
+        }
+
+        // 4. 班级学生
+        LambdaQueryWrapper<StudentClassRelation> relationQuery = new LambdaQueryWrapper<>();
+        relationQuery.in(StudentClassRelation::getClassCode, classCodes);
+        long relationCount = studentClassRelationService.count(relationQuery);
+        StudentClassRelation latestRelation = studentClassRelationService.getOne(
+                relationQuery.select(StudentClassRelation::getId)
+                        .orderByDesc(StudentClassRelation::getId)
+                        .last("LIMIT 1"), false);
+        version.append("|R").append(relationCount).append(':')
+                .append(latestRelation == null ? null : latestRelation.getId());
+
+        // 5. 班级信息
+        List<Class> classes = classMapper.selectList(new LambdaQueryWrapper<Class>()
+                .select(Class::getClassCode, Class::getUpdateTime)
+                .in(Class::getClassCode, classCodes)
+                .orderByAsc(Class::getClassCode));
+        version.append("|C");
+        for (Class clazz : classes) {
+            version.append(',').append(clazz.getClassCode()).append(':').append(clazz.getUpdateTime());
+        }
+
+        // 6. 学生姓名
+        version.append("|U").append(userMapper.selectStudentNameChecksum(classCodes));
+
+        // 7. 签到记录
+        version.append("|A").append(attendanceRecordMapper.selectAttendanceChecksum(courseId));
+
+        return version.toString();
+    }
+
+    /**
+     * 导出进度监听器
+     */
+    public interface ExportProgressListener {
+
+        /** 不关心进度时使用的空实现 */
+        ExportProgressListener NONE = new ExportProgressListener() {
+            @Override
+            public void onStart(int totalRows) {
+            }
+
+            @Override
+            public void onProgress(int rows) {
+            }
+        };
+
+        /**
+         * 开始写出数据
+         *
+         * @param totalRows 总行数
+         */
+        void onStart(int totalRows);
+
+        /**
+         * 一批数据写出完成
+         *
+         * @param rows 本批行数
+         */
+        void onProgress(int rows);
+    }
+
+    /**
+     * 查询课程实验和班级学生，任一为空时抛出异常
+     */
+    private CourseExportContext loadCourseExportContext(String courseId, List<String> classCodes) {
+        // 1. 查询课程下所有实验
+        LambdaQueryWrapper<Experiment> experimentQuery = new LambdaQueryWrapper<>();
+        experimentQuery.eq(Experiment::getCourseId, courseId)
+                .eq(Experiment::getIsDeleted, false)
+                .orderByAsc(Experiment::getCreatedTime);
+        List<Experiment> experiments = experimentService.list(experimentQuery);
+
+        if (experiments.isEmpty()) {
+            throw new BusinessException(404, "该课程下没有实验");
+        }
+
+        // 2. 查询指定班级的所有学生
+        List<StudentInfo> studentList = getStudentsByClassCodes(classCodes);
+
+        if (studentList.isEmpty()) {
+            throw new BusinessException(404, "指定班级下没有学生");
+        }
+
+        return new CourseExportContext(experiments, studentList);
+    }
+
+    private record CourseExportContext(List<Experiment> experiments, List<StudentInfo> students) {
     }
 
     /**
@@ -366,13 +671,18 @@ public class DataExportService {
         List<StudentInfo> studentList = new ArrayList<>();
 
         for (String classCode : classCodes) {
-            // 查询班级下的学生
+            // 查询班级下的学生，并一次查询学生信息
             List<StudentClassRelation> relations = studentClassRelationService.getByClassCode(classCode);
+            if (relations.isEmpty()) {
+                continue;
+            }
+            Map<String, User> userMap = userMapper.selectList(new LambdaQueryWrapper<User>()
+                            .in(User::getUsername, relations.stream().map(StudentClassRelation::getStudentUsername).toList()))
+                    .stream()
+                    .collect(Collectors.toMap(User::getUsername, user -> user, (a, b) -> a));
 
             for (StudentClassRelation relation : relations) {
-                User student = userMapper.selectOne(
-                        new LambdaQueryWrapper<User>().eq(User::getUsername, relation.getStudentUsername())
-                );
+                User student = userMap.get(relation.getStudentUsername());
 
                 if (student != null) {
                     StudentInfo studentInfo = new StudentInfo(
@@ -394,30 +704,49 @@ public class DataExportService {
     }
 
     /**
-     * 获取班级名称
+     * 批量获取班级名称
      */
-    private String getClassName(String classCode) {
-        Class clazz = classMapper.selectOne(
-                new LambdaQueryWrapper<Class>().eq(Class::getClassCode, classCode)
-        );
-        return clazz != null ? clazz.getClassName() : classCode;
+    private Map<String, String> getClassNameMap(List<String> classCodes) {
+        if (classCodes == null || classCodes.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> classNameMap = new LinkedHashMap<>();
+        for (Class clazz : classMapper.selectList(new LambdaQueryWrapper<Class>().in(Class::getClassCode, classCodes))) {
+            if (clazz.getClassName() != null) {
+                classNameMap.putIfAbsent(clazz.getClassCode(), clazz.getClassName());
+            }
+        }
+        return classNameMap;
     }
 
     /**
-     * 写入动态列Excel
+     * 设置 Excel 下载响应头
      */
-    private void writeDynamicExcel(HttpServletResponse response, String fileName, String sheetName,
-                                   List<List<String>> heads, List<List<Object>> dataList) throws IOException {
-        // 设置响应头
+    private void prepareExcelResponse(HttpServletResponse response, String fileName) throws IOException {
         response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
         response.setCharacterEncoding("utf-8");
         String encodedFileName = URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
         response.setHeader("Content-disposition", "attachment;filename*=utf-8''" + encodedFileName + ".xlsx");
+    }
 
-        // 写入 Excel
-        EasyExcel.write(response.getOutputStream())
-                .head(heads)
-                .sheet(sheetName)
-                .doWrite(dataList);
+    /**
+     * 流式写入动态列Excel
+     * 学生按批交给 rowBuilder 生成数据行，每批写完即释放，不在内存中保留整表数据
+     *
+     * @return 写出的学生行数
+     */
+    private int writeDynamicExcel(OutputStream outputStream, String sheetName, List<List<String>> heads,
+                                  List<StudentInfo> students, ExportProgressListener listener,
+                                  Function<List<StudentInfo>, List<List<Object>>> rowBuilder) {
+        listener.onStart(students.size());
+        try (ExcelWriter excelWriter = EasyExcel.write(outputStream).head(heads).build()) {
+            WriteSheet writeSheet = EasyExcel.writerSheet(sheetName).build();
+            for (int from = 0; from < students.size(); from += exportPageSize) {
+                List<StudentInfo> batch = students.subList(from, Math.min(from + exportPageSize, students.size()));
+                excelWriter.write(rowBuilder.apply(batch), writeSheet);
+                listener.onProgress(batch.size());
+            }
+        }
+        return students.size();
     }
 }
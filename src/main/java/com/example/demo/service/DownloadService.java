@@ -6,6 +6,8 @@ import com.example.demo.mapper.VideoFileMapper;
 import com.example.demo.pojo.entity.StudentProcedureAttachment;
 import com.example.demo.pojo.entity.VideoFile;
 import com.example.demo.util.CryptoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,7 +22,12 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -35,6 +42,7 @@ public class DownloadService {
     private final CryptoUtil cryptoUtil;
     private final VideoFileMapper videoFileMapper;
     private final StudentProcedureAttachmentMapper studentProcedureAttachmentMapper;
+    private final ExportJobService exportJobService;
 
     @Value("${slz.download.sign-secret:slz_video_sign_secret_2024}")
     private String signSecret;
@@ -42,6 +50,35 @@ public class DownloadService {
     @Value("${slz.download.play-expire-minutes:30}")
     private int playExpireMinutes;
 
+    /** 播放密钥校验结果缓存的最大条目数 */
+    @Value("${slz.download.play-key-cache-size:10000}")
+    private int playKeyCacheSize;
+
+    private static final Counter PLAY_KEY_CACHE_HIT = Counter.builder("slz.download.play-key.cache")
+            .tag("result", "hit")
+            .description("播放密钥校验缓存命中次数")
+            .register(Metrics.globalRegistry);
+
+    private static final Counter PLAY_KEY_CACHE_MISS = Counter.builder("slz.download.play-key.cache")
+            .tag("result", "miss")
+            .description("播放密钥校验缓存未命中次数")
+            .register(Metrics.globalRegistry);
+
+    /**
+     * 播放密钥 -> 校验通过的视频信息
+     * 一次播放会产生大量范围请求，缓存后无需重复解密、验签和查库；条目在密钥过期后失效，超出容量时淘汰最久未使用的条目
+     */
+    private final Map<String, VideoFilePlayInfo> playKeyCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, VideoFilePlayInfo> eldest) {
+                    return size() > playKeyCacheSize;
+                }
+            });
+
+    /** 每个线程复用已初始化密钥的 Mac 实例 */
+    private final ThreadLocal<Mac> hmacHolder = ThreadLocal.withInitial(this::createHmac);
+
     /** 文件存储基础路径 */
     public static final String FILE_BASE_PATH = "uploads" + File.separator + "signlab" + File.separator;
 
@@ -49,6 +86,8 @@ public class DownloadService {
     public static final String TYPE_VIDEO = "video";
     /** 文件类型：步骤附件 */
     public static final String TYPE_ATTACHMENT = "attachment";
+    /** 文件类型：导出任务生成的文件 */
+    public static final String TYPE_EXPORT = "export";
 
     /**
      * 生成视频下载密钥
@@ -69,7 +108,7 @@ public class DownloadService {
     /**
      * 生成文件下载密钥
      *
-     * @param fileType 文件类型（submission或attachment）
+     * @param fileType 文件类型（attachment或export）
      * @param fileId 文件ID
      * @param username 用户名
      * @return 加密的下载密钥
@@ -83,6 +122,27 @@ public class DownloadService {
         return cryptoUtil.encrypt(fileKey.toString());
     }
 
+    /**
+     * 批量生成文件下载密钥
+     *
+     * @param fileType 文件类型（attachment或export）
+     * @param fileIds 文件ID列表
+     * @param username 用户名
+     * @return 与文件ID顺序一致的加密下载密钥
+     */
+    public List<String> generateFileKeys(String fileType, List<Long> fileIds, String username) {
+        List<String> rawKeys = new ArrayList<>(fileIds.size());
+        for (Long fileId : fileIds) {
+            FileKey fileKey = new FileKey();
+            fileKey.setType(fileType);
+            fileKey.setId(fileId);
+            fileKey.setKey(UUID.randomUUID().toString());
+            fileKey.setUsername(username);
+            rawKeys.add(fileKey.toString());
+        }
+        return cryptoUtil.encryptAll(rawKeys);
+    }
+
     /**
      * 根据密钥下载视频
      *
@@ -141,6 +201,11 @@ public class DownloadService {
             downloadInfo.setFilePath(fullPath);
             downloadInfo.setFileName(attachment.getOriginalFileName());
             downloadInfo.setFileSize(attachment.getFileSize());
+        } else if (TYPE_EXPORT.equals(fileType)) {
+            ExportJobService.ExportJob job = exportJobService.getCompletedJob(fileKey.getId(), fileKey.getUsername());
+            downloadInfo.setFilePath(job.getCacheFile().getPath());
+            downloadInfo.setFileName(job.getFileName());
+            downloadInfo.setFileSize(job.getCacheFile().length());
         } else {
             throw new BusinessException(400, "不支持的文件类型");
         }
@@ -175,6 +240,16 @@ public class DownloadService {
      * @return 视频文件信息
      */
     public VideoFilePlayInfo getVideoByPlayKey(String encryptedPlayKey) {
+        VideoFilePlayInfo cachedInfo = playKeyCache.get(encryptedPlayKey);
+        if (cachedInfo != null) {
+            if (System.currentTimeMillis() <= cachedInfo.getExpireTime()) {
+                PLAY_KEY_CACHE_HIT.increment();
+                return cachedInfo;
+            }
+            playKeyCache.remove(encryptedPlayKey);
+        }
+        PLAY_KEY_CACHE_MISS.increment();
+
         try {
             // 解密播放密钥
             String playKey = cryptoUtil.decrypt(encryptedPlayKey);
@@ -218,6 +293,9 @@ public class DownloadService {
             playInfo.setFileName(videoFile.getOriginalFileName());
             playInfo.setFileSize(videoFile.getFileSize());
             playInfo.setUsername(username);
+            playInfo.setVideoId(videoId);
+            playInfo.setExpireTime(expireTime);
+            playKeyCache.put(encryptedPlayKey, playInfo);
             return playInfo;
         } catch (BusinessException e) {
             throw e;
@@ -234,13 +312,20 @@ public class DownloadService {
      * @return 签名结果
      */
     private String generateHmacSignature(String data) {
+        byte[] signature = hmacHolder.get().doFinal(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    /**
+     * 创建并初始化 HMAC-SHA256 实例
+     */
+    private Mac createHmac() {
         try {
             Mac mac = Mac.getInstance("HmacSHA256");
             SecretKeySpec secretKeySpec = new SecretKeySpec(
                 signSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
             mac.init(secretKeySpec);
-            byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+            return mac;
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             log.error("生成签名失败", e);
             throw new BusinessException(500, "生成签名失败");
@@ -318,6 +403,10 @@ public class DownloadService {
         private String fileName;
         private Long fileSize;
         private String username;
+        /** 视频文件ID */
+        private Long videoId;
+        /** 播放密钥过期时间（毫秒时间戳） */
+        private Long expireTime;
     }
 
     /**
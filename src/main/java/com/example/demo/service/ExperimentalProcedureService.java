@@ -7,7 +7,10 @@ import com.example.demo.pojo.entity.ExperimentalProcedure;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +31,23 @@ public class ExperimentalProcedureService extends ServiceImpl<ExperimentalProced
         return list(queryWrapper);
     }
 
+    /**
+     * 根据实验ID批量查询实验步骤，与 {@link #getByExperimentId(Long)} 口径一致
+     *
+     * @param experimentIds 实验ID列表
+     * @return 实验ID -> 步骤列表（按步骤序号升序）
+     */
+    public Map<Long, List<ExperimentalProcedure>> getByExperimentIds(Collection<Long> experimentIds) {
+        if (experimentIds == null || experimentIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        LambdaQueryWrapper<ExperimentalProcedure> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.in(ExperimentalProcedure::getExperimentId, experimentIds);
+        queryWrapper.orderByAsc(ExperimentalProcedure::getNumber);
+        return list(queryWrapper).stream()
+                .collect(Collectors.groupingBy(ExperimentalProcedure::getExperimentId));
+    }
+
     /**
      * 根据实验ID获取所有步骤ID列表
      *
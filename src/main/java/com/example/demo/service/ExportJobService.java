@@ -0,0 +1,306 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.BusinessException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 导出任务服务
+ * 课程实验成绩表、课程考勤表在后台线程池中生成，完成后通过 DownloadService 的文件密钥下载
+ * 生成的文件按 (导出类型, 课程, 班级, 数据版本) 缓存在磁盘上，数据未变化时重复导出直接复用
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExportJobService {
+
+    private final DataExportService dataExportService;
+    private final ThreadPoolTaskExecutor exportJobExecutor;
+
+    /** 已结束任务在内存中的保留时间（分钟） */
+    @Value("${slz.export.job.retain-minutes:120}")
+    private int retainMinutes;
+
+    /** 导出文件缓存目录 */
+    public static final String EXPORT_CACHE_PATH = DownloadService.FILE_BASE_PATH + "exports" + File.separator;
+
+    /** 导出类型：课程实验成绩表 */
+    public static final String TYPE_COURSE_EXPERIMENT_GRADES = "course-experiment-grades";
+    /** 导出类型：课程考勤表 */
+    public static final String TYPE_COURSE_ATTENDANCE = "course-attendance";
+
+    /** 任务状态：排队中 */
+    public static final String STATUS_PENDING = "PENDING";
+    /** 任务状态：导出中 */
+    public static final String STATUS_RUNNING = "RUNNING";
+    /** 任务状态：已完成 */
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    /** 任务状态：失败 */
+    public static final String STATUS_FAILED = "FAILED";
+
+    /** 任务ID -> 任务 */
+    private final Map<Long, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    /** 缓存文件名 -> 正在执行的任务，相同数据的并发导出共用一个任务 */
+    private final Map<String, ExportJob> runningJobs = new ConcurrentHashMap<>();
+
+    private final AtomicLong jobIdGenerator = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * 提交导出任务
+     *
+     * @param exportType 导出类型
+     * @param courseId   课程ID
+     * @param classCodes 班级编号列表
+     * @param username   提交人用户名
+     * @return 导出任务
+     */
+    public ExportJob submit(String exportType, String courseId, List<String> classCodes, String username) {
+        String fileTitle = getFileTitle(exportType);
+        purgeFinishedJobs();
+
+        // 班级排序去重，保证相同条件得到相同的缓存键
+        List<String> sortedClassCodes = new ArrayList<>(new TreeSet<>(classCodes));
+        String groupKey = digest(exportType + "|" + courseId + "|" + String.join(",", sortedClassCodes));
+        String version = digest(dataExportService.getCourseDataVersion(courseId, sortedClassCodes));
+        String cacheFileName = groupKey + "_" + version + ".xlsx";
+        File cacheFile = new File(EXPORT_CACHE_PATH + cacheFileName);
+
+        // 1. 命中磁盘缓存，直接完成
+        if (cacheFile.exists()) {
+            ExportJob job = new ExportJob(jobIdGenerator.incrementAndGet(), exportType, courseId, sortedClassCodes,
+                    username, fileTitle + "_" + courseId + ".xlsx", cacheFile, groupKey);
+            job.cached = true;
+            job.status = STATUS_COMPLETED;
+            job.finishedTime = LocalDateTime.now();
+            jobs.put(job.getJobId(), job);
+            log.info("导出任务命中缓存，任务：{}，类型：{}，课程：{}", job.getJobId(), exportType, courseId);
+            return job;
+        }
+
+        // 2. 相同数据正在导出时复用已有任务；新任务先登记再发布，复用者拿到的任务ID一定可以查询
+        ExportJob newJob = new ExportJob(jobIdGenerator.incrementAndGet(), exportType, courseId, sortedClassCodes,
+                username, fileTitle + "_" + courseId + ".xlsx", cacheFile, groupKey);
+        jobs.put(newJob.getJobId(), newJob);
+        ExportJob job = runningJobs.putIfAbsent(cacheFileName, newJob);
+        if (job != null) {
+            jobs.remove(newJob.getJobId());
+            job.viewers.add(username);
+            return job;
+        }
+
+        // 3. 提交到导出线程池；被拒绝时任务标记为失败，已复用该任务的提交人查询时可以看到失败原因
+        try {
+            exportJobExecutor.execute(() -> runJob(newJob, cacheFileName));
+        } catch (RejectedExecutionException e) {
+            newJob.errorMessage = "导出任务过多，请稍后再试";
+            newJob.status = STATUS_FAILED;
+            newJob.finishedTime = LocalDateTime.now();
+            runningJobs.remove(cacheFileName);
+            throw new BusinessException(503, newJob.errorMessage);
+        }
+
+        log.info("提交导出任务，任务：{}，类型：{}，课程：{}，班级：{}", newJob.getJobId(), exportType, courseId,
+                sortedClassCodes);
+        return newJob;
+    }
+
+    /**
+     * 查询导出任务，只有提交人（含复用同一任务的提交人）可以查看
+     *
+     * @param jobId    任务ID
+     * @param username 当前用户名
+     * @return 导出任务
+     */
+    public ExportJob getJob(Long jobId, String username) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException(404, "导出任务不存在或已过期");
+        }
+        if (!job.viewers.contains(username)) {
+            throw new BusinessException(403, "无权访问该导出任务");
+        }
+        return job;
+    }
+
+    /**
+     * 获取已完成任务的导出文件
+     *
+     * @param jobId    任务ID
+     * @param username 下载密钥中的用户名
+     * @return 已完成的导出任务
+     */
+    public ExportJob getCompletedJob(Long jobId, String username) {
+        ExportJob job = getJob(jobId, username);
+        if (!STATUS_COMPLETED.equals(job.getStatus()) || !job.getCacheFile().exists()) {
+            throw new BusinessException(404, "导出文件不存在");
+        }
+        return job;
+    }
+
+    /**
+     * 执行导出任务，先写入临时文件，完成后再移动到缓存路径
+     */
+    private void runJob(ExportJob job, String cacheFileName) {
+        job.status = STATUS_RUNNING;
+        File tempFile = new File(EXPORT_CACHE_PATH + cacheFileName + "." + job.getJobId() + ".tmp");
+        try {
+            Files.createDirectories(tempFile.toPath().getParent());
+
+            DataExportService.ExportProgressListener listener = new DataExportService.ExportProgressListener() {
+                @Override
+                public void onStart(int totalRows) {
+                    job.totalRows = totalRows;
+                }
+
+                @Override
+                public void onProgress(int rows) {
+                    job.processedRows.addAndGet(rows);
+                }
+            };
+
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+                if (TYPE_COURSE_EXPERIMENT_GRADES.equals(job.getExportType())) {
+                    dataExportService.writeCourseExperimentGrades(job.getCourseId(), job.getClassCodes(),
+                            outputStream, listener);
+                } else {
+                    dataExportService.writeCourseAttendance(job.getCourseId(), job.getClassCodes(),
+                            outputStream, listener);
+                }
+            }
+
+            Files.move(tempFile.toPath(), job.getCacheFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            removeStaleCacheFiles(job.getGroupKey(), cacheFileName);
+
+            job.status = STATUS_COMPLETED;
+            log.info("导出任务完成，任务：{}，行数：{}", job.getJobId(), job.getProcessedRows());
+        } catch (Exception e) {
+            log.error("导出任务失败，任务：{}", job.getJobId(), e);
+            job.errorMessage = e instanceof BusinessException ? e.getMessage() : "导出失败";
+            job.status = STATUS_FAILED;
+            try {
+                Files.deleteIfExists(tempFile.toPath());
+            } catch (IOException ex) {
+                log.warn("删除导出临时文件失败：{}", tempFile, ex);
+            }
+        } finally {
+            job.finishedTime = LocalDateTime.now();
+            runningJobs.remove(cacheFileName);
+        }
+    }
+
+    /**
+     * 删除同一导出条件下旧数据版本的缓存文件
+     */
+    private void removeStaleCacheFiles(String groupKey, String currentFileName) {
+        File[] staleFiles = new File(EXPORT_CACHE_PATH).listFiles((dir, name) ->
+                name.startsWith(groupKey + "_") && name.endsWith(".xlsx") && !name.equals(currentFileName));
+        if (staleFiles == null) {
+            return;
+        }
+        for (File staleFile : staleFiles) {
+            try {
+                Files.deleteIfExists(staleFile.toPath());
+            } catch (IOException e) {
+                log.warn("删除过期导出缓存失败：{}", staleFile, e);
+            }
+        }
+    }
+
+    /**
+     * 清理保留时间之外的已结束任务，缓存文件保留在磁盘上供后续导出复用
+     */
+    private void purgeFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retainMinutes);
+        jobs.values().removeIf(job -> job.getFinishedTime() != null && job.getFinishedTime().isBefore(threshold));
+    }
+
+    private String getFileTitle(String exportType) {
+        if (TYPE_COURSE_EXPERIMENT_GRADES.equals(exportType)) {
+            return "课程实验成绩";
+        }
+        if (TYPE_COURSE_ATTENDANCE.equals(exportType)) {
+            return "课程考勤表";
+        }
+        throw new BusinessException(400, "不支持的导出类型");
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 导出任务
+     */
+    @Getter
+    public static class ExportJob {
+        private final Long jobId;
+        private final String exportType;
+        private final String courseId;
+        private final List<String> classCodes;
+        private final String username;
+        /** 下载时使用的文件名 */
+        private final String fileName;
+        private final File cacheFile;
+        private final String groupKey;
+        /** 可以查看任务的用户：提交人以及复用该任务的其他提交人 */
+        @Getter(AccessLevel.NONE)
+        private final Set<String> viewers = ConcurrentHashMap.newKeySet();
+        private final LocalDateTime createdTime = LocalDateTime.now();
+        private final AtomicInteger processedRows = new AtomicInteger();
+        private volatile String status = STATUS_PENDING;
+        private volatile int totalRows;
+        private volatile boolean cached;
+        private volatile String errorMessage;
+        private volatile LocalDateTime finishedTime;
+
+        private ExportJob(Long jobId, String exportType, String courseId, List<String> classCodes, String username,
+                          String fileName, File cacheFile, String groupKey) {
+            this.jobId = jobId;
+            this.exportType = exportType;
+            this.courseId = courseId;
+            this.classCodes = classCodes;
+            this.username = username;
+            this.fileName = fileName;
+            this.cacheFile = cacheFile;
+            this.groupKey = groupKey;
+            this.viewers.add(username);
+        }
+
+        public int getProcessedRows() {
+            return processedRows.get();
+        }
+    }
+}
@@ -4,9 +4,12 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.demo.pojo.dto.mapvo.ExperimentResultItem;
 import com.example.demo.pojo.entity.Experiment;
 import com.example.demo.pojo.entity.ExperimentalProcedure;
+import com.example.demo.pojo.entity.StudentClassRelation;
+import com.example.demo.pojo.entity.StudentExperimentProgress;
 import com.example.demo.pojo.entity.StudentExperimentalProcedure;
 import com.example.demo.pojo.vo.CourseGradeResult;
 import com.example.demo.pojo.vo.ExperimentGradeResult;
+import com.example.demo.util.ExperimentStatisticsAggregator;
 import com.example.demo.util.ScoreCalculationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,8 +19,11 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 成绩计算服务
@@ -32,6 +38,10 @@ public class GradeCalculationService {
     private final ExperimentalProcedureService experimentalProcedureService;
     private final StudentExperimentalProcedureService studentExperimentalProcedureService;
     private final CourseService courseService;
+    private final StudentExperimentProgressService studentExperimentProgressService;
+    private final StudentClassRelationService studentClassRelationService;
+
+    private static final BigDecimal MAX_SCORE = new BigDecimal("100");
 
     /**
      * 计算学生在某实验的成绩
@@ -48,25 +58,37 @@ public class GradeCalculationService {
             return ExperimentGradeResult.ungraded(experimentId, "未知实验");
         }
 
-        // 2. 查询实验步骤（包含占比）
+        // 2. 优先读取学生实验进度汇总
+        StudentExperimentProgress progress = studentExperimentProgressService.getByStudentAndExperiment(
+                experimentId, classCode, studentUsername);
+        if (progress != null) {
+            if (!Boolean.TRUE.equals(progress.getAllRequiredGraded())) {
+                return ExperimentGradeResult.ungraded(experimentId, experiment.getExperimentName());
+            }
+            BigDecimal progressScore = progress.getTotalScore() != null ? progress.getTotalScore() : BigDecimal.ZERO;
+            return ExperimentGradeResult.graded(experimentId, experiment.getExperimentName(),
+                    progressScore.min(new BigDecimal("100")));
+        }
+
+        // 3. 汇总不存在时（如尚无提交），按步骤记录计算
         List<ExperimentalProcedure> procedures = experimentalProcedureService.getByExperimentId(experimentId);
 
-        // 3. 查询学生的步骤答案和得分
+        // 4. 查询学生的步骤答案和得分
         List<StudentExperimentalProcedure> studentProcedures = studentExperimentalProcedureService
                 .getByStudentAndExperiment(studentUsername, classCode, experimentId);
 
-        // 4. 构建步骤ID到学生答案的映射
+        // 5. 构建步骤ID到学生答案的映射
         Map<Long, StudentExperimentalProcedure> studentAnswerMap = new HashMap<>();
         for (StudentExperimentalProcedure sp : studentProcedures) {
             studentAnswerMap.put(sp.getExperimentalProcedureId(), sp);
         }
 
-        // 5. 检查是否有未批改的步骤（占比>0且未批改）
+        // 6. 检查是否有未批改的步骤（占比>0且未批改）
         if (!ScoreCalculationUtil.isAllProceduresGraded(procedures, studentProcedures)) {
             return ExperimentGradeResult.ungraded(experimentId, experiment.getExperimentName());
         }
 
-        // 6. 计算实验成绩（使用工具类）
+        // 7. 计算实验成绩（使用工具类）
         BigDecimal experimentScore = ScoreCalculationUtil.calculateExperimentScore(procedures, studentProcedures);
 
         // 确保分数不超过100
@@ -79,6 +101,7 @@ public class GradeCalculationService {
 
     /**
      * 计算学生在某课程的总成绩
+     * 与批量计算使用同一套步骤和提交记录口径
      *
      * @param courseId         课程ID
      * @param studentUsername  学生用户名
@@ -86,80 +109,176 @@ public class GradeCalculationService {
      * @return 课程成绩结果（包含分数和是否未批改）
      */
     public CourseGradeResult calculateCourseGrade(String courseId, String studentUsername, String classCode) {
-        // 1. 查询课程信息
+        Map<String, List<String>> classStudentsMap = new LinkedHashMap<>();
+        classStudentsMap.put(classCode, List.of(studentUsername));
+        return calculateCourseGrades(courseId, classStudentsMap).get(classCode).get(studentUsername);
+    }
+
+    /**
+     * 批量计算学生在某课程的总成绩（多个班级的学生）
+     * 课程、实验、步骤和提交记录各查询一次，在内存中按班级、学生计算；
+     * 同一学生在多个班级时，每个班级按该班级的提交分别计算
+     *
+     * @param courseId     课程ID
+     * @param classCodes   班级编号列表
+     * @return 班级编号 -> (学生用户名 -> 课程成绩结果) 的映射（按班级和学生顺序）
+     */
+    public Map<String, Map<String, CourseGradeResult>> calculateCourseGrades(String courseId, List<String> classCodes) {
+        if (classCodes == null || classCodes.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        // 查询班级学生
+        List<StudentClassRelation> relations = studentClassRelationService.list(
+                new LambdaQueryWrapper<StudentClassRelation>().in(StudentClassRelation::getClassCode, classCodes));
+        Map<String, List<String>> classStudentsMap = new LinkedHashMap<>();
+        for (String classCode : classCodes) {
+            classStudentsMap.put(classCode, relations.stream()
+                    .filter(relation -> classCode.equals(relation.getClassCode()))
+                    .map(StudentClassRelation::getStudentUsername)
+                    .distinct()
+                    .toList());
+        }
+        Map<String, Map<String, CourseGradeResult>> results = calculateCourseGrades(courseId, classStudentsMap);
+        log.info("批量计算课程成绩完成，课程：{}，班级：{}，学生数：{}", courseId, classCodes,
+                results.values().stream().mapToInt(Map::size).sum());
+        return results;
+    }
+
+    /**
+     * 按班级计算班级内学生的课程成绩
+     *
+     * @param courseId         课程ID
+     * @param classStudentsMap 班级编号 -> 学生用户名列表
+     * @return 班级编号 -> (学生用户名 -> 课程成绩结果)（与 classStudentsMap 顺序一致）
+     */
+    private Map<String, Map<String, CourseGradeResult>> calculateCourseGrades(String courseId,
+                                                                             Map<String, List<String>> classStudentsMap) {
+        Map<String, Map<String, CourseGradeResult>> results = new LinkedHashMap<>();
+        classStudentsMap.keySet().forEach(classCode -> results.put(classCode, new LinkedHashMap<>()));
+        List<String> studentUsernames = classStudentsMap.values().stream()
+                .flatMap(List::stream)
+                .distinct()
+                .toList();
+        if (studentUsernames.isEmpty()) {
+            return results;
+        }
+
+        // 1. 查询课程和课程下所有实验
         com.example.demo.pojo.entity.Course course = courseService.getById(courseId);
         String courseName = course != null ? course.getCourseName() : "未知课程";
+        List<Experiment> experiments = listCourseExperiments(courseId);
+        List<Long> experimentIds = experiments.stream().map(Experiment::getId).toList();
+
+        // 2. 一次查询所有实验步骤和提交记录，按班级、实验分组
+        Map<Long, List<ExperimentalProcedure>> proceduresByExperiment =
+                experimentalProcedureService.getByExperimentIds(experimentIds);
+        Map<String, Map<Long, List<StudentExperimentalProcedure>>> recordsByClass = new HashMap<>();
+        if (!experimentIds.isEmpty()) {
+            List<StudentExperimentalProcedure> records = studentExperimentalProcedureService.list(
+                    new LambdaQueryWrapper<StudentExperimentalProcedure>()
+                            .select(StudentExperimentalProcedure::getExperimentId,
+                                    StudentExperimentalProcedure::getStudentUsername,
+                                    StudentExperimentalProcedure::getClassCode,
+                                    StudentExperimentalProcedure::getExperimentalProcedureId,
+                                    StudentExperimentalProcedure::getAnswer,
+                                    StudentExperimentalProcedure::getScore,
+                                    StudentExperimentalProcedure::getIsGraded)
+                            .in(StudentExperimentalProcedure::getExperimentId, experimentIds)
+                            .in(StudentExperimentalProcedure::getClassCode, classStudentsMap.keySet())
+                            .in(StudentExperimentalProcedure::getStudentUsername, studentUsernames));
+            for (StudentExperimentalProcedure record : records) {
+                recordsByClass.computeIfAbsent(record.getClassCode(), k -> new HashMap<>())
+                        .computeIfAbsent(record.getExperimentId(), k -> new ArrayList<>())
+                        .add(record);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : classStudentsMap.entrySet()) {
+            String classCode = entry.getKey();
+            List<String> classStudents = entry.getValue();
+            Set<String> classStudentSet = new HashSet<>(classStudents);
+            Map<Long, List<StudentExperimentalProcedure>> recordsByExperiment =
+                    recordsByClass.getOrDefault(classCode, Map.of());
+
+            // 3. 每个实验单遍聚合班级内全部学生（只统计学生在本班级的提交）
+            Map<Long, ExperimentStatisticsAggregator> aggregators = new HashMap<>();
+            for (Experiment experiment : experiments) {
+                List<StudentExperimentalProcedure> classRecords = recordsByExperiment
+                        .getOrDefault(experiment.getId(), List.of()).stream()
+                        .filter(record -> classStudentSet.contains(record.getStudentUsername()))
+                        .toList();
+                aggregators.put(experiment.getId(), new ExperimentStatisticsAggregator(
+                        proceduresByExperiment.getOrDefault(experiment.getId(), List.of()), classStudents)
+                        .acceptAll(classRecords));
+            }
+
+            // 4. 组装每个学生的课程成绩
+            Map<String, CourseGradeResult> classResults = results.get(classCode);
+            for (String studentUsername : classStudents) {
+                List<ExperimentResultItem> experimentResults = new ArrayList<>(experiments.size());
+                for (Experiment experiment : experiments) {
+                    ExperimentStatisticsAggregator aggregator = aggregators.get(experiment.getId());
+                    ExperimentGradeResult expResult;
+                    if (!aggregator.isStudentAllRequiredGraded(studentUsername)) {
+                        expResult = ExperimentGradeResult.ungraded(experiment.getId(), experiment.getExperimentName());
+                    } else {
+                        expResult = ExperimentGradeResult.graded(experiment.getId(), experiment.getExperimentName(),
+                                aggregator.getStudentTotalScore(studentUsername).min(MAX_SCORE));
+                    }
+                    ExperimentResultItem item = new ExperimentResultItem();
+                    item.setExperimentId(experiment.getId());
+                    item.setResult(expResult);
+                    experimentResults.add(item);
+                }
+                classResults.put(studentUsername, buildCourseGrade(courseId, courseName, experiments, experimentResults));
+            }
+        }
+        return results;
+    }
 
-        // 2. 查询课程下所有实验
+    /**
+     * 查询课程下所有未删除的实验（按创建时间升序）
+     */
+    private List<Experiment> listCourseExperiments(String courseId) {
         LambdaQueryWrapper<Experiment> experimentQuery = new LambdaQueryWrapper<>();
         experimentQuery.eq(Experiment::getCourseId, courseId)
                 .eq(Experiment::getIsDeleted, false)
                 .orderByAsc(Experiment::getCreatedTime);
-        List<Experiment> experiments = experimentService.list(experimentQuery);
-
-        // 3. 计算每个实验的成绩
-        List<ExperimentResultItem> experimentResults = new ArrayList<>();
-        boolean hasUngradedExperiment = false;
+        return experimentService.list(experimentQuery);
+    }
 
-        for (Experiment experiment : experiments) {
-            ExperimentGradeResult expResult = calculateExperimentGrade(
-                    experiment.getId(), studentUsername, classCode);
-            ExperimentResultItem item = new ExperimentResultItem();
-            item.setExperimentId(experiment.getId());
-            item.setResult(expResult);
-            experimentResults.add(item);
-
-            if (expResult.isUngraded()) {
-                hasUngradedExperiment = true;
+    /**
+     * 根据各实验成绩汇总课程成绩
+     * 课程成绩 = Σ(实验成绩 × 实验占比 / 100)，存在未批改实验时为未批改
+     */
+    private CourseGradeResult buildCourseGrade(String courseId, String courseName, List<Experiment> experiments,
+                                               List<ExperimentResultItem> experimentResults) {
+        for (ExperimentResultItem resultItem : experimentResults) {
+            if (resultItem.getResult().isUngraded()) {
+                return CourseGradeResult.ungraded(courseId, courseName, experimentResults);
             }
         }
 
-        // 4. 如果有未批改的实验，返回未批改结果
-        if (hasUngradedExperiment) {
-            return CourseGradeResult.ungraded(courseId, courseName, experimentResults);
+        Map<Long, Experiment> experimentMap = new HashMap<>(experiments.size() * 2);
+        for (Experiment experiment : experiments) {
+            experimentMap.putIfAbsent(experiment.getId(), experiment);
         }
 
-        // 5. 计算课程成绩 = Σ(实验成绩 × 实验占比 / 100)
         BigDecimal courseScore = BigDecimal.ZERO;
         for (ExperimentResultItem resultItem : experimentResults) {
             ExperimentGradeResult expResult = resultItem.getResult();
-            // 查找对应的实验获取占比
-            Experiment experiment = experiments.stream()
-                    .filter(e -> e.getId().equals(resultItem.getExperimentId()))
-                    .findFirst().orElse(null);
+            Experiment experiment = experimentMap.get(resultItem.getExperimentId());
             if (expResult.getScore() != null && experiment != null && experiment.getPercentage() != null && experiment.getPercentage() > 0) {
-                BigDecimal expScore = expResult.getScore();
                 BigDecimal percentage = new BigDecimal(experiment.getPercentage());
                 // 实验成绩 × 实验占比 / 100
-                BigDecimal weightedScore = expScore.multiply(percentage)
+                BigDecimal weightedScore = expResult.getScore().multiply(percentage)
                         .divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
                 courseScore = courseScore.add(weightedScore);
             }
         }
 
         // 确保分数不超过100
-        if (courseScore.compareTo(new BigDecimal("100")) > 0) {
-            courseScore = new BigDecimal("100");
-        }
-
-        return CourseGradeResult.graded(courseId, courseName, courseScore, experimentResults);
-    }
-
-    /**
-     * 批量计算学生在某课程的总成绩（多个班级的学生）
-     *
-     * @param courseId     课程ID
-     * @param classCodes   班级编号列表
-     * @return 学生用户名 -> 课程成绩结果的映射
-     */
-    public Map<String, CourseGradeResult> calculateCourseGradesForClass(String courseId, List<String> classCodes) {
-        Map<String, CourseGradeResult> results = new HashMap<>();
-
-        for (String classCode : classCodes) {
-            // 查询班级下的所有学生（通过 StudentClassRelation）
-            // 这里需要在调用方处理学生查询
-        }
-
-        return results;
+        return CourseGradeResult.graded(courseId, courseName, courseScore.min(MAX_SCORE), experimentResults);
     }
 }
@@ -0,0 +1,235 @@
+package com.example.demo.service;
+
+import com.example.demo.pojo.entity.ClassExperiment;
+import com.example.demo.pojo.vo.TeacherQrVO;
+import com.example.demo.util.CryptoUtil;
+import com.example.demo.util.QrCodeUtil;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 签到二维码帧服务
+ * 每个正在展示的签到二维码（班级实验 + 教师）在内存中保存当前帧和下一帧，
+ * 后台线程在当前帧过期前预先生成下一帧的密钥和图片，教师端轮询时直接返回内存中的当前帧
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QrFrameService {
+
+    /** 二维码图片格式：PNG（data URI） */
+    public static final String FORMAT_PNG = "png";
+    /** 二维码图片格式：SVG */
+    public static final String FORMAT_SVG = "svg";
+
+    /** 单帧（密钥 + 图片）生成耗时，count/sum 即可得到每秒生成帧数 */
+    private static final Timer FRAME_RENDER_TIMER = Timer.builder("slz.qr.frame.render")
+            .description("签到二维码帧生成耗时")
+            .register(Metrics.globalRegistry);
+
+    private final CryptoUtil cryptoUtil;
+    private final QrCodeUtil qrCodeUtil;
+
+    /** 每帧有效秒数 */
+    @Value("${slz.qr.duration:10}")
+    private Long duration;
+
+    /** 教师端停止轮询后保留帧的时间（秒） */
+    @Value("${slz.qr.frame.idle-seconds:60}")
+    private long idleSeconds;
+
+    /** 后台预生成检查间隔（毫秒） */
+    @Value("${slz.qr.frame.render-interval-ms:500}")
+    private long renderIntervalMs;
+
+    /** PNG 图片边长（像素） */
+    @Value("${slz.qr.frame.png-size:300}")
+    private int pngSize;
+
+    /** 二维码内容前缀，如学生扫码页面地址，为空时二维码内容即为密钥 */
+    @Value("${slz.qr.frame.content-prefix:}")
+    private String contentPrefix;
+
+    /** 班级实验ID|教师用户名 -> 二维码帧序列 */
+    private final Map<String, FrameStream> streams = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "qr-frame-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::renderAhead, renderIntervalMs, renderIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取当前帧
+     * 当前帧过期时切换到已预生成的下一帧，没有可用的下一帧时当场生成
+     *
+     * @param classExperiment 班级实验
+     * @param teacherName     教师用户名
+     * @param format          图片格式（png/svg），为空时只返回密钥
+     * @return 二维码数据
+     */
+    public TeacherQrVO getCurrentFrame(ClassExperiment classExperiment, String teacherName, String format) {
+        long now = System.currentTimeMillis();
+        FrameStream stream = streams.computeIfAbsent(classExperiment.getId() + "|" + teacherName,
+                key -> new FrameStream(classExperiment.getId().toString(), classExperiment.getExperimentId(),
+                        teacherName));
+        stream.lastRequestTime = now;
+        if (FORMAT_PNG.equals(format)) {
+            stream.pngRequested = true;
+        } else if (FORMAT_SVG.equals(format)) {
+            stream.svgRequested = true;
+        }
+
+        QrFrame frame;
+        synchronized (stream) {
+            frame = stream.current;
+            if (frame == null || frame.validUntil <= now) {
+                QrFrame next = stream.next;
+                stream.next = null;
+                frame = next != null && next.validFrom <= now && next.validUntil > now ? next : render(stream, now);
+                stream.current = frame;
+            }
+            // 首次请求某种格式时补齐当前帧的图片
+            renderImages(stream, frame);
+        }
+
+        TeacherQrVO teacherQrVO = new TeacherQrVO();
+        teacherQrVO.setSeconds(Math.max(1, (frame.validUntil - now + 999) / 1000));
+        teacherQrVO.setFileKey(frame.fileKey);
+        teacherQrVO.setExpireTime(toLocalDateTime(frame.validUntil));
+        if (FORMAT_PNG.equals(format)) {
+            teacherQrVO.setImage(frame.image);
+        } else if (FORMAT_SVG.equals(format)) {
+            teacherQrVO.setSvg(frame.svg);
+        }
+        return teacherQrVO;
+    }
+
+    /**
+     * 为每个活跃的帧序列预生成下一帧，并清理停止轮询的帧序列
+     * 生成过程不持有锁，避免阻塞教师端请求
+     */
+    private void renderAhead() {
+        try {
+            long threshold = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleSeconds);
+            streams.values().removeIf(stream -> stream.lastRequestTime < threshold);
+
+            for (FrameStream stream : streams.values()) {
+                QrFrame current = stream.current;
+                if (current == null || stream.next != null) {
+                    continue;
+                }
+                QrFrame next = render(stream, current.validUntil);
+                synchronized (stream) {
+                    if (stream.current == current && stream.next == null) {
+                        stream.next = next;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("预生成签到二维码失败", e);
+        }
+    }
+
+    /**
+     * 生成从指定时间开始生效的一帧
+     */
+    private QrFrame render(FrameStream stream, long validFrom) {
+        long startTime = System.nanoTime();
+
+        TeacherQr teacherQr = new TeacherQr();
+        teacherQr.setTeacherName(stream.teacherName);
+        // 留出 2 秒余量，覆盖学生扫码到提交之间的耗时
+        teacherQr.setEndTime(toLocalDateTime(validFrom).plusSeconds(duration + 2));
+        teacherQr.setClassExperimentId(stream.classExperimentId);
+        teacherQr.setExperimentCode(stream.experimentCode);
+
+        QrFrame frame = new QrFrame(cryptoUtil.encrypt(teacherQr.toString()), validFrom,
+                validFrom + TimeUnit.SECONDS.toMillis(duration));
+        renderImages(stream, frame);
+
+        FRAME_RENDER_TIMER.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return frame;
+    }
+
+    /**
+     * 按帧序列已请求过的格式生成图片
+     */
+    private void renderImages(FrameStream stream, QrFrame frame) {
+        if (stream.pngRequested && frame.image == null) {
+            frame.image = qrCodeUtil.generateQrCodeBase64(contentPrefix + frame.fileKey, pngSize, pngSize);
+        }
+        if (stream.svgRequested && frame.svg == null) {
+            frame.svg = qrCodeUtil.generateQrCodeSvg(contentPrefix + frame.fileKey);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+    }
+
+    /**
+     * 单个班级实验、单个教师的二维码帧序列
+     */
+    private static class FrameStream {
+        private final String classExperimentId;
+        private final String experimentCode;
+        private final String teacherName;
+        private volatile QrFrame current;
+        private volatile QrFrame next;
+        private volatile boolean pngRequested;
+        private volatile boolean svgRequested;
+        private volatile long lastRequestTime = System.currentTimeMillis();
+
+        private FrameStream(String classExperimentId, String experimentCode, String teacherName) {
+            this.classExperimentId = classExperimentId;
+            this.experimentCode = experimentCode;
+            this.teacherName = teacherName;
+        }
+    }
+
+    /**
+     * 二维码帧
+     */
+    private static class QrFrame {
+        private final String fileKey;
+        private final long validFrom;
+        private final long validUntil;
+        private volatile String image;
+        private volatile String svg;
+
+        private QrFrame(String fileKey, long validFrom, long validUntil) {
+            this.fileKey = fileKey;
+            this.validFrom = validFrom;
+            this.validUntil = validUntil;
+        }
+    }
+}
@@ -4,17 +4,14 @@ import com.example.demo.exception.BusinessException;
 import com.example.demo.mapper.ClassExperimentMapper;
 import com.example.demo.pojo.entity.ClassExperiment;
 import com.example.demo.pojo.vo.TeacherQrVO;
-import com.example.demo.util.CryptoUtil;
 import com.example.demo.util.SecurityUtil;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -22,26 +19,25 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class QrService {
 
-    @Value("${slz.qr.duration:10}")
-    private Long duration;
-
-    private final CryptoUtil cryptoUtil;
     private final ClassExperimentMapper classExperimentMapper;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
+    private final AttendanceSessionService attendanceSessionService;
+    private final QrFrameService qrFrameService;
 
     /**
      * 根据班级实验ID获取签到二维码
      *
      * @param classExperimentId 班级实验ID
+     * @param format 图片格式（png/svg），为空时只返回密钥
      * @return 二维码数据
      */
-    public TeacherQrVO getTeacherQrVO(Long classExperimentId) {
+    public TeacherQrVO getTeacherQrVO(Long classExperimentId, String format) {
         ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
         if (classExperiment == null) {
             throw new BusinessException(404, "班级实验不存在");
         }
 
-        return generateQrVO(classExperiment);
+        return generateQrVO(classExperiment, format);
     }
 
     /**
@@ -49,9 +45,10 @@ public class QrService {
      *
      * @param classCode 班级代码
      * @param experimentId 实验ID
+     * @param format 图片格式（png/svg），为空时只返回密钥
      * @return 二维码数据
      */
-    public TeacherQrVO getTeacherQrVOByClassAndExperiment(String classCode, Long experimentId) {
+    public TeacherQrVO getTeacherQrVOByClassAndExperiment(String classCode, Long experimentId, String format) {
         // 通过关联表查询班级实验ID
         List<Long> experimentIds = classExperimentClassRelationService.getExperimentIdsByClassCode(classCode);
 
@@ -59,7 +56,7 @@ public class QrService {
         for (Long id : experimentIds) {
             ClassExperiment ce = classExperimentMapper.selectById(id);
             if (ce != null && ce.getExperimentId().equals(String.valueOf(experimentId))) {
-                return generateQrVO(ce);
+                return generateQrVO(ce, format);
             }
         }
 
@@ -70,22 +67,32 @@ public class QrService {
      * 生成二维码数据
      *
      * @param classExperiment 班级实验
+     * @param format 图片格式
      * @return 二维码数据
      */
-    private TeacherQrVO generateQrVO(ClassExperiment classExperiment) {
-        Optional<String> currentUsername = SecurityUtil.getCurrentUsername();
-        TeacherQr teacherQr = new TeacherQr();
-        currentUsername.ifPresent(teacherQr::setTeacherName);
-        teacherQr.setEndTime(LocalDateTime.now().plusSeconds(duration + 2));
-        // 使用 classExperimentId 而不是 classCode
-        teacherQr.setClassExperimentId(classExperiment.getId().toString());
-        teacherQr.setExperimentCode(classExperiment.getExperimentId());
-
-        TeacherQrVO teacherQrVO = new TeacherQrVO();
-        teacherQrVO.setSeconds(duration);
-        teacherQrVO.setFileKey(cryptoUtil.encrypt(teacherQr.toString()));
-
-        return teacherQrVO;
+    private TeacherQrVO generateQrVO(ClassExperiment classExperiment, String format) {
+        String teacherName = SecurityUtil.getCurrentUsername().orElse(null);
+        return getCurrentFrame(classExperiment, teacherName, format);
+    }
+
+    /**
+     * 获取教师当前展示的二维码帧，供轮询接口和推送通道共用
+     *
+     * @param classExperiment 班级实验
+     * @param teacherName 教师用户名
+     * @param format 图片格式（png/svg），为空时只返回密钥
+     * @return 二维码数据
+     */
+    public TeacherQrVO getCurrentFrame(ClassExperiment classExperiment, String teacherName, String format) {
+        if (format != null && !QrFrameService.FORMAT_PNG.equals(format) && !QrFrameService.FORMAT_SVG.equals(format)) {
+            throw new BusinessException(400, "不支持的二维码格式");
+        }
+
+        // 预先加载签到会话，学生扫码时在内存中校验
+        attendanceSessionService.activate(classExperiment);
+
+        // 当前帧及下一帧由 QrFrameService 在内存中维护
+        return qrFrameService.getCurrentFrame(classExperiment, teacherName, format);
     }
 
 }
@@ -0,0 +1,293 @@
+package com.example.demo.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.example.demo.exception.BusinessException;
+import com.example.demo.listener.StudentClassImportListener;
+import com.example.demo.pojo.ao.RoleAO;
+import com.example.demo.pojo.excel.StudentClassImportExcel;
+import com.example.demo.util.SecurityUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 学生班级导入任务服务
+ * 上传的 Excel 保存到磁盘后在后台线程池中按批次导入，每批独立提交，
+ * 通过任务查询接口获取已处理行数；任务失败时可从最后提交的行之后继续导入
+ * 注意：任务状态只保存在内存中，服务重启后任务记录丢失，无法再查询或续传；
+ * 已提交的批次仍保留在数据库中，可重新上传同一文件导入，已导入的学生和绑定关系不会重复写入
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StudentClassImportJobService {
+
+    private final StudentClassImportService studentClassImportService;
+    private final ThreadPoolTaskExecutor importJobExecutor;
+
+    /** 已结束任务在内存中的保留时间（分钟），过期后删除上传文件 */
+    @Value("${slz.import.job.retain-minutes:120}")
+    private int retainMinutes;
+
+    /** 每个任务保留的错误信息条数上限 */
+    @Value("${slz.import.job.max-error-messages:500}")
+    private int maxErrorMessages;
+
+    /** 导入文件保存目录 */
+    public static final String IMPORT_FILE_PATH = DownloadService.FILE_BASE_PATH + "imports" + File.separator;
+
+    /** Excel 表头行数 */
+    private static final int HEAD_ROW_NUMBER = 1;
+
+    /** 任务状态：排队中 */
+    public static final String STATUS_PENDING = "PENDING";
+    /** 任务状态：导入中 */
+    public static final String STATUS_RUNNING = "RUNNING";
+    /** 任务状态：已完成 */
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    /** 任务状态：失败 */
+    public static final String STATUS_FAILED = "FAILED";
+
+    /** 任务ID -> 任务 */
+    private final Map<Long, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicLong jobIdGenerator = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * 提交导入任务
+     *
+     * @param file   Excel 文件
+     * @param roleAO 提交人角色信息，导入线程中创建班级时作为创建人
+     * @return 导入任务
+     */
+    public ImportJob submit(MultipartFile file, RoleAO roleAO) throws IOException {
+        purgeFinishedJobs();
+
+        String originalFileName = file.getOriginalFilename();
+        String suffix = originalFileName != null && originalFileName.endsWith(".xls") ? ".xls" : ".xlsx";
+        Long jobId = jobIdGenerator.incrementAndGet();
+        File importFile = new File(IMPORT_FILE_PATH + jobId + suffix);
+        Files.createDirectories(importFile.toPath().getParent());
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, importFile.toPath());
+        }
+
+        ImportJob job = new ImportJob(jobId, roleAO, originalFileName, importFile);
+        jobs.put(jobId, job);
+        try {
+            execute(job);
+        } catch (BusinessException e) {
+            jobs.remove(jobId);
+            deleteImportFile(job);
+            throw e;
+        }
+
+        log.info("提交学生班级导入任务，任务：{}，文件：{}，提交人：{}", jobId, originalFileName, roleAO.getUsername());
+        return job;
+    }
+
+    /**
+     * 继续执行失败的导入任务，从最后提交的行之后开始
+     *
+     * @param jobId    任务ID
+     * @param username 当前用户名
+     * @return 导入任务
+     */
+    public ImportJob resume(Long jobId, String username) {
+        ImportJob job = getJob(jobId, username);
+        synchronized (job) {
+            if (!STATUS_FAILED.equals(job.getStatus())) {
+                throw new BusinessException(400, "只有失败的导入任务可以继续执行");
+            }
+            job.status = STATUS_PENDING;
+            job.errorMessage = null;
+            job.finishedTime = null;
+        }
+        try {
+            execute(job);
+        } catch (BusinessException e) {
+            job.status = STATUS_FAILED;
+            job.finishedTime = LocalDateTime.now();
+            throw e;
+        }
+
+        log.info("继续执行学生班级导入任务，任务：{}，从第{}行之后开始", jobId, job.getCommittedRow());
+        return job;
+    }
+
+    /**
+     * 查询导入任务，只能查询自己提交的任务
+     *
+     * @param jobId    任务ID
+     * @param username 当前用户名
+     * @return 导入任务
+     */
+    public ImportJob getJob(Long jobId, String username) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || !job.getUsername().equals(username)) {
+            throw new BusinessException(404, "导入任务不存在或已过期");
+        }
+        return job;
+    }
+
+    private void execute(ImportJob job) {
+        try {
+            importJobExecutor.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException(503, "导入任务过多，请稍后再试");
+        }
+    }
+
+    /**
+     * 执行导入任务，从上次提交的行之后开始读取
+     */
+    private void runJob(ImportJob job) {
+        job.status = STATUS_RUNNING;
+        SecurityUtil.setRoleAO(job.roleAO);
+        try {
+            StudentClassImportListener.ProgressListener progressListener =
+                    new StudentClassImportListener.ProgressListener() {
+                        @Override
+                        public void onTotalRows(int totalRows) {
+                            job.totalRows = Math.max(0, totalRows - HEAD_ROW_NUMBER);
+                        }
+
+                        @Override
+                        public void onRowProcessed(int rowNum) {
+                            job.processedRows = rowNum - HEAD_ROW_NUMBER;
+                        }
+
+                        @Override
+                        public void onChunkCommitted(int rowNum) {
+                            job.committedRow = rowNum;
+                        }
+                    };
+            StudentClassImportListener listener = new StudentClassImportListener(studentClassImportService,
+                    studentClassImportService.getChunkSize(), job.committedRow, progressListener);
+
+            EasyExcel.read(job.getFile(), StudentClassImportExcel.class, listener)
+                    .sheet()
+                    .doRead();
+
+            job.addResult(listener.getResult(), listener.getRolledBackCount(), maxErrorMessages);
+            if (listener.isFailed()) {
+                job.errorMessage = "第" + job.getCommittedRow() + "行之后的数据导入失败，可继续执行";
+                job.status = STATUS_FAILED;
+            } else {
+                // 总行数为估算值，完成后以实际读取的行数为准
+                job.totalRows = job.processedRows;
+                job.status = STATUS_COMPLETED;
+                deleteImportFile(job);
+            }
+            log.info("学生班级导入任务结束，任务：{}，状态：{}，已提交到第{}行", job.getJobId(), job.getStatus(),
+                    job.getCommittedRow());
+        } catch (Exception e) {
+            log.error("学生班级导入任务失败，任务：{}", job.getJobId(), e);
+            job.errorMessage = e instanceof BusinessException ? e.getMessage() : "导入失败";
+            job.status = STATUS_FAILED;
+        } finally {
+            SecurityUtil.clearRoleAO();
+            job.finishedTime = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 清理保留时间之外的已结束任务及其上传文件
+     */
+    private void purgeFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(retainMinutes);
+        jobs.values().removeIf(job -> {
+            if (job.getFinishedTime() == null || !job.getFinishedTime().isBefore(threshold)) {
+                return false;
+            }
+            deleteImportFile(job);
+            return true;
+        });
+    }
+
+    private void deleteImportFile(ImportJob job) {
+        try {
+            Files.deleteIfExists(job.getFile().toPath());
+        } catch (IOException e) {
+            log.warn("删除导入文件失败：{}", job.getFile(), e);
+        }
+    }
+
+    /**
+     * 导入任务
+     * 导入统计在每次执行结束后累加，继续执行时不会重复统计已提交的批次
+     */
+    @Getter
+    public static class ImportJob {
+        private final Long jobId;
+        private final String username;
+        private final String fileName;
+        private final File file;
+        private final LocalDateTime createdTime = LocalDateTime.now();
+        private final List<String> errorMessages = Collections.synchronizedList(new ArrayList<>());
+        @Getter(AccessLevel.NONE)
+        private final RoleAO roleAO;
+        private volatile String status = STATUS_PENDING;
+        /** 估算的数据总行数 */
+        private volatile int totalRows;
+        /** 已读取处理的数据行数 */
+        private volatile int processedRows;
+        /** 已提交的最后一行行号（Excel 行号，含表头） */
+        private volatile int committedRow;
+        private volatile int studentSuccessCount;
+        private volatile int studentDuplicateCount;
+        private volatile int studentFailCount;
+        private volatile int classSuccessCount;
+        private volatile int classDuplicateCount;
+        private volatile int classFailCount;
+        private volatile int bindSuccessCount;
+        private volatile int bindFailCount;
+        private volatile String errorMessage;
+        private volatile LocalDateTime finishedTime;
+
+        private ImportJob(Long jobId, RoleAO roleAO, String fileName, File file) {
+            this.jobId = jobId;
+            this.roleAO = roleAO;
+            this.username = roleAO.getUsername();
+            this.fileName = fileName;
+            this.file = file;
+        }
+
+        private void addResult(StudentClassImportListener.ImportResult result, int rolledBackCount,
+                               int maxErrorMessages) {
+            studentSuccessCount += result.getStudentSuccessCount();
+            studentDuplicateCount += result.getStudentDuplicateCount();
+            // 回滚的行在继续执行时重新导入，不计入失败数
+            studentFailCount += result.getStudentFailCount() - rolledBackCount;
+            classSuccessCount += result.getClassSuccessCount();
+            classDuplicateCount += result.getClassDuplicateCount();
+            classFailCount += result.getClassFailCount();
+            bindSuccessCount += result.getBindSuccessCount();
+            bindFailCount += result.getBindFailCount();
+            for (String message : result.getErrorMessages()) {
+                if (errorMessages.size() >= maxErrorMessages) {
+                    break;
+                }
+                errorMessages.add(message);
+            }
+        }
+    }
+}
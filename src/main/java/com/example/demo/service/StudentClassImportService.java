@@ -1,17 +1,18 @@
 package com.example.demo.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.UserMapper;
 import com.example.demo.pojo.entity.Class;
+import com.example.demo.pojo.entity.StudentClassRelation;
+import com.example.demo.pojo.entity.User;
 import com.example.demo.pojo.excel.StudentClassImportExcel;
 import com.example.demo.pojo.request.BatchAddClassRequest;
 import com.example.demo.pojo.request.BatchAddUserRequest;
-import com.example.demo.pojo.request.BatchBindStudentsRequest;
 import com.example.demo.pojo.response.BatchAddClassResponse;
 import com.example.demo.pojo.response.BatchAddUserResponse;
-import com.example.demo.pojo.response.BatchBindStudentsResponse;
 import com.example.demo.pojo.response.BatchImportStudentClassResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,12 +22,10 @@ import java.util.stream.Collectors;
 /**
  * 学生班级导入服务
  * 提供学生和班级信息批量导入的业务逻辑处理
- * 优化后的流程：
- * 1. 提取所有唯一班级，自动生成班级编号
- * 2. 构建班级编号 → 学生用户名列表的映射
- * 3. 批量插入所有学生
- * 4. 批量插入所有班级
- * 5. 批量插入所有绑定关系
+ * 导入按批次流式进行，每批数据在一个事务中完成：
+ * 1. 解析班级名称对应的班级编号（已解析的班级在整个导入过程中复用），不存在的班级自动生成编号并创建
+ * 2. 批量插入学生
+ * 3. 批量插入绑定关系
  */
 @Slf4j
 @Service
@@ -36,267 +35,209 @@ public class StudentClassImportService {
     private final ClassService classService;
     private final StudentClassRelationService relationService;
     private final com.example.demo.mapper.ClassMapper classMapper;
+    private final UserMapper userMapper;
+
+    /** 每批导入的行数 */
+    @Value("${slz.import.chunk-size:500}")
+    private int chunkSize;
 
     public StudentClassImportService(AuthService authService,
                                       ClassService classService,
                                       StudentClassRelationService relationService,
-                                      com.example.demo.mapper.ClassMapper classMapper) {
+                                      com.example.demo.mapper.ClassMapper classMapper,
+                                      UserMapper userMapper) {
         this.authService = authService;
         this.classService = classService;
         this.relationService = relationService;
         this.classMapper = classMapper;
+        this.userMapper = userMapper;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
     }
 
     /**
-     * 批量导入学生和班级信息（优化后的流程）
-     * 注意：不使用全局事务，各子操作（导入班级、导入学生、绑定关系）各自独立事务
-     * 这样即使部分数据失败，已成功的数据也不会回滚
+     * 导入一批数据，整批在一个事务中提交
+     * 批次之间共用班级名称 → 班级编号缓存；批次失败回滚时导入随之终止，缓存不再使用
      *
-     * @param dataList Excel数据列表
-     * @return 导入结果统计
+     * @param dataList       本批 Excel 数据（已校验必填字段）
+     * @param classCodeCache 班级名称 → 班级编号缓存
+     * @return 本批导入结果统计
      */
-    public BatchImportStudentClassResponse batchImportStudentWithClass(
-            List<StudentClassImportExcel> dataList) {
-
+    @Transactional(rollbackFor = Exception.class)
+    public BatchImportStudentClassResponse importChunk(List<StudentClassImportExcel> dataList,
+                                                       Map<String, String> classCodeCache) {
         BatchImportStudentClassResponse response = new BatchImportStudentClassResponse();
 
-        log.info("开始批量导入学生和班级，共 {} 条数据", dataList.size());
-
-        // ========== 第一步：提取所有唯一班级 ==========
-        Set<String> uniqueClassNames = dataList.stream()
-                .map(StudentClassImportExcel::getClassName)
-                .map(String::trim)
-                .collect(Collectors.toSet());
-
-        log.info("提取到 {} 个唯一班级", uniqueClassNames.size());
-
-        // ========== 第二步：检查哪些班级已存在，生成班级编号映射 ==========
-        Map<String, String> classNameToCodeMap = new LinkedHashMap<>();
-        List<String> newClassNames = new ArrayList<>();
-
-        // 先检查每个班级是否已存在
-        for (String className : uniqueClassNames) {
-            LambdaQueryWrapper<com.example.demo.pojo.entity.Class> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(com.example.demo.pojo.entity.Class::getClassName, className);
-            queryWrapper.last("LIMIT 1");
-            com.example.demo.pojo.entity.Class existingClass = classService.getOne(queryWrapper);
-
-            if (existingClass != null) {
-                // 班级已存在，直接使用现有班级编号
-                classNameToCodeMap.put(className, existingClass.getClassCode());
-                response.setClassDuplicateCount(response.getClassDuplicateCount() + 1);
-                log.info("班级 [{}] 已存在，使用现有编号: {}", className, existingClass.getClassCode());
-            } else {
-                // 班级不存在，记录下来稍后生成编号
-                newClassNames.add(className);
-            }
+        // ========== 第一步：解析本批涉及的班级 ==========
+        resolveClassCodes(dataList, classCodeCache, response);
+
+        // ========== 第二步：批量插入学生 ==========
+        List<BatchAddUserRequest> studentRequests = new ArrayList<>(dataList.size());
+        for (StudentClassImportExcel excelData : dataList) {
+            BatchAddUserRequest userRequest = new BatchAddUserRequest();
+            userRequest.setUsername(excelData.getUsername().trim());
+            userRequest.setName(excelData.getName().trim());
+            userRequest.setRole("student");
+            userRequest.setDepartment(excelData.getDepartment() != null ?
+                    excelData.getDepartment().trim() : null);
+            userRequest.setMajor(excelData.getMajor() != null ?
+                    excelData.getMajor().trim() : null);
+            studentRequests.add(userRequest);
         }
 
-        // 一次性生成所有新班级的编号（确保连续）
-        if (!newClassNames.isEmpty()) {
-            // 获取当前最大班级ID（包括已逻辑删除的记录）
-            Long maxId = classMapper.selectMaxId();
-
-            int nextNum = 1;
-            if (maxId != null) {
-                // 直接使用ID作为编号
-                nextNum = maxId.intValue() + 1;
-            }
-
-            // 为每个新班级生成连续编号
-            for (String className : newClassNames) {
-                String classCode = String.format("CLASS%06d", nextNum++);
-                classNameToCodeMap.put(className, classCode);
-                log.info("班级 [{}] 生成编号: {}", className, classCode);
-            }
+        BatchAddUserResponse userResponse = authService.batchAddUsers(studentRequests);
+        response.setStudentSuccessCount(response.getStudentSuccessCount() + userResponse.getSuccessCount());
+        response.setStudentDuplicateCount(response.getStudentDuplicateCount() + userResponse.getDuplicateCount());
+        response.setStudentFailCount(response.getStudentFailCount() + userResponse.getFailCount());
+        if (userResponse.getFailedUsers() != null) {
+            userResponse.getFailedUsers().forEach(fail -> response.getErrorMessages().add(String.format(
+                    "学生导入失败 [用户名:%s] - %s", fail.getUsername(), fail.getReason())));
         }
 
-        // ========== 第三步：构建班级编号 → 学生信息列表的映射 ==========
-        Map<String, List<StudentClassImportExcel>> classToStudentsMap = dataList.stream()
-                .collect(Collectors.groupingBy(
-                        data -> data.getClassName().trim(),
-                        LinkedHashMap::new,
-                        Collectors.toList()
-                ));
+        // ========== 第三步：批量插入绑定关系 ==========
+        bindStudents(dataList, classCodeCache, response);
+
+        log.info("批次导入完成（{} 行） - 学生成功:{} 重复:{} 失败:{} | 班级成功:{} 重复:{} 失败:{} | 绑定成功:{} 失败:{}",
+                dataList.size(),
+                response.getStudentSuccessCount(), response.getStudentDuplicateCount(), response.getStudentFailCount(),
+                response.getClassSuccessCount(), response.getClassDuplicateCount(), response.getClassFailCount(),
+                response.getBindSuccessCount(), response.getBindFailCount());
 
-        // ========== 第四步：批量插入所有班级 ==========
-        List<BatchAddClassRequest.ClassInfo> newClasses = new ArrayList<>();
-        for (Map.Entry<String, String> entry : classNameToCodeMap.entrySet()) {
-            String className = entry.getKey();
-            String classCode = entry.getValue();
+        return response;
+    }
 
-            // 检查班级是否真的需要新建
-            LambdaQueryWrapper<com.example.demo.pojo.entity.Class> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(com.example.demo.pojo.entity.Class::getClassCode, classCode);
-            com.example.demo.pojo.entity.Class existing = classService.getOne(queryWrapper);
+    /**
+     * 解析班级编号：先查缓存，再用一次 IN 查询查找已存在的班级，剩余的班级生成连续编号后批量创建
+     */
+    private void resolveClassCodes(List<StudentClassImportExcel> dataList, Map<String, String> classCodeCache,
+                                   BatchImportStudentClassResponse response) {
+        Set<String> unresolvedClassNames = dataList.stream()
+                .map(data -> data.getClassName().trim())
+                .filter(className -> !classCodeCache.containsKey(className))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (unresolvedClassNames.isEmpty()) {
+            return;
+        }
 
-            if (existing == null) {
-                BatchAddClassRequest.ClassInfo classInfo = new BatchAddClassRequest.ClassInfo();
-                classInfo.setClassCode(classCode);
-                classInfo.setClassName(className);
-                newClasses.add(classInfo);
-            } else {
+        for (Class existingClass : selectClassesByName(unresolvedClassNames)) {
+            if (unresolvedClassNames.remove(existingClass.getClassName())) {
+                classCodeCache.put(existingClass.getClassName(), existingClass.getClassCode());
                 response.setClassDuplicateCount(response.getClassDuplicateCount() + 1);
-                log.info("班级已存在，跳过: {}", classCode);
+                log.info("班级 [{}] 已存在，使用现有编号: {}", existingClass.getClassName(), existingClass.getClassCode());
             }
         }
-
-        // 批量创建班级
-        if (!newClasses.isEmpty()) {
-            BatchAddClassRequest classRequest = new BatchAddClassRequest();
-            classRequest.setClasses(newClasses);
-
-            BatchAddClassResponse classResponse = classService.batchAddClasses(classRequest);
-            response.setClassSuccessCount(response.getClassSuccessCount() + classResponse.getSuccessCount());
-            response.setClassFailCount(response.getClassFailCount() + classResponse.getFailCount());
-
-            log.info("批量导入班级完成 - 成功:{} 失败:{}",
-                    classResponse.getSuccessCount(), classResponse.getFailCount());
+        if (unresolvedClassNames.isEmpty()) {
+            return;
         }
 
-        // ========== 第五步：批量插入所有学生 ==========
-        // 定义批次大小
-        final int STUDENT_BATCH_SIZE = 100;
-
-        // 收集所有需要导入的学生信息
-        List<BatchAddUserRequest> allStudentRequests = new ArrayList<>();
-        // 用于记录学生所属的班级（用户名 -> 班级编号）
-        Map<String, String> studentToClassMap = new LinkedHashMap<>();
-
-        for (Map.Entry<String, List<StudentClassImportExcel>> entry : classToStudentsMap.entrySet()) {
-            String className = entry.getKey();
-            String classCode = classNameToCodeMap.get(className);
-            List<StudentClassImportExcel> students = entry.getValue();
-
-            for (StudentClassImportExcel excelData : students) {
-                // 转换为用户请求
-                BatchAddUserRequest userRequest = new BatchAddUserRequest();
-                userRequest.setUsername(excelData.getUsername().trim());
-                userRequest.setName(excelData.getName().trim());
-                userRequest.setRole("student");
-                userRequest.setDepartment(excelData.getDepartment() != null ?
-                        excelData.getDepartment().trim() : null);
-                userRequest.setMajor(excelData.getMajor() != null ?
-                        excelData.getMajor().trim() : null);
-
-                allStudentRequests.add(userRequest);
-                studentToClassMap.put(userRequest.getUsername(), classCode);
-            }
+        // 一次性生成所有新班级的编号（确保连续），最大ID包括已逻辑删除的记录
+        Long maxId = classMapper.selectMaxId();
+        int nextNum = maxId != null ? maxId.intValue() + 1 : 1;
+
+        List<BatchAddClassRequest.ClassInfo> newClasses = new ArrayList<>(unresolvedClassNames.size());
+        for (String className : unresolvedClassNames) {
+            BatchAddClassRequest.ClassInfo classInfo = new BatchAddClassRequest.ClassInfo();
+            classInfo.setClassCode(String.format("CLASS%06d", nextNum++));
+            classInfo.setClassName(className);
+            newClasses.add(classInfo);
+            log.info("班级 [{}] 生成编号: {}", className, classInfo.getClassCode());
         }
 
-        log.info("准备导入 {} 个学生，按批次处理（每批 {} 个）", allStudentRequests.size(), STUDENT_BATCH_SIZE);
-
-        // 按批次导入学生
-        List<List<BatchAddUserRequest>> studentBatches = partitionList(allStudentRequests, STUDENT_BATCH_SIZE);
-
-        for (List<BatchAddUserRequest> batch : studentBatches) {
-            try {
-                BatchAddUserResponse userResponse = authService.batchAddUsers(batch);
-
-                response.setStudentSuccessCount(response.getStudentSuccessCount() + userResponse.getSuccessCount());
-                response.setStudentDuplicateCount(response.getStudentDuplicateCount() + userResponse.getDuplicateCount());
-                response.setStudentFailCount(response.getStudentFailCount() + userResponse.getFailCount());
-
-                // 收集失败信息
-                if (userResponse.getFailedUsers() != null) {
-                    userResponse.getFailedUsers().forEach(fail -> {
-                        response.getErrorMessages().add(String.format(
-                                "学生导入失败 [用户名:%s] - %s",
-                                fail.getUsername(), fail.getReason()
-                        ));
-                    });
-                }
-
-                log.info("批次导入学生完成 - 成功:{} 重复:{} 失败:{}",
-                        userResponse.getSuccessCount(), userResponse.getDuplicateCount(), userResponse.getFailCount());
-
-            } catch (Exception e) {
-                log.error("批次导入学生异常", e);
-                response.setStudentFailCount(response.getStudentFailCount() + batch.size());
-                response.getErrorMessages().add("批次导入学生异常: " + e.getMessage());
-            }
+        BatchAddClassRequest classRequest = new BatchAddClassRequest();
+        classRequest.setClasses(newClasses);
+        BatchAddClassResponse classResponse = classService.batchAddClasses(classRequest);
+        response.setClassSuccessCount(response.getClassSuccessCount() + classResponse.getSuccessCount());
+        response.setClassFailCount(response.getClassFailCount() + classResponse.getFailCount());
+
+        classResponse.getSuccessList().forEach(result -> classCodeCache.put(result.getClassName(), result.getClassCode()));
+        if (!classResponse.getFailList().isEmpty()) {
+            // 创建失败的班级可能已被同时创建，按名称再查一次
+            Set<String> failedClassNames = classResponse.getFailList().stream()
+                    .map(BatchAddClassResponse.ClassResult::getClassName)
+                    .collect(Collectors.toSet());
+            selectClassesByName(failedClassNames)
+                    .forEach(clazz -> classCodeCache.put(clazz.getClassName(), clazz.getClassCode()));
+            classResponse.getFailList().forEach(fail -> response.getErrorMessages().add(String.format(
+                    "班级创建失败 [班级:%s] - %s", fail.getClassName(), fail.getMessage())));
         }
 
-        // ========== 第六步：按班级收集学生用户名，准备批量绑定 ==========
-        Map<String, List<String>> classToStudentUsernamesMap = new LinkedHashMap<>();
-
-        for (Map.Entry<String, List<StudentClassImportExcel>> entry : classToStudentsMap.entrySet()) {
-            String className = entry.getKey();
-            String classCode = classNameToCodeMap.get(className);
-            List<StudentClassImportExcel> students = entry.getValue();
+        log.info("批量导入班级完成 - 成功:{} 失败:{}", classResponse.getSuccessCount(), classResponse.getFailCount());
+    }
 
-            List<String> studentUsernames = new ArrayList<>();
-            for (StudentClassImportExcel excelData : students) {
-                studentUsernames.add(excelData.getUsername().trim());
+    /**
+     * 绑定本批学生到班级：一次查询存在的学生，一次查询已有的绑定关系，新关系批量插入
+     */
+    private void bindStudents(List<StudentClassImportExcel> dataList, Map<String, String> classCodeCache,
+                              BatchImportStudentClassResponse response) {
+        // (学生用户名, 班级编号) 绑定关系，同一学生可绑定多个班级；本批内重复的行只处理一次
+        Set<Map.Entry<String, String>> studentClassPairs = new LinkedHashSet<>();
+        for (StudentClassImportExcel data : dataList) {
+            String className = data.getClassName().trim();
+            String classCode = classCodeCache.get(className);
+            String username = data.getUsername().trim();
+            if (classCode == null) {
+                response.setBindFailCount(response.getBindFailCount() + 1);
+                response.getErrorMessages().add(String.format(
+                        "绑定失败 [用户名:%s, 班级:%s] - 班级不存在", username, className));
+                continue;
             }
-
-            classToStudentUsernamesMap.put(classCode, studentUsernames);
+            studentClassPairs.add(Map.entry(username, classCode));
+        }
+        if (studentClassPairs.isEmpty()) {
+            return;
         }
 
-        log.info("准备为 {} 个班级绑定学生关系", classToStudentUsernamesMap.size());
+        Set<String> usernames = studentClassPairs.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+        Set<String> classCodes = studentClassPairs.stream().map(Map.Entry::getValue).collect(Collectors.toSet());
+        Set<String> existingStudents = userMapper.selectExistingUsernames(usernames).stream()
+                .filter(user -> !Integer.valueOf(1).equals(user.getIsDeleted()))
+                .map(User::getUsername)
+                .collect(Collectors.toSet());
+
+        LambdaQueryWrapper<StudentClassRelation> relationQuery = new LambdaQueryWrapper<>();
+        relationQuery.select(StudentClassRelation::getStudentUsername, StudentClassRelation::getClassCode)
+                .in(StudentClassRelation::getStudentUsername, usernames)
+                .in(StudentClassRelation::getClassCode, classCodes);
+        Set<Map.Entry<String, String>> existingRelations = relationService.list(relationQuery).stream()
+                .map(relation -> Map.entry(relation.getStudentUsername(), relation.getClassCode()))
+                .collect(Collectors.toSet());
 
-        // ========== 第七步：批量插入所有绑定关系（按班级分批）==========
-        for (Map.Entry<String, List<String>> entry : classToStudentUsernamesMap.entrySet()) {
-            String classCode = entry.getKey();
-            List<String> studentUsernames = entry.getValue();
+        List<StudentClassRelation> newRelations = new ArrayList<>(studentClassPairs.size());
+        for (Map.Entry<String, String> pair : studentClassPairs) {
+            String studentUsername = pair.getKey();
+            String classCode = pair.getValue();
 
-            if (studentUsernames.isEmpty()) {
-                log.info("班级 [{}] 没有需要绑定的学生", classCode);
+            String failMessage = null;
+            if (!existingStudents.contains(studentUsername)) {
+                failMessage = "学生不存在";
+            } else if (existingRelations.contains(pair)) {
+                failMessage = "学生已绑定到该班级";
+            }
+            if (failMessage != null) {
+                response.setBindFailCount(response.getBindFailCount() + 1);
+                response.getErrorMessages().add(String.format(
+                        "绑定失败 [用户名:%s, 班级:%s] - %s", studentUsername, classCode, failMessage));
                 continue;
             }
 
-            try {
-                BatchBindStudentsRequest bindRequest = new BatchBindStudentsRequest();
-                bindRequest.setClassCode(classCode);
-                bindRequest.setStudentUsernames(studentUsernames);
-
-                BatchBindStudentsResponse bindResponse =
-                        relationService.batchBindStudents(bindRequest);
-
-                response.setBindSuccessCount(response.getBindSuccessCount() + bindResponse.getSuccessCount());
-                response.setBindFailCount(response.getBindFailCount() + bindResponse.getFailCount());
-
-                // 收集绑定失败的错误信息
-                if (bindResponse.getFailList() != null) {
-                    bindResponse.getFailList().forEach(fail -> {
-                        response.getErrorMessages().add(String.format(
-                                "绑定失败 [用户名:%s, 班级:%s] - %s",
-                                fail.getStudentUsername(), classCode, fail.getMessage()
-                        ));
-                    });
-                }
-
-                log.info("班级 [{}] 绑定完成 - 成功:{} 失败:{}",
-                        classCode, bindResponse.getSuccessCount(), bindResponse.getFailCount());
-
-            } catch (Exception e) {
-                log.error("批量绑定学生到班级异常: {}", classCode, e);
-                response.setBindFailCount(response.getBindFailCount() + studentUsernames.size());
-                response.getErrorMessages().add("批量绑定异常 [班级:" + classCode + "] - " + e.getMessage());
-            }
+            StudentClassRelation relation = new StudentClassRelation();
+            relation.setStudentUsername(studentUsername);
+            relation.setClassCode(classCode);
+            newRelations.add(relation);
         }
 
-        log.info("批量导入完成 - 学生成功:{} 重复:{} 失败:{} | 班级成功:{} 重复:{} 失败:{} | 绑定成功:{} 失败:{}",
-                response.getStudentSuccessCount(), response.getStudentDuplicateCount(), response.getStudentFailCount(),
-                response.getClassSuccessCount(), response.getClassDuplicateCount(), response.getClassFailCount(),
-                response.getBindSuccessCount(), response.getBindFailCount());
-
-        return response;
+        if (!newRelations.isEmpty()) {
+            relationService.saveBatch(newRelations);
+            response.setBindSuccessCount(response.getBindSuccessCount() + newRelations.size());
+        }
     }
 
-    /**
-     * 将列表分割成指定大小的批次
-     *
-     * @param list     原始列表
-     * @param batchSize 批次大小
-     * @param <T>      列表元素类型
-     * @return 批次列表
-     */
-    private <T> List<List<T>> partitionList(List<T> list, int batchSize) {
-        List<List<T>> batches = new ArrayList<>();
-        for (int i = 0; i < list.size(); i += batchSize) {
-            batches.add(list.subList(i, Math.min(i + batchSize, list.size())));
-        }
-        return batches;
+    private List<Class> selectClassesByName(Collection<String> classNames) {
+        LambdaQueryWrapper<Class> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(Class::getClassName, Class::getClassCode)
+                .in(Class::getClassName, classNames);
+        return classMapper.selectList(queryWrapper);
     }
 }
@@ -0,0 +1,430 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.demo.exception.BusinessException;
+import com.example.demo.mapper.ClassExperimentMapper;
+import com.example.demo.mapper.StudentClassRelationMapper;
+import com.example.demo.mapper.StudentExperimentProgressMapper;
+import com.example.demo.mapper.StudentExperimentalProcedureMapper;
+import com.example.demo.pojo.entity.ClassExperiment;
+import com.example.demo.pojo.entity.ClassExperimentClassRelation;
+import com.example.demo.pojo.entity.ExperimentalProcedure;
+import com.example.demo.pojo.entity.StudentClassRelation;
+import com.example.demo.pojo.entity.StudentExperimentProgress;
+import com.example.demo.pojo.entity.StudentExperimentalProcedure;
+import com.example.demo.util.ExperimentStatisticsAggregator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 学生实验进度汇总服务
+ * 维护 (班级实验, 学生) 粒度的完成数、批改数和加权总分
+ * 学生提交、系统批改、教师批改后按学生增量刷新；步骤新增、删除或占比变化后按实验重建，
+ * 并提供按课次重建的一致性校验
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StudentExperimentProgressService
+        extends ServiceImpl<StudentExperimentProgressMapper, StudentExperimentProgress> {
+
+    private final ExperimentalProcedureService experimentalProcedureService;
+    private final StudentExperimentalProcedureMapper studentExperimentalProcedureMapper;
+    private final StudentClassRelationMapper studentClassRelationMapper;
+    private final ClassExperimentMapper classExperimentMapper;
+    private final ClassExperimentClassRelationService classExperimentClassRelationService;
+
+    /** 自身代理，保证内部调用的重建方法在事务中执行 */
+    @Lazy
+    @Autowired
+    private StudentExperimentProgressService self;
+
+    /**
+     * 按提交记录刷新所属学生的实验进度
+     *
+     * @param submission 学生步骤提交记录
+     */
+    public void refresh(StudentExperimentalProcedure submission) {
+        Long classExperimentId = submission.getClassExperimentId();
+        if (classExperimentId == null) {
+            // 历史数据未落课次ID，按班级和实验回查
+            classExperimentId = resolveClassExperimentId(submission.getClassCode(), submission.getExperimentId());
+            if (classExperimentId == null) {
+                log.warn("提交记录 {} 未找到对应课次，跳过进度刷新", submission.getId());
+                return;
+            }
+        }
+        refresh(classExperimentId, submission.getExperimentId(), submission.getClassCode(),
+                submission.getStudentUsername());
+    }
+
+    /**
+     * 重新计算并保存单个学生的实验进度
+     *
+     * @param classExperimentId 班级实验ID
+     * @param experimentId      实验ID
+     * @param classCode         班级编号
+     * @param studentUsername   学生用户名
+     * @return 最新进度
+     */
+    public StudentExperimentProgress refresh(Long classExperimentId, Long experimentId,
+                                             String classCode, String studentUsername) {
+        List<ExperimentalProcedure> procedures = experimentalProcedureService.getByExperimentId(experimentId);
+        List<StudentExperimentalProcedure> records = studentExperimentalProcedureMapper.selectList(
+                new LambdaQueryWrapper<StudentExperimentalProcedure>()
+                        .eq(StudentExperimentalProcedure::getExperimentId, experimentId)
+                        .eq(StudentExperimentalProcedure::getStudentUsername, studentUsername)
+                        .eq(StudentExperimentalProcedure::getClassCode, classCode));
+
+        ExperimentStatisticsAggregator aggregator =
+                new ExperimentStatisticsAggregator(procedures, List.of(studentUsername)).acceptAll(records);
+        StudentExperimentProgress progress =
+                buildProgress(classExperimentId, experimentId, classCode, studentUsername, aggregator);
+
+        StudentExperimentProgress existing = getOne(new LambdaQueryWrapper<StudentExperimentProgress>()
+                .eq(StudentExperimentProgress::getClassExperimentId, classExperimentId)
+                .eq(StudentExperimentProgress::getStudentUsername, studentUsername), false);
+        if (existing != null) {
+            progress.setId(existing.getId());
+            updateById(progress);
+            return progress;
+        }
+        try {
+            save(progress);
+        } catch (DuplicateKeyException e) {
+            // 并发提交时另一请求已插入，改为更新
+            StudentExperimentProgress inserted = getOne(new LambdaQueryWrapper<StudentExperimentProgress>()
+                    .eq(StudentExperimentProgress::getClassExperimentId, classExperimentId)
+                    .eq(StudentExperimentProgress::getStudentUsername, studentUsername), false);
+            if (inserted != null) {
+                progress.setId(inserted.getId());
+                updateById(progress);
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * 按课次重建全部学生的实验进度
+     * 与现有汇总逐条比对，返回不一致的数量，可用于一致性校验
+     *
+     * @param classExperimentId 班级实验ID
+     * @return 重建结果统计
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public RebuildSummary rebuild(Long classExperimentId) {
+        ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
+        if (classExperiment == null) {
+            throw new BusinessException(404, "班级实验不存在");
+        }
+        Long experimentId = Long.parseLong(classExperiment.getExperimentId());
+
+        List<String> classCodes = classExperimentClassRelationService.getClassCodesByExperimentId(classExperimentId);
+        if (classCodes == null || classCodes.isEmpty()) {
+            throw new BusinessException(404, "班级实验未关联任何班级");
+        }
+        return rebuild(classExperimentId, experimentId, classCodes);
+    }
+
+    private RebuildSummary rebuild(Long classExperimentId, Long experimentId, List<String> classCodes) {
+        Map<String, String> studentClassMap = loadStudentClassMap(classCodes, null);
+        List<StudentExperimentalProcedure> records = studentExperimentalProcedureMapper.selectList(
+                new LambdaQueryWrapper<StudentExperimentalProcedure>()
+                        .eq(StudentExperimentalProcedure::getExperimentId, experimentId)
+                        .in(StudentExperimentalProcedure::getClassCode, classCodes));
+        Collection<StudentExperimentProgress> progresses =
+                computeProgress(classExperimentId, experimentId, studentClassMap, records).values();
+
+        Map<String, StudentExperimentProgress> existingMap = new HashMap<>();
+        for (StudentExperimentProgress existing : list(new LambdaQueryWrapper<StudentExperimentProgress>()
+                .eq(StudentExperimentProgress::getClassExperimentId, classExperimentId))) {
+            existingMap.putIfAbsent(existing.getStudentUsername(), existing);
+        }
+
+        RebuildSummary summary = new RebuildSummary();
+        List<StudentExperimentProgress> toInsert = new ArrayList<>();
+        List<StudentExperimentProgress> toUpdate = new ArrayList<>();
+        for (StudentExperimentProgress progress : progresses) {
+            StudentExperimentProgress existing = existingMap.remove(progress.getStudentUsername());
+            summary.setStudentCount(summary.getStudentCount() + 1);
+            if (existing == null) {
+                summary.setMismatchedCount(summary.getMismatchedCount() + 1);
+                toInsert.add(progress);
+            } else if (!isSameProgress(existing, progress)) {
+                summary.setMismatchedCount(summary.getMismatchedCount() + 1);
+                progress.setId(existing.getId());
+                toUpdate.add(progress);
+            }
+        }
+
+        if (!toInsert.isEmpty()) {
+            saveBatch(toInsert);
+        }
+        if (!toUpdate.isEmpty()) {
+            updateBatchById(toUpdate);
+        }
+        // 已不在课次班级中的学生
+        if (!existingMap.isEmpty()) {
+            summary.setRemovedCount(existingMap.size());
+            removeByIds(existingMap.values().stream().map(StudentExperimentProgress::getId).toList());
+        }
+
+        log.info("课次 {} 进度重建完成，学生：{}，不一致：{}，移除：{}",
+                classExperimentId, summary.getStudentCount(), summary.getMismatchedCount(), summary.getRemovedCount());
+        return summary;
+    }
+
+    /**
+     * 事务提交后重建实验下所有课次的进度（步骤新增、删除或修改后调用）
+     * 步骤占比和步骤集合决定加权总分与是否全部批改，变化后已有汇总全部失效
+     *
+     * @param experimentId 实验ID
+     */
+    public void rebuildByExperimentAfterCommit(Long experimentId) {
+        if (experimentId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    self.rebuildByExperiment(experimentId);
+                }
+            });
+        } else {
+            self.rebuildByExperiment(experimentId);
+        }
+    }
+
+    /**
+     * 重建实验下所有课次的进度
+     * 在提交后回调中执行，需要独立事务
+     *
+     * @param experimentId 实验ID
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public void rebuildByExperiment(Long experimentId) {
+        List<ClassExperiment> classExperiments = classExperimentMapper.selectList(
+                new LambdaQueryWrapper<ClassExperiment>()
+                        .select(ClassExperiment::getId)
+                        .eq(ClassExperiment::getExperimentId, String.valueOf(experimentId)));
+        for (ClassExperiment classExperiment : classExperiments) {
+            List<String> classCodes =
+                    classExperimentClassRelationService.getClassCodesByExperimentId(classExperiment.getId());
+            if (classCodes == null || classCodes.isEmpty()) {
+                continue;
+            }
+            rebuild(classExperiment.getId(), experimentId, classCodes);
+        }
+        log.info("实验 {} 步骤变更，已重建 {} 个课次的进度", experimentId, classExperiments.size());
+    }
+
+    /**
+     * 查询课次中指定学生的进度
+     * 尚无汇总记录的学生（历史数据或新加入班级）按提交记录现场计算补齐，只读不写汇总表
+     *
+     * @param classExperimentId 班级实验ID
+     * @param studentUsernames  学生用户名列表
+     * @return 学生用户名 -> 进度，不在课次班级中的学生没有对应项
+     */
+    public Map<String, StudentExperimentProgress> getProgressMap(Long classExperimentId,
+                                                                 Collection<String> studentUsernames) {
+        Map<String, StudentExperimentProgress> progressMap = listProgressMap(classExperimentId, studentUsernames);
+        List<String> missingUsernames = studentUsernames.stream()
+                .distinct()
+                .filter(username -> !progressMap.containsKey(username))
+                .toList();
+        if (!missingUsernames.isEmpty()) {
+            progressMap.putAll(computeMissingProgress(classExperimentId, missingUsernames));
+        }
+        return progressMap;
+    }
+
+    /**
+     * 按提交记录计算指定学生的进度，不保存
+     */
+    private Map<String, StudentExperimentProgress> computeMissingProgress(Long classExperimentId,
+                                                                          List<String> studentUsernames) {
+        ClassExperiment classExperiment = classExperimentMapper.selectById(classExperimentId);
+        List<String> classCodes = classExperimentClassRelationService.getClassCodesByExperimentId(classExperimentId);
+        if (classExperiment == null || classCodes == null || classCodes.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, String> studentClassMap = loadStudentClassMap(classCodes, studentUsernames);
+        if (studentClassMap.isEmpty()) {
+            return new HashMap<>();
+        }
+        Long experimentId = Long.parseLong(classExperiment.getExperimentId());
+        List<StudentExperimentalProcedure> records = studentExperimentalProcedureMapper.selectList(
+                new LambdaQueryWrapper<StudentExperimentalProcedure>()
+                        .eq(StudentExperimentalProcedure::getExperimentId, experimentId)
+                        .in(StudentExperimentalProcedure::getClassCode, classCodes)
+                        .in(StudentExperimentalProcedure::getStudentUsername, studentClassMap.keySet()));
+        return computeProgress(classExperimentId, experimentId, studentClassMap, records);
+    }
+
+    /**
+     * 查询课次班级中的学生及所在班级（同一学生出现在多个合班班级时取班级列表中靠前的班级）
+     *
+     * @param classCodes       课次关联的班级编号
+     * @param studentUsernames 限定的学生，为 null 时查询全部学生
+     * @return 学生用户名 -> 班级编号
+     */
+    private Map<String, String> loadStudentClassMap(List<String> classCodes, Collection<String> studentUsernames) {
+        LambdaQueryWrapper<StudentClassRelation> wrapper = new LambdaQueryWrapper<StudentClassRelation>()
+                .in(StudentClassRelation::getClassCode, classCodes)
+                .in(studentUsernames != null, StudentClassRelation::getStudentUsername, studentUsernames);
+        Map<String, List<String>> classesByStudent = new LinkedHashMap<>();
+        for (StudentClassRelation relation : studentClassRelationMapper.selectList(wrapper)) {
+            classesByStudent.computeIfAbsent(relation.getStudentUsername(), key -> new ArrayList<>())
+                    .add(relation.getClassCode());
+        }
+        Map<String, String> studentClassMap = new LinkedHashMap<>();
+        classesByStudent.forEach((username, studentClassCodes) -> studentClassMap.put(username,
+                classCodes.stream().filter(studentClassCodes::contains).findFirst().orElse(studentClassCodes.get(0))));
+        return studentClassMap;
+    }
+
+    /**
+     * 按学生所在班级的提交记录计算进度
+     *
+     * @return 学生用户名 -> 进度（与 studentClassMap 顺序一致）
+     */
+    private Map<String, StudentExperimentProgress> computeProgress(Long classExperimentId, Long experimentId,
+                                                                   Map<String, String> studentClassMap,
+                                                                   List<StudentExperimentalProcedure> records) {
+        List<ExperimentalProcedure> procedures = experimentalProcedureService.getByExperimentId(experimentId);
+        Map<String, List<StudentExperimentalProcedure>> recordsByClass = records.stream()
+                .collect(Collectors.groupingBy(StudentExperimentalProcedure::getClassCode));
+        Map<String, List<String>> studentsByClass = studentClassMap.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, LinkedHashMap::new,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+
+        Map<String, StudentExperimentProgress> progressMap = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : studentsByClass.entrySet()) {
+            String classCode = entry.getKey();
+            ExperimentStatisticsAggregator aggregator = new ExperimentStatisticsAggregator(procedures, entry.getValue())
+                    .acceptAll(recordsByClass.getOrDefault(classCode, List.of()));
+            for (String username : entry.getValue()) {
+                progressMap.put(username, buildProgress(classExperimentId, experimentId, classCode, username, aggregator));
+            }
+        }
+        return progressMap;
+    }
+
+    /**
+     * 查询学生在某实验的进度（按班级定位）
+     *
+     * @param experimentId    实验ID
+     * @param classCode       班级编号
+     * @param studentUsername 学生用户名
+     * @return 进度，不存在时返回 null
+     */
+    public StudentExperimentProgress getByStudentAndExperiment(Long experimentId, String classCode,
+                                                               String studentUsername) {
+        return getOne(new LambdaQueryWrapper<StudentExperimentProgress>()
+                .eq(StudentExperimentProgress::getExperimentId, experimentId)
+                .eq(StudentExperimentProgress::getStudentUsername, studentUsername)
+                .eq(StudentExperimentProgress::getClassCode, classCode), false);
+    }
+
+    /**
+     * 根据班级和实验查询课次ID
+     * 同一班级同一实验有多个课次时取ID最小（最早创建）的课次
+     *
+     * @param classCode    班级编号
+     * @param experimentId 实验ID
+     * @return 班级实验ID，未找到时返回 null
+     */
+    public Long resolveClassExperimentId(String classCode, Long experimentId) {
+        List<Long> classExperimentIds = classExperimentClassRelationService.list(
+                new LambdaQueryWrapper<ClassExperimentClassRelation>()
+                        .eq(ClassExperimentClassRelation::getClassCode, classCode))
+                .stream().map(ClassExperimentClassRelation::getClassExperimentId).toList();
+        if (classExperimentIds.isEmpty()) {
+            return null;
+        }
+        ClassExperiment classExperiment = classExperimentMapper.selectOne(
+                new LambdaQueryWrapper<ClassExperiment>()
+                        .select(ClassExperiment::getId)
+                        .in(ClassExperiment::getId, classExperimentIds)
+                        .eq(ClassExperiment::getExperimentId, String.valueOf(experimentId))
+                        .orderByAsc(ClassExperiment::getId)
+                        .last("LIMIT 1"));
+        return classExperiment != null ? classExperiment.getId() : null;
+    }
+
+    private Map<String, StudentExperimentProgress> listProgressMap(Long classExperimentId,
+                                                                   Collection<String> studentUsernames) {
+        if (studentUsernames.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, StudentExperimentProgress> progressMap = new HashMap<>(studentUsernames.size() * 2);
+        for (StudentExperimentProgress progress : list(new LambdaQueryWrapper<StudentExperimentProgress>()
+                .eq(StudentExperimentProgress::getClassExperimentId, classExperimentId)
+                .in(StudentExperimentProgress::getStudentUsername, studentUsernames))) {
+            progressMap.putIfAbsent(progress.getStudentUsername(), progress);
+        }
+        return progressMap;
+    }
+
+    private StudentExperimentProgress buildProgress(Long classExperimentId, Long experimentId, String classCode,
+                                                    String studentUsername, ExperimentStatisticsAggregator aggregator) {
+        StudentExperimentProgress progress = new StudentExperimentProgress();
+        progress.setClassExperimentId(classExperimentId);
+        progress.setExperimentId(experimentId);
+        progress.setClassCode(classCode);
+        progress.setStudentUsername(studentUsername);
+        progress.setSubmittedCount(aggregator.getStudentSubmittedCount(studentUsername));
+        progress.setCompletedCount(aggregator.getStudentCompletedCount(studentUsername));
+        progress.setGradedCount(aggregator.getStudentGradedCount(studentUsername));
+        progress.setAllRequiredGraded(aggregator.isStudentAllRequiredGraded(studentUsername));
+        progress.setTotalScore(aggregator.getStudentTotalScore(studentUsername));
+        progress.setLastSubmissionTime(aggregator.getStudentLastSubmissionTime(studentUsername));
+        progress.setUpdatedTime(LocalDateTime.now());
+        return progress;
+    }
+
+    private boolean isSameProgress(StudentExperimentProgress existing, StudentExperimentProgress latest) {
+        return Objects.equals(existing.getClassCode(), latest.getClassCode())
+                && Objects.equals(existing.getSubmittedCount(), latest.getSubmittedCount())
+                && Objects.equals(existing.getCompletedCount(), latest.getCompletedCount())
+                && Objects.equals(existing.getGradedCount(), latest.getGradedCount())
+                && Objects.equals(existing.getAllRequiredGraded(), latest.getAllRequiredGraded())
+                && existing.getTotalScore() != null
+                && existing.getTotalScore().compareTo(latest.getTotalScore()) == 0
+                && Objects.equals(existing.getLastSubmissionTime(), latest.getLastSubmissionTime());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RebuildSummary {
+        private int studentCount;
+        private int mismatchedCount;
+        private int removedCount;
+
+        public RebuildSummary() {
+        }
+    }
+}
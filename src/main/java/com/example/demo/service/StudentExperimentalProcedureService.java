@@ -40,6 +40,7 @@ public class StudentExperimentalProcedureService extends ServiceImpl<StudentExpe
     private final ClassExperimentClassRelationMapper classExperimentClassRelationMapper;
     private final StudentProcedureExtensionService studentProcedureExtensionService;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
+    private final StudentExperimentProgressService studentExperimentProgressService;
 
     /**
      * 查询学生在指定班级实验中的所有步骤答案
@@ -250,6 +251,7 @@ public class StudentExperimentalProcedureService extends ServiceImpl<StudentExpe
         if (!saved) {
             throw new BusinessException(500, "标记视频观看失败");
         }
+        studentExperimentProgressService.refresh(studentProcedure);
 
         log.info("学生 {} 在班级 {} 标记视频 {} 已观看", studentUsername, classCode, experimentalProcedureId);
     }
@@ -51,6 +51,8 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
     private final TimedQuizKeyGenerator timedQuizKeyGenerator;
     private final ClassExperimentMapper classExperimentMapper;
     private final ClassExperimentClassRelationMapper classExperimentClassRelationMapper;
+    private final StudentExperimentProgressService studentExperimentProgressService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
 
     @Value("${file.upload.path}")
     private String uploadBasePath;
@@ -113,6 +115,10 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
                 answers.keySet(),
                 topicMaps.stream().map(ProcedureTopicMap::getTopicId).toList()
             );
+        } else {
+            // 随机模式：验证题目ID是否在学生抽到的题目中
+            validateSelectedTopicIds(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, procedureTopic.getId(),
+                studentUsername, answers.keySet());
         }
 
         Map<Long, String> normalizedAnswers = normalizeTopicAnswers(answers);
@@ -134,6 +140,7 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
         }
 
         autoGradeTopicProcedure(studentProcedure.getId(), normalizedAnswers);
+        studentExperimentProgressService.refresh(studentProcedure);
 
         log.info("学生 {} 在班级 {} 完成题库练习，步骤：{}，题目数：{}",
                 studentUsername, classCode, procedureId, normalizedAnswers.size());
@@ -292,6 +299,8 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
             }
         }
 
+        studentExperimentProgressService.refresh(studentProcedure);
+
         log.info("学生 {} 在班级 {} 完成数据收集，步骤：{}，附件数：{}",
                 studentUsername, classCode, procedureId,
                 attachments != null ? attachments.size() : 0);
@@ -605,6 +614,10 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
                 answers.keySet(),
                 topicMaps.stream().map(ProcedureTopicMap::getTopicId).toList()
             );
+        } else {
+            // 随机模式：验证题目ID是否在学生抽到的题目中
+            validateSelectedTopicIds(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, procedureTopic.getId(),
+                studentUsername, answers.keySet());
         }
 
         Map<Long, String> normalizedAnswers = normalizeTopicAnswers(answers);
@@ -625,6 +638,7 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
         }
 
         autoGradeTopicProcedure(studentProcedure.getId(), normalizedAnswers);
+        studentExperimentProgressService.refresh(studentProcedure);
 
         log.info("学生 {} 在班级 {} 修改题库练习，步骤：{}，题目数：{}",
                 studentUsername, classCode, procedureId, normalizedAnswers.size());
@@ -795,6 +809,8 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
                                              fillBlankAnswers, tableCellAnswers);
         }
 
+        studentExperimentProgressService.refresh(studentProcedure);
+
         log.info("学生 {} 在班级 {} 修改数据收集，步骤：{}", studentUsername, classCode, procedureId);
     }
 
@@ -898,12 +914,14 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
             return AutoGradeExecutionResult.failed("重置机器评分状态失败");
         }
 
-        return autoGradeDataCollectionProcedure(
+        AutoGradeExecutionResult result = autoGradeDataCollectionProcedure(
                 procedure.getId(),
                 studentProcedureId,
                 answerMaps.getFillBlankAnswers(),
                 answerMaps.getTableCellAnswers()
         );
+        studentExperimentProgressService.refresh(studentProcedure);
+        return result;
     }
 
     private DataCollectionAnswerMaps parseStoredDataCollectionAnswer(String answerJson) {
@@ -1072,6 +1090,10 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
                 throw new BusinessException(400,
                     String.format("应提交%d道题目，实际提交%d道", timedQuiz.getTopicNumber(), request.getAnswers().size()));
             }
+            validateSelectedTopicIds(StudentTopicSelectionService.SOURCE_TIMED_QUIZ, timedQuiz.getId(),
+                studentUsername, request.getAnswers().stream()
+                    .map(com.example.demo.pojo.dto.mapvo.TopicAnswerItem::getTopicId)
+                    .collect(java.util.stream.Collectors.toSet()));
         }
 
         Map<Long, String> normalizedAnswers;
@@ -1104,6 +1126,7 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
         if (!saved) {
             throw new BusinessException(500, "提交限时答题失败");
         }
+        studentExperimentProgressService.refresh(studentProcedure);
 
         log.info("学生 {} 在班级 {} 完成限时答题，步骤：{}，题目数：{}",
                 studentUsername, classCode, request.getProcedureId(), normalizedAnswers.size());
@@ -1133,4 +1156,15 @@ public class StudentProcedureCompletionService extends ServiceImpl<StudentProced
             throw new BusinessException(400, "提交的题目ID与当前步骤不匹配");
         }
     }
+
+    /**
+     * 随机模式下验证提交的题目ID：学生已保存抽题结果时，只能提交抽到的题目
+     */
+    private void validateSelectedTopicIds(int sourceType, Long sourceId, String studentUsername,
+                                          java.util.Set<Long> submittedTopicIds) {
+        List<Long> selectedTopicIds = studentTopicSelectionService.findTopicIds(sourceType, sourceId, studentUsername);
+        if (selectedTopicIds != null && !new java.util.HashSet<>(selectedTopicIds).containsAll(submittedTopicIds)) {
+            throw new BusinessException(400, "提交的题目ID与抽取的题目不匹配");
+        }
+    }
 }
@@ -40,7 +40,7 @@ public class StudentProcedureQueryService {
     private final DataCollectionMapper dataCollectionMapper;
     private final ProcedureTopicMapper procedureTopicMapper;
     private final TopicMapper topicMapper;
-    private final TopicTagMatchService topicTagMatchService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final DownloadService downloadService;
     private final ClassExperimentMapper classExperimentMapper;
@@ -241,7 +241,7 @@ public class StudentProcedureQueryService {
             fillDataCollectionDetailForUncompleted(response, procedure);
         } else if (type == 3) {
             // 题库答题
-            fillTopicDetailForUncompleted(response, procedure);
+            fillTopicDetailForUncompleted(response, procedure, username);
         } else if (type == 5) {
             // 限时答题
             fillTimedQuizDetailForUncompleted(response, procedure, username);
@@ -473,7 +473,8 @@ public class StudentProcedureQueryService {
      */
     private void fillTopicDetailForUncompleted(
             StudentProcedureDetailWithoutAnswerResponse response,
-            ExperimentalProcedure procedure) {
+            ExperimentalProcedure procedure,
+            String username) {
 
         if (procedure.getProcedureTopicId() != null) {
             ProcedureTopic procedureTopic = procedureTopicMapper.selectById(procedure.getProcedureTopicId());
@@ -486,7 +487,7 @@ public class StudentProcedureQueryService {
                 detail.setTags(procedureTopic.getTags());
 
                 // 查询题目列表（不含答案）
-                List<Topic> topics = getTopicsForProcedure(procedureTopic);
+                List<Topic> topics = getTopicsForProcedure(procedureTopic, username);
                 List<StudentProcedureDetailWithoutAnswerResponse.TopicItem> topicItems = new ArrayList<>();
 
                 for (Topic topic : topics) {
@@ -507,9 +508,9 @@ public class StudentProcedureQueryService {
     }
 
     /**
-     * 根据题库详情获取题目列表
+     * 根据题库详情获取题目列表，随机模式下返回该学生保存的抽题结果
      */
-    private List<Topic> getTopicsForProcedure(ProcedureTopic procedureTopic) {
+    private List<Topic> getTopicsForProcedure(ProcedureTopic procedureTopic, String username) {
         if (procedureTopic.getIsRandom()) {
             // 随机抽取：根据标签过滤题目
             if (procedureTopic.getTags() != null && !procedureTopic.getTags().isEmpty()) {
@@ -520,32 +521,10 @@ public class StudentProcedureQueryService {
                     .toList();
 
                 if (!tagIdList.isEmpty()) {
-                    List<Long> topicIds = topicTagMatchService.selectTopicIdsByGroupedTags(tagIdList);
-
-                    if (!topicIds.isEmpty()) {
-                        LambdaQueryWrapper<Topic> topicWrapper = new LambdaQueryWrapper<>();
-                        topicWrapper.in(Topic::getId, topicIds);
-
-                        // 添加题目类型过滤
-                        if (procedureTopic.getTopicTypes() != null && !procedureTopic.getTopicTypes().isEmpty()) {
-                            String[] typeArray = procedureTopic.getTopicTypes().split(",");
-                            List<Integer> types = Arrays.stream(typeArray)
-                                .filter(s -> s != null && !s.isEmpty())
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toList());
-                            if (!types.isEmpty()) {
-                                topicWrapper.in(Topic::getType, types);
-                            }
-                        }
-
-                        // 随机排序并限制数量
-                        if (procedureTopic.getNumber() != null && procedureTopic.getNumber() > 0) {
-                            topicWrapper.last("ORDER BY RAND() LIMIT " + procedureTopic.getNumber());
-                        } else {
-                            topicWrapper.last("ORDER BY RAND()");
-                        }
-                        return topicMapper.selectList(topicWrapper);
-                    }
+                    // 首次打开时抽题并保存，之后读取保存的题目
+                    List<Integer> types = TopicSamplingService.parseTopicTypes(procedureTopic.getTopicTypes());
+                    return studentTopicSelectionService.getOrDrawTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                            procedureTopic.getId(), username, tagIdList, false, types, procedureTopic.getNumber());
                 }
             }
             return new ArrayList<>();
@@ -623,13 +602,16 @@ public class StudentProcedureQueryService {
                 detail.setQuizTimeLimit(timedQuiz.getQuizTimeLimit());
                 detail.setIsLocked(studentProcedure.getIsLocked());
 
-                // 查询题目列表
-                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz);
-                List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
-
                 // 解析学生答案
                 Map<Long, String> studentAnswers = parseTopicAnswers(studentProcedure.getAnswer());
 
+                // 查询题目列表，随机模式下读取保存的抽题结果，不再重新抽题
+                List<Topic> topics = Boolean.TRUE.equals(timedQuiz.getIsRandom())
+                        ? studentTopicSelectionService.getSubmittedTopics(StudentTopicSelectionService.SOURCE_TIMED_QUIZ,
+                                timedQuiz.getId(), studentProcedure.getStudentUsername(), studentAnswers.keySet())
+                        : getTopicsForTimedQuiz(procedure, timedQuiz, studentProcedure.getStudentUsername());
+                List<StudentProcedureDetailWithAnswerResponse.TopicItem> topicItems = new ArrayList<>();
+
                 for (Topic topic : topics) {
                     StudentProcedureDetailWithAnswerResponse.TopicItem item =
                         new StudentProcedureDetailWithAnswerResponse.TopicItem();
@@ -677,7 +659,7 @@ public class StudentProcedureQueryService {
                 detail.setQuizTimeLimit(timedQuiz.getQuizTimeLimit());
 
                 // 查询题目列表（不含答案）
-                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz);
+                List<Topic> topics = getTopicsForTimedQuiz(procedure, timedQuiz, username);
                 List<StudentProcedureDetailWithoutAnswerResponse.TopicItem> topicItems = new ArrayList<>();
 
                 for (Topic topic : topics) {
@@ -708,10 +690,11 @@ public class StudentProcedureQueryService {
     /**
      * 获取限时答题的题目列表
      */
-    private List<Topic> getTopicsForTimedQuiz(ExperimentalProcedure procedure, TimedQuizProcedure timedQuiz) {
+    private List<Topic> getTopicsForTimedQuiz(ExperimentalProcedure procedure, TimedQuizProcedure timedQuiz,
+                                              String username) {
         if (Boolean.TRUE.equals(timedQuiz.getIsRandom())) {
             // 随机模式：从题库中随机抽取
-            return getRandomTopicsForTimedQuiz(timedQuiz);
+            return getRandomTopicsForTimedQuiz(timedQuiz, username);
         } else {
             // 老师选定模式:查询映射的题目
             LambdaQueryWrapper<ProcedureTopicMap> topicMapQueryWrapper = new LambdaQueryWrapper<>();
@@ -734,9 +717,9 @@ public class StudentProcedureQueryService {
     }
 
     /**
-     * 随机抽取题目（限时答题专用）
+     * 随机抽取题目（限时答题专用），首次打开时抽题并保存
      */
-    private List<Topic> getRandomTopicsForTimedQuiz(TimedQuizProcedure timedQuiz) {
+    private List<Topic> getRandomTopicsForTimedQuiz(TimedQuizProcedure timedQuiz, String username) {
         // 根据标签过滤题目
         if (timedQuiz.getTopicTags() != null && !timedQuiz.getTopicTags().isEmpty()) {
             String[] tagIds = timedQuiz.getTopicTags().split(",");
@@ -746,32 +729,10 @@ public class StudentProcedureQueryService {
                 .toList();
 
             if (!tagIdList.isEmpty()) {
-                List<Long> topicIds = topicTagMatchService.selectTopicIdsByGroupedTags(tagIdList);
-
-                if (!topicIds.isEmpty()) {
-                    LambdaQueryWrapper<Topic> topicWrapper = new LambdaQueryWrapper<>();
-                    topicWrapper.in(Topic::getId, topicIds);
-
-                    // 添加题目类型过滤
-                    if (timedQuiz.getTopicTypes() != null && !timedQuiz.getTopicTypes().isEmpty()) {
-                        String[] typeArray = timedQuiz.getTopicTypes().split(",");
-                        List<Integer> types = Arrays.stream(typeArray)
-                            .filter(s -> s != null && !s.isEmpty())
-                            .map(Integer::parseInt)
-                            .collect(Collectors.toList());
-                        if (!types.isEmpty()) {
-                            topicWrapper.in(Topic::getType, types);
-                        }
-                    }
-
-                    // 随机排序并限制数量
-                    if (timedQuiz.getTopicNumber() != null && timedQuiz.getTopicNumber() > 0) {
-                        topicWrapper.last("ORDER BY RAND() LIMIT " + timedQuiz.getTopicNumber());
-                    } else {
-                        topicWrapper.last("ORDER BY RAND()");
-                    }
-                    return topicMapper.selectList(topicWrapper);
-                }
+                // 首次打开时抽题并保存，之后读取保存的题目
+                List<Integer> types = TopicSamplingService.parseTopicTypes(timedQuiz.getTopicTypes());
+                return studentTopicSelectionService.getOrDrawTopics(StudentTopicSelectionService.SOURCE_TIMED_QUIZ,
+                        timedQuiz.getId(), username, tagIdList, false, types, timedQuiz.getTopicNumber());
             }
         }
         return new ArrayList<>();
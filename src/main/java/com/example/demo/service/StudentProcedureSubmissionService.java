@@ -38,6 +38,7 @@ public class StudentProcedureSubmissionService {
     private final ClassExperimentMapper classExperimentMapper;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
     private final StudentProcedureCompletionService studentProcedureCompletionService;
+    private final StudentExperimentProgressService studentExperimentProgressService;
 
     /** 提交状态常量 */
     public static final Integer STATUS_NOT_GRADED = 0;      // 未评分
@@ -133,6 +134,7 @@ public class StudentProcedureSubmissionService {
         if (updated <= 0) {
             throw new BusinessException(500, "批改步骤失败");
         }
+        studentExperimentProgressService.refresh(submission);
 
         log.info("批改实验步骤成功，ID：{}，评分：{}", submissionId, score);
     }
@@ -0,0 +1,206 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.StudentTopicSelectionMapper;
+import com.example.demo.pojo.entity.StudentTopicSelection;
+import com.example.demo.pojo.entity.Topic;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 学生随机抽题服务
+ * 随机模式下按 (来源, 学生) 派生随机种子抽题，学生首次打开时保存抽题结果，
+ * 之后的查看、评分和统计都读取保存的题目ID，不再重复抽题；同一学生重复抽取结果相同
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StudentTopicSelectionService {
+
+    /** 抽题来源：题库配置（题库答题步骤、课堂小测） */
+    public static final int SOURCE_PROCEDURE_TOPIC = 1;
+    /** 抽题来源：限时答题 */
+    public static final int SOURCE_TIMED_QUIZ = 2;
+
+    private final StudentTopicSelectionMapper studentTopicSelectionMapper;
+    private final TopicSamplingService topicSamplingService;
+
+    /**
+     * 获取学生的随机题目，首次调用时抽题并保存
+     *
+     * @param sourceType      抽题来源类型
+     * @param sourceId        来源ID（题库配置ID或限时答题ID）
+     * @param studentUsername 学生用户名
+     * @param tagIds          标签ID列表
+     * @param matchAll        是否要求命中全部标签
+     * @param types           题型列表，为空时不过滤
+     * @param count           抽取数量
+     * @return 抽中的题目，按抽取顺序排列
+     */
+    public List<Topic> getOrDrawTopics(int sourceType, Long sourceId, String studentUsername, List<Long> tagIds,
+                                       boolean matchAll, Collection<Integer> types, Integer count) {
+        if (studentUsername == null) {
+            return topicSamplingService.sampleTopics(tagIds, matchAll, types, count, null);
+        }
+        List<Long> topicIds = findTopicIds(sourceType, sourceId, studentUsername);
+        if (topicIds == null) {
+            topicIds = draw(sourceType, sourceId, studentUsername, tagIds, matchAll, types, count);
+            if (!topicIds.isEmpty()) {
+                topicIds = save(sourceType, sourceId, studentUsername, topicIds);
+            }
+        }
+        return topicSamplingService.fetchTopics(topicIds);
+    }
+
+    /**
+     * 查看学生的随机题目，不保存抽题结果（教师查看尚未打开的学生时使用）
+     * 学生尚未抽题时按相同种子抽取，题库不变时与学生打开后看到的题目一致
+     *
+     * @param sourceType      抽题来源类型
+     * @param sourceId        来源ID（题库配置ID或限时答题ID）
+     * @param studentUsername 学生用户名
+     * @param tagIds          标签ID列表
+     * @param matchAll        是否要求命中全部标签
+     * @param types           题型列表，为空时不过滤
+     * @param count           抽取数量
+     * @return 抽中的题目，按抽取顺序排列
+     */
+    public List<Topic> getOrPreviewTopics(int sourceType, Long sourceId, String studentUsername, List<Long> tagIds,
+                                          boolean matchAll, Collection<Integer> types, Integer count) {
+        List<Long> topicIds = findTopicIds(sourceType, sourceId, studentUsername);
+        if (topicIds == null) {
+            topicIds = draw(sourceType, sourceId, studentUsername, tagIds, matchAll, types, count);
+        }
+        return topicSamplingService.fetchTopics(topicIds);
+    }
+
+    /**
+     * 查询已提交答案的学生的随机题目，不抽题
+     * 没有抽题记录（抽题记录保存之前提交的答案）时返回学生作答的题目
+     *
+     * @param sourceType       抽题来源类型
+     * @param sourceId         来源ID
+     * @param studentUsername  学生用户名
+     * @param answeredTopicIds 学生作答的题目ID
+     * @return 题目列表
+     */
+    public List<Topic> getSubmittedTopics(int sourceType, Long sourceId, String studentUsername,
+                                          Collection<Long> answeredTopicIds) {
+        List<Long> topicIds = findTopicIds(sourceType, sourceId, studentUsername);
+        if (topicIds == null) {
+            topicIds = answeredTopicIds.stream().sorted().collect(Collectors.toList());
+        }
+        return topicSamplingService.fetchTopics(topicIds);
+    }
+
+    /**
+     * 查询学生已保存的题目ID
+     *
+     * @param sourceType      抽题来源类型
+     * @param sourceId        来源ID
+     * @param studentUsername 学生用户名
+     * @return 题目ID，尚未抽题时返回 null
+     */
+    public List<Long> findTopicIds(int sourceType, Long sourceId, String studentUsername) {
+        LambdaQueryWrapper<StudentTopicSelection> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(StudentTopicSelection::getTopicIds)
+                .eq(StudentTopicSelection::getSourceType, sourceType)
+                .eq(StudentTopicSelection::getSourceId, sourceId)
+                .eq(StudentTopicSelection::getStudentUsername, studentUsername);
+        StudentTopicSelection selection = studentTopicSelectionMapper.selectOne(wrapper);
+        return selection != null ? parseTopicIds(selection.getTopicIds()) : null;
+    }
+
+    /**
+     * 查询某个来源下所有学生已保存的题目ID
+     *
+     * @param sourceType 抽题来源类型
+     * @param sourceId   来源ID
+     * @return 学生用户名 -> 题目ID
+     */
+    public Map<String, List<Long>> findTopicIdsBySource(int sourceType, Long sourceId) {
+        LambdaQueryWrapper<StudentTopicSelection> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(StudentTopicSelection::getStudentUsername, StudentTopicSelection::getTopicIds)
+                .eq(StudentTopicSelection::getSourceType, sourceType)
+                .eq(StudentTopicSelection::getSourceId, sourceId);
+        Map<String, List<Long>> result = new LinkedHashMap<>();
+        for (StudentTopicSelection selection : studentTopicSelectionMapper.selectList(wrapper)) {
+            result.put(selection.getStudentUsername(), parseTopicIds(selection.getTopicIds()));
+        }
+        return result;
+    }
+
+    /**
+     * 按 (来源, 学生) 派生的种子抽取题目ID
+     */
+    private List<Long> draw(int sourceType, Long sourceId, String studentUsername, List<Long> tagIds,
+                            boolean matchAll, Collection<Integer> types, Integer count) {
+        List<Long> candidateIds = topicSamplingService.selectCandidateIds(tagIds, matchAll, types);
+        return TopicSamplingService.sampleIds(candidateIds, count, seedOf(sourceType, sourceId, studentUsername));
+    }
+
+    /**
+     * 保存抽题结果；并发请求已先保存时以已保存的结果为准
+     */
+    private List<Long> save(int sourceType, Long sourceId, String studentUsername, List<Long> topicIds) {
+        StudentTopicSelection selection = new StudentTopicSelection();
+        selection.setSourceType(sourceType);
+        selection.setSourceId(sourceId);
+        selection.setStudentUsername(studentUsername);
+        selection.setTopicIds(joinTopicIds(topicIds));
+        selection.setSeed(seedOf(sourceType, sourceId, studentUsername));
+        selection.setCreatedTime(LocalDateTime.now());
+        if (studentTopicSelectionMapper.insertIgnore(selection) > 0) {
+            log.info("保存学生随机抽题结果，来源：{}-{}，学生：{}，题目数：{}", sourceType, sourceId, studentUsername,
+                    topicIds.size());
+            return topicIds;
+        }
+        List<Long> savedTopicIds = findTopicIds(sourceType, sourceId, studentUsername);
+        return savedTopicIds != null ? savedTopicIds : topicIds;
+    }
+
+    /**
+     * 由 (来源, 学生) 派生随机种子
+     *
+     * @param sourceType      抽题来源类型
+     * @param sourceId        来源ID
+     * @param studentUsername 学生用户名
+     * @return 随机种子
+     */
+    public static long seedOf(int sourceType, Long sourceId, String studentUsername) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + sourceType;
+        hash = 31 * hash + (sourceId != null ? sourceId : 0L);
+        for (int i = 0; i < studentUsername.length(); i++) {
+            hash = 31 * hash + studentUsername.charAt(i);
+        }
+        // 混合高低位，避免相邻学号得到相近的种子
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    static String joinTopicIds(List<Long> topicIds) {
+        return topicIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    static List<Long> parseTopicIds(String topicIds) {
+        if (topicIds == null || topicIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(topicIds.split(","))
+                .filter(s -> !s.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toList());
+    }
+}
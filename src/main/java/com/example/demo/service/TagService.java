@@ -22,6 +22,12 @@ public class TagService extends ServiceImpl<TagMapper, Tag> {
     @Autowired
     private TopicTagMapService topicTagMapService;
 
+    @Autowired
+    private TopicStatisticsCache topicStatisticsCache;
+
+    @Autowired
+    private TopicTagIndex topicTagIndex;
+
     /**
      * 按类型查询标签
      *
@@ -77,6 +83,8 @@ public class TagService extends ServiceImpl<TagMapper, Tag> {
         }
 
         updateById(tag);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
     }
 
     /**
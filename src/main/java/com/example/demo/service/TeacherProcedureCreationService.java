@@ -52,6 +52,7 @@ public class TeacherProcedureCreationService {
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final TimedQuizProcedureMapper timedQuizProcedureMapper;
     private final TopicMapper topicMapper;
+    private final StudentExperimentProgressService studentExperimentProgressService;
 
     /**
      * 获取实验的最大步骤号
@@ -109,6 +110,7 @@ public class TeacherProcedureCreationService {
         experimentalProcedureService.save(procedure);
 
         log.info("视频观看步骤创建成功,步骤ID: {}", procedure.getId());
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -213,6 +215,7 @@ public class TeacherProcedureCreationService {
         procedure.setDataCollectionId(dataCollection.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -312,6 +315,7 @@ public class TeacherProcedureCreationService {
         procedure.setProcedureTopicId(procedureTopic.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -353,6 +357,7 @@ public class TeacherProcedureCreationService {
         experimentalProcedureService.updateById(procedure);
         log.info("视频观看步骤更新成功，步骤ID: {}", procedure.getId());
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -449,6 +454,7 @@ public class TeacherProcedureCreationService {
             }
         }
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -548,6 +554,7 @@ public class TeacherProcedureCreationService {
             }
         }
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
     }
 
     /**
@@ -606,6 +613,7 @@ public class TeacherProcedureCreationService {
         experimentalProcedureService.save(procedure);
         log.info("视频观看步骤插入成功，步骤ID: {}", procedure.getId());
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -721,6 +729,7 @@ public class TeacherProcedureCreationService {
         procedure.setDataCollectionId(dataCollection.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -835,6 +844,7 @@ public class TeacherProcedureCreationService {
         procedure.setProcedureTopicId(procedureTopic.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -1017,6 +1027,7 @@ public class TeacherProcedureCreationService {
         procedure.setTimedQuizId(timedQuizProcedure.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -1112,6 +1123,7 @@ public class TeacherProcedureCreationService {
             }
         }
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -1227,6 +1239,7 @@ public class TeacherProcedureCreationService {
         procedure.setTimedQuizId(timedQuizProcedure.getId());
         experimentalProcedureService.updateById(procedure);
 
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
         return procedure.getId();
     }
 
@@ -1256,6 +1269,7 @@ public class TeacherProcedureCreationService {
             log.error("步骤主表删除失败: procedureId={}", procedureId);
             throw new com.example.demo.exception.BusinessException(500, "步骤删除失败");
         }
+        studentExperimentProgressService.rebuildByExperimentAfterCommit(procedure.getExperimentId());
 
         log.info("步骤删除成功，步骤ID: {}", procedureId);
     }
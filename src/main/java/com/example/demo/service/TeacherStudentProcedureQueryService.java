@@ -3,14 +3,18 @@ package com.example.demo.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.example.demo.exception.BusinessException;
+import com.example.demo.pojo.dto.mapvo.ProcedureStatisticsItem;
 import com.example.demo.pojo.dto.mapvo.FillBlankAnswer;
 import com.example.demo.pojo.dto.mapvo.TableCellAnswer;
 import com.example.demo.mapper.*;
 import com.example.demo.pojo.entity.*;
 import com.example.demo.pojo.response.*;
 import com.example.demo.util.DataCollectionDataUtil;
+import com.example.demo.util.ExperimentStatisticsAggregator;
 import com.example.demo.service.TopicTagMatchService;
 import com.example.demo.util.TopicAnswerContractUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,8 +22,6 @@ import org.springframework.stereotype.Service;
 import java.lang.Class;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.LocalDateTime;
-import com.example.demo.util.ScoreCalculationUtil;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -41,6 +43,7 @@ public class TeacherStudentProcedureQueryService {
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final TopicMapper topicMapper;
     private final TopicTagMatchService topicTagMatchService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
     private final ProcedureTopicMapper procedureTopicMapper;
     private final DataCollectionMapper dataCollectionMapper;
     private final VideoFileMapper videoFileMapper;
@@ -52,6 +55,16 @@ public class TeacherStudentProcedureQueryService {
     private final CourseMapper courseMapper;
     private final StudentClassRelationService studentClassRelationService;
     private final com.example.demo.mapper.TagMapper tagMapper;
+    private final StudentExperimentalProcedureMapper studentExperimentalProcedureMapper;
+    private final StudentExperimentProgressService studentExperimentProgressService;
+
+    /**
+     * 学生步骤完成情况每次请求执行的 SQL 次数
+     */
+    private static final DistributionSummary COMPLETION_QUERY_SUMMARY = DistributionSummary
+            .builder("slz.teacher.procedure-completion.queries")
+            .description("教师查询学生步骤完成情况时每次请求执行的SQL次数")
+            .register(Metrics.globalRegistry);
 
     /**
      * 查询学生在指定班级实验中的步骤完成情况
@@ -81,7 +94,16 @@ public class TeacherStudentProcedureQueryService {
                 studentExperimentalProcedureService.getByStudentAndExperiment(
                         studentUsername, classCode, experimentId);
 
-        // 4. 构建步骤完成列表
+        // 按步骤ID索引学生记录（与原逻辑一致，取第一条）
+        Map<Long, StudentExperimentalProcedure> studentProcedureMap = new HashMap<>();
+        for (StudentExperimentalProcedure sp : studentProcedures) {
+            studentProcedureMap.putIfAbsent(sp.getExperimentalProcedureId(), sp);
+        }
+
+        // 4. 批量预加载题目、附件、限时答题配置和标签
+        ProcedureCompletionBatch batch = loadProcedureCompletionBatch(procedures, studentProcedureMap, studentUsername);
+
+        // 5. 构建步骤完成列表
         List<StudentProcedureCompletionResponse.ProcedureCompletion> completionList = new ArrayList<>();
         BigDecimal totalScore = BigDecimal.ZERO;
 
@@ -96,13 +118,9 @@ public class TeacherStudentProcedureQueryService {
             completion.setProportion(procedure.getProportion());
 
             // 查找学生的完成记录
-            StudentExperimentalProcedure studentProcedure = studentProcedures.stream()
-                    .filter(sp -> sp.getExperimentalProcedureId().equals(procedure.getId()))
-                    .findFirst()
-                    .orElse(null);
+            StudentExperimentalProcedure studentProcedure = studentProcedureMap.get(procedure.getId());
 
-            if (studentProcedure != null && studentProcedure.getAnswer() != null
-                    && !studentProcedure.getAnswer().trim().isEmpty()) {
+            if (isAnswered(studentProcedure)) {
                 completion.setIsCompleted(true);
                 completion.setSubmissionTime(studentProcedure.getCreatedTime());
                 completion.setScore(studentProcedure.getScore());
@@ -114,7 +132,7 @@ public class TeacherStudentProcedureQueryService {
                 completion.setSubmissionId(studentProcedure.getId());
 
                 // 根据步骤类型填充详细信息
-                fillProcedureCompletionDetailForList(completion, procedure, studentProcedure);
+                fillProcedureCompletionDetailForList(completion, procedure, studentProcedure, batch);
             } else {
                 completion.setIsCompleted(false);
             }
@@ -122,13 +140,13 @@ public class TeacherStudentProcedureQueryService {
             completionList.add(completion);
         }
 
-        // 5. 计算总进度
+        // 6. 计算总进度
         long completedCount = completionList.stream()
                 .filter(StudentProcedureCompletionResponse.ProcedureCompletion::getIsCompleted)
                 .count();
         String progress = completedCount + "/" + completionList.size();
 
-        // 6. 构建响应
+        // 7. 构建响应
         StudentProcedureCompletionResponse response = new StudentProcedureCompletionResponse();
         response.setStudentUsername(studentUsername);
         response.setClassCode(classCode);
@@ -138,16 +156,172 @@ public class TeacherStudentProcedureQueryService {
         response.setProgress(progress);
         response.setTotalScore(totalScore);
 
+        // 实验、步骤、学生记录三条查询 + 批量加载阶段的查询
+        int queryCount = 3 + batch.queryCount;
+        COMPLETION_QUERY_SUMMARY.record(queryCount);
+        log.debug("学生步骤完成情况查询完成，步骤数: {}, SQL 次数: {}", procedures.size(), queryCount);
+
         return response;
     }
 
+    /**
+     * 判断学生记录是否已作答
+     */
+    private boolean isAnswered(StudentExperimentalProcedure studentProcedure) {
+        return studentProcedure != null && studentProcedure.getAnswer() != null
+                && !studentProcedure.getAnswer().trim().isEmpty();
+    }
+
+    /**
+     * 步骤完成情况批量加载结果
+     * 按类型一次性查询所需数据，组装阶段只读内存
+     */
+    private static class ProcedureCompletionBatch {
+        private final Map<Long, Topic> topicMap = new HashMap<>();
+        private final Map<Long, List<StudentProcedureAttachment>> attachmentMap = new HashMap<>();
+        private final Map<Long, TimedQuizProcedure> timedQuizMap = new HashMap<>();
+        private final Map<Long, com.example.demo.pojo.entity.Tag> tagMap = new HashMap<>();
+        /** 限时答题（非随机）步骤ID -> 题目ID列表 */
+        private final Map<Long, List<Long>> timedQuizTopicIdMap = new HashMap<>();
+        private int queryCount;
+    }
+
+    /**
+     * 收集已完成步骤依赖的题目、附件、限时答题与标签ID，每类数据只执行一次 IN 查询
+     */
+    private ProcedureCompletionBatch loadProcedureCompletionBatch(
+            List<ExperimentalProcedure> procedures,
+            Map<Long, StudentExperimentalProcedure> studentProcedureMap,
+            String studentUsername) {
+
+        ProcedureCompletionBatch batch = new ProcedureCompletionBatch();
+
+        Set<Long> topicIds = new HashSet<>();
+        List<Long> dataCollectionProcedureIds = new ArrayList<>();
+        Map<Long, Long> timedQuizIdByProcedure = new HashMap<>();
+
+        for (ExperimentalProcedure procedure : procedures) {
+            StudentExperimentalProcedure studentProcedure = studentProcedureMap.get(procedure.getId());
+            if (!isAnswered(studentProcedure) || procedure.getType() == null) {
+                continue;
+            }
+            switch (procedure.getType()) {
+                case 2:
+                    dataCollectionProcedureIds.add(procedure.getId());
+                    break;
+                case 3:
+                    topicIds.addAll(parseTopicAnswers(studentProcedure.getAnswer()).keySet());
+                    break;
+                case 5:
+                    if (procedure.getTimedQuizId() != null) {
+                        timedQuizIdByProcedure.put(procedure.getId(), procedure.getTimedQuizId());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // 1. 附件：一次查询该学生在所有数据收集步骤下的附件
+        if (!dataCollectionProcedureIds.isEmpty()) {
+            List<StudentProcedureAttachment> attachments = studentProcedureAttachmentMapper.selectList(
+                    new LambdaQueryWrapper<StudentProcedureAttachment>()
+                            .in(StudentProcedureAttachment::getProcedureId, dataCollectionProcedureIds)
+                            .eq(StudentProcedureAttachment::getStudentUsername, studentUsername)
+                            .orderByDesc(StudentProcedureAttachment::getCreateTime));
+            batch.queryCount++;
+            for (StudentProcedureAttachment attachment : attachments) {
+                StudentExperimentalProcedure studentProcedure = studentProcedureMap.get(attachment.getProcedureId());
+                // 与单步骤查询保持一致：附件需属于同一班级实验
+                if (studentProcedure != null
+                        && Objects.equals(attachment.getClassExperimentId(), studentProcedure.getClassExperimentId())) {
+                    batch.attachmentMap.computeIfAbsent(attachment.getProcedureId(), k -> new ArrayList<>()).add(attachment);
+                }
+            }
+        }
+
+        // 2. 限时答题配置
+        if (!timedQuizIdByProcedure.isEmpty()) {
+            List<TimedQuizProcedure> timedQuizzes = timedQuizProcedureMapper.selectBatchIds(
+                    new HashSet<>(timedQuizIdByProcedure.values()));
+            batch.queryCount++;
+            for (TimedQuizProcedure timedQuiz : timedQuizzes) {
+                batch.timedQuizMap.put(timedQuiz.getId(), timedQuiz);
+            }
+
+            Set<Long> tagIds = new HashSet<>();
+            List<Long> fixedTopicProcedureIds = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : timedQuizIdByProcedure.entrySet()) {
+                TimedQuizProcedure timedQuiz = batch.timedQuizMap.get(entry.getValue());
+                if (timedQuiz == null) {
+                    continue;
+                }
+                tagIds.addAll(parseTagIds(timedQuiz.getTopicTags()));
+                if (!Boolean.TRUE.equals(timedQuiz.getIsRandom())) {
+                    fixedTopicProcedureIds.add(entry.getKey());
+                }
+            }
+
+            // 3. 标签
+            if (!tagIds.isEmpty()) {
+                List<com.example.demo.pojo.entity.Tag> tags = tagMapper.selectList(
+                        new LambdaQueryWrapper<com.example.demo.pojo.entity.Tag>()
+                                .in(com.example.demo.pojo.entity.Tag::getId, tagIds));
+                batch.queryCount++;
+                for (com.example.demo.pojo.entity.Tag tag : tags) {
+                    batch.tagMap.put(tag.getId(), tag);
+                }
+            }
+
+            // 4. 老师选定模式的题目映射
+            if (!fixedTopicProcedureIds.isEmpty()) {
+                List<ProcedureTopicMap> topicMaps = procedureTopicMapMapper.selectList(
+                        new LambdaQueryWrapper<ProcedureTopicMap>()
+                                .in(ProcedureTopicMap::getExperimentalProcedureId, fixedTopicProcedureIds)
+                                .orderByAsc(ProcedureTopicMap::getId));
+                batch.queryCount++;
+                for (ProcedureTopicMap topicMap : topicMaps) {
+                    batch.timedQuizTopicIdMap
+                            .computeIfAbsent(topicMap.getExperimentalProcedureId(), k -> new ArrayList<>())
+                            .add(topicMap.getTopicId());
+                    topicIds.add(topicMap.getTopicId());
+                }
+            }
+        }
+
+        // 5. 题目：题库答题与限时答题共用一次查询
+        if (!topicIds.isEmpty()) {
+            List<Topic> topics = topicMapper.selectBatchIds(topicIds);
+            batch.queryCount++;
+            for (Topic topic : topics) {
+                batch.topicMap.put(topic.getId(), topic);
+            }
+        }
+
+        return batch;
+    }
+
+    /**
+     * 解析逗号分隔的标签ID
+     */
+    private List<Long> parseTagIds(String topicTags) {
+        if (topicTags == null || topicTags.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(topicTags.split(","))
+                .filter(s -> s != null && !s.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toList());
+    }
+
     /**
      * 填充步骤完成详情（用于列表）
      */
     private void fillProcedureCompletionDetailForList(
             StudentProcedureCompletionResponse.ProcedureCompletion completion,
             ExperimentalProcedure procedure,
-            StudentExperimentalProcedure studentProcedure) {
+            StudentExperimentalProcedure studentProcedure,
+            ProcedureCompletionBatch batch) {
 
         Integer type = procedure.getType();
         if (type == null) {
@@ -156,16 +330,16 @@ public class TeacherStudentProcedureQueryService {
 
         switch (type) {
             case 2:
-                // 类型2：数据收集 - 查询附件
-                fillDataCollectionAttachmentsForList(completion, procedure, studentProcedure);
+                // 类型2：数据收集 - 填充附件
+                fillDataCollectionAttachmentsForList(completion, procedure, studentProcedure, batch);
                 break;
             case 3:
-                // 类型3：题库答题 - 解析答案并查询题目
-                fillTopicAnswersForList(completion, procedure, studentProcedure);
+                // 类型3：题库答题 - 解析答案并填充题目
+                fillTopicAnswersForList(completion, studentProcedure, batch);
                 break;
             case 5:
-                // 类型5：限时答题 - 解析答案并查询题目
-                fillTimedQuizDetailForList(completion, procedure, studentProcedure);
+                // 类型5：限时答题 - 解析答案并填充题目
+                fillTimedQuizDetailForList(completion, procedure, studentProcedure, batch);
                 break;
             default:
                 break;
@@ -178,7 +352,8 @@ public class TeacherStudentProcedureQueryService {
     private void fillDataCollectionAttachmentsForList(
             StudentProcedureCompletionResponse.ProcedureCompletion completion,
             ExperimentalProcedure procedure,
-            StudentExperimentalProcedure studentProcedure) {
+            StudentExperimentalProcedure studentProcedure,
+            ProcedureCompletionBatch batch) {
 
         // 1. 解析学生答案 JSON，设置 fillBlankAnswers 和 tableCellAnswers
         String answerString = studentProcedure.getAnswer();
@@ -196,22 +371,26 @@ public class TeacherStudentProcedureQueryService {
             completion.setTableCellAnswers(TableCellAnswer.fromMap(tableCellAnswers));
         }
 
-        // 2. 查询附件信息
-        LambdaQueryWrapper<StudentProcedureAttachment> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(StudentProcedureAttachment::getProcedureId, procedure.getId())
-                .eq(StudentProcedureAttachment::getStudentUsername, studentProcedure.getStudentUsername())
-                .eq(StudentProcedureAttachment::getClassExperimentId, studentProcedure.getClassExperimentId())
-                .orderByDesc(StudentProcedureAttachment::getCreateTime);
-
-        List<StudentProcedureAttachment> attachments = studentProcedureAttachmentMapper.selectList(queryWrapper);
+        // 2. 附件信息（已批量加载）
+        List<StudentProcedureAttachment> attachments = batch.attachmentMap.get(procedure.getId());
         if (attachments == null || attachments.isEmpty()) {
             return;
         }
 
         List<StudentProcedureCompletionResponse.AttachmentInfo> photos = new ArrayList<>();
         List<StudentProcedureCompletionResponse.AttachmentInfo> documents = new ArrayList<>();
+        String currentUsername = com.example.demo.util.SecurityUtil.getCurrentUsername().orElse(null);
 
-        for (StudentProcedureAttachment attachment : attachments) {
+        // 一次性生成所有附件的下载密钥
+        List<String> downloadKeys = null;
+        if (currentUsername != null) {
+            downloadKeys = downloadService.generateFileKeys(DownloadService.TYPE_ATTACHMENT,
+                    attachments.stream().map(StudentProcedureAttachment::getId).collect(Collectors.toList()),
+                    currentUsername);
+        }
+
+        for (int i = 0; i < attachments.size(); i++) {
+            StudentProcedureAttachment attachment = attachments.get(i);
             StudentProcedureCompletionResponse.AttachmentInfo info =
                     new StudentProcedureCompletionResponse.AttachmentInfo();
             info.setId(attachment.getId());
@@ -222,12 +401,8 @@ public class TeacherStudentProcedureQueryService {
             info.setFileSize(attachment.getFileSize());
             info.setUploadTime(attachment.getCreateTime());
 
-            // 生成文件下载密钥
-            String currentUsername = com.example.demo.util.SecurityUtil.getCurrentUsername().orElse(null);
-            if (currentUsername != null) {
-                String downloadKey = downloadService.generateFileKey(
-                    DownloadService.TYPE_ATTACHMENT, attachment.getId(), currentUsername);
-                info.setDownloadKey(downloadKey);
+            if (downloadKeys != null) {
+                info.setDownloadKey(downloadKeys.get(i));
             }
 
             if (attachment.getFileType() == 1) {
@@ -246,8 +421,8 @@ public class TeacherStudentProcedureQueryService {
      */
     private void fillTopicAnswersForList(
             StudentProcedureCompletionResponse.ProcedureCompletion completion,
-            ExperimentalProcedure procedure,
-            StudentExperimentalProcedure studentProcedure) {
+            StudentExperimentalProcedure studentProcedure,
+            ProcedureCompletionBatch batch) {
 
         // 1. 解析学生答案字符串
         String answerString = studentProcedure.getAnswer();
@@ -263,8 +438,8 @@ public class TeacherStudentProcedureQueryService {
             Long topicId = entry.getKey();
             String studentAnswer = entry.getValue();
 
-            // 2. 查询题目信息
-            Topic topic = topicMapper.selectById(topicId);
+            // 2. 题目信息（已批量加载）
+            Topic topic = batch.topicMap.get(topicId);
             if (topic == null) {
                 continue;
             }
@@ -297,13 +472,14 @@ public class TeacherStudentProcedureQueryService {
     private void fillTimedQuizDetailForList(
             StudentProcedureCompletionResponse.ProcedureCompletion completion,
             ExperimentalProcedure procedure,
-            StudentExperimentalProcedure studentProcedure) {
+            StudentExperimentalProcedure studentProcedure,
+            ProcedureCompletionBatch batch) {
 
         if (procedure.getTimedQuizId() == null) {
             return;
         }
 
-        TimedQuizProcedure timedQuiz = timedQuizProcedureMapper.selectById(procedure.getTimedQuizId());
+        TimedQuizProcedure timedQuiz = batch.timedQuizMap.get(procedure.getTimedQuizId());
         if (timedQuiz == null) {
             return;
         }
@@ -317,40 +493,36 @@ public class TeacherStudentProcedureQueryService {
         detail.setIsLocked(studentProcedure.getIsLocked());
         detail.setTopicTypes(timedQuiz.getTopicTypes());
 
-        // 查询标签信息
-        if (timedQuiz.getTopicTags() != null && !timedQuiz.getTopicTags().trim().isEmpty()) {
-            String[] tagIds = timedQuiz.getTopicTags().split(",");
-            List<Long> tagIdList = Arrays.stream(tagIds)
-                    .filter(s -> s != null && !s.isEmpty())
-                    .map(Long::parseLong)
+        // 标签信息
+        List<Long> tagIdList = parseTagIds(timedQuiz.getTopicTags());
+        if (!tagIdList.isEmpty()) {
+            List<StudentProcedureCompletionResponse.TagInfo> tagInfos = tagIdList.stream()
+                    .distinct()
+                    .map(batch.tagMap::get)
+                    .filter(Objects::nonNull)
+                    .map(tag -> {
+                        StudentProcedureCompletionResponse.TagInfo tagInfo =
+                            new StudentProcedureCompletionResponse.TagInfo();
+                        tagInfo.setId(tag.getId());
+                        tagInfo.setTagName(tag.getTagName());
+                        tagInfo.setType(tag.getType());
+                        tagInfo.setDescription(tag.getDescription());
+                        return tagInfo;
+                    })
                     .collect(Collectors.toList());
 
-            if (!tagIdList.isEmpty()) {
-                List<com.example.demo.pojo.entity.Tag> tags = tagMapper.selectList(
-                    new LambdaQueryWrapper<com.example.demo.pojo.entity.Tag>()
-                        .in(com.example.demo.pojo.entity.Tag::getId, tagIdList)
-                );
-
-                List<StudentProcedureCompletionResponse.TagInfo> tagInfos = tags.stream()
-                        .map(tag -> {
-                            StudentProcedureCompletionResponse.TagInfo tagInfo =
-                                new StudentProcedureCompletionResponse.TagInfo();
-                            tagInfo.setId(tag.getId());
-                            tagInfo.setTagName(tag.getTagName());
-                            tagInfo.setType(tag.getType());
-                            tagInfo.setDescription(tag.getDescription());
-                            return tagInfo;
-                        })
-                        .collect(Collectors.toList());
-
-                detail.setTags(tagInfos);
-            }
+            detail.setTags(tagInfos);
         }
 
         // 非随机模式下才返回题目列表
         if (!Boolean.TRUE.equals(timedQuiz.getIsRandom())) {
-            // 查询题目列表
-            List<Topic> topics = getTopicsForTimedQuizProcedure(procedure, timedQuiz);
+            List<Topic> topics = batch.timedQuizTopicIdMap
+                    .getOrDefault(procedure.getId(), Collections.emptyList()).stream()
+                    .distinct()
+                    .map(batch.topicMap::get)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(Topic::getNumber, Comparator.nullsLast(Integer::compareTo)))
+                    .collect(Collectors.toList());
             List<StudentProcedureCompletionResponse.TopicItem> topicItems = new ArrayList<>();
 
             // 解析学生答案
@@ -648,28 +820,35 @@ public class TeacherStudentProcedureQueryService {
         );
         int totalProcedures = procedures.size();
 
-        // 筛选占比不为零的步骤（必须完成的步骤）
-        List<Long> requiredProcedureIds = procedures.stream()
-            .filter(p -> p.getProportion() != null && p.getProportion() > 0)
-            .map(ExperimentalProcedure::getId)
-            .collect(Collectors.toList());
-
-        // 查询班级学生在该实验的所有步骤提交记录
-        List<StudentExperimentalProcedure> studentProcedures;
-        studentProcedures = studentExperimentalProcedureService.list(
-            new LambdaQueryWrapper<StudentExperimentalProcedure>()
-                    .eq(StudentExperimentalProcedure::getExperimentId, experimentId)
-                    .in(StudentExperimentalProcedure::getStudentUsername, studentUserName)
-        );
-
-        // 按学生分组
-        Map<String, List<StudentExperimentalProcedure>> studentProcedureMap = studentProcedures.isEmpty()
-            ? Collections.emptyMap()
-            : studentProcedures.stream()
-                .collect(Collectors.groupingBy(StudentExperimentalProcedure::getStudentUsername));
+        // 优先读取进度汇总表，课次无法确定时回退为按提交记录现场聚合
+        Map<String, StudentExperimentProgress> progressMap;
+        Map<Long, ProcedureStatisticsItem> procedureStatMap;
+        Long classExperimentId = studentExperimentProgressService.resolveClassExperimentId(classCode, experimentId);
+        if (classExperimentId != null) {
+            progressMap = studentExperimentProgressService.getProgressMap(classExperimentId, studentUserName);
+            procedureStatMap = new HashMap<>();
+            for (ProcedureStatisticsItem item : studentExperimentalProcedureMapper.selectProcedureStatistics(experimentId, studentUserName)) {
+                procedureStatMap.put(item.getProcedureId(), item);
+            }
+        } else {
+            List<StudentExperimentalProcedure> studentProcedures = studentExperimentalProcedureService.list(
+                new LambdaQueryWrapper<StudentExperimentalProcedure>()
+                        .eq(StudentExperimentalProcedure::getExperimentId, experimentId)
+                        .in(StudentExperimentalProcedure::getStudentUsername, studentUserName)
+            );
+            ExperimentStatisticsAggregator aggregator =
+                new ExperimentStatisticsAggregator(procedures, studentUserName).acceptAll(studentProcedures);
+            progressMap = toProgressMap(aggregator, studentUserName);
+            procedureStatMap = toProcedureStatMap(aggregator, procedures);
+        }
 
         // 已提交人数（至少提交一个步骤的学生）
-        int submittedCount = studentProcedureMap.size();
+        int submittedCount = 0;
+        for (StudentExperimentProgress progress : progressMap.values()) {
+            if (progress.getSubmittedCount() != null && progress.getSubmittedCount() > 0) {
+                submittedCount++;
+            }
+        }
         if(submittedCount == 0){
             return new ClassExperimentStatisticsResponse();
         }
@@ -683,8 +862,9 @@ public class TeacherStudentProcedureQueryService {
         BigDecimal totalScoreSum = BigDecimal.ZERO;
         int validStudentCount = 0;  // 非 0 分学生数量
         for (String username : studentUserName) {
-            List<StudentExperimentalProcedure> studentProcList = studentProcedureMap.getOrDefault(username, Collections.emptyList());
-            BigDecimal studentScore = ScoreCalculationUtil.calculateExperimentScore(procedures, studentProcList);
+            StudentExperimentProgress progress = progressMap.get(username);
+            BigDecimal studentScore = progress != null && progress.getTotalScore() != null
+                ? progress.getTotalScore() : BigDecimal.ZERO;
             // 只统计非 0 分的学生
             if (studentScore.compareTo(BigDecimal.ZERO) > 0) {
                 totalScoreSum = totalScoreSum.add(studentScore);
@@ -697,18 +877,17 @@ public class TeacherStudentProcedureQueryService {
             : BigDecimal.ZERO;
 
         // 构建步骤统计列表
-        List<ClassExperimentStatisticsResponse.ProcedureStatistics> procedureStats = procedures.stream().map(procedure -> {
+        List<ClassExperimentStatisticsResponse.ProcedureStatistics> procedureStats = new ArrayList<>(procedures.size());
+        for (ExperimentalProcedure procedure : procedures) {
             ClassExperimentStatisticsResponse.ProcedureStatistics stat = new ClassExperimentStatisticsResponse.ProcedureStatistics();
             stat.setId(procedure.getId());
             stat.setNumber(procedure.getNumber());
             stat.setType(procedure.getType());
             stat.setRemark(procedure.getRemark());
 
-            // 统计该步骤的完成人数（有记录且 answer 不为空）
-            int completedCount = (int) studentProcedures.stream()
-                .filter(sp -> sp.getExperimentalProcedureId().equals(procedure.getId()))
-                .filter(sp -> sp.getAnswer() != null && !sp.getAnswer().trim().isEmpty())
-                .count();
+            // 该步骤的完成人数（有记录且 answer 不为空）
+            ProcedureStatisticsItem item = procedureStatMap.get(procedure.getId());
+            int completedCount = item != null && item.getCompletedCount() != null ? item.getCompletedCount() : 0;
 
             stat.setCompletedCount(completedCount);
             stat.setNotCompletedCount(response.getTotalStudents() - completedCount);
@@ -716,57 +895,40 @@ public class TeacherStudentProcedureQueryService {
                 ? BigDecimal.valueOf(completedCount).divide(BigDecimal.valueOf(response.getTotalStudents()), 4, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO);
 
-            // 计算该步骤的平均分（仅计算已批改的）
-            List<BigDecimal> scores = studentProcedures.stream()
-                .filter(sp -> sp.getExperimentalProcedureId().equals(procedure.getId()))
-                .filter(sp -> sp.getScore() != null && sp.getIsGraded() != null && sp.getIsGraded() > 0)
-                .map(StudentExperimentalProcedure::getScore)
-                .toList();
+            // 该步骤的平均分（仅计算已批改的）
+            stat.setAverageScore(item != null && item.getGradedCount() != null && item.getGradedCount() > 0
+                ? item.getGradedScoreSum().divide(BigDecimal.valueOf(item.getGradedCount()), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO);
 
-            BigDecimal avgScore = scores.isEmpty() ? BigDecimal.ZERO
-                : scores.stream().reduce(BigDecimal.ZERO, BigDecimal::add)
-                    .divide(BigDecimal.valueOf(scores.size()), 2, RoundingMode.HALF_UP);
-            stat.setAverageScore(avgScore);
+            procedureStats.add(stat);
+        }
 
-            return stat;
-        }).collect(Collectors.toList());
+        // 一次查询班级所有学生姓名
+        Map<String, String> studentNameMap = getUserNameMap(studentUserName);
 
         // 构建学生完成列表
-        List<ClassExperimentStatisticsResponse.StudentCompletionInfo> studentCompletions = studentUserName.stream().map(username -> {
+        List<ClassExperimentStatisticsResponse.StudentCompletionInfo> studentCompletions = new ArrayList<>(studentUserName.size());
+        for (String username : studentUserName) {
             ClassExperimentStatisticsResponse.StudentCompletionInfo info = new ClassExperimentStatisticsResponse.StudentCompletionInfo();
             info.setStudentUsername(username);
-
-            // 获取学生姓名
-            User student = userMapper.selectOne(new LambdaQueryWrapper<User>()
-                .eq(User::getUsername, username));
-            if (student != null) {
-                info.setStudentName(student.getName());
-            }
-
-            List<StudentExperimentalProcedure> studentProcList = studentProcedureMap.getOrDefault(username, Collections.emptyList());
+            info.setStudentName(studentNameMap.get(username));
 
             // 已完成步骤数（有记录且 answer 不为空）
-            int completedCount = (int) studentProcList.stream()
-                .filter(sp -> sp.getAnswer() != null && !sp.getAnswer().trim().isEmpty())
-                .count();
+            StudentExperimentProgress progress = progressMap.get(username);
+            int completedCount = progress != null && progress.getCompletedCount() != null ? progress.getCompletedCount() : 0;
 
             info.setCompletedCount(completedCount);
             info.setTotalCount(totalProcedures);
             info.setProgress(completedCount + "/" + totalProcedures);
 
             // 使用业务规则计算总得分
-            BigDecimal totalScore = ScoreCalculationUtil.calculateExperimentScore(procedures, studentProcList);
-            info.setTotalScore(totalScore);
+            info.setTotalScore(progress != null && progress.getTotalScore() != null ? progress.getTotalScore() : BigDecimal.ZERO);
 
             // 最后提交时间
-            studentProcList.stream()
-                .map(StudentExperimentalProcedure::getUpdatedTime)
-                .filter(Objects::nonNull)
-                .max(LocalDateTime::compareTo)
-                .ifPresent(info::setLastSubmissionTime);
+            info.setLastSubmissionTime(progress != null ? progress.getLastSubmissionTime() : null);
 
-            return info;
-        }).collect(Collectors.toList());
+            studentCompletions.add(info);
+        }
 
         // 设置响应
         response.setSubmittedCount(submittedCount);
@@ -778,6 +940,63 @@ public class TeacherStudentProcedureQueryService {
         return response;
     }
 
+    /**
+     * 由现场聚合结果构建学生进度（进度汇总不可用时使用）
+     */
+    private Map<String, StudentExperimentProgress> toProgressMap(ExperimentStatisticsAggregator aggregator,
+                                                                 List<String> usernames) {
+        Map<String, StudentExperimentProgress> progressMap = new HashMap<>(usernames.size() * 2);
+        for (String username : usernames) {
+            StudentExperimentProgress progress = new StudentExperimentProgress();
+            progress.setStudentUsername(username);
+            progress.setSubmittedCount(aggregator.getStudentSubmittedCount(username));
+            progress.setCompletedCount(aggregator.getStudentCompletedCount(username));
+            progress.setTotalScore(aggregator.getStudentTotalScore(username));
+            progress.setLastSubmissionTime(aggregator.getStudentLastSubmissionTime(username));
+            progressMap.put(username, progress);
+        }
+        return progressMap;
+    }
+
+    /**
+     * 由现场聚合结果构建步骤统计（进度汇总不可用时使用）
+     */
+    private Map<Long, ProcedureStatisticsItem> toProcedureStatMap(ExperimentStatisticsAggregator aggregator,
+                                                                 List<ExperimentalProcedure> procedures) {
+        Map<Long, ProcedureStatisticsItem> statMap = new HashMap<>(procedures.size() * 2);
+        for (ExperimentalProcedure procedure : procedures) {
+            ProcedureStatisticsItem item = new ProcedureStatisticsItem();
+            item.setProcedureId(procedure.getId());
+            item.setCompletedCount(aggregator.getProcedureCompletedCount(procedure.getId()));
+            item.setGradedCount(aggregator.getProcedureGradedCount(procedure.getId()));
+            item.setGradedScoreSum(aggregator.getProcedureGradedScoreSum(procedure.getId()));
+            statMap.put(procedure.getId(), item);
+        }
+        return statMap;
+    }
+
+    /**
+     * 批量查询用户姓名
+     *
+     * @param usernames 用户名列表
+     * @return 用户名 -> 姓名
+     */
+    private Map<String, String> getUserNameMap(Collection<String> usernames) {
+        if (usernames == null || usernames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<User> users = userMapper.selectList(new LambdaQueryWrapper<User>()
+            .select(User::getUsername, User::getName)
+            .in(User::getUsername, usernames));
+        Map<String, String> nameMap = new HashMap<>(users.size() * 2);
+        for (User user : users) {
+            if (user.getName() != null) {
+                nameMap.putIfAbsent(user.getUsername(), user.getName());
+            }
+        }
+        return nameMap;
+    }
+
     /**
      * 查询指定学生已提交的步骤详情（带答案）
      * 教师可以随时查看正确答案
@@ -1663,6 +1882,22 @@ public class TeacherStudentProcedureQueryService {
         return getTopicsForProcedureTeacher(procedureTopic);
     }
 
+    /**
+     * 学生未提交时的题目列表，随机模式下按学生的种子预览抽题结果，不保存
+     */
+    private List<Topic> getTopicsForUncompletedTopicProcedure(ProcedureTopic procedureTopic, String studentUsername) {
+        if (!Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
+            return getTopicsForProcedureTeacher(procedureTopic);
+        }
+        List<Long> tagIdList = parseTagIds(procedureTopic.getTags());
+        if (tagIdList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Integer> types = TopicSamplingService.parseTopicTypes(procedureTopic.getTopicTypes());
+        return studentTopicSelectionService.getOrPreviewTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                procedureTopic.getId(), studentUsername, tagIdList, false, types, procedureTopic.getNumber());
+    }
+
     /**
      * 查询学生未提交的题库答题步骤详情
      */
@@ -1700,8 +1935,8 @@ public class TeacherStudentProcedureQueryService {
                 detail.setNumber(procedureTopic.getNumber());
                 detail.setTags(procedureTopic.getTags());
 
-                // 查询题目列表（不含答案）
-                List<Topic> topics = getTopicsForProcedureTeacher(procedureTopic);
+                // 查询题目列表（不含答案），随机模式下为该学生的抽题结果
+                List<Topic> topics = getTopicsForUncompletedTopicProcedure(procedureTopic, studentUsername);
                 List<com.example.demo.pojo.response.StudentTopicProcedureDetailResponse.TopicItem> topicItems = new ArrayList<>();
 
                 for (Topic topic : topics) {
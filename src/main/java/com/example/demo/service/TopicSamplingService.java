@@ -0,0 +1,203 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.TopicMapper;
+import com.example.demo.pojo.entity.Topic;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 随机抽题服务
+ * 先得到候选题目ID（位图索引或只查ID的查询），在内存中用 Floyd 算法等概率抽取 n 个ID，
+ * 再按主键只查询抽中的题目，代替对整个候选集 ORDER BY RAND()
+ */
+@Service
+@RequiredArgsConstructor
+public class TopicSamplingService {
+
+    private final TopicTagMatchService topicTagMatchService;
+    private final TopicTagIndex topicTagIndex;
+    private final TopicMapper topicMapper;
+
+    /**
+     * 按标签随机抽题
+     *
+     * @param tagIds   标签ID列表
+     * @param matchAll 是否要求命中全部标签，否则类型内或、类型间与
+     * @param types    题型列表，为空时不过滤
+     * @param count    抽取数量，为空或不大于 0 时返回全部候选题目（随机顺序）
+     * @param seed     随机种子，为空时每次抽取结果不同
+     * @return 抽中的题目，按抽取顺序排列
+     */
+    public List<Topic> sampleTopics(List<Long> tagIds, boolean matchAll, Collection<Integer> types,
+                                    Integer count, Long seed) {
+        return fetchTopics(sampleIds(selectCandidateIds(tagIds, matchAll, types), count, seed));
+    }
+
+    /**
+     * 按标签随机抽题，命中任一标签即可；未指定标签时从全部题目中抽取
+     *
+     * @param tagIds 标签ID列表（可选）
+     * @param types  题型列表，为空时不过滤
+     * @param count  抽取数量，为空或不大于 0 时返回全部候选题目（随机顺序）
+     * @return 抽中的题目，按抽取顺序排列
+     */
+    public List<Topic> sampleTopicsByAnyTags(List<Long> tagIds, Collection<Integer> types, Integer count) {
+        List<Long> candidateIds;
+        if (tagIds == null || tagIds.isEmpty()) {
+            candidateIds = selectLiveTopicIds(types);
+        } else {
+            candidateIds = filterLiveTopicIds(topicTagMatchService.selectTopicIdsByAnyTags(tagIds), types);
+        }
+        return fetchTopics(sampleIds(candidateIds, count, null));
+    }
+
+    /**
+     * 查询候选题目ID（未删除、符合题型），按ID升序
+     *
+     * @param tagIds   标签ID列表
+     * @param matchAll 是否要求命中全部标签
+     * @param types    题型列表，为空时不过滤
+     * @return 候选题目ID
+     */
+    public List<Long> selectCandidateIds(List<Long> tagIds, boolean matchAll, Collection<Integer> types) {
+        if (tagIds == null || tagIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> topicIds = matchAll
+                ? topicTagMatchService.selectTopicIdsByAllTags(tagIds)
+                : topicTagMatchService.selectTopicIdsByGroupedTags(tagIds);
+        return filterLiveTopicIds(topicIds, types);
+    }
+
+    /**
+     * 从候选ID中等概率抽取（Floyd 算法），抽中的ID再随机排列
+     * 候选ID按升序参与抽取，相同种子和相同候选集得到相同结果
+     *
+     * @param candidateIds 候选题目ID
+     * @param count        抽取数量，为空或不大于 0 时返回全部候选ID
+     * @param seed         随机种子，为空时使用线程随机数
+     * @return 抽中的题目ID
+     */
+    public static List<Long> sampleIds(List<Long> candidateIds, Integer count, Long seed) {
+        if (candidateIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Random random = seed != null ? new Random(seed) : ThreadLocalRandom.current();
+        List<Long> sortedIds = new ArrayList<>(candidateIds);
+        Collections.sort(sortedIds);
+
+        int total = sortedIds.size();
+        List<Long> sampledIds;
+        if (count == null || count <= 0 || count >= total) {
+            sampledIds = sortedIds;
+        } else {
+            Set<Integer> chosen = new HashSet<>(count * 2);
+            sampledIds = new ArrayList<>(count);
+            for (int j = total - count; j < total; j++) {
+                int index = random.nextInt(j + 1);
+                if (!chosen.add(index)) {
+                    index = j;
+                    chosen.add(j);
+                }
+                sampledIds.add(sortedIds.get(index));
+            }
+        }
+        Collections.shuffle(sampledIds, random);
+        return sampledIds;
+    }
+
+    /**
+     * 按主键查询题目，保持传入ID的顺序
+     *
+     * @param topicIds 题目ID
+     * @return 题目列表
+     */
+    public List<Topic> fetchTopics(List<Long> topicIds) {
+        if (topicIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Topic> topicMap = topicMapper.selectBatchIds(topicIds).stream()
+                .collect(Collectors.toMap(Topic::getId, Function.identity()));
+        List<Topic> topics = new ArrayList<>(topicIds.size());
+        for (Long topicId : topicIds) {
+            Topic topic = topicMap.get(topicId);
+            if (topic != null) {
+                topics.add(topic);
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * 解析逗号分隔的题型
+     *
+     * @param topicTypes 题型字符串，如 "1,2"
+     * @return 题型列表
+     */
+    public static List<Integer> parseTopicTypes(String topicTypes) {
+        if (topicTypes == null || topicTypes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(topicTypes.split(","))
+                .filter(s -> s != null && !s.isEmpty())
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 过滤出未删除且符合题型的题目ID
+     */
+    private List<Long> filterLiveTopicIds(List<Long> topicIds, Collection<Integer> types) {
+        if (topicIds.isEmpty()) {
+            return topicIds;
+        }
+        if (topicTagIndex.isEnabled()) {
+            BitSet liveTopics = topicTagIndex.snapshot().liveTopics(types);
+            return topicIds.stream()
+                    .filter(topicId -> liveTopics.get(Math.toIntExact(topicId)))
+                    .collect(Collectors.toList());
+        }
+        LambdaQueryWrapper<Topic> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Topic::getId).in(Topic::getId, topicIds);
+        if (types != null && !types.isEmpty()) {
+            wrapper.in(Topic::getType, types);
+        }
+        return selectTopicIds(wrapper);
+    }
+
+    /**
+     * 查询全部未删除且符合题型的题目ID
+     */
+    private List<Long> selectLiveTopicIds(Collection<Integer> types) {
+        if (topicTagIndex.isEnabled()) {
+            return TopicTagIndex.toTopicIds(topicTagIndex.snapshot().liveTopics(types));
+        }
+        LambdaQueryWrapper<Topic> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Topic::getId);
+        if (types != null && !types.isEmpty()) {
+            wrapper.in(Topic::getType, types);
+        }
+        return selectTopicIds(wrapper);
+    }
+
+    private List<Long> selectTopicIds(LambdaQueryWrapper<Topic> wrapper) {
+        return topicMapper.selectObjs(wrapper).stream()
+                .map(id -> ((Number) id).longValue())
+                .collect(Collectors.toList());
+    }
+}
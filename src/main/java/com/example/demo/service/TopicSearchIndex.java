@@ -0,0 +1,547 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.TopicMapper;
+import com.example.demo.pojo.entity.Topic;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 题目全文检索索引
+ * 在内存中按字符一元、二元切分（适合无空格分词的中文题干）建立 词元 -> 有序题目ID数组 的倒排索引，
+ * 覆盖题干和选项内容；查询时从最短的数组开始对关键词的各词元求交得到候选题目，再逐个校验是否包含关键词，
+ * 结果与 LIKE '%关键词%' 一致，但不需要扫描整张题目表
+ * 索引在后台线程中构建，启动后首次构建完成前 {@link #isReady()} 为 false，调用方回退为 LIKE 查询；
+ * 题目新增、修改、删除（含 Excel 导入）后按题目增量更新；另按刷新间隔在后台整体重建，兜底未经过服务层的直接写入
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopicSearchIndex {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** 整体重建时每批读取的题目数 */
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private static final int[] EMPTY_IDS = new int[0];
+
+    /** 检索结果排序：创建时间倒序（与分页查询一致，空值排最后），相同时按ID倒序 */
+    private static final Comparator<Document> RESULT_ORDER = Comparator
+            .comparing((Document document) -> document.createdTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(document -> document.id, Comparator.reverseOrder());
+
+    private final TopicMapper topicMapper;
+    private final TopicTagMatchService topicTagMatchService;
+
+    /** 是否使用全文检索索引，关闭时关键词查询回退为 LIKE */
+    @Value("${slz.topic.search.enabled:true}")
+    private boolean enabled;
+
+    /** 索引整体重建间隔（分钟） */
+    @Value("${slz.topic.search.refresh-minutes:60}")
+    private long refreshMinutes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 串行执行增量更新 */
+    private final Object updateLock = new Object();
+
+    /** 题目ID -> 索引文档，用于增量删除和校验候选题目 */
+    private Map<Long, Document> documents = new HashMap<>();
+
+    /** 词元 -> 升序题目ID数组，数组构建后不再修改，增量更新时整体替换 */
+    private Map<String, int[]> postings = new HashMap<>();
+
+    /** 是否已完成首次构建 */
+    private volatile boolean ready;
+
+    /** 是否正在整体重建，期间增量更新的题目在重建完成后重新索引 */
+    private volatile boolean rebuilding;
+
+    /** 整体重建期间增量更新的题目ID */
+    private final Set<Long> changedDuringRebuild = new HashSet<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "topic-search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, 0, refreshMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 索引是否可用于检索（已开启且首次构建已完成）
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 按关键词检索题目，可按题型、标签和创建者过滤
+     * 结果为全部匹配的题目ID，调用方在内存中分页后只按主键查询当前页
+     *
+     * @param keyword   关键词
+     * @param types     题型列表，为空时不过滤
+     * @param tagIds    标签ID列表，命中任一标签即可，为空时不过滤
+     * @param createdBy 创建者用户名，为空时不过滤
+     * @return 匹配的题目ID，按创建时间倒序
+     */
+    public List<Long> search(String keyword, Collection<Integer> types, Collection<Long> tagIds, String createdBy) {
+        String normalizedKeyword = normalize(keyword);
+        if (normalizedKeyword.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Document> matched = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int topicId : candidates(normalizedKeyword)) {
+                Document document = documents.get((long) topicId);
+                if (document != null && document.text.contains(normalizedKeyword)
+                        && (types == null || types.isEmpty() || types.contains(document.type))
+                        && (createdBy == null || createdBy.equals(document.createdBy))) {
+                    matched.add(document);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (tagIds != null && !tagIds.isEmpty() && !matched.isEmpty()) {
+            Set<Long> tagged = new HashSet<>(topicTagMatchService.selectTopicIdsByAnyTags(new ArrayList<>(tagIds)));
+            matched.removeIf(document -> !tagged.contains(document.id));
+        }
+        matched.sort(RESULT_ORDER);
+        List<Long> topicIds = new ArrayList<>(matched.size());
+        for (Document document : matched) {
+            topicIds.add(document.id);
+        }
+        return topicIds;
+    }
+
+    /**
+     * 重新索引指定题目（新增、修改、删除后调用）
+     * 在事务中调用时，事务提交后再从数据库读取题目，回滚的修改不会进入索引
+     *
+     * @param topicIds 题目ID
+     */
+    public void refresh(Collection<Long> topicIds) {
+        if (!enabled || topicIds == null || topicIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(topicIds));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reindexTopics(ids);
+                }
+            });
+        } else {
+            reindexTopics(ids);
+        }
+    }
+
+    /**
+     * 从数据库整体重建索引
+     * 按主键分批读取题目，旧索引在新索引构建完成前继续提供检索
+     *
+     * @return 已索引的题目数
+     */
+    public synchronized int rebuild() {
+        long startTime = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, Document> newDocuments = new HashMap<>();
+        Map<String, IdBuffer> buffers = new HashMap<>();
+        try {
+            long lastTopicId = 0;
+            while (true) {
+                LambdaQueryWrapper<Topic> wrapper = indexQuery();
+                wrapper.gt(Topic::getId, lastTopicId)
+                        .orderByAsc(Topic::getId)
+                        .last("LIMIT " + REBUILD_BATCH_SIZE);
+                List<Topic> topics = topicMapper.selectList(wrapper);
+                // 按主键升序读取，追加后的题目ID数组天然有序
+                for (Topic topic : topics) {
+                    Document document = toDocument(topic);
+                    newDocuments.put(topic.getId(), document);
+                    int topicId = Math.toIntExact(topic.getId());
+                    for (String token : tokenize(document.text)) {
+                        buffers.computeIfAbsent(token, key -> new IdBuffer()).add(topicId);
+                    }
+                    lastTopicId = topic.getId();
+                }
+                if (topics.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                changedDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        Map<String, int[]> newPostings = new HashMap<>(buffers.size() * 4 / 3 + 1);
+        buffers.forEach((token, buffer) -> newPostings.put(token, buffer.toArray()));
+
+        List<Long> changedTopicIds;
+        lock.writeLock().lock();
+        try {
+            documents = newDocuments;
+            postings = newPostings;
+            ready = true;
+            rebuilding = false;
+            changedTopicIds = new ArrayList<>(changedDuringRebuild);
+            changedDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // 重建读取数据库之后提交的修改可能不在新索引中，重新索引一次
+        if (!changedTopicIds.isEmpty()) {
+            reindexTopics(changedTopicIds);
+        }
+        log.info("重建题目全文检索索引，题目数：{}，词元数：{}，耗时：{}ms", newDocuments.size(), newPostings.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return newDocuments.size();
+    }
+
+    /**
+     * 后台定时重建，失败时保留旧索引并等待下次重建
+     */
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("重建题目全文检索索引失败", e);
+        }
+    }
+
+    /**
+     * 按ID重新读取题目并更新索引，已删除的题目从索引中移除
+     * 同一批题目涉及的每个词元只线性合并一次；合并在读锁下进行，写锁只用于替换数组，不阻塞检索
+     */
+    private void reindexTopics(List<Long> topicIds) {
+        if (!ready && !rebuilding) {
+            // 尚未建立索引，后台首次构建时会读到本次已提交的修改
+            return;
+        }
+        LambdaQueryWrapper<Topic> wrapper = indexQuery();
+        wrapper.in(Topic::getId, topicIds);
+        Map<Long, Document> newDocuments = new HashMap<>();
+        for (Topic topic : topicMapper.selectList(wrapper)) {
+            newDocuments.put(topic.getId(), toDocument(topic));
+        }
+
+        synchronized (updateLock) {
+            while (true) {
+                Map<String, int[]> basePostings;
+                Map<String, int[]> mergedPostings = new HashMap<>();
+                lock.readLock().lock();
+                try {
+                    basePostings = postings;
+                    Map<String, Set<Integer>> removedIds = new HashMap<>();
+                    Map<String, Set<Integer>> addedIds = new HashMap<>();
+                    for (Long topicId : topicIds) {
+                        int id = Math.toIntExact(topicId);
+                        Document oldDocument = documents.get(topicId);
+                        if (oldDocument != null) {
+                            for (String token : tokenize(oldDocument.text)) {
+                                removedIds.computeIfAbsent(token, key -> new HashSet<>()).add(id);
+                            }
+                        }
+                        Document document = newDocuments.get(topicId);
+                        if (document != null) {
+                            for (String token : tokenize(document.text)) {
+                                addedIds.computeIfAbsent(token, key -> new HashSet<>()).add(id);
+                            }
+                        }
+                    }
+                    Set<String> tokens = new HashSet<>(removedIds.keySet());
+                    tokens.addAll(addedIds.keySet());
+                    for (String token : tokens) {
+                        mergedPostings.put(token, merge(basePostings.getOrDefault(token, EMPTY_IDS),
+                                toSortedArray(removedIds.get(token)), toSortedArray(addedIds.get(token))));
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                lock.writeLock().lock();
+                try {
+                    if (postings != basePostings) {
+                        // 合并期间整体重建已替换索引，基于新索引重新合并
+                        continue;
+                    }
+                    if (rebuilding) {
+                        changedDuringRebuild.addAll(topicIds);
+                    }
+                    for (Long topicId : topicIds) {
+                        Document document = newDocuments.get(topicId);
+                        if (document != null) {
+                            documents.put(topicId, document);
+                        } else {
+                            documents.remove(topicId);
+                        }
+                    }
+                    mergedPostings.forEach((token, merged) -> {
+                        if (merged.length == 0) {
+                            postings.remove(token);
+                        } else {
+                            postings.put(token, merged);
+                        }
+                    });
+                    break;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        log.debug("更新题目全文检索索引，题目数：{}", topicIds.size());
+    }
+
+    /**
+     * 线性合并有序题目ID数组：移除 removed 中的题目ID，加入 added 中的题目ID（同时在两者中的保留）
+     *
+     * @param topicIds 升序题目ID数组
+     * @param removed  升序、无重复的待移除题目ID
+     * @param added    升序、无重复的待加入题目ID
+     * @return 新的升序题目ID数组
+     */
+    static int[] merge(int[] topicIds, int[] removed, int[] added) {
+        int[] result = new int[topicIds.length + added.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < topicIds.length || j < added.length) {
+            if (j == added.length || (i < topicIds.length && topicIds[i] < added[j])) {
+                int topicId = topicIds[i++];
+                while (k < removed.length && removed[k] < topicId) {
+                    k++;
+                }
+                if (k < removed.length && removed[k] == topicId) {
+                    continue;
+                }
+                result[count++] = topicId;
+            } else {
+                if (i < topicIds.length && topicIds[i] == added[j]) {
+                    i++;
+                }
+                result[count++] = added[j++];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int[] toSortedArray(Set<Integer> topicIds) {
+        if (topicIds == null) {
+            return EMPTY_IDS;
+        }
+        int[] result = topicIds.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 关键词所有词元题目ID数组的交集（升序），调用方需持有读锁
+     */
+    private int[] candidates(String keyword) {
+        Set<String> tokens = tokenize(keyword);
+        // 关键词含二元词元时只用二元词元求交，一元词元的数组过长
+        boolean hasBigram = tokens.stream().anyMatch(token -> token.length() == 2);
+        List<int[]> lists = new ArrayList<>();
+        for (String token : tokens) {
+            if (hasBigram && token.length() == 1) {
+                continue;
+            }
+            int[] topicIds = postings.get(token);
+            if (topicIds == null) {
+                return EMPTY_IDS;
+            }
+            lists.add(topicIds);
+        }
+        if (lists.isEmpty()) {
+            // 关键词只由空白组成，逐个校验全部题目
+            return documents.keySet().stream().mapToInt(Math::toIntExact).sorted().toArray();
+        }
+        return intersect(lists);
+    }
+
+    /**
+     * 有序题目ID数组求交：遍历最短的数组，在其余数组中二分查找
+     */
+    static int[] intersect(List<int[]> lists) {
+        lists.sort(Comparator.comparingInt(topicIds -> topicIds.length));
+        int[] shortest = lists.get(0);
+        int[] result = new int[shortest.length];
+        int count = 0;
+        outer:
+        for (int topicId : shortest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (Arrays.binarySearch(lists.get(i), topicId) < 0) {
+                    continue outer;
+                }
+            }
+            result[count++] = topicId;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static LambdaQueryWrapper<Topic> indexQuery() {
+        LambdaQueryWrapper<Topic> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Topic::getId, Topic::getType, Topic::getContent, Topic::getChoices, Topic::getCreatedBy,
+                Topic::getCreatedTime);
+        return wrapper;
+    }
+
+    /**
+     * 索引文本：题干和各选项内容，以换行分隔
+     */
+    static Document toDocument(Topic topic) {
+        StringBuilder text = new StringBuilder();
+        if (topic.getContent() != null) {
+            text.append(topic.getContent());
+        }
+        for (String choice : parseChoices(topic.getChoices())) {
+            text.append('\n').append(choice);
+        }
+        return new Document(topic.getId(), topic.getType(), topic.getCreatedBy(), topic.getCreatedTime(),
+                normalize(text.toString()));
+    }
+
+    /**
+     * 解析选项内容，格式：{"A":"选项A内容","B":"选项B内容"}；无法解析时按原文索引
+     */
+    private static Collection<String> parseChoices(String choices) {
+        if (choices == null || choices.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            Map<String, String> choiceMap = OBJECT_MAPPER.readValue(choices, new TypeReference<Map<String, String>>() {});
+            return choiceMap.values();
+        } catch (Exception e) {
+            return List.of(choices);
+        }
+    }
+
+    /**
+     * 统一转为小写，与数据库默认排序规则下 LIKE 不区分大小写一致
+     */
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 切分词元：每个非空白字符作为一元词元，相邻两个非空白字符作为二元词元
+     *
+     * @param text 已归一化的文本
+     * @return 词元集合
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            char current = text.charAt(i);
+            if (Character.isWhitespace(current)) {
+                continue;
+            }
+            tokens.add(String.valueOf(current));
+            if (i + 1 < text.length() && !Character.isWhitespace(text.charAt(i + 1))) {
+                tokens.add(text.substring(i, i + 2));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 已索引的题目
+     */
+    static class Document {
+        final Long id;
+        final Integer type;
+        final String createdBy;
+        final LocalDateTime createdTime;
+        final String text;
+
+        Document(Long id, Integer type, String createdBy, LocalDateTime createdTime, String text) {
+            this.id = id;
+            this.type = type;
+            this.createdBy = createdBy;
+            this.createdTime = createdTime;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 构建索引时追加题目ID的缓冲区
+     */
+    private static class IdBuffer {
+        private int[] topicIds = new int[4];
+        private int size;
+
+        void add(int topicId) {
+            if (size == topicIds.length) {
+                topicIds = Arrays.copyOf(topicIds, size * 2);
+            }
+            topicIds[size++] = topicId;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(topicIds, size);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.demo.exception.BusinessException;
 import com.example.demo.mapper.TopicMapper;
 import com.example.demo.pojo.dto.mapvo.TagCountItem;
+import com.example.demo.pojo.dto.mapvo.TagStatisticsItem;
 import com.example.demo.pojo.dto.mapvo.TypeCountItem;
 import com.example.demo.pojo.entity.Tag;
 import com.example.demo.pojo.entity.Topic;
@@ -41,6 +42,21 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
     @Autowired
     private TagService tagService;
 
+    @Autowired
+    private TopicTagMatchService topicTagMatchService;
+
+    @Autowired
+    private TopicSamplingService topicSamplingService;
+
+    @Autowired
+    private TopicStatisticsCache topicStatisticsCache;
+
+    @Autowired
+    private TopicTagIndex topicTagIndex;
+
+    @Autowired
+    private TopicSearchIndex topicSearchIndex;
+
     /**
      * 创建题目（含标签关联）
      *
@@ -50,6 +66,19 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
      */
     @Transactional(rollbackFor = Exception.class)
     public Long createTopic(CreateTopicRequest request, String createdBy) {
+        return createTopic(request, createdBy, true);
+    }
+
+    /**
+     * 创建题目（含标签关联）
+     *
+     * @param request            创建题目请求
+     * @param createdBy          创建者用户名
+     * @param refreshSearchIndex 是否立即更新全文检索索引，批量导入时传 false，导入结束后统一调用 {@link #refreshSearchIndex}
+     * @return 题目ID
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Long createTopic(CreateTopicRequest request, String createdBy, boolean refreshSearchIndex) {
         String normalizedCorrectAnswer = normalizeCorrectAnswer(request.getType(), request.getCorrectAnswer());
 
         // 1. 创建题目
@@ -64,6 +93,11 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
         topic.setIsDeleted(false);
 
         save(topic);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        if (refreshSearchIndex) {
+            topicSearchIndex.refresh(List.of(topic.getId()));
+        }
 
         // 2. 关联标签
         if (request.getTagIds() != null && !request.getTagIds().isEmpty()) {
@@ -74,6 +108,15 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
         return topic.getId();
     }
 
+    /**
+     * 批量更新题目的全文检索索引（批量导入结束后调用）
+     *
+     * @param topicIds 题目ID
+     */
+    public void refreshSearchIndex(Collection<Long> topicIds) {
+        topicSearchIndex.refresh(topicIds);
+    }
+
     /**
      * 更新题目（含标签关联）
      *
@@ -104,6 +147,9 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
         topic.setUpdatedTime(LocalDateTime.now());
 
         updateById(topic);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        topicSearchIndex.refresh(List.of(topic.getId()));
 
         // 3. 更新标签关联（如果提供了tagIds）
         if (request.getTagIds() != null) {
@@ -137,6 +183,9 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
 
         // 软删除（Mybatis-Plus自动处理is_deleted字段）
         removeById(topicId);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        topicSearchIndex.refresh(List.of(topicId));
 
         log.info("删除题目成功，题目ID：{}，操作者：{}", topicId, username);
     }
@@ -162,6 +211,11 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
      * @return 分页结果
      */
     public PageResponse<TopicDetailResponse> queryTopics(TopicQueryRequest request) {
+        // 关键词检索且全文检索索引可用时，在内存中筛选、分页，只按主键查询当前页的题目
+        if (request.getKeyword() != null && !request.getKeyword().trim().isEmpty() && topicSearchIndex.isReady()) {
+            return queryTopicsByIndex(request);
+        }
+
         // 1. 构建查询条件
         LambdaQueryWrapper<Topic> wrapper = buildQueryWrapper(request);
 
@@ -176,6 +230,49 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
         return PageResponse.of(page.getCurrent(), page.getSize(), page.getTotal(), records);
     }
 
+    /**
+     * 使用全文检索索引分页查询题目
+     * 关键词、题型、标签和创建者条件由索引过滤，难度和学科标签在内存中过滤，结果按创建时间倒序
+     */
+    private PageResponse<TopicDetailResponse> queryTopicsByIndex(TopicQueryRequest request) {
+        List<Integer> types = request.getType() != null ? List.of(request.getType()) : Collections.emptyList();
+        List<Long> topicIds = topicSearchIndex.search(request.getKeyword().trim(), types, request.getTagIds(),
+                request.getCreatedBy());
+        topicIds = retainTopicsWithAnyTags(topicIds, request.getDifficultyTagIds());
+        topicIds = retainTopicsWithAnyTags(topicIds, request.getSubjectTagIds());
+
+        long current = Math.max(request.getCurrent(), 1L);
+        long size = request.getSize();
+        int fromIndex = (int) Math.min((current - 1) * size, topicIds.size());
+        int toIndex = (int) Math.min(fromIndex + size, topicIds.size());
+        List<Long> pageTopicIds = topicIds.subList(fromIndex, toIndex);
+
+        List<TopicDetailResponse> records = new ArrayList<>(pageTopicIds.size());
+        if (!pageTopicIds.isEmpty()) {
+            Map<Long, Topic> topicMap = listByIds(pageTopicIds).stream()
+                    .collect(Collectors.toMap(Topic::getId, topic -> topic));
+            for (Long topicId : pageTopicIds) {
+                Topic topic = topicMap.get(topicId);
+                if (topic != null) {
+                    records.add(convertToDetailResponse(topic));
+                }
+            }
+        }
+
+        return PageResponse.of(current, size, (long) topicIds.size(), records);
+    }
+
+    /**
+     * 保留命中任一标签的题目，标签为空时不过滤
+     */
+    private List<Long> retainTopicsWithAnyTags(List<Long> topicIds, List<Long> tagIds) {
+        if (tagIds == null || tagIds.isEmpty() || topicIds.isEmpty()) {
+            return topicIds;
+        }
+        Set<Long> tagged = new HashSet<>(topicTagMatchService.selectTopicIdsByAnyTags(tagIds));
+        return topicIds.stream().filter(tagged::contains).collect(Collectors.toList());
+    }
+
     /**
      * 根据ID查询题目详情（含标签）
      *
@@ -193,67 +290,43 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
 
     /**
      * 获取题目统计信息
+     * 题型和标签各用一次分组聚合查询，结果缓存到题目或标签变更为止
      *
      * @return 统计信息
      */
     public TopicStatisticsResponse getStatistics() {
+        return topicStatisticsCache.get(this::loadStatistics);
+    }
+
+    private TopicStatisticsResponse loadStatistics() {
         TopicStatisticsResponse response = new TopicStatisticsResponse();
 
-        // 1. 总题目数
-        LambdaQueryWrapper<Topic> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Topic::getIsDeleted, false);
-        Long totalCount = count(wrapper);
-        response.setTotalCount(totalCount);
-
-        // 2. 按题型统计
-        List<TypeCountItem> typeCount = new ArrayList<>();
-        for (int i = 1; i <= 6; i++) {
-            LambdaQueryWrapper<Topic> typeWrapper = new LambdaQueryWrapper<>();
-            typeWrapper.eq(Topic::getIsDeleted, false);
-            typeWrapper.eq(Topic::getType, i);
-            long count = count(typeWrapper);
-            if (count > 0) {
-                TypeCountItem item = new TypeCountItem();
-                item.setType(i);
-                item.setCount(count);
-                typeCount.add(item);
-            }
-        }
-        response.setTypeCount(typeCount);
+        // 1. 按题型统计，总题目数为各题型之和
+        List<TypeCountItem> allTypeCount = baseMapper.selectTypeCounts();
+        response.setTotalCount(allTypeCount.stream().mapToLong(TypeCountItem::getCount).sum());
+        response.setTypeCount(allTypeCount.stream()
+                .filter(item -> item.getType() != null && item.getType() >= 1 && item.getType() <= 6)
+                .collect(Collectors.toList()));
 
-        // 3. 按标签统计（需要通过TopicTagMap关联查询）
-        List<Tag> allTags = tagService.list();
+        // 2. 按标签统计（关联未删除的题目）
         List<TagCountItem> subjectTagCount = new ArrayList<>();
         List<TagCountItem> difficultyTagCount = new ArrayList<>();
         List<TagCountItem> customTagCount = new ArrayList<>();
 
-        for (Tag tag : allTags) {
-            // 查询该标签下的题目数量
-            List<TopicTagMap> mappings = topicTagMapService.getByTagId(tag.getId());
-            long count = mappings.stream()
-                    .map(TopicTagMap::getTopicId)
-                    .distinct()
-                    .filter(topicId -> {
-                        Topic t = getById(topicId);
-                        return t != null && !t.getIsDeleted();
-                    })
-                    .count();
-
-            if (count > 0) {
-                TagCountItem item = new TagCountItem();
-                item.setTagName(tag.getTagName());
-                item.setCount(count);
-                switch (tag.getType()) {
-                    case "1": // 学科标签
-                        subjectTagCount.add(item);
-                        break;
-                    case "2": // 难度标签
-                        difficultyTagCount.add(item);
-                        break;
-                    case "4": // 自定义标签
-                        customTagCount.add(item);
-                        break;
-                }
+        for (TagStatisticsItem tagStatistics : baseMapper.selectTagCounts()) {
+            TagCountItem item = new TagCountItem();
+            item.setTagName(tagStatistics.getTagName());
+            item.setCount(tagStatistics.getCount());
+            switch (tagStatistics.getTagType()) {
+                case "1": // 学科标签
+                    subjectTagCount.add(item);
+                    break;
+                case "2": // 难度标签
+                    difficultyTagCount.add(item);
+                    break;
+                case "4": // 自定义标签
+                    customTagCount.add(item);
+                    break;
             }
         }
 
@@ -273,11 +346,7 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
      */
     public List<Topic> getTopicsByTagIds(List<Long> tagIds, Integer limit) {
         // 查询包含任一标签的题目ID
-        Set<Long> topicIds = new HashSet<>();
-        for (Long tagId : tagIds) {
-            List<TopicTagMap> mappings = topicTagMapService.getByTagId(tagId);
-            mappings.forEach(m -> topicIds.add(m.getTopicId()));
-        }
+        List<Long> topicIds = topicTagMatchService.selectTopicIdsByAnyTags(tagIds);
 
         // 查询题目详情
         if (topicIds.isEmpty()) {
@@ -301,35 +370,9 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
      * @return 题目列表
      */
     public List<Topic> getRandomTopics(Integer type, List<Long> tagIds, Integer count) {
-        LambdaQueryWrapper<Topic> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(Topic::getIsDeleted, false);
-
-        if (type != null) {
-            wrapper.eq(Topic::getType, type);
-        }
-
-        // 如果指定了标签，查询包含这些标签的题目
-        if (tagIds != null && !tagIds.isEmpty()) {
-            Set<Long> topicIds = new HashSet<>();
-            for (Long tagId : tagIds) {
-                List<TopicTagMap> mappings = topicTagMapService.getByTagId(tagId);
-                mappings.forEach(m -> topicIds.add(m.getTopicId()));
-            }
-
-            if (topicIds.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            wrapper.in(Topic::getId, topicIds);
-        }
-
-        // 随机排序并限制数量
-        wrapper.last("ORDER BY RAND()");
-        if (count != null && count > 0) {
-            wrapper.last("LIMIT " + count);
-        }
-
-        return list(wrapper);
+        // 从候选题目ID中随机抽取，再按主键查询抽中的题目
+        List<Integer> types = type != null ? List.of(type) : Collections.emptyList();
+        return topicSamplingService.sampleTopicsByAnyTags(tagIds, types, count);
     }
 
     /**
@@ -354,11 +397,7 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
         // 标签筛选（需要通过TopicTagMap关联查询）
         if (request.getTagIds() != null && !request.getTagIds().isEmpty()) {
             // 查询包含这些标签的题目ID
-            Set<Long> topicIds = new HashSet<>();
-            for (Long tagId : request.getTagIds()) {
-                List<TopicTagMap> mappings = topicTagMapService.getByTagId(tagId);
-                mappings.forEach(m -> topicIds.add(m.getTopicId()));
-            }
+            List<Long> topicIds = topicTagMatchService.selectTopicIdsByAnyTags(request.getTagIds());
 
             if (!topicIds.isEmpty()) {
                 wrapper.in(Topic::getId, topicIds);
@@ -370,27 +409,23 @@ public class TopicService extends ServiceImpl<TopicMapper, Topic> {
 
         // 难度标签筛选
         if (request.getDifficultyTagIds() != null && !request.getDifficultyTagIds().isEmpty()) {
-            Set<Long> topicIds = new HashSet<>();
-            for (Long tagId : request.getDifficultyTagIds()) {
-                List<TopicTagMap> mappings = topicTagMapService.getByTagId(tagId);
-                mappings.forEach(m -> topicIds.add(m.getTopicId()));
-            }
+            List<Long> topicIds = topicTagMatchService.selectTopicIdsByAnyTags(request.getDifficultyTagIds());
 
             if (!topicIds.isEmpty()) {
                 wrapper.in(Topic::getId, topicIds);
+            } else {
+                wrapper.eq(Topic::getId, -1);
             }
         }
 
         // 学科标签筛选
         if (request.getSubjectTagIds() != null && !request.getSubjectTagIds().isEmpty()) {
-            Set<Long> topicIds = new HashSet<>();
-            for (Long tagId : request.getSubjectTagIds()) {
-                List<TopicTagMap> mappings = topicTagMapService.getByTagId(tagId);
-                mappings.forEach(m -> topicIds.add(m.getTopicId()));
-            }
+            List<Long> topicIds = topicTagMatchService.selectTopicIdsByAnyTags(request.getSubjectTagIds());
 
             if (!topicIds.isEmpty()) {
                 wrapper.in(Topic::getId, topicIds);
+            } else {
+                wrapper.eq(Topic::getId, -1);
             }
         }
 
@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import com.example.demo.pojo.response.TopicStatisticsResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 题库统计缓存
+ * 题目、标签或题目标签关联变更时失效；另设过期时间，兜底未经过服务层的直接写入
+ */
+@Slf4j
+@Component
+public class TopicStatisticsCache {
+
+    /** 缓存过期时间（秒） */
+    @Value("${slz.topic.statistics.cache-seconds:300}")
+    private long cacheSeconds;
+
+    /** 数据版本，每次失效加一 */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile CachedStatistics cached;
+
+    /**
+     * 获取统计信息，缓存失效时重新计算
+     * 计算期间数据发生变更时，本次结果只返回不缓存
+     *
+     * @param loader 统计计算
+     * @return 统计信息
+     */
+    public TopicStatisticsResponse get(Supplier<TopicStatisticsResponse> loader) {
+        long currentVersion = version.get();
+        CachedStatistics current = cached;
+        if (current != null && current.version == currentVersion && current.expireTime > System.nanoTime()) {
+            return current.statistics;
+        }
+
+        TopicStatisticsResponse statistics = loader.get();
+        if (version.get() == currentVersion) {
+            cached = new CachedStatistics(statistics, currentVersion,
+                    System.nanoTime() + TimeUnit.SECONDS.toNanos(cacheSeconds));
+        }
+        return statistics;
+    }
+
+    /**
+     * 使缓存失效
+     * 在事务中调用时，事务提交后再失效一次，避免提交前重新计算的旧数据被缓存
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    private static class CachedStatistics {
+        private final TopicStatisticsResponse statistics;
+        private final long version;
+        private final long expireTime;
+
+        private CachedStatistics(TopicStatisticsResponse statistics, long version, long expireTime) {
+            this.statistics = statistics;
+            this.version = version;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.demo.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.demo.mapper.TopicMapper;
+import com.example.demo.mapper.TopicTagMapMapper;
+import com.example.demo.pojo.entity.Topic;
+import com.example.demo.pojo.entity.TopicTagMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 题目标签位图索引
+ * 在内存中保存 标签ID -> 题目ID位图、题型 -> 题目ID位图 和未删除题目位图，
+ * 按标签筛选题目时用位图并集（类型内或）、交集（类型间与、全部匹配）代替逐标签查询和 Java 集合运算
+ * 题目、标签或题目标签关联变更时失效，下次使用时整体重建；另设刷新间隔，兜底未经过服务层的直接写入
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopicTagIndex {
+
+    private final TopicMapper topicMapper;
+    private final TopicTagMapMapper topicTagMapMapper;
+
+    /** 是否使用位图索引，关闭时按标签筛选题目回退为 SQL 查询 */
+    @Value("${slz.topic.tag-index.enabled:true}")
+    private boolean enabled;
+
+    /** 索引刷新间隔（分钟） */
+    @Value("${slz.topic.tag-index.refresh-minutes:10}")
+    private long refreshMinutes;
+
+    /** 数据版本，每次失效加一 */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取当前索引，失效或过期时重建
+     * 重建期间数据发生变更时，本次结果只返回不保留
+     *
+     * @return 索引快照
+     */
+    public Snapshot snapshot() {
+        long currentVersion = version.get();
+        Snapshot current = snapshot;
+        if (current != null && current.version == currentVersion && current.expireTime > System.nanoTime()) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.version == currentVersion && current.expireTime > System.nanoTime()) {
+                return current;
+            }
+            Snapshot loaded = load(currentVersion);
+            if (version.get() == currentVersion) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * 使索引失效
+     * 在事务中调用时，事务提交后再失效一次，避免提交前重建的旧索引被保留
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 加载未删除的题目和全部题目标签关联
+     */
+    private Snapshot load(long currentVersion) {
+        long startTime = System.nanoTime();
+
+        LambdaQueryWrapper<Topic> topicQuery = new LambdaQueryWrapper<>();
+        topicQuery.select(Topic::getId, Topic::getType);
+        BitSet liveTopics = new BitSet();
+        Map<Integer, BitSet> typeTopics = new HashMap<>();
+        for (Topic topic : topicMapper.selectList(topicQuery)) {
+            int bit = toBit(topic.getId());
+            liveTopics.set(bit);
+            if (topic.getType() != null) {
+                typeTopics.computeIfAbsent(topic.getType(), key -> new BitSet()).set(bit);
+            }
+        }
+
+        LambdaQueryWrapper<TopicTagMap> mapQuery = new LambdaQueryWrapper<>();
+        mapQuery.select(TopicTagMap::getTopicId, TopicTagMap::getTagId);
+        Map<Long, BitSet> tagTopics = new HashMap<>();
+        int mappingCount = 0;
+        for (TopicTagMap topicTagMap : topicTagMapMapper.selectList(mapQuery)) {
+            if (topicTagMap.getTopicId() == null || topicTagMap.getTagId() == null) {
+                continue;
+            }
+            tagTopics.computeIfAbsent(topicTagMap.getTagId(), key -> new BitSet()).set(toBit(topicTagMap.getTopicId()));
+            mappingCount++;
+        }
+
+        log.info("重建题目标签位图索引，题目数：{}，标签数：{}，关联数：{}，耗时：{}ms", liveTopics.cardinality(),
+                tagTopics.size(), mappingCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return new Snapshot(tagTopics, typeTopics, liveTopics, currentVersion,
+                System.nanoTime() + TimeUnit.MINUTES.toNanos(refreshMinutes));
+    }
+
+    /**
+     * 题目ID转为位图下标，题目ID为自增主键，不会超过 int 范围
+     */
+    private static int toBit(Long topicId) {
+        return Math.toIntExact(topicId);
+    }
+
+    /**
+     * 位图中的题目ID，按ID升序
+     *
+     * @param topics 题目位图
+     * @return 题目ID列表
+     */
+    public static List<Long> toTopicIds(BitSet topics) {
+        List<Long> topicIds = new ArrayList<>(topics.cardinality());
+        for (int bit = topics.nextSetBit(0); bit >= 0; bit = topics.nextSetBit(bit + 1)) {
+            topicIds.add((long) bit);
+        }
+        return topicIds;
+    }
+
+    /**
+     * 索引快照，构建后不再修改，所有运算都返回新的位图
+     */
+    public static class Snapshot {
+        /** 标签ID -> 题目位图（含已删除题目的关联） */
+        private final Map<Long, BitSet> tagTopics;
+        /** 题型 -> 未删除题目位图 */
+        private final Map<Integer, BitSet> typeTopics;
+        /** 未删除题目位图 */
+        private final BitSet liveTopics;
+        private final long version;
+        private final long expireTime;
+
+        Snapshot(Map<Long, BitSet> tagTopics, Map<Integer, BitSet> typeTopics, BitSet liveTopics, long version,
+                 long expireTime) {
+            this.tagTopics = tagTopics;
+            this.typeTopics = typeTopics;
+            this.liveTopics = liveTopics;
+            this.version = version;
+            this.expireTime = expireTime;
+        }
+
+        /**
+         * 未删除的题目，可按题型过滤
+         *
+         * @param types 题型列表，为空时不过滤
+         * @return 题目位图
+         */
+        public BitSet liveTopics(Collection<Integer> types) {
+            if (types == null || types.isEmpty()) {
+                return (BitSet) liveTopics.clone();
+            }
+            BitSet result = new BitSet();
+            for (Integer type : types) {
+                BitSet topics = typeTopics.get(type);
+                if (topics != null) {
+                    result.or(topics);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 命中任一标签的未删除题目
+         *
+         * @param tagIds 标签ID列表
+         * @return 题目位图
+         */
+        public BitSet matchAny(Collection<Long> tagIds) {
+            BitSet result = new BitSet();
+            for (Long tagId : tagIds) {
+                BitSet topics = tagTopics.get(tagId);
+                if (topics != null) {
+                    result.or(topics);
+                }
+            }
+            result.and(liveTopics);
+            return result;
+        }
+
+        /**
+         * 命中全部标签的未删除题目
+         *
+         * @param tagIds 标签ID列表
+         * @return 题目位图
+         */
+        public BitSet matchAll(Collection<Long> tagIds) {
+            BitSet result = (BitSet) liveTopics.clone();
+            for (Long tagId : tagIds) {
+                BitSet topics = tagTopics.get(tagId);
+                if (topics == null) {
+                    return new BitSet();
+                }
+                result.and(topics);
+            }
+            return result;
+        }
+
+        /**
+         * 分组匹配：组内命中任一标签，组间全部满足
+         *
+         * @param tagIdGroups 标签ID分组
+         * @return 题目位图
+         */
+        public BitSet matchGrouped(Collection<? extends Collection<Long>> tagIdGroups) {
+            BitSet result = null;
+            for (Collection<Long> tagIds : tagIdGroups) {
+                if (tagIds == null || tagIds.isEmpty()) {
+                    continue;
+                }
+                if (result == null) {
+                    result = matchAny(tagIds);
+                } else {
+                    result.and(matchAny(tagIds));
+                }
+                if (result.isEmpty()) {
+                    break;
+                }
+            }
+            return result != null ? result : new BitSet();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.demo.mapper.TopicTagMapMapper;
 import com.example.demo.pojo.entity.TopicTagMap;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,6 +18,12 @@ import java.util.List;
 @Service
 public class TopicTagMapService extends ServiceImpl<TopicTagMapMapper, TopicTagMap> {
 
+    @Autowired
+    private TopicStatisticsCache topicStatisticsCache;
+
+    @Autowired
+    private TopicTagIndex topicTagIndex;
+
     /**
      * 根据题目ID查询标签映射列表
      * @param topicId 题目ID
@@ -55,7 +62,10 @@ public class TopicTagMapService extends ServiceImpl<TopicTagMapMapper, TopicTagM
         TopicTagMap topicTagMap = new TopicTagMap();
         topicTagMap.setTopicId(topicId);
         topicTagMap.setTagId(tagId);
-        return save(topicTagMap);
+        boolean saved = save(topicTagMap);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        return saved;
     }
 
     /**
@@ -84,7 +94,10 @@ public class TopicTagMapService extends ServiceImpl<TopicTagMapMapper, TopicTagM
     public boolean removeTagFromTopic(Long topicId, Long tagId) {
         LambdaQueryWrapper<TopicTagMap> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(TopicTagMap::getTopicId, topicId).eq(TopicTagMap::getTagId, tagId);
-        return remove(queryWrapper);
+        boolean removed = remove(queryWrapper);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        return removed;
     }
 
     /**
@@ -95,7 +108,10 @@ public class TopicTagMapService extends ServiceImpl<TopicTagMapMapper, TopicTagM
     public boolean removeAllTagsFromTopic(Long topicId) {
         LambdaQueryWrapper<TopicTagMap> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(TopicTagMap::getTopicId, topicId);
-        return remove(queryWrapper);
+        boolean removed = remove(queryWrapper);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        return removed;
     }
 
     /**
@@ -106,6 +122,9 @@ public class TopicTagMapService extends ServiceImpl<TopicTagMapMapper, TopicTagM
     public boolean removeByTagId(Long tagId) {
         LambdaQueryWrapper<TopicTagMap> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(TopicTagMap::getTagId, tagId);
-        return remove(queryWrapper);
+        boolean removed = remove(queryWrapper);
+        topicStatisticsCache.invalidate();
+        topicTagIndex.invalidate();
+        return removed;
     }
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import java.util.stream.Collectors;
 /**
  * 标签匹配服务
  * 随机抽题时按标签类型分组：类型之间取交集，类型内取并集
+ * 开启题目标签位图索引时在内存中完成集合运算，只返回未删除的题目；关闭时按 SQL 查询
  */
 @Service
 @RequiredArgsConstructor
@@ -28,6 +29,7 @@ public class TopicTagMatchService {
 
     private final TagMapper tagMapper;
     private final TopicTagMapMapper topicTagMapMapper;
+    private final TopicTagIndex topicTagIndex;
 
     /**
      * 根据标签ID列表查询符合“类型间与、类型内或”规则的题目ID
@@ -57,6 +59,9 @@ public class TopicTagMatchService {
         if (tagIdsByType.isEmpty()) {
             return Collections.emptyList();
         }
+        if (topicTagIndex.isEnabled()) {
+            return TopicTagIndex.toTopicIds(topicTagIndex.snapshot().matchGrouped(tagIdsByType.values()));
+        }
 
         Set<Long> matchedTopicIds = null;
         for (List<Long> sameTypeTagIds : tagIdsByType.values()) {
@@ -101,9 +106,28 @@ public class TopicTagMatchService {
             throw new BusinessException(400, "部分标签不存在，无法完成随机抽题");
         }
         validateTags(tags);
+        if (topicTagIndex.isEnabled()) {
+            return TopicTagIndex.toTopicIds(topicTagIndex.snapshot().matchAll(distinctTagIds));
+        }
         return topicTagMapMapper.selectTopicIdsByAllTags(distinctTagIds, distinctTagIds.size());
     }
 
+    /**
+     * 查询命中任一标签的题目ID，不校验标签
+     *
+     * @param tagIds 标签ID列表
+     * @return 题目ID列表
+     */
+    public List<Long> selectTopicIdsByAnyTags(List<Long> tagIds) {
+        if (tagIds == null || tagIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (topicTagIndex.isEnabled()) {
+            return TopicTagIndex.toTopicIds(topicTagIndex.snapshot().matchAny(tagIds));
+        }
+        return topicTagMapMapper.selectDistinctTopicIdsByAnyTags(tagIds);
+    }
+
     private Map<TagType, List<Long>> buildTagIdsByType(List<Tag> tags) {
         validateTags(tags);
 
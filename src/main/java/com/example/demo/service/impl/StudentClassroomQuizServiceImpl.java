@@ -9,7 +9,8 @@ import com.example.demo.pojo.request.student.SubmitClassroomQuizAnswerRequest;
 import com.example.demo.pojo.response.StudentClassroomQuizDetailResponse;
 import com.example.demo.service.ClassExperimentClassRelationService;
 import com.example.demo.service.StudentClassroomQuizService;
-import com.example.demo.service.TopicTagMatchService;
+import com.example.demo.service.StudentTopicSelectionService;
+import com.example.demo.service.TopicSamplingService;
 import com.example.demo.util.ClassroomQuizScorer;
 import com.example.demo.util.TopicAnswerContractUtil;
 import lombok.RequiredArgsConstructor;
@@ -35,7 +36,7 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
     private final ProcedureTopicMapper procedureTopicMapper;
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final TopicMapper topicMapper;
-    private final TopicTagMatchService topicTagMatchService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
     private final ClassroomQuizScorer classroomQuizScorer;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
     private final StudentClassRelationMapper studentClassRelationMapper;
@@ -63,7 +64,7 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
         }
 
         // 查询题目列表
-        List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic);
+        List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic, studentUsername);
 
         // 检查时间限制
         if (quiz.getEndTime() != null && LocalDateTime.now().isAfter(quiz.getEndTime())) {
@@ -172,8 +173,8 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
             throw new BusinessException(404, "题库配置不存在");
         }
 
-        // 查询题目列表
-        List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic);
+        // 查询题目列表，随机模式下与学生打开时看到的题目一致
+        List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic, studentUsername);
         Map<Long, String> rawAnswers = TopicAnswerItem.toMap(request.getAnswers());
 
         if (!Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
@@ -333,7 +334,7 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
                         // 查询题目列表用于自动评分
                         ProcedureTopic procedureTopic = procedureTopicMapper.selectById(quiz.getProcedureTopicId());
                         if (procedureTopic != null) {
-                            List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic);
+                            List<Topic> topics = getSubmittedTopicsForQuiz(quiz, procedureTopic, answer);
                             answer = autoScoreIfNeeded(answer, quiz, procedureTopic, topics);
                         }
                     }
@@ -346,9 +347,21 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
     }
 
     /**
-     * 获取小测的题目列表
+     * 获取已提交答案对应的题目列表，随机模式下读取保存的抽题结果，不再抽题
+     */
+    private List<Topic> getSubmittedTopicsForQuiz(ClassroomQuiz quiz, ProcedureTopic procedureTopic,
+                                                  ClassroomQuizAnswer answer) {
+        if (Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
+            return studentTopicSelectionService.getSubmittedTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                    procedureTopic.getId(), answer.getStudentUsername(), parseTopicAnswers(answer.getAnswer()).keySet());
+        }
+        return getTopicsForQuiz(quiz, procedureTopic, answer.getStudentUsername());
+    }
+
+    /**
+     * 获取小测的题目列表，随机模式下返回该学生的抽题结果（首次打开时抽题并保存）
      */
-    private List<Topic> getTopicsForQuiz(ClassroomQuiz quiz, ProcedureTopic procedureTopic) {
+    private List<Topic> getTopicsForQuiz(ClassroomQuiz quiz, ProcedureTopic procedureTopic, String studentUsername) {
         if (Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
             // 随机抽取
             if (procedureTopic.getTags() != null && !procedureTopic.getTags().isEmpty()) {
@@ -359,28 +372,10 @@ public class StudentClassroomQuizServiceImpl implements StudentClassroomQuizServ
                         .collect(Collectors.toList());
 
                 if (!tagIdList.isEmpty()) {
-                    List<Long> topicIds = Boolean.TRUE.equals(procedureTopic.getTagMatchAll())
-                            ? topicTagMatchService.selectTopicIdsByAllTags(tagIdList)
-                            : topicTagMatchService.selectTopicIdsByGroupedTags(tagIdList);
-
-                    if (!topicIds.isEmpty()) {
-                        LambdaQueryWrapper<Topic> topicWrapper = new LambdaQueryWrapper<>();
-                        topicWrapper.in(Topic::getId, topicIds);
-
-                        if (procedureTopic.getTopicTypes() != null && !procedureTopic.getTopicTypes().isEmpty()) {
-                            String[] typeArray = procedureTopic.getTopicTypes().split(",");
-                            List<Integer> types = Arrays.stream(typeArray)
-                                    .filter(s -> s != null && !s.isEmpty())
-                                    .map(Integer::parseInt)
-                                    .collect(Collectors.toList());
-                            if (!types.isEmpty()) {
-                                topicWrapper.in(Topic::getType, types);
-                            }
-                        }
-
-                        topicWrapper.last("ORDER BY RAND() LIMIT " + procedureTopic.getNumber());
-                        return topicMapper.selectList(topicWrapper);
-                    }
+                    List<Integer> types = TopicSamplingService.parseTopicTypes(procedureTopic.getTopicTypes());
+                    boolean matchAll = Boolean.TRUE.equals(procedureTopic.getTagMatchAll());
+                    return studentTopicSelectionService.getOrDrawTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                            procedureTopic.getId(), studentUsername, tagIdList, matchAll, types, procedureTopic.getNumber());
                 }
             }
             return new ArrayList<>();
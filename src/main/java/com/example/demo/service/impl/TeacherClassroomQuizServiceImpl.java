@@ -12,7 +12,9 @@ import com.example.demo.pojo.response.ClassroomQuizHistoryResponseV2;
 import com.example.demo.pojo.response.ClassroomQuizStatisticsResponse;
 import com.example.demo.pojo.response.StudentClassroomQuizDetailResponse;
 import com.example.demo.service.ClassExperimentClassRelationService;
+import com.example.demo.service.StudentTopicSelectionService;
 import com.example.demo.service.TeacherClassroomQuizService;
+import com.example.demo.service.TopicSamplingService;
 import com.example.demo.service.TopicTagMatchService;
 import com.example.demo.util.AnswerMapJSONUntil;
 import com.example.demo.util.SecurityUtil;
@@ -26,6 +28,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -44,6 +47,7 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
     private final ProcedureTopicMapMapper procedureTopicMapMapper;
     private final TopicMapper topicMapper;
     private final TopicTagMatchService topicTagMatchService;
+    private final StudentTopicSelectionService studentTopicSelectionService;
     private final ClassExperimentClassRelationService classExperimentClassRelationService;
     private final com.example.demo.util.ClassroomQuizScorer classroomQuizScorer;
     private final StudentClassRelationMapper studentClassRelationMapper;
@@ -272,9 +276,21 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
         answerWrapper.eq(ClassroomQuizAnswer::getClassroomQuizId, quizId);
         List<ClassroomQuizAnswer> answers = classroomQuizAnswerMapper.selectList(answerWrapper);
 
-        // 对score为null的答案进行自动评分
-        List<Topic> topicsForScoring = getTopicsForQuiz(quiz, procedureTopic);
-        answers.replaceAll(answer -> autoScoreIfNeeded(answer, quiz, procedureTopic, topicsForScoring));
+        // 查询题目：随机模式下为学生保存的抽题结果，不再重新抽题
+        boolean isRandom = Boolean.TRUE.equals(procedureTopic.getIsRandom());
+        Map<String, List<Long>> selectedTopicIds = isRandom
+                ? studentTopicSelectionService.findTopicIdsBySource(
+                        StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, procedureTopic.getId())
+                : Collections.emptyMap();
+        List<Topic> quizTopics = isRandom
+                ? getSelectedTopics(answers, selectedTopicIds)
+                : getTopicsForQuiz(quiz, procedureTopic);
+        Map<Long, Topic> quizTopicMap = quizTopics.stream()
+                .collect(Collectors.toMap(Topic::getId, Function.identity(), (t1, t2) -> t1));
+
+        // 对score为null的答案进行自动评分，随机模式下按该学生抽中的题目评分
+        answers.replaceAll(answer -> autoScoreIfNeeded(answer, quiz, procedureTopic,
+                isRandom ? getStudentTopics(answer, selectedTopicIds, quizTopicMap) : quizTopics));
 
         int submittedCount = answers.size();
         BigDecimal completionRate = totalParticipants > 0
@@ -303,7 +319,7 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
                 : BigDecimal.ZERO;
 
         // 题目级统计
-        List<ClassroomQuizStatisticsResponse.TopicStatistics> topicStatistics = calculateTopicStatistics(answers, quiz, procedureTopic);
+        List<ClassroomQuizStatisticsResponse.TopicStatistics> topicStatistics = calculateTopicStatistics(answers, quizTopics);
 
         // 批量查询学生信息和班级信息
         Set<String> studentUsernames = answers.stream()
@@ -402,8 +418,8 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
         answerWrapper.eq(ClassroomQuizAnswer::getStudentUsername, studentUsername);
         ClassroomQuizAnswer answer = classroomQuizAnswerMapper.selectOne(answerWrapper);
 
-        // 查询题目列表
-        List<Topic> topics = getTopicsForQuiz(quiz, procedureTopic);
+        // 查询题目列表，随机模式下为该学生的抽题结果
+        List<Topic> topics = getTopicsForStudent(quiz, procedureTopic, studentUsername, answer);
 
         // 解析学生答案
         Map<Long, String> studentAnswers = parseTopicAnswers(answer != null ? answer.getAnswer() : null);
@@ -525,52 +541,88 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
     }
 
     /**
-     * 从学生答题情况中提取所有有答题的题目ID
+     * 获取学生查看的题目列表（教师版）
+     * 随机模式下已提交时读取保存的抽题结果，未提交时按学生的种子预览，不保存抽题结果
+     */
+    private List<Topic> getTopicsForStudent(ClassroomQuiz quiz, ProcedureTopic procedureTopic,
+                                            String studentUsername, ClassroomQuizAnswer answer) {
+        if (!Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
+            return getTopicsForQuiz(quiz, procedureTopic);
+        }
+        if (answer != null) {
+            return studentTopicSelectionService.getSubmittedTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                    procedureTopic.getId(), studentUsername, parseTopicAnswers(answer.getAnswer()).keySet());
+        }
+        if (procedureTopic.getTags() == null || procedureTopic.getTags().isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> tagIdList = Arrays.stream(procedureTopic.getTags().split(","))
+                .filter(s -> s != null && !s.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toList());
+        List<Integer> types = TopicSamplingService.parseTopicTypes(procedureTopic.getTopicTypes());
+        return studentTopicSelectionService.getOrPreviewTopics(StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC,
+                procedureTopic.getId(), studentUsername, tagIdList, Boolean.TRUE.equals(procedureTopic.getTagMatchAll()),
+                types, procedureTopic.getNumber());
+    }
+
+    /**
+     * 查询随机模式下所有学生抽中的题目
+     * 抽题记录保存之前提交的答案没有抽题记录，补充其作答的题目
      *
-     * @param answers 答案列表
-     * @return 题目ID集合
+     * @param answers          答案列表
+     * @param selectedTopicIds 学生用户名 -> 抽中的题目ID
+     * @return 题目列表
      */
-    private Set<Long> extractTopicIdsFromAnswers(List<ClassroomQuizAnswer> answers) {
-        Set<Long> topicIds = new HashSet<>();
+    private List<Topic> getSelectedTopics(List<ClassroomQuizAnswer> answers,
+                                          Map<String, List<Long>> selectedTopicIds) {
+        Set<Long> topicIds = new TreeSet<>();
+        selectedTopicIds.values().forEach(topicIds::addAll);
         for (ClassroomQuizAnswer answer : answers) {
-            Map<Long, String> studentAnswers = parseTopicAnswers(answer.getAnswer());
-            topicIds.addAll(studentAnswers.keySet());
+            if (!selectedTopicIds.containsKey(answer.getStudentUsername())) {
+                topicIds.addAll(parseTopicAnswers(answer.getAnswer()).keySet());
+            }
+        }
+        if (topicIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        return topicIds;
+        return topicMapper.selectBatchIds(topicIds);
+    }
+
+    /**
+     * 学生抽中的题目，没有抽题记录时为其作答的题目
+     */
+    private List<Topic> getStudentTopics(ClassroomQuizAnswer answer, Map<String, List<Long>> selectedTopicIds,
+                                         Map<Long, Topic> topicMap) {
+        Collection<Long> topicIds = selectedTopicIds.get(answer.getStudentUsername());
+        if (topicIds == null) {
+            topicIds = parseTopicAnswers(answer.getAnswer()).keySet();
+        }
+        return topicIds.stream()
+                .map(topicMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
      * 计算题目级统计
      *
      * @param answers 答案列表
-     * @param quiz 小测信息
-     * @param procedureTopic 题库配置
+     * @param allTopics 小测题目，随机模式下为所有学生抽中的题目
      * @return 题目统计列表，按答题人数降序排序
      */
     private List<ClassroomQuizStatisticsResponse.TopicStatistics> calculateTopicStatistics(
-            List<ClassroomQuizAnswer> answers, ClassroomQuiz quiz, ProcedureTopic procedureTopic) {
-
-        // 获取完整题目列表
-        List<Topic> allTopics;
-        if (Boolean.TRUE.equals(procedureTopic.getIsRandom())) {
-            // 随机抽题模式：从学生答题情况中获取所有有答题的题目
-            Set<Long> topicIds = extractTopicIdsFromAnswers(answers);
-            if (topicIds.isEmpty()) {
-                allTopics = new ArrayList<>();
-            } else {
-                allTopics = topicMapper.selectList(
-                    new LambdaQueryWrapper<Topic>().in(Topic::getId, topicIds)
-                );
-            }
-        } else {
-            // 教师选题模式：直接获取教师选取的题目列表
-            allTopics = getTopicsForQuiz(quiz, procedureTopic);
-        }
+            List<ClassroomQuizAnswer> answers, List<Topic> allTopics) {
 
         if (allTopics == null || allTopics.isEmpty()) {
             return new ArrayList<>();
         }
 
+        // 每份答案只解析一次
+        List<Map<Long, String>> parsedAnswers = answers.stream()
+                .map(answer -> parseTopicAnswers(answer.getAnswer()))
+                .collect(Collectors.toList());
+
         // 统计每个题目的答题情况
         return allTopics.stream()
                 .map(topic -> {
@@ -588,8 +640,7 @@ public class TeacherClassroomQuizServiceImpl extends ServiceImpl<ClassroomQuizMa
                     int correct = 0;
                     int answerCount = 0;
 
-                    for (ClassroomQuizAnswer answer : answers) {
-                        Map<Long, String> studentAnswers = parseTopicAnswers(answer.getAnswer());
+                    for (Map<Long, String> studentAnswers : parsedAnswers) {
                         String studentAnswer = studentAnswers.get(topic.getId());
 
                         if (studentAnswer != null) {
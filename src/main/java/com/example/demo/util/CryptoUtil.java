@@ -5,7 +5,11 @@ import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
 
 @Component
 public class CryptoUtil {
@@ -14,42 +18,92 @@ public class CryptoUtil {
     private static final String ALGORITHM = "AES";
     private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
 
-    private String key = DEFAULT_KEY;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /** 预先派生的密钥，修改密钥时整体替换 */
+    private volatile SecretKeySpec secretKey = new SecretKeySpec(padKey(DEFAULT_KEY), ALGORITHM);
+
+    /** 每个线程复用的加密/解密 Cipher，密钥变化时重新初始化 */
+    private final ThreadLocal<CipherHolder> encryptCipher = ThreadLocal.withInitial(CipherHolder::new);
+    private final ThreadLocal<CipherHolder> decryptCipher = ThreadLocal.withInitial(CipherHolder::new);
 
     public void setKey(String key) {
-        this.key = key;
+        this.secretKey = new SecretKeySpec(padKey(key), ALGORITHM);
     }
 
     public String encrypt(String plaintext) {
         try {
-            byte[] keyBytes = padKey(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            Cipher cipher = encryptCipher.get().obtain(Cipher.ENCRYPT_MODE, secretKey);
             byte[] encryptedBytes = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(encryptedBytes);
+            return ENCODER.encodeToString(encryptedBytes);
+        } catch (Exception e) {
+            encryptCipher.get().invalidate();
+            throw new RuntimeException("加密失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 批量加密，列表接口一次生成多个密钥时使用，同一线程内只取一次 Cipher
+     *
+     * @param plaintexts 明文列表
+     * @return 与输入顺序一致的密文列表
+     */
+    public List<String> encryptAll(Collection<String> plaintexts) {
+        List<String> result = new ArrayList<>(plaintexts.size());
+        try {
+            Cipher cipher = encryptCipher.get().obtain(Cipher.ENCRYPT_MODE, secretKey);
+            for (String plaintext : plaintexts) {
+                byte[] encryptedBytes = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+                result.add(ENCODER.encodeToString(encryptedBytes));
+            }
         } catch (Exception e) {
+            encryptCipher.get().invalidate();
             throw new RuntimeException("加密失败: " + e.getMessage(), e);
         }
+        return result;
     }
 
     public String decrypt(String ciphertext) {
         try {
-            byte[] keyBytes = padKey(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decryptedBytes = cipher.doFinal(Base64.getUrlDecoder().decode(ciphertext));
+            Cipher cipher = decryptCipher.get().obtain(Cipher.DECRYPT_MODE, secretKey);
+            byte[] decryptedBytes = cipher.doFinal(DECODER.decode(ciphertext));
             return new String(decryptedBytes, StandardCharsets.UTF_8);
         } catch (Exception e) {
+            // 密文被篡改时 Cipher 状态不可信，下次重新初始化
+            decryptCipher.get().invalidate();
             throw new RuntimeException("解密失败: " + e.getMessage(), e);
         }
     }
 
-    private byte[] padKey(String key) {
+    private static byte[] padKey(String key) {
         byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
         byte[] paddedKey = new byte[16];
         System.arraycopy(keyBytes, 0, paddedKey, 0, Math.min(keyBytes.length, 16));
         return paddedKey;
     }
-}
\ No newline at end of file
+
+    /**
+     * 线程内复用的 Cipher
+     * ECB 模式下 doFinal 后 Cipher 自动回到初始化状态，密钥不变时无需再次 init
+     */
+    private static class CipherHolder {
+        private Cipher cipher;
+        private SecretKeySpec initializedKey;
+
+        Cipher obtain(int mode, SecretKeySpec key) throws GeneralSecurityException {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(TRANSFORMATION);
+            }
+            if (initializedKey != key) {
+                cipher.init(mode, key);
+                initializedKey = key;
+            }
+            return cipher;
+        }
+
+        void invalidate() {
+            initializedKey = null;
+        }
+    }
+}
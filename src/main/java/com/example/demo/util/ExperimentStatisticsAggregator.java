@@ -0,0 +1,228 @@
+package com.example.demo.util;
+
+import com.example.demo.pojo.entity.ExperimentalProcedure;
+import com.example.demo.pojo.entity.StudentExperimentalProcedure;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实验完成情况单遍聚合器
+ * 一次遍历学生步骤提交记录，同时得到按步骤和按学生的统计结果
+ * 总分规则与 {@link ScoreCalculationUtil#calculateExperimentScore} 保持一致
+ */
+public class ExperimentStatisticsAggregator {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    /** 步骤ID -> 下标 */
+    private final Map<Long, Integer> procedureIndex;
+    /** 步骤占比（下标与 procedureIndex 对应），非必做步骤为 null */
+    private final BigDecimal[] requiredProportions;
+    private final int requiredCount;
+
+    /** 按步骤统计 */
+    private final int[] procedureCompletedCounts;
+    private final int[] procedureGradedCounts;
+    private final BigDecimal[] procedureGradedScoreSums;
+
+    /** 按学生统计（保持传入顺序） */
+    private final Map<String, StudentStatistics> studentStatistics;
+
+    public ExperimentStatisticsAggregator(List<ExperimentalProcedure> procedures, Collection<String> studentUsernames) {
+        int size = procedures.size();
+        this.procedureIndex = new HashMap<>(size * 2);
+        this.requiredProportions = new BigDecimal[size];
+        int required = 0;
+        for (int i = 0; i < size; i++) {
+            ExperimentalProcedure procedure = procedures.get(i);
+            procedureIndex.putIfAbsent(procedure.getId(), i);
+            if (procedure.getProportion() != null && procedure.getProportion() > 0) {
+                requiredProportions[i] = new BigDecimal(procedure.getProportion());
+                required++;
+            }
+        }
+        this.requiredCount = required;
+        this.procedureCompletedCounts = new int[size];
+        this.procedureGradedCounts = new int[size];
+        this.procedureGradedScoreSums = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            procedureGradedScoreSums[i] = BigDecimal.ZERO;
+        }
+
+        this.studentStatistics = new LinkedHashMap<>(studentUsernames.size() * 2);
+        for (String username : studentUsernames) {
+            studentStatistics.putIfAbsent(username, new StudentStatistics(size));
+        }
+    }
+
+    /**
+     * 累加一条学生步骤提交记录
+     */
+    public void accept(StudentExperimentalProcedure record) {
+        StudentStatistics student = studentStatistics.get(record.getStudentUsername());
+        if (student == null) {
+            return;
+        }
+        student.submittedCount++;
+
+        boolean answered = record.getAnswer() != null && !record.getAnswer().trim().isEmpty();
+        if (answered) {
+            student.completedCount++;
+        }
+        if (record.getUpdatedTime() != null
+                && (student.lastSubmissionTime == null || record.getUpdatedTime().isAfter(student.lastSubmissionTime))) {
+            student.lastSubmissionTime = record.getUpdatedTime();
+        }
+
+        boolean graded = record.getScore() != null && record.getIsGraded() != null && record.getIsGraded() > 0;
+        if (graded) {
+            student.gradedCount++;
+        }
+
+        Integer index = procedureIndex.get(record.getExperimentalProcedureId());
+        if (index == null) {
+            return;
+        }
+
+        if (answered) {
+            procedureCompletedCounts[index]++;
+        }
+        if (graded) {
+            procedureGradedCounts[index]++;
+            procedureGradedScoreSums[index] = procedureGradedScoreSums[index].add(record.getScore());
+        }
+
+        // 必做步骤：每个步骤只取学生的第一条记录参与总分计算
+        BigDecimal proportion = requiredProportions[index];
+        if (proportion == null || student.seen[index]) {
+            return;
+        }
+        student.seen[index] = true;
+        if (record.getIsGraded() != null && record.getIsGraded() != 0) {
+            student.requiredGradedCount++;
+        }
+        if (answered && record.getScore() != null && record.getIsGraded() != null && record.getIsGraded() != 0) {
+            student.satisfiedCount++;
+            student.weightedScore = student.weightedScore.add(
+                    record.getScore().multiply(proportion).divide(HUNDRED, 4, RoundingMode.HALF_UP));
+        }
+    }
+
+    /**
+     * 累加全部记录
+     */
+    public ExperimentStatisticsAggregator acceptAll(Collection<StudentExperimentalProcedure> records) {
+        for (StudentExperimentalProcedure record : records) {
+            accept(record);
+        }
+        return this;
+    }
+
+    /**
+     * 至少提交过一条记录的学生数
+     */
+    public int getSubmittedCount() {
+        int count = 0;
+        for (StudentStatistics student : studentStatistics.values()) {
+            if (student.submittedCount > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getProcedureCompletedCount(Long procedureId) {
+        Integer index = procedureIndex.get(procedureId);
+        return index == null ? 0 : procedureCompletedCounts[index];
+    }
+
+    public int getProcedureGradedCount(Long procedureId) {
+        Integer index = procedureIndex.get(procedureId);
+        return index == null ? 0 : procedureGradedCounts[index];
+    }
+
+    public BigDecimal getProcedureGradedScoreSum(Long procedureId) {
+        Integer index = procedureIndex.get(procedureId);
+        return index == null ? BigDecimal.ZERO : procedureGradedScoreSums[index];
+    }
+
+    /**
+     * 步骤平均分（仅计算已批改的记录）
+     */
+    public BigDecimal getProcedureAverageScore(Long procedureId) {
+        Integer index = procedureIndex.get(procedureId);
+        if (index == null || procedureGradedCounts[index] == 0) {
+            return BigDecimal.ZERO;
+        }
+        return procedureGradedScoreSums[index]
+                .divide(BigDecimal.valueOf(procedureGradedCounts[index]), 2, RoundingMode.HALF_UP);
+    }
+
+    public int getStudentSubmittedCount(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        return student == null ? 0 : student.submittedCount;
+    }
+
+    public int getStudentCompletedCount(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        return student == null ? 0 : student.completedCount;
+    }
+
+    public int getStudentGradedCount(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        return student == null ? 0 : student.gradedCount;
+    }
+
+    /**
+     * 占比不为零的步骤是否已全部批改
+     * 规则与 {@link ScoreCalculationUtil#isAllProceduresGraded} 保持一致
+     */
+    public boolean isStudentAllRequiredGraded(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        if (student == null) {
+            return requiredCount == 0;
+        }
+        return student.requiredGradedCount >= requiredCount;
+    }
+
+    /**
+     * 学生实验总分：存在未完成或未批改的必做步骤时为 0
+     */
+    public BigDecimal getStudentTotalScore(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        if (student == null || requiredCount == 0 || student.satisfiedCount < requiredCount) {
+            return BigDecimal.ZERO;
+        }
+        return student.weightedScore;
+    }
+
+    public LocalDateTime getStudentLastSubmissionTime(String username) {
+        StudentStatistics student = studentStatistics.get(username);
+        return student == null ? null : student.lastSubmissionTime;
+    }
+
+    /**
+     * 单个学生的累计状态
+     */
+    private static class StudentStatistics {
+        private final boolean[] seen;
+        private int submittedCount;
+        private int completedCount;
+        private int gradedCount;
+        private int requiredGradedCount;
+        private int satisfiedCount;
+        private BigDecimal weightedScore = BigDecimal.ZERO;
+        private LocalDateTime lastSubmissionTime;
+
+        private StudentStatistics(int procedureCount) {
+            this.seen = new boolean[procedureCount];
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件传输工具类
+ * 支持单段/多段 Range 请求、If-Range 以及 ETag/Last-Modified 条件请求；
+ * 只有容器支持 sendfile 时单段响应才是零拷贝（交给 Tomcat 直接由内核发送）；
+ * 其余情况（容器不支持、sendfile 关闭、响应过小或多段响应）都经过响应输出流的缓冲拷贝，属于慢路径
+ */
+@Slf4j
+@Component
+public class FileTransferUtil {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+
+    /** 单次 transferTo 的最大字节数 */
+    @Value("${slz.download.chunk-size:1048576}")
+    private long chunkSize;
+
+    /** 是否使用容器的 sendfile 发送文件 */
+    @Value("${slz.download.sendfile-enabled:true}")
+    private boolean sendfileEnabled;
+
+    /** 使用 sendfile 的最小字节数，较小的响应直接写出 */
+    @Value("${slz.download.sendfile-min-size:49152}")
+    private long sendfileMinSize;
+
+    /**
+     * 根据文件大小和修改时间生成强 ETag
+     *
+     * @param file 文件
+     * @return ETag
+     */
+    public static String buildETag(File file) {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    /**
+     * 传输文件，使用文件大小和修改时间作为 ETag
+     *
+     * @param request     HTTP请求
+     * @param response    HTTP响应
+     * @param file        文件
+     * @param contentType 内容类型
+     */
+    public void transfer(HttpServletRequest request, HttpServletResponse response, File file, String contentType)
+            throws IOException {
+        transfer(request, response, file, contentType, buildETag(file));
+    }
+
+    /**
+     * 传输文件
+     * 调用前可先设置 Content-Disposition、Cache-Control 等响应头
+     *
+     * @param request     HTTP请求
+     * @param response    HTTP响应
+     * @param file        文件
+     * @param contentType 内容类型
+     * @param eTag        强 ETag（带引号）
+     */
+    public void transfer(HttpServletRequest request, HttpServletResponse response, File file, String contentType,
+                         String eTag) throws IOException {
+        long fileLength = file.length();
+        // HTTP 日期只精确到秒
+        long lastModified = file.lastModified() / 1000 * 1000;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        // 1. 条件请求
+        if (isNotModified(request, eTag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 2. 解析范围
+        List<long[]> ranges;
+        try {
+            ranges = resolveRanges(request, eTag, lastModified, fileLength);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+            return;
+        }
+
+        // 3. 写出内容
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(fileLength);
+            writeSingle(request, response, file, 0, fileLength);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
+            response.setContentLengthLong(end - start + 1);
+            writeSingle(request, response, file, start, end - start + 1);
+        } else {
+            writeMultipart(response, file, contentType, ranges, fileLength);
+        }
+    }
+
+    /**
+     * 判断是否可以返回 304
+     * 有 If-None-Match 时只比较 ETag，否则比较 If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, eTag);
+        }
+        long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * 解析 Range 请求头，返回 [起始, 结束] 列表；为空表示返回完整文件
+     *
+     * @throws IllegalArgumentException 范围格式错误或无法满足
+     */
+    private List<long[]> resolveRanges(HttpServletRequest request, String eTag, long lastModified, long fileLength) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !isIfRangeSatisfied(request, eTag, lastModified)) {
+            return List.of();
+        }
+
+        List<HttpRange> httpRanges = HttpRange.parseRanges(rangeHeader);
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            long start = httpRange.getRangeStart(fileLength);
+            long end = httpRange.getRangeEnd(fileLength);
+            if (start >= fileLength || end < start) {
+                throw new IllegalArgumentException("范围超出文件大小");
+            }
+            ranges.add(new long[]{start, end});
+            total += end - start + 1;
+        }
+        // 多段范围总长度超过文件本身时拒绝，避免放大攻击
+        if (ranges.size() > 1 && total > fileLength) {
+            throw new IllegalArgumentException("范围总长度超过文件大小");
+        }
+        return ranges;
+    }
+
+    /**
+     * If-Range 与当前 ETag（强比较）或修改时间一致时才按范围返回
+     */
+    private boolean isIfRangeSatisfied(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        long ifRangeTime = getDateHeader(request, HttpHeaders.IF_RANGE);
+        return ifRangeTime != -1 && ifRangeTime == lastModified;
+    }
+
+    /**
+     * 弱比较 If-None-Match 中的 ETag 列表
+     */
+    private boolean matchesAny(String header, String eTag) {
+        String current = stripWeak(eTag);
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value) || stripWeak(value).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String stripWeak(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 写出单段内容，容器支持时使用 sendfile；否则走缓冲拷贝的慢路径
+     */
+    private void writeSingle(HttpServletRequest request, HttpServletResponse response, File file,
+                             long start, long count) throws IOException {
+        if (sendfileEnabled && count >= sendfileMinSize
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+
+        // 慢路径：容器不支持 sendfile 或响应较小，经响应输出流缓冲拷贝
+        if (start == 0 && count == file.length()) {
+            Files.copy(file.toPath(), response.getOutputStream());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            copy(channel, Channels.newChannel(response.getOutputStream()), start, count);
+        }
+    }
+
+    /**
+     * 写出 multipart/byteranges 多段内容
+     * 各段之间需要写出分隔头，无法使用 sendfile，始终走缓冲拷贝的慢路径
+     */
+    private void writeMultipart(HttpServletResponse response, File file, String contentType, List<long[]> ranges,
+                                long fileLength) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + fileLength + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream outputStream = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                outputStream.write(partHeaders.get(i));
+                copy(channel, target, range[0], range[1] - range[0] + 1);
+            }
+        }
+        outputStream.write(closing);
+    }
+
+    /**
+     * 从指定位置拷贝文件内容到输出通道
+     * 目标是包装输出流的通道而不是 socket，transferTo 在 JDK 内部退化为经临时缓冲区的逐块拷贝，不是零拷贝；
+     * 这里只是借助它按位置读取，不必自行 seek 和分配读缓冲区
+     */
+    private void copy(FileChannel channel, WritableByteChannel target, long position, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(position, Math.min(chunkSize, remaining), target);
+            if (transferred <= 0) {
+                throw new IOException("文件在传输过程中被截断");
+            }
+            position += transferred;
+            remaining -= transferred;
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.example.demo.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -26,6 +36,59 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    /** 已验证令牌缓存的最大条目数 */
+    @Value("${jwt.cache-size:10000}")
+    private int cacheSize;
+
+    private static final Counter TOKEN_CACHE_HIT = Counter.builder("slz.auth.token.cache")
+            .tag("result", "hit")
+            .description("已验证令牌缓存命中次数")
+            .register(Metrics.globalRegistry);
+
+    private static final Counter TOKEN_CACHE_MISS = Counter.builder("slz.auth.token.cache")
+            .tag("result", "miss")
+            .description("已验证令牌缓存未命中次数")
+            .register(Metrics.globalRegistry);
+
+    private SecretKey secretKey;
+    private JwtParser jwtParser;
+
+    /** 令牌摘要 -> 已验证的令牌信息，按访问顺序淘汰，过期时间之后不再使用 */
+    private final Map<String, TokenClaims> verifiedTokenCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenClaims> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+
+    /**
+     * 预先构建签名密钥和解析器，JwtParser 构建后线程安全
+     */
+    @PostConstruct
+    public void init() {
+        secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
+    }
+
+    /**
+     * 令牌信息
+     *
+     * @param username   用户名
+     * @param role       角色
+     * @param longTerm   是否为长期令牌
+     * @param issuedAt   签发时间
+     * @param expiration 过期时间
+     */
+    public record TokenClaims(String username, String role, boolean longTerm, Date issuedAt, Date expiration) {
+
+        public boolean isExpired() {
+            return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+        }
+    }
+
     /**
      * 生成JWT令牌
      * 令牌只包含用户名和角色
@@ -44,14 +107,12 @@ public class JwtUtil {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration * 1000);
 
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(secretKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -75,13 +136,53 @@ public class JwtUtil {
         return getClaimsFromToken(token).get("role", String.class);
     }
 
+    /**
+     * 验证令牌并返回令牌信息，只解析和验签一次
+     * 验证通过的令牌按摘要缓存到过期时间，同一令牌的后续请求不再重复验签
+     *
+     * @param token JWT令牌
+     * @return 令牌信息
+     * @throws io.jsonwebtoken.JwtException 令牌无效或已过期
+     */
+    public TokenClaims verifyToken(String token) {
+        String cacheKey = digest(token);
+        TokenClaims cachedClaims = verifiedTokenCache.get(cacheKey);
+        if (cachedClaims != null) {
+            if (!cachedClaims.isExpired()) {
+                TOKEN_CACHE_HIT.increment();
+                return cachedClaims;
+            }
+            verifiedTokenCache.remove(cacheKey);
+        }
+        TOKEN_CACHE_MISS.increment();
+
+        Claims claims = getClaimsFromToken(token);
+        TokenClaims tokenClaims = new TokenClaims(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                Boolean.TRUE.equals(claims.get("isLongTerm", Boolean.class)),
+                claims.getIssuedAt(),
+                claims.getExpiration());
+        if (tokenClaims.expiration() != null) {
+            verifiedTokenCache.put(cacheKey, tokenClaims);
+        }
+        return tokenClaims;
+    }
+
     private Claims getClaimsFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 令牌的 SHA-256 摘要，缓存中不保存令牌原文
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -123,14 +224,12 @@ public class JwtUtil {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + days * 24 * 60 * 60 * 1000L);
 
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
+                .signWith(secretKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -150,7 +249,7 @@ public class JwtUtil {
             result.put("isLongTerm", claims.get("isLongTerm", Boolean.class));
             result.put("issuedAt", claims.getIssuedAt());
             result.put("expiration", claims.getExpiration());
-            result.put("isExpired", isTokenExpired(token));
+            result.put("isExpired", claims.getExpiration().before(new Date()));
 
             return result;
         } catch (Exception e) {
@@ -1,15 +1,30 @@
 package com.example.demo.util;
 
+import lombok.RequiredArgsConstructor;
 import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * 密码工具类
  * 使用 BCrypt 算法进行密码加密和验证
  */
 @Component
+@RequiredArgsConstructor
 public class PasswordUtil {
 
+    private final ThreadPoolTaskExecutor passwordHashExecutor;
+
+    /** BCrypt 计算强度（log2 轮数），只影响新生成的密码，已有密码仍按各自的强度验证 */
+    @Value("${slz.password.bcrypt-cost:10}")
+    private int bcryptCost;
+
     /**
      * 加密密码
      *
@@ -17,7 +32,31 @@ public class PasswordUtil {
      * @return 加密后的密码
      */
     public String encode(String rawPassword) {
-        return BCrypt.hashpw(rawPassword, BCrypt.gensalt());
+        return BCrypt.hashpw(rawPassword, BCrypt.gensalt(bcryptCost));
+    }
+
+    /**
+     * 批量加密密码，在密码加密线程池中并行计算
+     * 用于批量导入、批量重置等一次需要加密大量密码的场景
+     *
+     * @param rawPasswords 原始密码列表
+     * @return 与输入顺序一致的加密后密码列表
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(rawPasswords.size());
+        for (String rawPassword : rawPasswords) {
+            futures.add(CompletableFuture.supplyAsync(() -> encode(rawPassword), passwordHashExecutor));
+        }
+
+        List<String> encodedPasswords = new ArrayList<>(rawPasswords.size());
+        try {
+            for (CompletableFuture<String> future : futures) {
+                encodedPasswords.add(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+        return encodedPasswords;
     }
 
     /**
@@ -46,4 +85,4 @@ public class PasswordUtil {
         boolean hasDigit = password.matches(".*\\d.*");
         return hasLetter && hasDigit;
     }
-}
\ No newline at end of file
+}
@@ -41,6 +41,49 @@ public class QrCodeUtil {
         }
     }
 
+    /**
+     * 生成 SVG 格式的二维码
+     * 每个模块占 1 个单位，同一行连续的深色模块合并为一条宽度为 1 的线段，由前端按 viewBox 无损缩放
+     *
+     * @param content 二维码内容
+     * @return SVG 文本
+     */
+    public String generateQrCodeSvg(String content) {
+        try {
+            Map<EncodeHintType, Object> hints = new HashMap<>();
+            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+            hints.put(EncodeHintType.MARGIN, 1);
+
+            // 宽高传 0 时按最小尺寸编码，每个模块对应一个像素
+            BitMatrix bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 0, 0, hints);
+            int width = bitMatrix.getWidth();
+            int height = bitMatrix.getHeight();
+
+            StringBuilder path = new StringBuilder(width * height / 2);
+            for (int y = 0; y < height; y++) {
+                int x = 0;
+                while (x < width) {
+                    if (!bitMatrix.get(x, y)) {
+                        x++;
+                        continue;
+                    }
+                    int start = x;
+                    while (x < width && bitMatrix.get(x, y)) {
+                        x++;
+                    }
+                    path.append('M').append(start).append(' ').append(y).append(".5h").append(x - start);
+                }
+            }
+
+            return "<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 " + width + " " + height
+                    + "\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>"
+                    + "<path stroke=\"#000\" d=\"" + path + "\"/></svg>";
+
+        } catch (WriterException e) {
+            throw new RuntimeException("生成二维码失败：" + e.getMessage());
+        }
+    }
+
     public String generateAttendanceQrContent(String courseId, String teacherCode, String classCode, Long timestamp) {
         String randomCode = String.valueOf(System.currentTimeMillis() % 10000);
         String content = String.format("%s|%s|%s|%d|%s", courseId, teacherCode, classCode, timestamp, randomCode);
@@ -0,0 +1,17 @@
+-- ============================================
+-- 学生随机抽题记录表
+-- 说明：随机模式的题库答题、限时答题和课堂小测，学生首次打开时按 (来源, 学生) 派生的种子抽题并保存，
+--       之后查看、评分和统计都读取该记录，不再重复抽题
+-- ============================================
+
+CREATE TABLE IF NOT EXISTS `student_topic_selection` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `source_type` tinyint NOT NULL COMMENT '抽题来源类型：1-题库配置，2-限时答题',
+  `source_id` bigint(20) NOT NULL COMMENT '来源ID（题库配置ID或限时答题ID）',
+  `student_username` varchar(50) NOT NULL COMMENT '学生用户名',
+  `topic_ids` text NOT NULL COMMENT '抽中的题目ID（逗号分隔）',
+  `seed` bigint(20) NOT NULL COMMENT '抽题随机种子',
+  `created_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_source_student` (`source_type`, `source_id`, `student_username`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='学生随机抽题记录表';
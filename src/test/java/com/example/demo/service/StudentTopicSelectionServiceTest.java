@@ -0,0 +1,131 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.StudentTopicSelectionMapper;
+import com.example.demo.pojo.entity.StudentTopicSelection;
+import com.example.demo.pojo.entity.Topic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StudentTopicSelectionServiceTest {
+
+    private static final List<Long> TAG_IDS = List.of(1L);
+    private static final List<Long> CANDIDATES = List.of(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L);
+
+    @Mock
+    private StudentTopicSelectionMapper studentTopicSelectionMapper;
+
+    @Mock
+    private TopicSamplingService topicSamplingService;
+
+    @InjectMocks
+    private StudentTopicSelectionService studentTopicSelectionService;
+
+    @Test
+    void shouldDrawWithStudentSeedAndSaveOnFirstOpen() {
+        when(topicSamplingService.selectCandidateIds(TAG_IDS, false, List.of())).thenReturn(CANDIDATES);
+        when(studentTopicSelectionMapper.insertIgnore(any())).thenReturn(1);
+        when(topicSamplingService.fetchTopics(anyList())).thenAnswer(invocation -> toTopics(invocation.getArgument(0)));
+
+        List<Topic> topics = studentTopicSelectionService.getOrDrawTopics(
+                StudentTopicSelectionService.SOURCE_TIMED_QUIZ, 5L, "2023001", TAG_IDS, false, List.of(), 3);
+
+        long seed = StudentTopicSelectionService.seedOf(StudentTopicSelectionService.SOURCE_TIMED_QUIZ, 5L, "2023001");
+        List<Long> expected = TopicSamplingService.sampleIds(CANDIDATES, 3, seed);
+        assertEquals(expected, topics.stream().map(Topic::getId).collect(Collectors.toList()));
+
+        ArgumentCaptor<StudentTopicSelection> captor = ArgumentCaptor.forClass(StudentTopicSelection.class);
+        verify(studentTopicSelectionMapper).insertIgnore(captor.capture());
+        assertEquals(StudentTopicSelectionService.joinTopicIds(expected), captor.getValue().getTopicIds());
+        assertEquals(Long.valueOf(seed), captor.getValue().getSeed());
+    }
+
+    @Test
+    void shouldReuseSavedSelectionWithoutSampling() {
+        when(studentTopicSelectionMapper.selectOne(any())).thenReturn(buildSelection("30,10,20"));
+        when(topicSamplingService.fetchTopics(anyList())).thenAnswer(invocation -> toTopics(invocation.getArgument(0)));
+
+        List<Topic> topics = studentTopicSelectionService.getOrDrawTopics(
+                StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, 7L, "2023001", TAG_IDS, true, List.of(), 3);
+
+        assertEquals(List.of(30L, 10L, 20L), topics.stream().map(Topic::getId).collect(Collectors.toList()));
+        verify(topicSamplingService, never()).selectCandidateIds(anyList(), anyBoolean(), any());
+        verify(studentTopicSelectionMapper, never()).insertIgnore(any());
+    }
+
+    @Test
+    void shouldUseConcurrentlySavedSelectionWhenInsertIgnored() {
+        when(topicSamplingService.selectCandidateIds(TAG_IDS, false, List.of())).thenReturn(CANDIDATES);
+        when(studentTopicSelectionMapper.selectOne(any())).thenReturn(null, buildSelection("80,70"));
+        when(studentTopicSelectionMapper.insertIgnore(any())).thenReturn(0);
+        when(topicSamplingService.fetchTopics(anyList())).thenAnswer(invocation -> toTopics(invocation.getArgument(0)));
+
+        List<Topic> topics = studentTopicSelectionService.getOrDrawTopics(
+                StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, 7L, "2023001", TAG_IDS, false, List.of(), 2);
+
+        assertEquals(List.of(80L, 70L), topics.stream().map(Topic::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldNotSaveEmptyDrawOrPreview() {
+        when(topicSamplingService.selectCandidateIds(TAG_IDS, false, List.of())).thenReturn(List.of(), CANDIDATES);
+        when(topicSamplingService.fetchTopics(anyList())).thenAnswer(invocation -> toTopics(invocation.getArgument(0)));
+
+        assertTrue(studentTopicSelectionService.getOrDrawTopics(
+                StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, 7L, "2023001", TAG_IDS, false, List.of(), 2).isEmpty());
+        assertEquals(2, studentTopicSelectionService.getOrPreviewTopics(
+                StudentTopicSelectionService.SOURCE_PROCEDURE_TOPIC, 7L, "2023001", TAG_IDS, false, List.of(), 2).size());
+        verify(studentTopicSelectionMapper, never()).insertIgnore(any());
+    }
+
+    @Test
+    void shouldFallBackToAnsweredTopicsForSubmissionWithoutSelection() {
+        when(topicSamplingService.fetchTopics(anyList())).thenAnswer(invocation -> toTopics(invocation.getArgument(0)));
+
+        List<Topic> topics = studentTopicSelectionService.getSubmittedTopics(
+                StudentTopicSelectionService.SOURCE_TIMED_QUIZ, 5L, "2023001", List.of(40L, 20L));
+
+        assertEquals(List.of(20L, 40L), topics.stream().map(Topic::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldDeriveDistinctStableSeedsPerSourceAndStudent() {
+        long seed = StudentTopicSelectionService.seedOf(1, 7L, "2023001");
+
+        assertEquals(seed, StudentTopicSelectionService.seedOf(1, 7L, "2023001"));
+        assertNotEquals(seed, StudentTopicSelectionService.seedOf(1, 7L, "2023002"));
+        assertNotEquals(seed, StudentTopicSelectionService.seedOf(2, 7L, "2023001"));
+        assertNotEquals(seed, StudentTopicSelectionService.seedOf(1, 8L, "2023001"));
+    }
+
+    private static StudentTopicSelection buildSelection(String topicIds) {
+        StudentTopicSelection selection = new StudentTopicSelection();
+        selection.setTopicIds(topicIds);
+        return selection;
+    }
+
+    private static List<Topic> toTopics(List<Long> topicIds) {
+        return topicIds.stream().map(topicId -> {
+            Topic topic = new Topic();
+            topic.setId(topicId);
+            return topic;
+        }).collect(Collectors.toList());
+    }
+}
@@ -37,6 +37,8 @@ class TeacherProcedureCreationServiceTest {
     private TimedQuizProcedureMapper timedQuizProcedureMapper;
     @Mock
     private TopicMapper topicMapper;
+    @Mock
+    private StudentExperimentProgressService studentExperimentProgressService;
 
     @InjectMocks
     private TeacherProcedureCreationService teacherProcedureCreationService;
@@ -0,0 +1,222 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.ExperimentMapper;
+import com.example.demo.mapper.ProcedureTopicMapMapper;
+import com.example.demo.mapper.StudentProcedureAttachmentMapper;
+import com.example.demo.mapper.TagMapper;
+import com.example.demo.mapper.TimedQuizProcedureMapper;
+import com.example.demo.mapper.TopicMapper;
+import com.example.demo.pojo.entity.Experiment;
+import com.example.demo.pojo.entity.ExperimentalProcedure;
+import com.example.demo.pojo.entity.ProcedureTopicMap;
+import com.example.demo.pojo.entity.StudentExperimentalProcedure;
+import com.example.demo.pojo.entity.StudentProcedureAttachment;
+import com.example.demo.pojo.entity.Tag;
+import com.example.demo.pojo.entity.TimedQuizProcedure;
+import com.example.demo.pojo.entity.Topic;
+import com.example.demo.pojo.response.StudentProcedureCompletionResponse;
+import com.example.demo.util.AnswerMapJSONUntil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TeacherStudentProcedureQueryServiceTest {
+
+    private static final String STUDENT = "20240001";
+    private static final String CLASS_CODE = "C001";
+    private static final Long EXPERIMENT_ID = 1L;
+    private static final Long CLASS_EXPERIMENT_ID = 7L;
+
+    @Mock
+    private ExperimentMapper experimentMapper;
+    @Mock
+    private ExperimentalProcedureService experimentalProcedureService;
+    @Mock
+    private StudentExperimentalProcedureService studentExperimentalProcedureService;
+    @Mock
+    private StudentProcedureAttachmentMapper studentProcedureAttachmentMapper;
+    @Mock
+    private ProcedureTopicMapMapper procedureTopicMapMapper;
+    @Mock
+    private TopicMapper topicMapper;
+    @Mock
+    private TimedQuizProcedureMapper timedQuizProcedureMapper;
+    @Mock
+    private TagMapper tagMapper;
+
+    @InjectMocks
+    private TeacherStudentProcedureQueryService teacherStudentProcedureQueryService;
+
+    @Test
+    void shouldIssueConstantQueriesForFewProcedures() {
+        StudentProcedureCompletionResponse response = queryWithProceduresPerType(2);
+
+        assertEquals("6/6", response.getProgress());
+        assertQueriedOncePerKind();
+    }
+
+    @Test
+    void shouldIssueConstantQueriesForManyProcedures() {
+        StudentProcedureCompletionResponse response = queryWithProceduresPerType(20);
+
+        assertEquals("60/60", response.getProgress());
+        assertQueriedOncePerKind();
+    }
+
+    @Test
+    void shouldAssembleTopicsAttachmentsAndTagsFromBatch() {
+        StudentProcedureCompletionResponse response = queryWithProceduresPerType(1);
+
+        StudentProcedureCompletionResponse.ProcedureCompletion dataCollection = response.getProcedures().get(0);
+        assertEquals(1, dataCollection.getPhotos().size());
+
+        StudentProcedureCompletionResponse.ProcedureCompletion topic = response.getProcedures().get(1);
+        assertEquals(1, topic.getTopicAnswers().size());
+        assertTrue(topic.getTopicAnswers().get(0).getIsCorrect());
+
+        StudentProcedureCompletionResponse.ProcedureCompletion timedQuiz = response.getProcedures().get(2);
+        assertEquals(2, timedQuiz.getTimedQuizDetail().getTags().size());
+        assertEquals(1, timedQuiz.getTimedQuizDetail().getTopics().size());
+    }
+
+    private StudentProcedureCompletionResponse queryWithProceduresPerType(int count) {
+        List<ExperimentalProcedure> procedures = new ArrayList<>();
+        List<StudentExperimentalProcedure> submissions = new ArrayList<>();
+        List<StudentProcedureAttachment> attachments = new ArrayList<>();
+        List<TimedQuizProcedure> timedQuizzes = new ArrayList<>();
+        List<ProcedureTopicMap> topicMaps = new ArrayList<>();
+        List<Topic> topics = new ArrayList<>();
+
+        long id = 100L;
+        for (int i = 0; i < count; i++) {
+            // 数据收集
+            ExperimentalProcedure dataCollection = buildProcedure(id++, 2);
+            procedures.add(dataCollection);
+            submissions.add(buildSubmission(dataCollection,
+                    AnswerMapJSONUntil.toDataCollectionJson(Map.of("a", "1"), null)));
+            attachments.add(buildAttachment(dataCollection.getId()));
+
+            // 题库答题
+            ExperimentalProcedure topicProcedure = buildProcedure(id++, 3);
+            Topic topic = buildTopic(1000L + i);
+            topics.add(topic);
+            procedures.add(topicProcedure);
+            submissions.add(buildSubmission(topicProcedure,
+                    AnswerMapJSONUntil.toTopicJson(Map.of(topic.getId(), "A"))));
+
+            // 限时答题
+            ExperimentalProcedure timedProcedure = buildProcedure(id++, 5);
+            timedProcedure.setTimedQuizId(500L + i);
+            Topic quizTopic = buildTopic(2000L + i);
+            topics.add(quizTopic);
+            procedures.add(timedProcedure);
+            submissions.add(buildSubmission(timedProcedure,
+                    AnswerMapJSONUntil.toTimedQuizJson(Map.of(quizTopic.getId(), "A"))));
+            timedQuizzes.add(buildTimedQuiz(timedProcedure));
+            topicMaps.add(buildTopicMap(timedProcedure.getId(), quizTopic.getId()));
+        }
+
+        Experiment experiment = new Experiment();
+        experiment.setId(EXPERIMENT_ID);
+        when(experimentMapper.selectById(EXPERIMENT_ID)).thenReturn(experiment);
+        when(experimentalProcedureService.getByExperimentId(EXPERIMENT_ID)).thenReturn(procedures);
+        when(studentExperimentalProcedureService.getByStudentAndExperiment(STUDENT, CLASS_CODE, EXPERIMENT_ID))
+                .thenReturn(submissions);
+        when(studentProcedureAttachmentMapper.selectList(any())).thenReturn(attachments);
+        when(timedQuizProcedureMapper.selectBatchIds(anyCollection())).thenReturn(timedQuizzes);
+        when(tagMapper.selectList(any())).thenReturn(List.of(buildTag(1L), buildTag(2L)));
+        when(procedureTopicMapMapper.selectList(any())).thenReturn(topicMaps);
+        when(topicMapper.selectBatchIds(anyCollection())).thenReturn(topics);
+
+        return teacherStudentProcedureQueryService.getStudentProcedureCompletion(STUDENT, CLASS_CODE, EXPERIMENT_ID);
+    }
+
+    private void assertQueriedOncePerKind() {
+        verify(studentProcedureAttachmentMapper, times(1)).selectList(any());
+        verify(timedQuizProcedureMapper, times(1)).selectBatchIds(anyCollection());
+        verify(tagMapper, times(1)).selectList(any());
+        verify(procedureTopicMapMapper, times(1)).selectList(any());
+        verify(topicMapper, times(1)).selectBatchIds(anyCollection());
+        verify(topicMapper, never()).selectById(any());
+        verify(timedQuizProcedureMapper, never()).selectById(any());
+    }
+
+    private ExperimentalProcedure buildProcedure(Long id, int type) {
+        ExperimentalProcedure procedure = new ExperimentalProcedure();
+        procedure.setId(id);
+        procedure.setExperimentId(EXPERIMENT_ID);
+        procedure.setNumber(id.intValue());
+        procedure.setType(type);
+        return procedure;
+    }
+
+    private StudentExperimentalProcedure buildSubmission(ExperimentalProcedure procedure, String answer) {
+        StudentExperimentalProcedure submission = new StudentExperimentalProcedure();
+        submission.setId(procedure.getId() * 10);
+        submission.setExperimentalProcedureId(procedure.getId());
+        submission.setStudentUsername(STUDENT);
+        submission.setClassCode(CLASS_CODE);
+        submission.setClassExperimentId(CLASS_EXPERIMENT_ID);
+        submission.setAnswer(answer);
+        return submission;
+    }
+
+    private StudentProcedureAttachment buildAttachment(Long procedureId) {
+        StudentProcedureAttachment attachment = new StudentProcedureAttachment();
+        attachment.setId(procedureId * 100);
+        attachment.setProcedureId(procedureId);
+        attachment.setStudentUsername(STUDENT);
+        attachment.setClassExperimentId(CLASS_EXPERIMENT_ID);
+        attachment.setFileType(1);
+        return attachment;
+    }
+
+    private Topic buildTopic(Long id) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        topic.setNumber(id.intValue());
+        topic.setType(1);
+        topic.setCorrectAnswer("A");
+        return topic;
+    }
+
+    private TimedQuizProcedure buildTimedQuiz(ExperimentalProcedure procedure) {
+        TimedQuizProcedure timedQuiz = new TimedQuizProcedure();
+        timedQuiz.setId(procedure.getTimedQuizId());
+        timedQuiz.setExperimentalProcedureId(procedure.getId());
+        timedQuiz.setIsRandom(false);
+        timedQuiz.setTopicTags("1,2");
+        timedQuiz.setQuizTimeLimit(10);
+        return timedQuiz;
+    }
+
+    private ProcedureTopicMap buildTopicMap(Long procedureId, Long topicId) {
+        ProcedureTopicMap topicMap = new ProcedureTopicMap();
+        topicMap.setExperimentalProcedureId(procedureId);
+        topicMap.setTopicId(topicId);
+        return topicMap;
+    }
+
+    private Tag buildTag(Long id) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setType("1");
+        return tag;
+    }
+}
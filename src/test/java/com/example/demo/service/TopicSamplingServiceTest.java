@@ -0,0 +1,43 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopicSamplingServiceTest {
+
+    private static final List<Long> CANDIDATES = List.of(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L);
+
+    @Test
+    void shouldSampleDistinctIdsFromCandidates() {
+        List<Long> sampled = TopicSamplingService.sampleIds(CANDIDATES, 3, null);
+
+        assertEquals(3, sampled.size());
+        assertEquals(3, new HashSet<>(sampled).size());
+        assertTrue(CANDIDATES.containsAll(sampled));
+    }
+
+    @Test
+    void shouldBeReproducibleWithSameSeedRegardlessOfCandidateOrder() {
+        List<Long> reversed = List.of(80L, 70L, 60L, 50L, 40L, 30L, 20L, 10L);
+
+        assertEquals(TopicSamplingService.sampleIds(CANDIDATES, 4, 42L),
+                TopicSamplingService.sampleIds(reversed, 4, 42L));
+    }
+
+    @Test
+    void shouldReturnAllCandidatesWhenCountNotLimited() {
+        assertEquals(new TreeSet<>(CANDIDATES), new TreeSet<>(TopicSamplingService.sampleIds(CANDIDATES, null, 1L)));
+        assertEquals(CANDIDATES.size(), TopicSamplingService.sampleIds(CANDIDATES, 100, 1L).size());
+    }
+
+    @Test
+    void shouldReturnEmptyForNoCandidates() {
+        assertTrue(TopicSamplingService.sampleIds(List.of(), 3, 1L).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.TopicMapper;
+import com.example.demo.pojo.entity.Topic;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TopicSearchIndexTest {
+
+    @Mock
+    private TopicMapper topicMapper;
+
+    @Mock
+    private TopicTagMatchService topicTagMatchService;
+
+    @InjectMocks
+    private TopicSearchIndex topicSearchIndex;
+
+    @Test
+    void shouldTokenizeIntoUnigramsAndBigramsSkippingWhitespace() {
+        assertEquals(Set.of("光", "合", "光合", "a", "b", "ab"), TopicSearchIndex.tokenize("光合 ab"));
+    }
+
+    @Test
+    void shouldIndexContentAndChoices() {
+        Topic topic = buildTopic(1L, 1, "下列哪项", "{\"A\":\"Photosynthesis\",\"B\":\"呼吸作用\"}");
+
+        TopicSearchIndex.Document document = TopicSearchIndex.toDocument(topic);
+
+        assertTrue(TopicSearchIndex.tokenize(TopicSearchIndex.normalize("photo")).stream()
+                .allMatch(TopicSearchIndex.tokenize(document.text)::contains));
+        assertTrue(document.text.contains("呼吸作用"));
+    }
+
+    @Test
+    void shouldMatchLikeSemanticsAndFilterByTypeTagsAndCreator() {
+        when(topicMapper.selectList(any())).thenReturn(List.of(
+                buildTopic(1L, 1, "植物的光合作用", null),
+                buildTopic(2L, 2, "光合作用的产物是什么", null),
+                buildTopic(3L, 1, "作用光合", null),
+                buildTopic(4L, 1, "细胞呼吸", "{\"A\":\"光合作用\"}")));
+        topicSearchIndex.rebuild();
+
+        assertEquals(List.of(4L, 2L, 1L), topicSearchIndex.search("光合作用", null, null, null));
+        assertEquals(List.of(4L, 1L), topicSearchIndex.search("光合作用", List.of(1), null, null));
+        assertEquals(List.of(1L), topicSearchIndex.search("光合作用", null, null, "teacher1"));
+
+        when(topicTagMatchService.selectTopicIdsByAnyTags(List.of(9L))).thenReturn(List.of(2L, 4L));
+        assertEquals(List.of(4L, 2L), topicSearchIndex.search("光合作用", null, List.of(9L), null));
+        assertTrue(topicSearchIndex.search("光合作用原理", null, null, null).isEmpty());
+    }
+
+    @Test
+    void shouldIntersectAndMergeSortedTopicIds() {
+        assertEquals(List.of(3, 7), Arrays.stream(TopicSearchIndex.intersect(
+                new ArrayList<>(List.of(new int[]{1, 3, 5, 7, 9}, new int[]{3, 7})))).boxed().toList());
+        assertEquals(List.of(1, 4, 5, 9), Arrays.stream(TopicSearchIndex.merge(
+                new int[]{1, 3, 5, 9}, new int[]{3, 5}, new int[]{4, 5})).boxed().toList());
+        assertEquals(List.of(2, 3), Arrays.stream(TopicSearchIndex.merge(
+                new int[]{1, 3}, new int[]{1}, new int[]{2})).boxed().toList());
+    }
+
+    private static Topic buildTopic(Long id, Integer type, String content, String choices) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        topic.setType(type);
+        topic.setContent(content);
+        topic.setChoices(choices);
+        topic.setCreatedBy(id % 2 == 0 ? "teacher2" : "teacher1");
+        topic.setCreatedTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusDays(id));
+        return topic;
+    }
+}
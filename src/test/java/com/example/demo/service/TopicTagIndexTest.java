@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopicTagIndexTest {
+
+    private TopicTagIndex.Snapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        // 题目 10-13 未删除，题目 14 已删除
+        BitSet liveTopics = bits(10, 11, 12, 13);
+        Map<Integer, BitSet> typeTopics = Map.of(1, bits(10, 11), 2, bits(12, 13));
+        Map<Long, BitSet> tagTopics = Map.of(
+                1L, bits(10, 11),
+                2L, bits(12, 14),
+                3L, bits(11, 12, 13, 14));
+        snapshot = new TopicTagIndex.Snapshot(tagTopics, typeTopics, liveTopics, 0, Long.MAX_VALUE);
+    }
+
+    @Test
+    void shouldUnionTagsAndExcludeDeletedTopics() {
+        assertEquals(List.of(10L, 11L, 12L), TopicTagIndex.toTopicIds(snapshot.matchAny(List.of(1L, 2L))));
+    }
+
+    @Test
+    void shouldIntersectAllTags() {
+        assertEquals(List.of(12L), TopicTagIndex.toTopicIds(snapshot.matchAll(List.of(2L, 3L))));
+        assertEquals(List.of(), TopicTagIndex.toTopicIds(snapshot.matchAll(List.of(1L, 99L))));
+    }
+
+    @Test
+    void shouldUnionWithinGroupAndIntersectAcrossGroups() {
+        BitSet result = snapshot.matchGrouped(List.of(List.of(1L, 2L), List.of(3L)));
+
+        assertEquals(List.of(11L, 12L), TopicTagIndex.toTopicIds(result));
+    }
+
+    @Test
+    void shouldReturnEmptyWhenNoGroupGiven() {
+        assertEquals(List.of(), TopicTagIndex.toTopicIds(snapshot.matchGrouped(List.of())));
+    }
+
+    @Test
+    void shouldFilterLiveTopicsByType() {
+        assertEquals(List.of(12L, 13L), TopicTagIndex.toTopicIds(snapshot.liveTopics(List.of(2))));
+        assertEquals(List.of(10L, 11L, 12L, 13L), TopicTagIndex.toTopicIds(snapshot.liveTopics(null)));
+    }
+
+    private static BitSet bits(int... topicIds) {
+        BitSet bitSet = new BitSet();
+        for (int topicId : topicIds) {
+            bitSet.set(topicId);
+        }
+        return bitSet;
+    }
+}
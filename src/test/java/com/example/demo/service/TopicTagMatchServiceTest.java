@@ -30,6 +30,10 @@ class TopicTagMatchServiceTest {
     @Mock
     private TopicTagMapMapper topicTagMapMapper;
 
+    /** 未开启位图索引，按 SQL 查询 */
+    @Mock
+    private TopicTagIndex topicTagIndex;
+
     @InjectMocks
     private TopicTagMatchService topicTagMatchService;
 
@@ -0,0 +1,99 @@
+package com.example.demo.util;
+
+import com.example.demo.pojo.entity.ExperimentalProcedure;
+import com.example.demo.pojo.entity.StudentExperimentalProcedure;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExperimentStatisticsAggregatorTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2026, 3, 1, 8, 0);
+
+    @Test
+    void shouldMatchScoreCalculationUtilForEveryStudent() {
+        List<ExperimentalProcedure> procedures = List.of(
+                buildProcedure(1L, 30), buildProcedure(2L, 70), buildProcedure(3L, 0));
+        List<String> students = List.of("s1", "s2", "s3", "s4");
+
+        List<StudentExperimentalProcedure> records = new ArrayList<>();
+        // s1：必做步骤全部完成并批改
+        records.add(buildRecord("s1", 1L, "A", "80", 1, 1));
+        records.add(buildRecord("s1", 2L, "B", "90", 2, 2));
+        records.add(buildRecord("s1", 3L, "C", null, 0, 3));
+        // s2：步骤2未批改
+        records.add(buildRecord("s2", 1L, "A", "100", 1, 4));
+        records.add(buildRecord("s2", 2L, "B", null, 0, 5));
+        // s3：步骤2未作答
+        records.add(buildRecord("s3", 1L, "A", "60", 1, 6));
+        records.add(buildRecord("s3", 2L, " ", "60", 1, 7));
+        // s4 无提交
+
+        ExperimentStatisticsAggregator aggregator =
+                new ExperimentStatisticsAggregator(procedures, students).acceptAll(records);
+
+        for (String student : students) {
+            List<StudentExperimentalProcedure> own = records.stream()
+                    .filter(r -> r.getStudentUsername().equals(student))
+                    .collect(Collectors.toList());
+            assertEquals(ScoreCalculationUtil.calculateExperimentScore(procedures, own),
+                    aggregator.getStudentTotalScore(student));
+            assertEquals(ScoreCalculationUtil.isAllProceduresGraded(procedures, own),
+                    aggregator.isStudentAllRequiredGraded(student));
+        }
+        assertEquals(0, new BigDecimal("87.0000").compareTo(aggregator.getStudentTotalScore("s1")));
+        assertEquals(3, aggregator.getSubmittedCount());
+    }
+
+    @Test
+    void shouldAggregatePerProcedureAndPerStudentCounters() {
+        List<ExperimentalProcedure> procedures = List.of(buildProcedure(1L, 50), buildProcedure(2L, 50));
+        List<String> students = List.of("s1", "s2", "s3");
+
+        List<StudentExperimentalProcedure> records = List.of(
+                buildRecord("s1", 1L, "A", "80", 1, 1),
+                buildRecord("s1", 2L, "B", null, 0, 9),
+                buildRecord("s2", 1L, "A", "90", 2, 3));
+
+        ExperimentStatisticsAggregator aggregator =
+                new ExperimentStatisticsAggregator(procedures, students).acceptAll(records);
+
+        assertEquals(2, aggregator.getProcedureCompletedCount(1L));
+        assertEquals(1, aggregator.getProcedureCompletedCount(2L));
+        assertEquals(new BigDecimal("85.00"), aggregator.getProcedureAverageScore(1L));
+        assertEquals(BigDecimal.ZERO, aggregator.getProcedureAverageScore(2L));
+
+        assertEquals(2, aggregator.getStudentCompletedCount("s1"));
+        assertEquals(1, aggregator.getStudentGradedCount("s1"));
+        assertEquals(BASE_TIME.plusMinutes(9), aggregator.getStudentLastSubmissionTime("s1"));
+        assertEquals(0, aggregator.getStudentCompletedCount("s3"));
+        assertNull(aggregator.getStudentLastSubmissionTime("s3"));
+    }
+
+    private ExperimentalProcedure buildProcedure(Long id, int proportion) {
+        ExperimentalProcedure procedure = new ExperimentalProcedure();
+        procedure.setId(id);
+        procedure.setNumber(id.intValue());
+        procedure.setProportion(proportion);
+        return procedure;
+    }
+
+    private StudentExperimentalProcedure buildRecord(String student, Long procedureId, String answer,
+                                                     String score, int isGraded, int minute) {
+        StudentExperimentalProcedure record = new StudentExperimentalProcedure();
+        record.setStudentUsername(student);
+        record.setExperimentalProcedureId(procedureId);
+        record.setAnswer(answer);
+        record.setScore(score == null ? null : new BigDecimal(score));
+        record.setIsGraded(isGraded);
+        record.setUpdatedTime(BASE_TIME.plusMinutes(minute));
+        return record;
+    }
+}